@@ -0,0 +1,51 @@
+package benchmarks.cells;
+
+import benchmarks.BenchmarkUtil;
+import benchmarks.Benchmarked;
+import dev.kabin.components.WorldRepresentation;
+import dev.kabin.util.cell.Cell;
+
+import java.time.Duration;
+import java.util.Random;
+
+public class BenchMarkLeafDirectory extends BenchmarkUtil {
+
+    public static final Random RANDOM = new Random(0);
+    private static final int QUERIES_PER_PASS = 1 << 16;
+    // Points are kept within 8x8 indivisible cells, so that the pools of the representation are not exhausted.
+    private static final int SPAN = 8 * WorldRepresentation.INDIVISIBLE_COMPONENT_SIZE;
+    private static final Cell CELL = Cell.makeRepresentationOf(40_000, 10_000,
+            WorldRepresentation.INDIVISIBLE_COMPONENT_SIZE, WorldRepresentation.POOL_OBJECTS_AVAILABLE, true);
+    private static final int[] X = new int[QUERIES_PER_PASS];
+    private static final int[] Y = new int[QUERIES_PER_PASS];
+
+    static {
+        for (int i = 0; i < QUERIES_PER_PASS; i++) {
+            X[i] = RANDOM.nextInt(SPAN) - SPAN / 2;
+            Y[i] = RANDOM.nextInt(SPAN) - SPAN / 2;
+            if (RANDOM.nextBoolean()) CELL.incrementCollisionAt(X[i], Y[i]);
+        }
+    }
+
+    public static void main(String[] args) {
+        benchMarkRunnable(
+                BenchMarkLeafDirectory.class,
+                BenchMarkLeafDirectory::countCollisions,
+                Duration.ofMinutes(20),
+                Duration.ofMinutes(5)
+        );
+    }
+
+    /**
+     * @return the number of collisions found among a fixed set of random points, using point queries answered by the leaf directory of the root cell.
+     */
+    @Benchmarked
+    private static int countCollisions() {
+        int count = 0;
+        for (int i = 0; i < QUERIES_PER_PASS; i++) {
+            if (CELL.isCollisionAt(X[i], Y[i])) count++;
+        }
+        return count;
+    }
+
+}
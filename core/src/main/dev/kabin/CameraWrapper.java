@@ -2,12 +2,15 @@ package dev.kabin;
 
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import dev.kabin.entities.libgdximpl.Player;
+import dev.kabin.physics.TickInterpolation;
 import dev.kabin.util.Functions;
 import dev.kabin.util.WeightedAverage2D;
 import dev.kabin.util.lambdas.FloatSupplier;
+import dev.kabin.util.points.PointFloat;
 import dev.kabin.util.shapes.primitive.MutableRectInt;
 import dev.kabin.util.shapes.primitive.RectIntView;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class CameraWrapper {
 
@@ -22,6 +25,10 @@ public class CameraWrapper {
     private final OrthographicCamera camera;
     private final WeightedAverage2D directionalPreSmoothening = new WeightedAverage2D(0.1f);
     private final WeightedAverage2D directionalFinalSmoothening = new WeightedAverage2D(0.005f);
+    // Velocity of the camera in world pixels per second, as read by background threads.
+    private final WeightedAverage2D velocitySmoothening = new WeightedAverage2D(0.05f);
+    private volatile float velocityX, velocityY;
+    private long lastSetPosNanos = Long.MIN_VALUE;
 
 
     public CameraWrapper(FloatSupplier scale,
@@ -31,8 +38,10 @@ public class CameraWrapper {
     }
 
     public void setPos(float x, float y) {
+        final float previousX = camera.position.x, previousY = camera.position.y;
         camera.position.set(x, y, camera.position.z);
         camera.update();
+        updateVelocity(previousX, previousY, x, y);
         // Find new camera position:
         currentCameraBounds.translate(
                 Math.round(Functions.toIntDivideBy(x, scale.get()) - currentCameraBounds.getCenterX()),
@@ -44,6 +53,25 @@ public class CameraWrapper {
         );
     }
 
+    private void updateVelocity(float previousX, float previousY, float x, float y) {
+        final long now = System.nanoTime();
+        if (lastSetPosNanos != Long.MIN_VALUE && now > lastSetPosNanos) {
+            final float seconds = (now - lastSetPosNanos) * 1e-9f;
+            velocitySmoothening.appendSignalX((x - previousX) / scale.get() / seconds);
+            velocitySmoothening.appendSignalY((y - previousY) / scale.get() / seconds);
+            velocityX = velocitySmoothening.x();
+            velocityY = velocitySmoothening.y();
+        }
+        lastSetPosNanos = now;
+    }
+
+    /**
+     * @return the smoothed velocity of the camera in world pixels per second.
+     */
+    public PointFloat getVelocity() {
+        return PointFloat.immutable(velocityX, velocityY);
+    }
+
     public float getCameraX() {
         return camera.position.x;
     }
@@ -58,14 +86,25 @@ public class CameraWrapper {
     }
 
     public void follow(Player player) {
+        follow(player, null);
+    }
+
+    /**
+     * Follows the player as drawn: if the given ticks hold it, at its blended position and in the direction it moved
+     * by the last of them, rather than as the physics left it.
+     */
+    public void follow(Player player, @Nullable TickInterpolation ticks) {
+        final int id = player.getId();
+        final boolean published = ticks != null && ticks.contains(id);
+        final int state = published ? ticks.state(id) : player.publishedState();
         final float unit = 3 * player.getMaxPixelHeight() * scale.get();
-        directionalPreSmoothening.appendSignalX((float) (Math.signum(player.getVx()) * unit));
-        directionalPreSmoothening.appendSignalY((float) (Math.signum(player.getVy()) * unit + 0.5f * unit));
+        directionalPreSmoothening.appendSignalX(Player.horizontalDirection(state) * unit);
+        directionalPreSmoothening.appendSignalY(Player.verticalDirection(state) * unit + 0.5f * unit);
         directionalFinalSmoothening.appendSignalX(directionalPreSmoothening.x());
         directionalFinalSmoothening.appendSignalY(directionalPreSmoothening.y());
         final float x = directionalFinalSmoothening.x();
         final float y = directionalFinalSmoothening.y();
-        setPos(player.getX() + x, player.getY() + y);
+        setPos((published ? ticks.x(id) : player.getX()) + x, (published ? ticks.y(id) : player.getY()) + y);
     }
 
     public RectIntView currentCameraBounds() {
@@ -6,6 +6,7 @@ import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import dev.kabin.entities.libgdximpl.EntityGroup;
 import dev.kabin.entities.libgdximpl.EntityLibgdx;
 import dev.kabin.entities.libgdximpl.GraphicsParametersLibgdx;
+import dev.kabin.physics.TickInterpolation;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -19,7 +20,9 @@ record GraphicsParametersImpl(@NotNull SpriteBatch batch,
                               float scale,
                               float screenWidth,
                               float screenHeight,
-                              Map<EntityGroup, ShaderProgram> shaders) implements GraphicsParametersLibgdx {
+                              Map<EntityGroup, ShaderProgram> shaders,
+                              float interpolationAlpha,
+                              @Nullable TickInterpolation tickInterpolation) implements GraphicsParametersLibgdx {
 
 
     @Override
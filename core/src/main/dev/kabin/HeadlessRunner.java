@@ -0,0 +1,213 @@
+package dev.kabin;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import dev.kabin.components.WorldRepresentation;
+import dev.kabin.entities.libgdximpl.EntityGroup;
+import dev.kabin.entities.libgdximpl.EntityLibgdx;
+import dev.kabin.entities.libgdximpl.Player;
+import dev.kabin.entities.libgdximpl.animation.imageanalysis.ImageMetadataPoolLibgdx;
+import dev.kabin.physics.IslandStepper;
+import dev.kabin.physics.PhysicsEngine;
+import dev.kabin.physics.SweepAndPrune;
+import dev.kabin.util.eventhandlers.KeyEventUtil;
+import dev.kabin.util.eventhandlers.KeyScript;
+import dev.kabin.util.scheduling.TaskTimings;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Drives a world without a window, for benchmarks and soak tests. The world is loaded, and its physics and background
+ * tasks are run with scripted key input, tick after tick as fast as the CPU allows. When done, the ticks per second,
+ * the time spent per phase of a tick and the rate of allocation are reported.
+ * <p>
+ * To be run on a headless backend. Nothing is drawn, so the neighborhoods of the entities, which are otherwise brought
+ * up to date by their graphics, are brought up to date after each physics frame.
+ */
+public class HeadlessRunner extends ApplicationAdapter {
+
+    // The scale of the desktop launcher.
+    private static final int SCREEN_WIDTH = 1280;
+    private static final int SCREEN_HEIGHT = 720;
+
+    /**
+     * @param world                  the file name of the world, under {@link GlobalData#WORLDS_PATH}.
+     * @param ticks                  the number of ticks to run, each of which is a physics frame of {@link PhysicsEngine#DT}.
+     * @param script                 the key input, as by {@link KeyScript#parse(String)}.
+     * @param ticksPerBackgroundPass the number of ticks between passes of the background tasks.
+     * @param parallelPhysics        whether to update the physics of entities in parallel.
+     */
+    public record Options(@NotNull String world, long ticks, @NotNull String script, int ticksPerBackgroundPass,
+                          boolean parallelPhysics) {
+
+        public Options {
+            if (ticks <= 0 || ticksPerBackgroundPass <= 0) {
+                throw new IllegalArgumentException("Received invalid parameters: " + ticks + ", " + ticksPerBackgroundPass);
+            }
+        }
+
+        /**
+         * @return five simulated minutes of the current world with the default script, and a pass of the background
+         * tasks for each simulated second, as in the game.
+         */
+        public static Options defaults() {
+            return new Options(GlobalData.currentWorld, 5 * 60 * Math.round(1 / PhysicsEngine.DT), KeyScript.DEFAULT_SCRIPT,
+                    Math.round(1 / PhysicsEngine.DT), false);
+        }
+    }
+
+    private enum Phase {
+        INPUT, PHYSICS, CAMERA, BACKGROUND
+    }
+
+    private final Options options;
+    private final long[] phaseNanos = new long[Phase.values().length];
+
+    public HeadlessRunner(@NotNull Options options) {
+        this.options = options;
+    }
+
+    @Override
+    public void create() {
+        // Textures are created, but never drawn.
+        if (Gdx.gl == null) {
+            Gdx.gl = Gdx.gl20 = noOpGl();
+        }
+        try {
+            run();
+        } finally {
+            Gdx.app.exit();
+        }
+    }
+
+    private void run() {
+        final float scale = (float) SCREEN_WIDTH / GlobalData.ART_WIDTH;
+        final WorldRepresentation<EntityGroup, EntityLibgdx> worldRepresentation = loadWorld(scale);
+        final KeyScript script = KeyScript.parse(options.script());
+        final KeyEventUtil keyEventUtil = new KeyEventUtil();
+        final PhysicsParametersImpl parameters = new PhysicsParametersImpl(scale, worldRepresentation, keyEventUtil);
+        final SweepAndPrune<EntityLibgdx> contacts = new SweepAndPrune<>();
+        final IslandStepper<EntityLibgdx> islands = options.parallelPhysics() ? PhysicsEngine.newIslandStepper() : null;
+        final CameraWrapper camera = new CameraWrapper(() -> scale, new OrthographicCamera(SCREEN_WIDTH, SCREEN_HEIGHT));
+        final ThreadHandler threadHandler = new ThreadHandler(() -> worldRepresentation,
+                camera::getCameraNeighborhood,
+                camera::getVelocity,
+                () -> null,
+                () -> false);
+
+        final Player player = Player.getInstance().orElse(null);
+        if (player != null) {
+            player.setHandleInput(true);
+            camera.follow(player);
+        }
+        threadHandler.runBackgroundTasksOnce();
+
+        final long allocatedBefore = allocatedBytes();
+        final long start = System.nanoTime();
+        for (long tick = 0; tick < options.ticks(); tick++) {
+            long t = System.nanoTime();
+            script.apply(tick, keyEventUtil);
+            t = lap(Phase.INPUT, t);
+
+            final List<EntityLibgdx> entities = worldRepresentation.acquireSnapshot().entitiesInCameraNeighborhood();
+            if (islands == null) PhysicsEngine.renderExactlyOneFrame(parameters, entities::forEach, contacts);
+            else PhysicsEngine.renderExactlyOneFrame(parameters, entities::forEach, contacts, islands);
+            //noinspection ForLoopReplaceableByForEach
+            for (int i = 0, n = entities.size(); i < n; i++) entities.get(i).updateNeighborhood();
+            t = lap(Phase.PHYSICS, t);
+
+            if (player != null) camera.follow(player);
+            t = lap(Phase.CAMERA, t);
+
+            if ((tick + 1) % options.ticksPerBackgroundPass() == 0) {
+                threadHandler.runBackgroundTasksOnce();
+                lap(Phase.BACKGROUND, t);
+            }
+        }
+        final long elapsedNanos = System.nanoTime() - start;
+        final long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+        threadHandler.close();
+        worldRepresentation.close();
+
+        System.out.println(report(elapsedNanos, allocated, threadHandler.backgroundTaskTimings()));
+    }
+
+    private WorldRepresentation<EntityGroup, EntityLibgdx> loadWorld(float scale) {
+        final TextureAtlas textureAtlas = new TextureAtlas("textures.atlas");
+        return Serializer.loadWorld(Path.of(GlobalData.WORLDS_PATH + options.world()),
+                actor -> {
+                },
+                textureAtlas,
+                new ImageMetadataPoolLibgdx(textureAtlas),
+                scale);
+    }
+
+    private long lap(Phase phase, long since) {
+        final long now = System.nanoTime();
+        phaseNanos[phase.ordinal()] += now - since;
+        return now;
+    }
+
+    private String report(long elapsedNanos, long allocatedBytes, List<TaskTimings> backgroundTaskTimings) {
+        final long ticks = options.ticks();
+        final double seconds = elapsedNanos * 1e-9;
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Ran %d ticks of %s (%.1f s simulated) in %.2f s: %.0f ticks/s, %.1f times real time.%n",
+                ticks, options.world(), ticks * PhysicsEngine.DT, seconds, ticks / seconds, ticks * PhysicsEngine.DT / seconds));
+
+        sb.append(String.format("%-22s %12s %14s%n", "Phase", "total (ms)", "per tick (us)"));
+        for (Phase phase : Phase.values()) {
+            final long nanos = phaseNanos[phase.ordinal()];
+            sb.append(String.format("%-22s %12.1f %14.2f%n", phase.name().toLowerCase(), nanos * 1e-6, nanos * 1e-3 / ticks));
+        }
+
+        sb.append(String.format("%-22s %12s %14s %10s%n", "Background task", "runs", "average (ms)", "max (ms)"));
+        //noinspection ForLoopReplaceableByForEach
+        for (int i = 0, n = backgroundTaskTimings.size(); i < n; i++) {
+            final TaskTimings timings = backgroundTaskTimings.get(i);
+            sb.append(String.format("%-22s %12d %14.3f %10.3f%n", timings.name(), timings.runs(),
+                    timings.averageNanos() * 1e-6, timings.maxNanos() * 1e-6));
+        }
+
+        if (allocatedBytes < 0) {
+            sb.append("The allocation rate is not available on this JVM.");
+        } else {
+            sb.append(String.format("Allocated %.1f MB on the runner thread: %.1f MB/s, %.0f bytes per tick.",
+                    allocatedBytes / 1e6, allocatedBytes / 1e6 / seconds, (double) allocatedBytes / ticks));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the number of bytes allocated by the current thread, or -1 if the JVM does not tell.
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof final com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+            return bean.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    /**
+     * @return an implementation of GL which does nothing, and returns zero, false or null.
+     */
+    private static GL20 noOpGl() {
+        return (GL20) Proxy.newProxyInstance(GL20.class.getClassLoader(), new Class<?>[]{GL20.class}, (proxy, method, args) -> {
+            final Class<?> type = method.getReturnType();
+            if (type == boolean.class) return false;
+            if (type == int.class) return 0;
+            if (type == float.class) return 0f;
+            if (type == long.class) return 0L;
+            if (type == String.class) return "";
+            return null;
+        });
+    }
+}
@@ -10,22 +10,32 @@ import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.scenes.scene2d.Stage;
 import dev.kabin.components.WorldRepresentation;
+import dev.kabin.components.worldmodel.WorldSnapshot;
 import dev.kabin.entities.libgdximpl.EntityGroup;
 import dev.kabin.entities.libgdximpl.EntityLibgdx;
 import dev.kabin.entities.libgdximpl.Player;
 import dev.kabin.entities.libgdximpl.animation.imageanalysis.ImageMetadataPoolLibgdx;
+import dev.kabin.physics.FixedTimestep;
+import dev.kabin.physics.IslandStepper;
 import dev.kabin.physics.PhysicsEngine;
+import dev.kabin.physics.SimulationThread;
+import dev.kabin.physics.SweepAndPrune;
+import dev.kabin.physics.TickInterpolation;
+import dev.kabin.physics.TickState;
+import dev.kabin.shaders.AnchoredLightSourceData;
 import dev.kabin.shaders.LightSourceData;
 import dev.kabin.shaders.LightSourceShaderBinder;
 import dev.kabin.shaders.ShaderFactory;
 import dev.kabin.ui.developer.DeveloperUI;
 import dev.kabin.util.Functions;
 import dev.kabin.util.eventhandlers.*;
+import dev.kabin.util.points.PointFloat;
 import dev.kabin.util.shapes.primitive.RectInt;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
@@ -41,6 +51,18 @@ public class MainGame extends ApplicationAdapter {
     protected WorldRepresentation<EntityGroup, EntityLibgdx> worldRepresentation;
 
     // Private data:
+    private final SweepAndPrune<EntityLibgdx> contacts = new SweepAndPrune<>();
+    private final FixedTimestep physicsTimestep = PhysicsEngine.newTimestep();
+    // Null unless the physics of entities is updated in parallel.
+    private volatile IslandStepper<EntityLibgdx> physicsIslands;
+    // Null unless physics is simulated on a thread of its own, which samples keys handed over by the queue.
+    private volatile SimulationThread simulation;
+    private final KeyEventQueue simulationInput = new KeyEventQueue();
+    private final KeyEventUtil simulationKeys = new KeyEventUtil();
+    private final TickState.Builder simulationTickState = new TickState.Builder();
+    // The parameters of the simulation thread, made once per world.
+    private PhysicsParametersImpl simulationParameters;
+    private WorldRepresentation<EntityGroup, EntityLibgdx> simulatedWorld;
     private CameraWrapper camera;
     private ImageMetadataPoolLibgdx imageAnalysisPool;
     private Stage stage;
@@ -83,18 +105,80 @@ public class MainGame extends ApplicationAdapter {
     }
 
 
+    /**
+     * Runs the given edit of the world once no background task conflicts with it, and no tick of the simulation thread
+     * is in progress.
+     */
     protected void synchronizer(Runnable r) {
-        threadHandler.synchronize(r);
+        final SimulationThread simulation = this.simulation;
+        if (simulation == null) threadHandler.synchronize(r);
+        else simulation.runPaused(() -> threadHandler.synchronize(r));
     }
 
     private RectInt getCameraNeighborhood() {
         return camera.getCameraNeighborhood();
     }
 
+    private PointFloat getCameraVelocity() {
+        return camera.getVelocity();
+    }
+
     public CameraWrapper getCameraWrapper() {
         return camera;
     }
 
+    /**
+     * Sets whether to update the physics of entities in parallel, island by island. The result is the same either way.
+     */
+    public void setParallelPhysics(boolean parallelPhysics) {
+        physicsIslands = parallelPhysics ? PhysicsEngine.newIslandStepper() : null;
+    }
+
+    /**
+     * Sets whether to simulate physics on a thread of its own, at a fixed rate, rather than as part of each frame. The
+     * thread publishes the positions and states of the entities after each tick, and each frame draws them blended
+     * between the last two ticks. Keys are handed over to the thread through a queue.
+     */
+    public void setDedicatedSimulation(boolean dedicatedSimulation) {
+        if (dedicatedSimulation == (simulation != null)) return;
+        if (dedicatedSimulation) {
+            // Keys held already are handed over first.
+            keyEventUtil.getCurrentStates().forEach(simulationInput::offer);
+            keyEventUtil.setQueue(simulationInput);
+            simulation = PhysicsEngine.newSimulationThread(this::simulateTick);
+            simulation.start();
+        } else {
+            simulation.close();
+            simulation = null;
+            keyEventUtil.setQueue(null);
+            if (worldRepresentation != null) worldRepresentation.releaseSimulationSnapshot();
+        }
+    }
+
+    /**
+     * Performs a tick of the dedicated simulation thread, on a snapshot of the world which it acquires for the tick.
+     */
+    private TickState simulateTick(long tick) {
+        simulationInput.drainTo(simulationKeys);
+        final WorldRepresentation<EntityGroup, EntityLibgdx> worldRepresentation = this.worldRepresentation;
+        if (worldRepresentation == null) return simulationTickState.build(tick);
+        if (worldRepresentation != simulatedWorld) {
+            simulatedWorld = worldRepresentation;
+            simulationParameters = new PhysicsParametersImpl(scale, worldRepresentation, simulationKeys);
+        }
+        final WorldSnapshot<EntityLibgdx> worldSnapshot = worldRepresentation.acquireSnapshotForSimulation();
+        return PhysicsEngine.renderExactlyOneTick(tick, simulationParameters, worldSnapshot.entitiesInCameraNeighborhood()::forEach,
+                contacts, physicsIslands, simulationTickState);
+    }
+
+    /**
+     * @return the broadphase of the simulated entities, which tells its listeners of their contacts once per physics
+     * frame; on the simulation thread, if physics is simulated on a thread of its own.
+     */
+    public SweepAndPrune<EntityLibgdx> getContacts() {
+        return contacts;
+    }
+
 
     @Override
     public void create() {
@@ -118,7 +202,7 @@ public class MainGame extends ApplicationAdapter {
                     this::getScale
             );
         }
-        threadHandler = new ThreadHandler(this::getWorldRepresentation, this::getCameraNeighborhood, this::getDevUI, this::isDeveloperMode);
+        threadHandler = new ThreadHandler(this::getWorldRepresentation, this::getCameraNeighborhood, this::getCameraVelocity, this::getDevUI, this::isDeveloperMode);
 
         textureAtlas = new TextureAtlas("textures.atlas");
         imageAnalysisPool = new ImageMetadataPoolLibgdx(textureAtlas);
@@ -171,9 +255,10 @@ public class MainGame extends ApplicationAdapter {
      * Helper method to update the camera. Can be overridden by subclasses.
      *
      * @param cameraWrapper the camera wrapper that will be updated.
+     * @param ticks         the positions to draw at, if physics is simulated on a thread of its own; otherwise null.
      */
-    protected void updateCamera(CameraWrapper cameraWrapper) {
-        Player.getInstance().ifPresent(cameraWrapper::follow);
+    protected void updateCamera(CameraWrapper cameraWrapper, @Nullable TickInterpolation ticks) {
+        Player.getInstance().ifPresent(player -> cameraWrapper.follow(player, ticks));
     }
 
     public float getCameraX() {
@@ -196,14 +281,20 @@ public class MainGame extends ApplicationAdapter {
         ambientShader.bind();
         lightShader.bind();
 
-        // Render physics
-        if (worldRepresentation != null) {
+        // One snapshot of the world per frame, as published by the background thread.
+        final WorldSnapshot<EntityLibgdx> worldSnapshot = (worldRepresentation != null)
+                ? worldRepresentation.acquireSnapshot()
+                : WorldSnapshot.empty();
+
+        // Render physics, unless the simulation thread does.
+        final TickInterpolation tickInterpolation = (simulation != null) ? simulation.interpolation(System.nanoTime()) : null;
+        if (worldRepresentation != null && simulation == null) {
             final var parameters = new PhysicsParametersImpl(scale, worldRepresentation, keyEventUtil);
 
-            PhysicsEngine.renderOutstandingFrames(timeSinceLastFrame, parameters, worldRepresentation::forEachEntityInCameraNeighborhood);
+            PhysicsEngine.renderOutstandingFrames(physicsTimestep, timeSinceLastFrame, parameters, worldSnapshot.entitiesInCameraNeighborhood()::forEach, contacts, physicsIslands);
         }
 
-        updateCamera(camera);
+        updateCamera(camera, tickInterpolation);
 
 
         spriteBatch.setProjectionMatrix(camera.getCamera().combined);
@@ -217,7 +308,17 @@ public class MainGame extends ApplicationAdapter {
                 final ShaderProgram prg = shaderProgramMap.get(EntityGroup.FOCAL_POINT);
                 final LightSourceShaderBinder lssBinder = new LightSourceShaderBinder(prg);
                 final ArrayList<LightSourceData> lightSourceData = new ArrayList<>();
-                getWorldRepresentation().forEachEntityInCameraNeighborhood(e -> lightSourceData.addAll(e.getLightSourceDataList()));
+                worldSnapshot.entitiesInCameraNeighborhood().forEach(e -> {
+                    if (tickInterpolation == null || !tickInterpolation.contains(e.getId())) {
+                        lightSourceData.addAll(e.getLightSourceDataList());
+                        return;
+                    }
+                    // Lights follow their entity as drawn, rather than as the simulation thread moves it.
+                    final float x = tickInterpolation.x(e.getId()), y = tickInterpolation.y(e.getId());
+                    final List<AnchoredLightSourceData> lights = e.getLightSourceDataList();
+                    //noinspection ForLoopReplaceableByForEach
+                    for (int i = 0, n = lights.size(); i < n; i++) lightSourceData.add(lights.get(i).anchoredAt(x, y));
+                });
 
                 final float camXMinusHalfWidth = getCameraX() - getCameraWrapper().getCamera().viewportWidth * 0.5f;
                 final float camYMinusHalfHeight = getCameraY() - getCameraWrapper().getCamera().viewportHeight * 0.5f;
@@ -237,8 +338,10 @@ public class MainGame extends ApplicationAdapter {
                     scale,
                     Gdx.graphics.getWidth(),
                     Gdx.graphics.getHeight(),
-                    shaderProgramMap);
-            worldRepresentation.forEachEntityInCameraNeighborhood(e ->
+                    shaderProgramMap,
+                    physicsTimestep.alpha(),
+                    tickInterpolation);
+            worldSnapshot.entitiesInCameraNeighborhood().forEach(e ->
                     e.updateGraphics(graphicsParameters)
             );
         }
@@ -262,6 +365,9 @@ public class MainGame extends ApplicationAdapter {
     @Override
     public void dispose() {
         super.dispose();
+        setDedicatedSimulation(false);
+        threadHandler.close();
+        if (worldRepresentation != null) worldRepresentation.close();
         spriteBatch.dispose();
     }
 
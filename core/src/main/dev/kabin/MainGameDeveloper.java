@@ -3,6 +3,7 @@ package dev.kabin;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import dev.kabin.entities.libgdximpl.Player;
+import dev.kabin.physics.TickInterpolation;
 import dev.kabin.ui.developer.DeveloperUI;
 import dev.kabin.util.eventhandlers.KeyCode;
 import org.jetbrains.annotations.Nullable;
@@ -27,11 +28,10 @@ public class MainGameDeveloper extends MainGame {
         final JSONObject tileSelectionWidgetSettings;
         try {
             final JSONObject session = new JSONObject(Files.readString(Path.of(devSessionData)));
-            final String pathToWorld = GlobalData.WORLDS_PATH + session.getString("world");
-            worldRepresentation = Serializer.loadWorldState(getStage(),
+            worldRepresentation = Serializer.loadWorld(Path.of(GlobalData.WORLDS_PATH + session.getString("world")),
+                    getStage()::addActor,
                     getTextureAtlasShaded(),
                     getImageAnalysisPool(),
-                    new JSONObject(Files.readString(Path.of(pathToWorld))),
                     getScale());
             entityLoadingWidgetSettings = session.getJSONObject("developer").getJSONObject("widgets").getJSONObject("entity_selection");
             tileSelectionWidgetSettings = session.getJSONObject("developer").getJSONObject("widgets").getJSONObject("tile_selection");
@@ -63,7 +63,7 @@ public class MainGameDeveloper extends MainGame {
     }
 
     @Override
-    protected void updateCamera(CameraWrapper camera) {
+    protected void updateCamera(CameraWrapper camera, @Nullable TickInterpolation ticks) {
         // Admit camera free mode movement if in developer mode.
         if (isDeveloperMode()) {
             if (!getKeyEventUtil().isControlDown()) camera.setPos(
@@ -75,7 +75,7 @@ public class MainGameDeveloper extends MainGame {
                                     getKeyEventUtil().isPressed(KeyCode.S) ? -getScale() : getScale())
             );
         } else {
-            Player.getInstance().ifPresent(camera::follow);
+            Player.getInstance().ifPresent(player -> camera.follow(player, ticks));
         }
     }
 
@@ -96,7 +96,9 @@ public class MainGameDeveloper extends MainGame {
                     getScale(),
                     Gdx.graphics.getWidth(),
                     Gdx.graphics.getHeight(),
-                    shaderProgramMap));
+                    shaderProgramMap,
+                    1f,
+                    null));
         }
     }
 
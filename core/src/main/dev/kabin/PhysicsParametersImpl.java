@@ -5,6 +5,7 @@ import dev.kabin.entities.PhysicsParameters;
 import dev.kabin.entities.libgdximpl.EntityGroup;
 import dev.kabin.entities.libgdximpl.EntityLibgdx;
 import dev.kabin.physics.PhysicsEngine;
+import dev.kabin.util.cell.CellSample;
 import dev.kabin.util.eventhandlers.KeyCode;
 import dev.kabin.util.eventhandlers.KeyEventUtil;
 import org.jetbrains.annotations.NotNull;
@@ -34,6 +35,41 @@ class PhysicsParametersImpl implements PhysicsParameters {
         return worldRepresentation.isLadderAt(x, y);
     }
 
+    @Override
+    public CellSample sample(int x, int y, CellSample out) {
+        return worldRepresentation.sample(x, y, out);
+    }
+
+    @Override
+    public int firstCollisionInColumn(int x, int yFrom, int yTo) {
+        return worldRepresentation.firstCollisionInColumn(x, yFrom, yTo);
+    }
+
+    @Override
+    public int firstCollisionIfNotLadderDataInColumn(int x, int yFrom, int yTo) {
+        return worldRepresentation.firstCollisionIfNotLadderDataInColumn(x, yFrom, yTo);
+    }
+
+    @Override
+    public boolean anyCollisionInRow(int y, int xFrom, int xTo) {
+        return worldRepresentation.anyCollisionInRow(y, xFrom, xTo);
+    }
+
+    @Override
+    public int countCollisionsInRect(int xFrom, int yFrom, int xTo, int yTo) {
+        return worldRepresentation.countCollisionsInRect(xFrom, yFrom, xTo, yTo);
+    }
+
+    @Override
+    public int collisionRunAbove(int x, int y, int limit) {
+        return worldRepresentation.collisionRunAbove(x, y, limit);
+    }
+
+    @Override
+    public int freeRunBelow(int x, int y, int limit) {
+        return worldRepresentation.freeRunBelow(x, y, limit);
+    }
+
     @Override
     public float getVectorFieldX(int x, int y) {
         return worldRepresentation.getVectorFieldX(x, y);
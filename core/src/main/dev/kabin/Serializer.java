@@ -1,8 +1,10 @@
 package dev.kabin;
 
 import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.scenes.scene2d.Actor;
 import com.badlogic.gdx.scenes.scene2d.Stage;
 import dev.kabin.components.WorldRepresentation;
+import dev.kabin.components.worldmodel.LeafSnapshotCache;
 import dev.kabin.entities.Entity;
 import dev.kabin.entities.libgdximpl.EntityGroup;
 import dev.kabin.entities.libgdximpl.EntityLibgdx;
@@ -10,10 +12,14 @@ import dev.kabin.entities.libgdximpl.EntityType;
 import dev.kabin.entities.libgdximpl.animation.imageanalysis.ImageMetadataPoolLibgdx;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -34,11 +40,50 @@ public class Serializer {
         return o;
     }
 
+    /**
+     * Reads and loads the world file at the given path as {@link #loadWorldState(Consumer, TextureAtlas,
+     * ImageMetadataPoolLibgdx, JSONObject, float)}, and has the world use the leaf snapshots baked from the same
+     * contents, if there are any.
+     */
+    public static WorldRepresentation<EntityGroup, EntityLibgdx> loadWorld(Path pathToWorld,
+                                                                           Consumer<Actor> addActor,
+                                                                           TextureAtlas textureAtlas,
+                                                                           ImageMetadataPoolLibgdx imageAnalysisPool,
+                                                                           float scale) {
+        final String worldFileContents;
+        try {
+            worldFileContents = Files.readString(pathToWorld);
+        } catch (IOException e) {
+            throw new RuntimeException("Caught exception while reading the world " + pathToWorld + ".", e);
+        }
+        final WorldRepresentation<EntityGroup, EntityLibgdx> worldRepresentation = loadWorldState(addActor,
+                textureAtlas,
+                imageAnalysisPool,
+                new JSONObject(worldFileContents),
+                scale);
+        worldRepresentation.useLeafSnapshots(
+                LeafSnapshotCache.pathOf(pathToWorld),
+                LeafSnapshotCache.contentHashOf(worldFileContents));
+        return worldRepresentation;
+    }
+
     public static WorldRepresentation<EntityGroup, EntityLibgdx> loadWorldState(Stage stage,
                                                                                 TextureAtlas textureAtlas,
                                                                                 ImageMetadataPoolLibgdx imageAnalysisPool,
                                                                                 JSONObject o,
                                                                                 float scale) {
+        return loadWorldState(stage::addActor, textureAtlas, imageAnalysisPool, o, scale);
+    }
+
+    /**
+     * Loads a world as {@link #loadWorldState(Stage, TextureAtlas, ImageMetadataPoolLibgdx, JSONObject, float)}, passing
+     * the actor of each loaded entity to the given action rather than adding it to a stage.
+     */
+    public static WorldRepresentation<EntityGroup, EntityLibgdx> loadWorldState(Consumer<Actor> addActor,
+                                                                                TextureAtlas textureAtlas,
+                                                                                ImageMetadataPoolLibgdx imageAnalysisPool,
+                                                                                JSONObject o,
+                                                                                float scale) {
         final HashSet<String> admissibleEntityTypes = Arrays.stream(EntityType.values()).map(Enum::name)
                 .collect(Collectors.toCollection(HashSet::new));
         final var worldRepresentation = new WorldRepresentation<EntityGroup, EntityLibgdx>(EntityGroup.class, o.getInt(WORLD_SIZE_X), o.getInt(WORLD_SIZE_Y));
@@ -58,7 +103,7 @@ public class Serializer {
                             imageAnalysisPool,
                             scale).construct(json);
                     worldRepresentation.registerEntity(e);
-                    e.getActor().ifPresent(stage::addActor);
+                    e.getActor().ifPresent(addActor);
                 }
             }
         });
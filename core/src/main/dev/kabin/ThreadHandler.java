@@ -1,88 +1,170 @@
 package dev.kabin;
 
 import dev.kabin.components.WorldRepresentation;
+import dev.kabin.components.worldmodel.StreamingPlanner;
 import dev.kabin.ui.developer.DeveloperUI;
 import dev.kabin.util.lambdas.BooleanSupplier;
+import dev.kabin.util.points.PointFloat;
+import dev.kabin.util.scheduling.TaskScheduler;
+import dev.kabin.util.scheduling.TaskTimings;
+import dev.kabin.util.shapes.primitive.ImmutableRectInt;
 import dev.kabin.util.shapes.primitive.RectInt;
 
-import java.util.Optional;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 public class ThreadHandler {
 
-    // A lock for order sensitive operations.
+    // Streaming: look two passes ahead, keep half a cell of slack, and prefetch a few cells per pass.
+    private static final float STREAMING_LOOK_AHEAD_SECONDS = 2f;
+    private static final int STREAMING_STEPS = 4;
+    private static final int STREAMING_HYSTERESIS_MARGIN = WorldRepresentation.INDIVISIBLE_COMPONENT_SIZE / 2;
+    private static final int STREAMING_ACTIVATION_BUDGET = 8;
+
+    // Periods of the background tasks, from the end of one run to the next.
+    private static final long WORLD_TASK_PERIOD_MILLIS = 1000;
+    private static final long DEV_SESSION_PERIOD_MILLIS = 5000;
+    private static final int BACKGROUND_WORKERS = 2;
+
+    /**
+     * The parts of the world the background tasks read and write.
+     */
+    enum WorldResource {
+        // The entities, as far as their whereabouts and collision data go.
+        ENTITIES,
+        // The order of the entities within their layers.
+        LAYERS,
+        // The index of the whereabouts of the entities, and the entities of the camera neighborhood.
+        WHEREABOUTS,
+        // The data of the cells, the cells whose retained data is out of date, and the snapshots of the leaves.
+        CELLS,
+        // The saved developer session.
+        DEV_SESSION
+    }
+
+    // A lock for reloading.
     private final Object threadLock = new Object();
     private final Logger logger = Logger.getLogger(ThreadHandler.class.getName());
     private final Supplier<WorldRepresentation<?, ?>> worldRepresentationSupplier;
     private final Supplier<RectInt> camNbd;
+    private final Supplier<PointFloat> camVelocity;
+    private final StreamingPlanner streamingPlanner = new StreamingPlanner(
+            STREAMING_LOOK_AHEAD_SECONDS,
+            STREAMING_STEPS,
+            STREAMING_HYSTERESIS_MARGIN,
+            STREAMING_ACTIVATION_BUDGET
+    );
     private final Supplier<DeveloperUI> developerUISupplier;
     private final BooleanSupplier devMod;
-    private ScheduledExecutorService periodicBackgroundTasks;
+    private volatile TaskScheduler<WorldResource> backgroundTasks = newBackgroundTasks();
 
     public ThreadHandler(Supplier<WorldRepresentation<?, ?>> worldRepresentationSupplier,
                          Supplier<RectInt> camNbd,
+                         Supplier<PointFloat> camVelocity,
                          Supplier<DeveloperUI> developerUISupplier,
                          BooleanSupplier devMod) {
         this.worldRepresentationSupplier = worldRepresentationSupplier;
         this.camNbd = camNbd;
+        this.camVelocity = camVelocity;
         this.developerUISupplier = developerUISupplier;
         this.devMod = devMod;
     }
 
     public void reload() {
         synchronized (threadLock) {
-            if (periodicBackgroundTasks != null) {
-                try {
-                    if (periodicBackgroundTasks.awaitTermination(10, TimeUnit.SECONDS)) {
-                        logger.warning(() -> "Terminated periodic background tasks successfully.");
-                    }
-                } catch (InterruptedException e) {
-                    logger.warning(() -> "Periodic background tasks could not be shut down.");
-                    e.printStackTrace();
-                    System.exit(1);
-                }
-            }
-            Optional.ofNullable(worldRepresentationSupplier.get()).ifPresent(WorldRepresentation::clearData);
-            handle();
-
-            periodicBackgroundTasks = Executors.newSingleThreadScheduledExecutor(Thread::new);
-            periodicBackgroundTasks.scheduleWithFixedDelay(this::handle, 0, 1, TimeUnit.SECONDS);
+            backgroundTasks.close();
+            logger.fine(() -> "Terminated periodic background tasks.");
+
+            final TaskScheduler<WorldResource> tasks = newBackgroundTasks();
+            backgroundTasks = tasks;
+            tasks.runNow(EnumSet.noneOf(WorldResource.class), EnumSet.allOf(WorldResource.class),
+                    () -> withWorld(WorldRepresentation::clearData));
+            tasks.runEachOnce();
+            tasks.start();
         }
     }
 
-    private void handle() {
+    /**
+     * Stops the background tasks, and waits for the running ones to complete.
+     */
+    public void close() {
         synchronized (threadLock) {
-            try {
-                // Load & unload data.
-                final WorldRepresentation<?, ?> worldRepresentation = worldRepresentationSupplier.get();
-                if (worldRepresentation == null) return;
-
-                worldRepresentation.registerEntityWhereabouts(camNbd.get());
-                worldRepresentation.clearUnusedData(camNbd.get());
-                worldRepresentation.loadNearbyData(camNbd.get());
-                worldRepresentation.sortAllLayers();
-
-                // Save dev session if applicable.
-                if (devMod.isTrue()) {
-                    GlobalData.saveDevSession(developerUISupplier.get(), devMod.isTrue());
-                }
-            } catch (Throwable t) {
-                t.printStackTrace();
-            }
+            backgroundTasks.close();
         }
     }
 
     /**
-     * @param r execute the given runnable in such a way that it goes in between periodic background tasks.
+     * A pass of the background tasks: the whereabouts of the entities are registered, the cells are streamed and the
+     * layers sorted, after which a snapshot of the results is published. Streaming and sorting run concurrently, as
+     * sorting only reorders the layers, which streaming does not read.
+     */
+    private TaskScheduler<WorldResource> newBackgroundTasks() {
+        final TaskScheduler<WorldResource> tasks = new TaskScheduler<>("background", BACKGROUND_WORKERS);
+        final var whereabouts = tasks.add("whereabouts", WORLD_TASK_PERIOD_MILLIS,
+                EnumSet.of(WorldResource.ENTITIES, WorldResource.LAYERS),
+                EnumSet.of(WorldResource.WHEREABOUTS, WorldResource.CELLS),
+                () -> withWorld(w -> w.registerEntityWhereabouts(cameraRegion())));
+        final var streaming = tasks.add("streaming", WORLD_TASK_PERIOD_MILLIS,
+                EnumSet.of(WorldResource.ENTITIES, WorldResource.WHEREABOUTS), EnumSet.of(WorldResource.CELLS),
+                () -> withWorld(w -> {
+                    final PointFloat velocity = camVelocity.get();
+                    streamingPlanner.plan(cameraRegion(), velocity.x(), velocity.y());
+                    w.stream(streamingPlanner);
+                }));
+        final var sorting = tasks.add("sorting", WORLD_TASK_PERIOD_MILLIS,
+                EnumSet.noneOf(WorldResource.class), EnumSet.of(WorldResource.LAYERS),
+                () -> withWorld(WorldRepresentation::sortAllLayers));
+        tasks.add("snapshot", WORLD_TASK_PERIOD_MILLIS,
+                EnumSet.noneOf(WorldResource.class), EnumSet.of(WorldResource.WHEREABOUTS, WorldResource.CELLS),
+                () -> withWorld(WorldRepresentation::publishSnapshot),
+                List.of(whereabouts, streaming, sorting));
+        tasks.add("dev session", DEV_SESSION_PERIOD_MILLIS,
+                EnumSet.noneOf(WorldResource.class), EnumSet.of(WorldResource.DEV_SESSION),
+                () -> {
+                    if (devMod.isTrue()) GlobalData.saveDevSession(developerUISupplier.get(), devMod.isTrue());
+                });
+        return tasks;
+    }
+
+    private void withWorld(Consumer<WorldRepresentation<?, ?>> action) {
+        final WorldRepresentation<?, ?> worldRepresentation = worldRepresentationSupplier.get();
+        if (worldRepresentation != null) action.accept(worldRepresentation);
+    }
+
+    /**
+     * @return a copy of the camera neighborhood, which moves on the render thread.
+     */
+    private RectInt cameraRegion() {
+        final RectInt nbd = camNbd.get();
+        return new ImmutableRectInt(nbd.getMinX(), nbd.getMinY(),
+                nbd.getMaxX() - nbd.getMinX(), nbd.getMaxY() - nbd.getMinY());
+    }
+
+    /**
+     * @param r execute the given runnable in such a way that it goes in between the background tasks which use the
+     *          world.
      */
     public void synchronize(Runnable r) {
-        synchronized (threadLock) {
-            r.run();
-        }
+        backgroundTasks.runNow(EnumSet.noneOf(WorldResource.class),
+                EnumSet.of(WorldResource.ENTITIES, WorldResource.LAYERS, WorldResource.WHEREABOUTS, WorldResource.CELLS), r);
+    }
+
+    /**
+     * Runs each background task once on the calling thread, as by a pass of the background tasks. Meant for driving
+     * the world without {@link #reload() periodic} background tasks, such as when benchmarking.
+     */
+    public void runBackgroundTasksOnce() {
+        backgroundTasks.runEachOnce();
+    }
+
+    /**
+     * @return the timings of the background tasks since the last reload.
+     */
+    public List<TaskTimings> backgroundTaskTimings() {
+        return backgroundTasks.timings();
     }
 
 }
@@ -1,53 +1,105 @@
 package dev.kabin.components;
 
+import dev.kabin.components.worldmodel.ChunkOccupancy;
 import dev.kabin.components.worldmodel.ComponentArrayListPool;
-import dev.kabin.components.worldmodel.IndexedSetPool;
+import dev.kabin.components.worldmodel.LeafSnapshotCache;
+import dev.kabin.components.worldmodel.LooseQuadTree;
+import dev.kabin.components.worldmodel.StreamingPlanner;
+import dev.kabin.components.worldmodel.VisibleSet;
+import dev.kabin.components.worldmodel.WorldSnapshot;
 import dev.kabin.entities.Entity;
 import dev.kabin.entities.EntityCollectionProvider;
 import dev.kabin.entities.Layer;
 import dev.kabin.entities.libgdximpl.CollisionData;
 import dev.kabin.util.cell.Cell;
-import dev.kabin.util.collections.IndexedSet;
-import dev.kabin.util.pools.objectpool.Borrowed;
+import dev.kabin.util.cell.CellSample;
+import dev.kabin.util.cell.CellTree;
+import dev.kabin.util.cell.IndivisibleCell;
+import dev.kabin.util.pools.objectpool.PoolStatistics;
+import dev.kabin.util.shapes.primitive.ImmutableRectInt;
+import dev.kabin.util.shapes.primitive.MutableRectInt;
 import dev.kabin.util.shapes.primitive.RectInt;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
-public class WorldRepresentation<GroupType extends Enum<GroupType> & Layer, EntityType extends Entity<GroupType, ?, ?>> {
+public class WorldRepresentation<GroupType extends Enum<GroupType> & Layer, EntityType extends Entity<GroupType, ?, ?>>
+        implements AutoCloseable {
 
     public static final int
             POOL_OBJECTS_AVAILABLE = 128,
             INDIVISIBLE_COMPONENT_SIZE = 512,
             AVAILABLE_ARRAYLISTS_OF_COMPONENT = 200,
-            AVAILABLE_COMPONENT_HASHSETS = 10_000,
-            AVAILABLE_ENTITY_HASHSETS = 10_000;
+            ENTITY_INDEX_MINIMAL_NODE_SIZE = 64;
+    private static final long NOT_ACQUIRED = -1;
 
     public static final Logger logger = Logger.getLogger(Cell.class.getName());
     private final EntityCollectionProvider<GroupType, EntityType> entityCollectionProvider;
-    private final IndexedSetPool<Cell> componentIndexedSetPool = new IndexedSetPool<>(AVAILABLE_COMPONENT_HASHSETS, IndexedSet::new);
-    private final IndexedSetPool<EntityType> entityIndexedSetPool = new IndexedSetPool<>(AVAILABLE_ENTITY_HASHSETS, IndexedSet::new);
     // Keep an object pool for ArrayList<Component> instances.
     private final ComponentArrayListPool componentArrayListPool = new ComponentArrayListPool(
             AVAILABLE_ARRAYLISTS_OF_COMPONENT, ArrayList::new, List::clear
     );
-    private final Cell rootCell;
+    private final CellTree rootCell;
+    private final CellTree.Implementation cellTreeImplementation;
     private final long entitiesInCameraNeighborhoodLastUpdated = Long.MIN_VALUE;
-    private long timeStampLastEntityWhereaboutsRegistered = Long.MIN_VALUE;
-    private ArrayList<EntityType> entitiesInCameraNeighborhoodCached;
     private ArrayList<EntityType> entitiesInCameraBoundsCached;
-    private long entitiesInCameraBoundsLastUpdated = Long.MIN_VALUE;
-    private Map<EntityType, IndexedSet<Cell>> entityToIndivisibleComponentMapping = new HashMap<>();
-    private Map<Cell, IndexedSet<EntityType>> indivisibleComponentToEntityMapping = new HashMap<>();
+    private long entitiesInCameraBoundsEpoch = -1;
+    // A loose quadtree over the whole world, holding each entity once, keyed by its neighborhood as of the last
+    // registration of its whereabouts. Queried for the entities meeting a cell or a region.
+    private final LooseQuadTree<EntityType> entityIndex;
+    private final VisibleSet<EntityType> entitiesInCameraNeighborhood;
+    private final Queue<EntityType> unregisteredSinceLastPass = new ConcurrentLinkedQueue<>();
+    private final Queue<EntityType> updatedSinceLastPass = new ConcurrentLinkedQueue<>();
+    private int entitiesReindexedLastPass;
+    // Published by the background pass, read by the render thread without locking.
+    private volatile WorldSnapshot<EntityType> snapshot = WorldSnapshot.empty();
+    private volatile long acquiredEpoch = NOT_ACQUIRED;
+    private volatile long simulationAcquiredEpoch = NOT_ACQUIRED;
+    // Cells deactivated by the background pass, whose data is cleared once neither the render thread nor the
+    // simulation thread holds an acquired snapshot which has them active.
+    private final Set<IndivisibleCell> retiringCells = new HashSet<>();
+    private long retiringCellsEpoch;
+    // Cells met by a collision data entity which was added, removed or moved, queued by any thread. Their retained
+    // data is out of date, and is discarded by the streaming pass once they are neither active nor retiring.
+    private final Queue<IndivisibleCell> cellsWithCollisionChanges = new ConcurrentLinkedQueue<>();
+    private final Set<IndivisibleCell> staleCells = new HashSet<>();
+    private final MutableRectInt previousBounds = new MutableRectInt(0, 0, 0, 0);
+    private boolean activeCellsChanged = true;
+    // Invalidated by the threads which add, remove or move entities.
+    private volatile LeafSnapshotCache leafSnapshotCache;
 
     public WorldRepresentation(Class<GroupType> entityGroups, int width, int height) {
+        this(entityGroups, width, height, CellTree.Implementation.RECURSIVE);
+    }
+
+    /**
+     * @param cellTreeImplementation which implementation of {@link CellTree} that holds the pixel data of the world.
+     */
+    public WorldRepresentation(Class<GroupType> entityGroups,
+                               int width,
+                               int height,
+                               CellTree.Implementation cellTreeImplementation) {
         entityCollectionProvider = new EntityCollectionProvider<>(entityGroups);
-        rootCell = Cell.makeRepresentationOf(width, height, INDIVISIBLE_COMPONENT_SIZE, POOL_OBJECTS_AVAILABLE);
+        this.cellTreeImplementation = cellTreeImplementation;
+        rootCell = CellTree.makeRepresentationOf(cellTreeImplementation, width, height, INDIVISIBLE_COMPONENT_SIZE, POOL_OBJECTS_AVAILABLE, true);
+        entityIndex = new LooseQuadTree<>(
+                -rootCell.getWidth() / 2,
+                -rootCell.getHeight() / 2,
+                Math.max(rootCell.getWidth(), rootCell.getHeight()),
+                ENTITY_INDEX_MINIMAL_NODE_SIZE
+        );
+        entitiesInCameraNeighborhood = new VisibleSet<>(entityIndex::forEachMeeting, (e, rect) -> entityIndex.meets(e.getId(), rect));
     }
 
     public void actionForEachEntityOrderedByType(Consumer<EntityType> renderEntityGlobalStateTime) {
@@ -55,104 +107,87 @@ public class WorldRepresentation<GroupType extends Enum<GroupType> & Layer, Enti
     }
 
 
+    /**
+     * Finds the entities of the current snapshot which meet an indivisible cell that meets the given rectangle. The
+     * result is kept until the next snapshot is published.
+     */
     public List<EntityType> getEntitiesWithinCameraBoundsCached(RectInt cameraPosition) {
-        if (entitiesInCameraBoundsLastUpdated <= timeStampLastEntityWhereaboutsRegistered) {
-            entitiesInCameraBoundsLastUpdated = System.currentTimeMillis();
-            return entitiesInCameraBoundsCached = getContainedEntities(cameraPosition);
+        final WorldSnapshot<EntityType> current = snapshot;
+        if (entitiesInCameraBoundsEpoch != current.epoch()) {
+            entitiesInCameraBoundsEpoch = current.epoch();
+            return entitiesInCameraBoundsCached = getContainedEntities(current, cameraPosition);
         }
         return entitiesInCameraBoundsCached;
     }
 
     public void updateLocation(@NotNull EntityType entity) {
-        updateLocation(entityToIndivisibleComponentMapping,
-                indivisibleComponentToEntityMapping,
-                entity,
-                entity.graphicsNbd(),
-                rootCell);
+        reindex(entity, entity.graphicsNbd());
+        updatedSinceLastPass.add(entity);
     }
 
     /**
-     * If the neighborhood of the given entity intersects this component,
-     * then the entity will be added to this components entity list. Otherwise, it is removed.
-     * A recursive call is made to all of this components sub-components method.
+     * Stores the given neighborhood of the given entity in the entity index.
      *
      * @param entity the entity whose whereabouts are stored.
      */
-    private void updateLocation(
-            Map<EntityType, IndexedSet<Cell>> entityToIndivisibleComponentMapping,
-            Map<Cell, IndexedSet<EntityType>> indivisibleComponentToEntityMapping,
+    private void reindex(
             @NotNull EntityType entity,
             /* Caching the below calculation makes a big difference.*/
-            @NotNull RectInt cachedEntityNodeNeighborhood,
-            @NotNull Cell cell
+            @NotNull RectInt cachedEntityNodeNeighborhood
     ) {
-        if (cell.getUnderlyingRectInt().meets(cachedEntityNodeNeighborhood)) {
-            if (cell.hasSubComponents()) {
-                for (Cell subCell : cell.getSubComponents()) {
-                    updateLocation(entityToIndivisibleComponentMapping,
-                            indivisibleComponentToEntityMapping,
-                            entity,
-                            cachedEntityNodeNeighborhood,
-                            subCell);
-                }
-            } else {
-                entityToIndivisibleComponentMapping.computeIfAbsent(
-                        entity,
-                        c -> componentIndexedSetPool.borrow()
-                ).add(cell);
-
-                indivisibleComponentToEntityMapping.computeIfAbsent(
-                        cell,
-                        c -> entityIndexedSetPool.borrow()
-                ).add(entity);
-            }
-        }
+        entityIndex.put(entity, cachedEntityNodeNeighborhood);
     }
 
     /**
-     * Finds list of entities which are are in the given component such that their nbd meets the given nbd.
+     * Finds list of entities of the given snapshot whose nbd meets an indivisible cell which meets the given nbd.
      */
     @NotNull
-    private ArrayList<EntityType> getContainedEntities(@NotNull RectInt neighborhood) {
-        ArrayList<Cell> treeSearchResult = treeSearchFindIndivisibleComponentsMatching(
-                c -> c.getUnderlyingRectInt().meets(neighborhood)
-        );
-
+    private ArrayList<EntityType> getContainedEntities(@NotNull WorldSnapshot<EntityType> snapshot, @NotNull RectInt neighborhood) {
         // TODO: deal with this new.
         final ArrayList<EntityType> containedEntities = new ArrayList<>();
 
-        final IndexedSet<EntityType> setOfEntitiesToReturn = entityIndexedSetPool.borrow();
-        //noinspection ForLoopReplaceableByForEach
-        for (int i = 0, n = treeSearchResult.size(); i < n; i++) {
-
-            if (treeSearchResult.get(i) == null) continue;
+        final ImmutableRectInt bounds = boundsOfIndivisibleCellsMeeting(neighborhood);
+        if (bounds == null) return containedEntities;
 
-            IndexedSet<EntityType> entitiesInComponent = indivisibleComponentToEntityMapping.get(treeSearchResult.get(i));
-
-            // Goto next iteration
-            if (entitiesInComponent == null) continue;
-
-            for (int j = 0, m = entitiesInComponent.size(); j < m; j++) {
-                final EntityType entityToAdd = entitiesInComponent.get(j);
-                // Finds unique entities to return.
-                if (setOfEntitiesToReturn.add(entityToAdd)) {
-                    containedEntities.add(entityToAdd);
-                }
+        // The snapshot holds the entities of the camera neighborhood, which contains the camera bounds.
+        final List<EntityType> entities = snapshot.entitiesInCameraNeighborhood();
+        //noinspection ForLoopReplaceableByForEach
+        for (int i = 0, n = entities.size(); i < n; i++) {
+            final EntityType entity = entities.get(i);
+            if (entity.graphicsNbd().meets(bounds) && entityCollectionProvider.getEntity(entity.getId()) == entity) {
+                containedEntities.add(entity);
             }
-
         }
-        componentArrayListPool.giveBack(treeSearchResult);
-        entityIndexedSetPool.giveBack(setOfEntitiesToReturn);
-
 
         logger.log(Level.FINE, "A call to getContainedEntities() returned " + containedEntities.size()
                 + " entities.");
         return containedEntities;
     }
 
+    /**
+     * @return the bounds of the union of the indivisible cells which meet the given rectangle, or null if there are
+     * none.
+     */
+    @Nullable
+    private ImmutableRectInt boundsOfIndivisibleCellsMeeting(@NotNull RectInt rect) {
+        final int originX = -rootCell.getWidth() / 2, originY = -rootCell.getHeight() / 2;
+        final int size = INDIVISIBLE_COMPONENT_SIZE;
+        // An indivisible cell [a, a + size - 1] meets the rectangle iff a + size - 1 > min and a < max.
+        final int firstColumn = Math.max(0, Math.floorDiv(rect.getMinX() - (size - 1) - originX, size) + 1);
+        final int firstRow = Math.max(0, Math.floorDiv(rect.getMinY() - (size - 1) - originY, size) + 1);
+        final int lastColumn = Math.min(rootCell.getWidth() / size - 1, Math.floorDiv(rect.getMaxX() - 1 - originX, size));
+        final int lastRow = Math.min(rootCell.getHeight() / size - 1, Math.floorDiv(rect.getMaxY() - 1 - originY, size));
+        if (firstColumn > lastColumn || firstRow > lastRow) return null;
+        return new ImmutableRectInt(
+                originX + firstColumn * size,
+                originY + firstRow * size,
+                (lastColumn - firstColumn + 1) * size - 1,
+                (lastRow - firstRow + 1) * size - 1
+        );
+    }
+
     public void forEachEntityInCameraNeighborhood(Consumer<EntityType> action) {
-        ArrayList<EntityType> entities = entitiesInCameraNeighborhoodCached;
-        if (entities == null) return;
+        final List<EntityType> entities = snapshot.entitiesInCameraNeighborhood();
         //noinspection ForLoopReplaceableByForEach
         for (int i = 0, n = entities.size(); i < n; i++) {
             action.accept(entities.get(i));
@@ -160,129 +195,300 @@ public class WorldRepresentation<GroupType extends Enum<GroupType> & Layer, Enti
     }
 
     /**
-     * Registers the whereabouts of all entities from the given list.
+     * Registers the whereabouts of the entities which were registered, or whose neighborhood changed, since the last
+     * call, and forgets those of the entities which were unregistered. The whereabouts of other entities are kept
+     * as they are.
      *
-     * @param region Each entity found inside this region gets its whereabouts updated.
+     * @param region Each entity found inside this region is made available by the next snapshot
+     *               {@link #publishSnapshot() published}, which is brought up to date by the entities that entered or
+     *               exited it since the last call.
      */
     public void registerEntityWhereabouts(RectInt region) {
+        entitiesReindexedLastPass = 0;
 
-        // Free resources from previous iteration.
-        {
+        for (EntityType entity = unregisteredSinceLastPass.poll(); entity != null; entity = unregisteredSinceLastPass.poll()) {
+            entityIndex.remove(entity.getId());
+            entitiesInCameraNeighborhood.remove(entity);
+        }
+        for (EntityType entity = updatedSinceLastPass.poll(); entity != null; entity = updatedSinceLastPass.poll()) {
+            entitiesInCameraNeighborhood.update(entity);
+        }
 
-            // Give back data to pools.
-            componentIndexedSetPool.giveBackAll();
-            if (componentIndexedSetPool.taken() > 0) {
-                throw new RuntimeException("After freeing resources, some were still marked as taken. There were so many: " + componentIndexedSetPool.taken());
+        entityCollectionProvider.actionForEachEntityOrderedByGroup(entity -> {
+            final RectInt nbd = entity.graphicsNbd();
+            if (!entityIndex.isStoredWith(entity.getId(), nbd)) {
+                if (entity instanceof CollisionData && entityIndex.boundsOf(entity.getId(), previousBounds)) {
+                    collisionDataChangedIn(previousBounds);
+                    collisionDataChangedIn(nbd);
+                }
+                reindex(entity, nbd);
+                entitiesInCameraNeighborhood.update(entity);
+                entitiesReindexedLastPass++;
             }
+        });
+        logger.log(Level.FINE, "Re-indexed the whereabouts of " + entitiesReindexedLastPass + " entities.");
 
+        entitiesInCameraNeighborhood.moveRegion(boundsOfIndivisibleCellsMeeting(region));
+    }
 
-            entityIndexedSetPool.giveBackAll();
-            if (entityIndexedSetPool.taken() > 0) {
-                throw new RuntimeException("After freeing resources, some were still marked as taken. There were so many: " + entityIndexedSetPool.taken());
-            }
+    /**
+     * Publishes the results of the current background pass as a new {@link WorldSnapshot}, and clears the data of the
+     * cells deactivated by earlier passes once the render thread has moved on to a snapshot without them.
+     */
+    public void publishSnapshot() {
+        entitiesInCameraNeighborhood.publish();
+        final WorldSnapshot<EntityType> previous = snapshot;
+        final List<IndivisibleCell> activeCells;
+        if (activeCellsChanged) {
+            final ArrayList<IndivisibleCell> cells = new ArrayList<>();
+            rootCell.forEachIndivisibleCellMatching(c -> true, c -> {
+                if (c.isActive()) cells.add(c);
+            });
+            activeCells = List.copyOf(cells);
+            activeCellsChanged = false;
+        } else {
+            activeCells = previous.activeCells();
         }
+        snapshot = new WorldSnapshot<>(previous.epoch() + 1, entitiesInCameraNeighborhood.published(), activeCells);
+        // Reclaimed after publishing, so that a thread which acquires the previous snapshot has either published its
+        // epoch before the check, or sees the new snapshot and acquires that one instead.
+        reclaimRetiringCells();
+    }
+
+    /**
+     * To be called by the render thread at the start of each frame. The data of the cells which are active in the
+     * returned snapshot is kept until a later snapshot is acquired.
+     *
+     * @return the last published snapshot.
+     */
+    @NotNull
+    public WorldSnapshot<EntityType> acquireSnapshot() {
+        // The epoch is published before the snapshot is known to be current, so that the cells active in it are not
+        // reclaimed in between.
+        WorldSnapshot<EntityType> current;
+        do {
+            current = snapshot;
+            acquiredEpoch = current.epoch();
+        } while (current != snapshot);
+        return current;
+    }
+
+    /**
+     * As {@link #acquireSnapshot()}, for a simulation thread which ticks apart from the render thread. The data of the
+     * cells active in the returned snapshot is kept until the simulation thread acquires a later one, or calls
+     * {@link #releaseSimulationSnapshot()}.
+     *
+     * @return the last published snapshot.
+     */
+    @NotNull
+    public WorldSnapshot<EntityType> acquireSnapshotForSimulation() {
+        // As in acquireSnapshot(), the epoch is published before the snapshot is known to be current.
+        WorldSnapshot<EntityType> current;
+        do {
+            current = snapshot;
+            simulationAcquiredEpoch = current.epoch();
+        } while (current != snapshot);
+        return current;
+    }
 
+    /**
+     * To be called once the simulation thread stops, after which it no longer holds back the data of retiring cells.
+     */
+    public void releaseSimulationSnapshot() {
+        simulationAcquiredEpoch = NOT_ACQUIRED;
+    }
 
-        final Map<EntityType, IndexedSet<Cell>> entityToIndivisibleComponentMapping = new HashMap<>();
-        final Map<Cell, IndexedSet<EntityType>> indivisibleComponentToEntityMapping = new HashMap<>();
+    /**
+     * @return the last published snapshot.
+     */
+    @NotNull
+    public WorldSnapshot<EntityType> getSnapshot() {
+        return snapshot;
+    }
 
-        entityCollectionProvider.actionForEachEntityOrderedByGroup(entity ->
-                updateLocation(entityToIndivisibleComponentMapping, // Should NOT be this.entityToIndivisibleComponentMapping
-                        indivisibleComponentToEntityMapping,  // Should NOT be this.indivisibleComponentToEntityMapping
-                        entity,
-                        entity.graphicsNbd(),
-                        rootCell
-                ));
+    private void reclaimRetiringCells() {
+        if (retiringCells.isEmpty()) return;
+        // The lower of the acquired epochs decides.
+        if (!holdsRetiringCells(acquiredEpoch) && !holdsRetiringCells(simulationAcquiredEpoch)) {
+            retiringCells.forEach(IndivisibleCell::clearData);
+            retiringCells.clear();
+        }
+    }
 
-        // Update references; keep the data ready to be cleared around until the beginning of the next iteration.
-        this.entityToIndivisibleComponentMapping = entityToIndivisibleComponentMapping;
-        this.indivisibleComponentToEntityMapping = indivisibleComponentToEntityMapping;
+    private boolean holdsRetiringCells(long acquiredEpoch) {
+        return acquiredEpoch != NOT_ACQUIRED && acquiredEpoch < retiringCellsEpoch;
+    }
 
+    /**
+     * Adds listeners which are told of each entity that enters or exits the camera neighborhood, on the thread
+     * calling {@link #registerEntityWhereabouts(RectInt)}.
+     */
+    public void addCameraNeighborhoodListener(@NotNull Consumer<EntityType> onEnter, @NotNull Consumer<EntityType> onExit) {
+        entitiesInCameraNeighborhood.addListener(onEnter, onExit);
+    }
 
-        entitiesInCameraNeighborhoodCached = getContainedEntities(region);
-        Collections.sort(entitiesInCameraNeighborhoodCached);
+    /**
+     * @return the number of entities whose whereabouts were registered anew by the last call to
+     * {@link #registerEntityWhereabouts(RectInt)}.
+     */
+    public int getEntitiesReindexedLastPass() {
+        return entitiesReindexedLastPass;
+    }
 
+    /**
+     * Deactivates the active indivisible cells which do not meet the given rectangle, but do meet some entity.
+     */
+    public void clearUnusedData(@NotNull RectInt rect) {
+        rootCell.forEachLeafOutside(rect, c -> {
+            if (c.isActive() && entityIndex.anyMeeting(c.getUnderlyingRectInt())) {
+                // The data is cleared once no snapshot in use by the render or simulation thread has the cell active.
+                c.setActive(false);
+                retiringCells.add(c);
+                retiringCellsEpoch = snapshot.epoch() + 1;
+                activeCellsChanged = true;
+            }
+        });
+    }
 
-        timeStampLastEntityWhereaboutsRegistered = System.currentTimeMillis();
+    public void loadNearbyData(@NotNull RectInt rect) {
+        loadNearbyData(rect, Integer.MAX_VALUE);
     }
 
-    @Borrowed(origin = "SEARCH_ALG_OBJECT_POOL")
-    public @NotNull ArrayList<Cell> treeSearchFindIndivisibleComponentsMatching(
-            Predicate<Cell> condition
-    ) {
-        final ArrayList<Cell> matches = componentArrayListPool.borrow();
-        final ArrayList<Cell> layer = componentArrayListPool.borrow();
-        layer.add(rootCell);
-        treeSearchRecursionStep(matches, layer, condition);
-        componentArrayListPool.giveBackAllExcept(matches);
-        if (componentArrayListPool.taken() != 1)
-            throw new RuntimeException("No of taken: " + componentArrayListPool.taken());
-        return matches;
-    }
-
-    private void treeSearchRecursionStep(
-            @NotNull ArrayList<Cell> matches,
-            @NotNull ArrayList<Cell> layer,
-            @NotNull Predicate<Cell> condition
-    ) {
-        if (layer.isEmpty()) {
-            return;
+    /**
+     * Activates the inactive indivisible cells which meet the given rectangle and some entity, nearest to the center
+     * of the rectangle first, up to the given number of cells. The data of distinct cells is replayed in parallel, on
+     * the common {@link ForkJoinPool}, and the cells are activated once all of it is replayed.
+     *
+     * @return the number of cells activated.
+     */
+    private int loadNearbyData(@NotNull RectInt rect, int budget) {
+        collectStaleCells();
+        final ArrayList<IndivisibleCell> candidates = componentArrayListPool.borrow();
+        // Cells of lazily created trees which were never written to are created here. A stale cell which is still
+        // retiring may be read by the render thread, and is activated once it has retired.
+        rootCell.forEachIndivisibleCellMeeting(rect, c -> {
+            if (c.isInactive() && !(retiringCells.contains(c) && staleCells.contains(c))
+                    && entityIndex.anyMeeting(c.getUnderlyingRectInt())) {
+                candidates.add(c);
+            }
+        });
+        if (candidates.size() > budget) {
+            final float centerX = rect.getCenterX(), centerY = rect.getCenterY();
+            candidates.sort(Comparator.comparingDouble(c -> {
+                final float dx = c.getUnderlyingRectInt().getCenterX() - centerX;
+                final float dy = c.getUnderlyingRectInt().getCenterY() - centerY;
+                return dx * dx + dy * dy;
+            }));
         }
-        if (layer.get(0).hasSubComponents()) {
-            final ArrayList<Cell> newLayer = componentArrayListPool.borrow();
-            //noinspection ForLoopReplaceableByForEach
-            for (int i = 0; i < layer.size(); i++) {
-                layer.get(i).forEachMatching(newLayer::add, condition);
+        final int activated = Math.min(budget, candidates.size());
+        final ArrayList<IndivisibleCell> toReplay = componentArrayListPool.borrow();
+        final LeafSnapshotCache cache = leafSnapshotCache;
+        for (int i = 0; i < activated; i++) {
+            final IndivisibleCell c = candidates.get(i);
+
+            // Data which survived the last clearUnusedData(), or is not cleared yet, need not be replayed, nor
+            // need baked data, unless a collision data entity meeting the cell has changed since.
+            if (staleCells.remove(c)) {
+                c.discardRetainedData();
+            } else if (retiringCells.remove(c) || c.isDataRetained()) {
+                continue;
             }
-            treeSearchRecursionStep(matches, newLayer, condition);
-        } else {
-            layer.removeIf(condition.negate());
-            matches.addAll(layer);
+            if (cache == null || !cache.read(c)) {
+                toReplay.add(c);
+            }
+        }
+        if (toReplay.size() > 1) {
+            // Returns once every cell is replayed, so that no cell is activated, and no snapshot published, before.
+            ForkJoinPool.commonPool().invoke(new ReplayAction(toReplay, 0, toReplay.size()));
+        } else if (toReplay.size() == 1) {
+            replayCollisionData(toReplay.get(0));
         }
+        for (int i = 0; i < activated; i++) {
+            candidates.get(i).setActive(true);
+            activeCellsChanged = true;
+        }
+        componentArrayListPool.giveBack(toReplay);
+        componentArrayListPool.giveBack(candidates);
+        return activated;
     }
 
+    private void collectStaleCells() {
+        for (IndivisibleCell c = cellsWithCollisionChanges.poll(); c != null; c = cellsWithCollisionChanges.poll()) {
+            staleCells.add(c);
+        }
+    }
 
-    public void clearUnusedData(@NotNull RectInt rect) {
-        final ArrayList<Cell> treeSearchResult = treeSearchFindIndivisibleComponentsMatching(
-                c -> !c.getUnderlyingRectInt().meets(rect)
-        );
-        //noinspection ForLoopReplaceableByForEach
-        for (int i = 0, n = treeSearchResult.size(); i < n; i++) {
-            final Cell c = treeSearchResult.get(i);
-            if (c.isActive() && indivisibleComponentToEntityMapping.containsKey(c)) {
-                c.clearData();
-                c.setActive(false);
+    /**
+     * Writes the collision profile of each entity which meets the given cell into the cell. Writes are confined to the
+     * cell, so that distinct cells may be replayed at once.
+     */
+    private void replayCollisionData(@NotNull IndivisibleCell c) {
+        c.writeInBulk(() -> entityIndex.forEachMeeting(c.getUnderlyingRectInt(), entity -> {
+            if (entity instanceof CollisionData) {
+                ((CollisionData) entity).actionEachCollisionPoint(c::incrementCollisionAt);
             }
-        }
-        componentArrayListPool.giveBack(treeSearchResult);
+        }));
     }
 
-    public void loadNearbyData(@NotNull RectInt rect) {
-        final ArrayList<Cell> treeSearchResult = treeSearchFindIndivisibleComponentsMatching(
-                c -> c.getUnderlyingRectInt().meets(rect)
-        );
-        //noinspection ForLoopReplaceableByForEach
-        for (int i = 0, n = treeSearchResult.size(); i < n; i++) {
-            final Cell c = treeSearchResult.get(i);
-            if (c.isInactive() && indivisibleComponentToEntityMapping.containsKey(c)) {
-
-                final IndexedSet<EntityType> entities = indivisibleComponentToEntityMapping.get(c);
-                for (int j = 0, m = entities.size(); j < m; j++) {
-                    final EntityType entity = entities.get(j);
-                    if (entity instanceof CollisionData) {
-                        ((CollisionData) entity).actionEachCollisionPoint(c::incrementCollisionAt);
-                    }
-                }
+    /**
+     * Replays a range of cells, splitting it in halves to be replayed in parallel down to single cells.
+     */
+    private final class ReplayAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<IndivisibleCell> cells;
+        private final int from;
+        private final int to;
 
-                c.setActive(true);
+        private ReplayAction(List<IndivisibleCell> cells, int from, int to) {
+            this.cells = cells;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                replayCollisionData(cells.get(from));
+                return;
             }
+            final int mid = (from + to) >>> 1;
+            invokeAll(new ReplayAction(cells, from, mid), new ReplayAction(cells, mid, to));
+        }
+    }
+
+    /**
+     * Deactivates the cells outside the retained region of the given plan, activates the cells of its required
+     * region, and then those of its prefetch regions in order, until the activation budget of the plan is spent.
+     */
+    public void stream(@NotNull StreamingPlanner plan) {
+        clearUnusedData(plan.retainedRegion());
+        loadNearbyData(plan.requiredRegion());
+        int budget = plan.activationBudget();
+        final List<ImmutableRectInt> prefetchRegions = plan.prefetchRegions();
+        //noinspection ForLoopReplaceableByForEach
+        for (int i = 0, n = prefetchRegions.size(); i < n && budget > 0; i++) {
+            budget -= loadNearbyData(prefetchRegions.get(i), budget);
         }
-        componentArrayListPool.giveBack(treeSearchResult);
     }
 
 
     public void clearData() {
         rootCell.clearData();
+        retiringCells.clear();
+        cellsWithCollisionChanges.clear();
+        staleCells.clear();
+        activeCellsChanged = true;
+    }
+
+    /**
+     * Releases what the cells hold outside of the heap, such as the file of a {@link CellTree.Implementation#MAPPED}
+     * tree. To be called once the world is no longer used, and no background task runs.
+     */
+    @Override
+    public void close() {
+        rootCell.close();
     }
 
     public void activate(int x, int y) {
@@ -291,10 +497,88 @@ public class WorldRepresentation<GroupType extends Enum<GroupType> & Layer, Enti
 
     public void incrementCollisionAt(int x, int y) {
         rootCell.incrementCollisionAt(x, y);
+        final LeafSnapshotCache cache = leafSnapshotCache;
+        if (cache != null) cache.invalidate(x, y);
     }
 
     public void decrementCollisionAt(int x, int y) {
         rootCell.decrementCollisionAt(x, y);
+        final LeafSnapshotCache cache = leafSnapshotCache;
+        if (cache != null) cache.invalidate(x, y);
+    }
+
+    /**
+     * Uses the given cache to populate indivisible cells on activation, instead of replaying the collision points of
+     * the entities meeting them. Any previously used cache is closed.
+     *
+     * @param cache the cache, or null to always replay.
+     */
+    public void useLeafSnapshots(@Nullable LeafSnapshotCache cache) {
+        if (leafSnapshotCache != null) {
+            try {
+                leafSnapshotCache.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Caught exception while closing a leaf snapshot cache.", e);
+            }
+        }
+        leafSnapshotCache = cache;
+    }
+
+    /**
+     * Opens the cache at the given path, and uses it if it was baked from the given world file contents.
+     *
+     * @return true if the cache is used.
+     * @see LeafSnapshotCache#contentHashOf(String)
+     */
+    public boolean useLeafSnapshots(@NotNull Path path, long contentHash) {
+        final Optional<LeafSnapshotCache> cache = LeafSnapshotCache.open(path, contentHash, cellTreeImplementation, INDIVISIBLE_COMPONENT_SIZE);
+        useLeafSnapshots(cache.orElse(null));
+        return cache.isPresent();
+    }
+
+    /**
+     * Writes the final data of every indivisible cell which holds any to a cache at the given path. Active cells,
+     * and cells whose data is retained and not out of date, are written as they are. Other cells are populated by replay, written and
+     * cleared again one at a time, so that at most one of them holds data from the pools at any time.
+     *
+     * @param contentHash the hash of the world file contents the cache belongs to.
+     */
+    public void bakeLeafSnapshots(@NotNull Path path, long contentHash) {
+        final Map<IndivisibleCell, List<CollisionData>> collisionDataByCell = new HashMap<>();
+        entityCollectionProvider.actionForEachEntityOrderedByGroup(entity -> {
+            if (entity instanceof CollisionData) {
+                final RectInt nbd = entity.graphicsNbd();
+                rootCell.forEachIndivisibleCellMeeting(
+                        nbd,
+                        cell -> collisionDataByCell.computeIfAbsent(cell, c -> new ArrayList<>()).add((CollisionData) entity)
+                );
+            }
+        });
+
+        collectStaleCells();
+        try (var writer = new LeafSnapshotCache.Writer(path, contentHash, cellTreeImplementation, INDIVISIBLE_COMPONENT_SIZE)) {
+            rootCell.forEachIndivisibleCellMatching(c -> true, c -> {
+                if (c.isInactive() && !retiringCells.contains(c) && staleCells.remove(c)) {
+                    c.discardRetainedData();
+                }
+                if (c.isActive() || c.isDataRetained() || retiringCells.contains(c)) {
+                    writer.write(c);
+                } else if (collisionDataByCell.containsKey(c)) {
+                    // Activate and deactivate the cell as loadNearbyData() and clearUnusedData() would.
+                    c.writeInBulk(() -> {
+                        for (CollisionData collisionData : collisionDataByCell.get(c)) {
+                            collisionData.actionEachCollisionPoint(c::incrementCollisionAt);
+                        }
+                    });
+                    c.setActive(true);
+                    writer.write(c);
+                    c.clearData();
+                    c.setActive(false);
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Caught exception while baking leaf snapshots to " + path + ".", e);
+        }
     }
 
     public boolean isCollisionAt(int x, int y) {
@@ -317,14 +601,95 @@ public class WorldRepresentation<GroupType extends Enum<GroupType> & Layer, Enti
         return rootCell.getCollision(x, y);
     }
 
+    /**
+     * @see CellTree#chunkOccupancy()
+     */
+    public ChunkOccupancy chunkOccupancy() {
+        return rootCell.chunkOccupancy();
+    }
+
+    /**
+     * @return the counters of the pools of the cell data, and of the lists used to search the cells.
+     * @see CellTree#poolStatistics()
+     */
+    public PoolStatistics poolStatistics() {
+        return rootCell.poolStatistics().plus(componentArrayListPool.statistics());
+    }
+
+    /**
+     * @see CellTree#sample(int, int, CellSample)
+     */
+    public CellSample sample(int x, int y, @NotNull CellSample out) {
+        return rootCell.sample(x, y, out);
+    }
+
+    /**
+     * @see CellTree#firstCollisionInColumn(int, int, int)
+     */
+    public int firstCollisionInColumn(int x, int yFrom, int yTo) {
+        return rootCell.firstCollisionInColumn(x, yFrom, yTo);
+    }
+
+    /**
+     * @see CellTree#firstCollisionIfNotLadderDataInColumn(int, int, int)
+     */
+    public int firstCollisionIfNotLadderDataInColumn(int x, int yFrom, int yTo) {
+        return rootCell.firstCollisionIfNotLadderDataInColumn(x, yFrom, yTo);
+    }
+
+    /**
+     * @see CellTree#anyCollisionInRow(int, int, int)
+     */
+    public boolean anyCollisionInRow(int y, int xFrom, int xTo) {
+        return rootCell.anyCollisionInRow(y, xFrom, xTo);
+    }
+
+    /**
+     * @see CellTree#countCollisionsInRect(int, int, int, int)
+     */
+    public int countCollisionsInRect(int xFrom, int yFrom, int xTo, int yTo) {
+        return rootCell.countCollisionsInRect(xFrom, yFrom, xTo, yTo);
+    }
+
+    /**
+     * @see CellTree#collisionRunAbove(int, int, int)
+     */
+    public int collisionRunAbove(int x, int y, int limit) {
+        return rootCell.collisionRunAbove(x, y, limit);
+    }
+
+    /**
+     * @see CellTree#freeRunBelow(int, int, int)
+     */
+    public int freeRunBelow(int x, int y, int limit) {
+        return rootCell.freeRunBelow(x, y, limit);
+    }
+
     public boolean unregisterEntity(EntityType e) {
+        if (e instanceof CollisionData) collisionDataChangedIn(e.graphicsNbd());
+        unregisteredSinceLastPass.add(e);
         return entityCollectionProvider.unregisterEntity(e);
     }
 
     public void registerEntity(EntityType e) {
+        if (e instanceof CollisionData) collisionDataChangedIn(e.graphicsNbd());
         entityCollectionProvider.registerEntity(e);
     }
 
+    /**
+     * Queues the cells which meet the given rectangle, in which a collision data entity was added, removed or moved,
+     * so that data they retain is not used again, and invalidates their baked snapshots.
+     */
+    private void collisionDataChangedIn(RectInt rect) {
+        final LeafSnapshotCache cache = leafSnapshotCache;
+        rootCell.forEachLeafIntersecting(rect, cell -> {
+            if (cache != null) {
+                cache.invalidate(cell.getUnderlyingRectInt().getMinX(), cell.getUnderlyingRectInt().getMinY());
+            }
+            cellsWithCollisionChanges.add(cell);
+        });
+    }
+
     public void populateCollection(Collection<EntityType> allEntities,
                                    Predicate<EntityType> criterion) {
         entityCollectionProvider.populateCollection(allEntities, criterion);
@@ -0,0 +1,25 @@
+package dev.kabin.components.worldmodel;
+
+/**
+ * Statistics on how much of the chunked data of a world is actually allocated.
+ *
+ * @param matrices        the number of matrices in use.
+ * @param allocatedChunks the number of chunks allocated by those matrices.
+ * @param chunkCount      the number of chunks those matrices consist of.
+ */
+public record ChunkOccupancy(int matrices, int allocatedChunks, int chunkCount) {
+
+    public static final ChunkOccupancy EMPTY = new ChunkOccupancy(0, 0, 0);
+
+    /**
+     * @return the fraction of chunks that are allocated, or zero if there are none.
+     */
+    public float ratio() {
+        return chunkCount == 0 ? 0f : (float) allocatedChunks / chunkCount;
+    }
+
+    public ChunkOccupancy plus(ChunkOccupancy other) {
+        return new ChunkOccupancy(matrices + other.matrices, allocatedChunks + other.allocatedChunks,
+                chunkCount + other.chunkCount);
+    }
+}
@@ -0,0 +1,31 @@
+package dev.kabin.components.worldmodel;
+
+import dev.kabin.util.linalg.ChunkedIntMatrix;
+import dev.kabin.util.pools.objectpool.AbstractObjectPool;
+
+import java.util.function.Supplier;
+
+
+/**
+ * Makes sure that int data objects are re-used, instead of being garbage collected.
+ */
+public class ChunkedIntMatrixPool extends AbstractObjectPool<ChunkedIntMatrix> {
+
+
+    public ChunkedIntMatrixPool(int objectsAvailable, Supplier<ChunkedIntMatrix> mapper) {
+        super(objectsAvailable, mapper, ChunkedIntMatrix::clear);
+    }
+
+    /**
+     * @return the chunk occupancy of all matrices currently borrowed from this pool.
+     */
+    public ChunkOccupancy chunkOccupancy() {
+        final int[] allocated = new int[1], available = new int[1];
+        forEachTaken(m -> {
+            allocated[0] += m.allocatedChunks();
+            available[0] += m.chunkCount();
+        });
+        return new ChunkOccupancy(taken(), allocated[0], available[0]);
+    }
+
+}
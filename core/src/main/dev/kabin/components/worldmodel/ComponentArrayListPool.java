@@ -1,16 +1,16 @@
 package dev.kabin.components.worldmodel;
 
-import dev.kabin.util.cell.Cell;
+import dev.kabin.util.cell.IndivisibleCell;
 import dev.kabin.util.pools.objectpool.AbstractObjectPool;
 
 import java.util.ArrayList;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
-public class ComponentArrayListPool extends AbstractObjectPool<ArrayList<Cell>> {
+public class ComponentArrayListPool extends AbstractObjectPool<ArrayList<IndivisibleCell>> {
 
-    public ComponentArrayListPool(int objectsAvailable, Supplier<ArrayList<Cell>> mapper,
-                                  Consumer<ArrayList<Cell>> clearDataProcedure) {
+    public ComponentArrayListPool(int objectsAvailable, Supplier<ArrayList<IndivisibleCell>> mapper,
+                                  Consumer<ArrayList<IndivisibleCell>> clearDataProcedure) {
         super(objectsAvailable, mapper, clearDataProcedure);
     }
 
@@ -0,0 +1,20 @@
+package dev.kabin.components.worldmodel;
+
+import dev.kabin.util.pools.objectpool.AbstractObjectPool;
+
+import java.util.function.Supplier;
+
+
+/**
+ * Makes sure that the columns of ground distances of indivisible cells are re-used, instead of being garbage
+ * collected. A column is overwritten as a whole before it is read, so it is not cleared when given back.
+ */
+public class GroundDistancePool extends AbstractObjectPool<short[]> {
+
+
+    public GroundDistancePool(int objectsAvailable, Supplier<short[]> mapper) {
+        super(objectsAvailable, mapper, column -> {
+        });
+    }
+
+}
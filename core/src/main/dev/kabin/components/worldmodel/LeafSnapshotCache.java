@@ -0,0 +1,285 @@
+package dev.kabin.components.worldmodel;
+
+import dev.kabin.util.cell.CellTree;
+import dev.kabin.util.cell.IndivisibleCell;
+import dev.kabin.util.shapes.primitive.ImmutableRectInt;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A file of baked snapshots of the data of indivisible cells, see {@link IndivisibleCell#writeSnapshot(ByteBuffer)}.
+ * Reading a snapshot into a cell replaces replaying the collision points of every entity that meets the cell.
+ * <p>
+ * The file starts with a header holding the content hash of the world it was baked from, and ends with an index
+ * from leaf coordinates to the position of each snapshot. A cache whose header does not match the world it is opened
+ * for is not used. Snapshots of cells whose data has changed since baking are invalidated one at a time, after which
+ * those cells fall back to replay.
+ */
+public final class LeafSnapshotCache implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(LeafSnapshotCache.class.getName());
+    private static final int MAGIC = 0x4b4c5343;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES + 3 * Integer.BYTES + Long.BYTES;
+    private static final int INDEX_ENTRY_BYTES = 2 * Long.BYTES + Integer.BYTES;
+    private static final String FILE_SUFFIX = ".leaves";
+
+    private final FileChannel channel;
+    private final int leafSize;
+    // Index, sorted by key:
+    private final long[] keys;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final boolean[] invalidated;
+    private ByteBuffer readBuffer = ByteBuffer.allocateDirect(0);
+
+    private LeafSnapshotCache(FileChannel channel, int leafSize, long[] keys, long[] offsets, int[] lengths) {
+        this.channel = channel;
+        this.leafSize = leafSize;
+        this.keys = keys;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.invalidated = new boolean[keys.length];
+    }
+
+    /**
+     * @return the path of the cache belonging to the given world file.
+     */
+    @NotNull
+    public static Path pathOf(@NotNull Path worldFile) {
+        return worldFile.resolveSibling(worldFile.getFileName() + FILE_SUFFIX);
+    }
+
+    /**
+     * @return a hash of the given world file contents, used to tell whether a cache was baked from them.
+     */
+    public static long contentHashOf(@NotNull String worldFileContents) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(worldFileContents.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Caught exception while hashing world file contents.", e);
+        }
+    }
+
+    private static long keyOf(int leafSize, int x, int y) {
+        return ((long) Math.floorDiv(x, leafSize) << 32) | (Math.floorDiv(y, leafSize) & 0xffffffffL);
+    }
+
+    /**
+     * Opens the cache at the given path.
+     *
+     * @return the cache, or an empty optional if there is no cache at the given path, or if it was baked from other
+     * world file contents, another {@link CellTree.Implementation} or another size of indivisible cells.
+     */
+    @NotNull
+    public static Optional<LeafSnapshotCache> open(@NotNull Path path,
+                                                   long contentHash,
+                                                   @NotNull CellTree.Implementation implementation,
+                                                   int leafSize) {
+        if (!Files.isRegularFile(path)) return Optional.empty();
+        try {
+            final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_BYTES
+                    || header.getInt() != MAGIC
+                    || header.getInt() != VERSION
+                    || header.getLong() != contentHash
+                    || header.getInt() != implementation.ordinal()
+                    || header.getInt() != leafSize) {
+                logger.log(Level.INFO, "The leaf snapshot cache " + path + " is stale, and is not used.");
+                channel.close();
+                return Optional.empty();
+            }
+            final int entries = header.getInt();
+            final long indexOffset = header.getLong();
+            final ByteBuffer index = ByteBuffer.allocate(entries * INDEX_ENTRY_BYTES);
+            readFully(channel, index, indexOffset);
+            index.flip();
+            final long[] keys = new long[entries], offsets = new long[entries];
+            final int[] lengths = new int[entries];
+            for (int i = 0; i < entries; i++) {
+                keys[i] = index.getLong();
+                offsets[i] = index.getLong();
+                lengths[i] = index.getInt();
+            }
+            return Optional.of(new LeafSnapshotCache(channel, leafSize, keys, offsets, lengths));
+        } catch (IOException e) {
+            throw new RuntimeException("Caught exception while opening the leaf snapshot cache " + path + ".", e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0) return;
+            position += read;
+        }
+    }
+
+    private int find(int x, int y) {
+        return Arrays.binarySearch(keys, keyOf(leafSize, x, y));
+    }
+
+    /**
+     * Replaces the data of the given cell by its snapshot.
+     *
+     * @return true if there was a valid snapshot of the given cell, otherwise false, in which case the cell is left
+     * untouched.
+     */
+    public synchronized boolean read(@NotNull IndivisibleCell cell) {
+        final ImmutableRectInt rect = cell.getUnderlyingRectInt();
+        final int entry = find(rect.getMinX(), rect.getMinY());
+        if (entry < 0 || invalidated[entry]) return false;
+        if (readBuffer.capacity() < lengths[entry]) {
+            readBuffer = ByteBuffer.allocateDirect(lengths[entry]);
+        }
+        readBuffer.clear().limit(lengths[entry]);
+        try {
+            readFully(channel, readBuffer, offsets[entry]);
+        } catch (IOException e) {
+            throw new RuntimeException("Caught exception while reading the snapshot of the cell " + cell + ".", e);
+        }
+        if (readBuffer.hasRemaining()) return false;
+        readBuffer.flip();
+        cell.readSnapshot(readBuffer);
+        return true;
+    }
+
+    /**
+     * Invalidates the snapshot of the indivisible cell containing (x,y), if any.
+     */
+    public synchronized void invalidate(int x, int y) {
+        final int entry = find(x, y);
+        if (entry >= 0) invalidated[entry] = true;
+    }
+
+    /**
+     * @return the number of snapshots in this cache.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Bakes a cache. The data of each cell passed to {@link #write(IndivisibleCell)} is written as it is at the time
+     * of the call. The cache is written to a temporary file, which replaces the one at the given path on
+     * {@link #close()}, so that a cache that was not completely baked is never opened.
+     */
+    public static final class Writer implements Closeable {
+
+        private final Path path;
+        private final Path temporaryPath;
+        private final FileChannel channel;
+        private final long contentHash;
+        private final CellTree.Implementation implementation;
+        private final int leafSize;
+        private long[] keys = new long[16];
+        private long[] offsets = new long[16];
+        private int[] lengths = new int[16];
+        private int entries = 0;
+        private long position = HEADER_BYTES;
+        private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(0);
+
+        public Writer(@NotNull Path path, long contentHash, @NotNull CellTree.Implementation implementation, int leafSize) {
+            this.path = path;
+            this.contentHash = contentHash;
+            this.implementation = implementation;
+            this.leafSize = leafSize;
+            try {
+                temporaryPath = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+                channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (IOException e) {
+                throw new RuntimeException("Caught exception while creating the leaf snapshot cache " + path + ".", e);
+            }
+        }
+
+        public void write(@NotNull IndivisibleCell cell) {
+            final int length = cell.snapshotBytes();
+            if (writeBuffer.capacity() < length) {
+                writeBuffer = ByteBuffer.allocateDirect(length);
+            }
+            writeBuffer.clear().limit(length);
+            cell.writeSnapshot(writeBuffer);
+            writeBuffer.flip();
+            writeFully(writeBuffer, position);
+
+            if (entries == keys.length) {
+                keys = Arrays.copyOf(keys, entries * 2);
+                offsets = Arrays.copyOf(offsets, entries * 2);
+                lengths = Arrays.copyOf(lengths, entries * 2);
+            }
+            final ImmutableRectInt rect = cell.getUnderlyingRectInt();
+            keys[entries] = keyOf(leafSize, rect.getMinX(), rect.getMinY());
+            offsets[entries] = position;
+            lengths[entries] = length;
+            entries++;
+            position += length;
+        }
+
+        private void writeFully(ByteBuffer buffer, long at) {
+            try {
+                while (buffer.hasRemaining()) {
+                    at += channel.write(buffer, at);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Caught exception while writing the leaf snapshot cache " + path + ".", e);
+            }
+        }
+
+        /**
+         * Writes the index and the header, and moves the cache in place.
+         */
+        @Override
+        public void close() throws IOException {
+            // Sort the index by key.
+            final Integer[] order = new Integer[entries];
+            for (int i = 0; i < entries; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+            final ByteBuffer index = ByteBuffer.allocate(entries * INDEX_ENTRY_BYTES);
+            for (int i : order) {
+                index.putLong(keys[i]).putLong(offsets[i]).putInt(lengths[i]);
+            }
+            index.flip();
+            writeFully(index, position);
+
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(contentHash)
+                    .putInt(implementation.ordinal())
+                    .putInt(leafSize)
+                    .putInt(entries)
+                    .putLong(position);
+            header.flip();
+            writeFully(header, 0);
+
+            channel.close();
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.log(Level.INFO, "Baked " + entries + " leaf snapshots to " + path + ".");
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package dev.kabin.components.worldmodel;
+
+import dev.kabin.util.collections.Id;
+import dev.kabin.util.collections.IdMap;
+import dev.kabin.util.collections.IntListMap;
+import dev.kabin.util.shapes.primitive.MutableRectInt;
+import dev.kabin.util.shapes.primitive.RectInt;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A loose quadtree of rectangles, each stored once, at the smallest node which contains it.
+ * <p>
+ * A node of size s covers the square [minX, minX + s) x [minY, minY + s), and holds the rectangles whose center it
+ * covers, and whose width and height are at most s. Every rectangle held by a node therefore lies within the loose
+ * bounds of the node, which extend its square by s / 2 on each side. Rectangles whose center is outside the root
+ * are held by the root. A rectangle is put or moved in a number of steps proportional to the depth of the tree.
+ * <p>
+ * Two rectangles meet as in {@link RectInt#meets(RectInt)}.
+ *
+ * @param <T> the type of the values, which are identified by their {@link Id#getId() id}.
+ */
+public class LooseQuadTree<T extends Id> {
+
+    private final int minimalNodeSize;
+    private final Node root;
+    private final IdMap<T> values = new IdMap<>();
+    private final IdMap<Node> nodesById = new IdMap<>();
+    // Ids of values, by node id.
+    private final IntListMap valueIdsByNodeId = new IntListMap();
+    private int nodesCreated = 0;
+    // By value id: the bounds of the value in groups of four, and the index of the value in the list of its node.
+    private int[] bounds = new int[64];
+    private int[] slots = new int[16];
+
+    /**
+     * @param size            the size of the root, which is rounded up to minimalNodeSize times a power of two.
+     * @param minimalNodeSize nodes are not divided further than to this size.
+     */
+    public LooseQuadTree(int minX, int minY, int size, int minimalNodeSize) {
+        if (size <= 0 || minimalNodeSize <= 0) {
+            throw new IllegalArgumentException("Received invalid parameters: " + size + ", " + minimalNodeSize);
+        }
+        this.minimalNodeSize = minimalNodeSize;
+        int rootSize = minimalNodeSize;
+        while (rootSize < size) rootSize *= 2;
+        this.root = new Node(nodesCreated++, null, minX, minY, rootSize);
+    }
+
+    /**
+     * Stores the given value with the given bounds, or moves it there if it is already stored.
+     */
+    public void put(@NotNull T value, @NotNull RectInt rect) {
+        final int id = value.getId();
+        ensureCapacity(id);
+        bounds[4 * id] = rect.getMinX();
+        bounds[4 * id + 1] = rect.getMinY();
+        bounds[4 * id + 2] = rect.getMaxX();
+        bounds[4 * id + 3] = rect.getMaxY();
+        values.put(id, value);
+
+        final Node target = nodeFor(rect);
+        final Node current = nodesById.get(id);
+        if (current == target) return;
+        if (current != null) removeFromNode(current, id);
+        slots[id] = valueIdsByNodeId.size(target.id);
+        valueIdsByNodeId.add(target.id, id);
+        nodesById.put(id, target);
+        for (Node n = target; n != null; n = n.parent) n.count++;
+    }
+
+    /**
+     * @return true if a value with the given id was stored.
+     */
+    public boolean remove(int id) {
+        final Node current = nodesById.remove(id);
+        if (current == null) return false;
+        removeFromNode(current, id);
+        values.remove(id);
+        return true;
+    }
+
+    private void removeFromNode(Node node, int id) {
+        final int slot = slots[id];
+        valueIdsByNodeId.removeAt(node.id, slot);
+        if (slot < valueIdsByNodeId.size(node.id)) {
+            slots[valueIdsByNodeId.get(node.id, slot)] = slot;
+        }
+        for (Node n = node; n != null; n = n.parent) n.count--;
+    }
+
+    private void ensureCapacity(int id) {
+        if (id >= slots.length) {
+            final int newLength = Math.max(id + 1, 2 * slots.length);
+            slots = Arrays.copyOf(slots, newLength);
+            bounds = Arrays.copyOf(bounds, 4 * newLength);
+        }
+    }
+
+    /**
+     * @return the smallest node which may hold the given rectangle, creating it if necessary.
+     */
+    private Node nodeFor(RectInt rect) {
+        final int extent = Math.max(rect.getMaxX() - rect.getMinX(), rect.getMaxY() - rect.getMinY());
+        final int centerX = (rect.getMinX() + rect.getMaxX()) >> 1;
+        final int centerY = (rect.getMinY() + rect.getMaxY()) >> 1;
+        if (!root.covers(centerX, centerY)) return root;
+        Node node = root;
+        while (node.size / 2 >= minimalNodeSize && node.size / 2 >= extent) {
+            node = childOf(node, centerX, centerY);
+        }
+        return node;
+    }
+
+    /**
+     * @return the child of the given node containing (x,y), creating it if necessary.
+     */
+    private Node childOf(Node node, int x, int y) {
+        final int half = node.size / 2;
+        final int midX = node.minX + half, midY = node.minY + half;
+        final int index = (x < midX ? 0 : 1) + (y < midY ? 0 : 2);
+        if (node.children == null) node.children = new Node[4];
+        if (node.children[index] == null) {
+            node.children[index] = new Node(nodesCreated++, node, x < midX ? node.minX : midX, y < midY ? node.minY : midY, half);
+        }
+        return node.children[index];
+    }
+
+    /**
+     * @return true if the value with the given id is stored with exactly the given bounds.
+     */
+    public boolean isStoredWith(int id, @NotNull RectInt rect) {
+        return nodesById.containsKey(id)
+                && bounds[4 * id] == rect.getMinX()
+                && bounds[4 * id + 1] == rect.getMinY()
+                && bounds[4 * id + 2] == rect.getMaxX()
+                && bounds[4 * id + 3] == rect.getMaxY();
+    }
+
+    /**
+     * Sets the given rectangle to the bounds the value with the given id is stored with, if it is stored.
+     *
+     * @return true if the value is stored.
+     */
+    public boolean boundsOf(int id, @NotNull MutableRectInt target) {
+        if (!nodesById.containsKey(id)) return false;
+        target.setMinX(bounds[4 * id]);
+        target.setMinY(bounds[4 * id + 1]);
+        target.setMaxX(bounds[4 * id + 2]);
+        target.setMaxY(bounds[4 * id + 3]);
+        return true;
+    }
+
+    /**
+     * Performs the given action once for each stored value whose bounds meet the given rectangle.
+     */
+    public void forEachMeeting(@NotNull RectInt rect, @NotNull Consumer<T> action) {
+        forEachMeeting(root, rect.getMinX(), rect.getMinY(), rect.getMaxX(), rect.getMaxY(), action);
+    }
+
+    private void forEachMeeting(Node node, int minX, int minY, int maxX, int maxY, Consumer<T> action) {
+        if (node.count == 0 || (node != root && !node.looseBoundsMeet(minX, minY, maxX, maxY))) return;
+        for (int i = 0, n = valueIdsByNodeId.size(node.id); i < n; i++) {
+            final int id = valueIdsByNodeId.get(node.id, i);
+            if (meets(id, minX, minY, maxX, maxY)) action.accept(values.get(id));
+        }
+        if (node.children != null) {
+            for (Node child : node.children) {
+                if (child != null) forEachMeeting(child, minX, minY, maxX, maxY, action);
+            }
+        }
+    }
+
+    /**
+     * @return true if the bounds of any stored value meet the given rectangle.
+     */
+    public boolean anyMeeting(@NotNull RectInt rect) {
+        return anyMeeting(root, rect.getMinX(), rect.getMinY(), rect.getMaxX(), rect.getMaxY());
+    }
+
+    private boolean anyMeeting(Node node, int minX, int minY, int maxX, int maxY) {
+        if (node.count == 0 || (node != root && !node.looseBoundsMeet(minX, minY, maxX, maxY))) return false;
+        for (int i = 0, n = valueIdsByNodeId.size(node.id); i < n; i++) {
+            if (meets(valueIdsByNodeId.get(node.id, i), minX, minY, maxX, maxY)) return true;
+        }
+        if (node.children != null) {
+            for (Node child : node.children) {
+                if (child != null && anyMeeting(child, minX, minY, maxX, maxY)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the value with the given id is stored with bounds that meet the given rectangle.
+     */
+    public boolean meets(int id, @NotNull RectInt rect) {
+        return nodesById.containsKey(id) && meets(id, rect.getMinX(), rect.getMinY(), rect.getMaxX(), rect.getMaxY());
+    }
+
+    private boolean meets(int id, int minX, int minY, int maxX, int maxY) {
+        return bounds[4 * id + 2] - minX > 0
+                && bounds[4 * id] - maxX < 0
+                && bounds[4 * id + 3] - minY > 0
+                && bounds[4 * id + 1] - maxY < 0;
+    }
+
+    /**
+     * @return the number of stored values.
+     */
+    public int size() {
+        return root.count;
+    }
+
+    private static final class Node {
+
+        private final int id;
+        private final Node parent;
+        private final int minX;
+        private final int minY;
+        private final int size;
+        // Entries are null until created; the index of the child containing (x,y) is (x < midX ? 0 : 1) + (y < midY ? 0 : 2).
+        private Node[] children;
+        // The number of values held by this node and its descendants.
+        private int count;
+
+        private Node(int id, Node parent, int minX, int minY, int size) {
+            this.id = id;
+            this.parent = parent;
+            this.minX = minX;
+            this.minY = minY;
+            this.size = size;
+        }
+
+        private boolean covers(int x, int y) {
+            return minX <= x && x < minX + size && minY <= y && y < minY + size;
+        }
+
+        private boolean looseBoundsMeet(int minX, int minY, int maxX, int maxY) {
+            // Allow for the rounding of centers.
+            final int margin = size / 2 + 1;
+            return this.minX + size + margin >= minX
+                    && this.minX - margin <= maxX
+                    && this.minY + size + margin >= minY
+                    && this.minY - margin <= maxY;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package dev.kabin.components.worldmodel;
+
+import dev.kabin.util.linalg.OccupancyMatrix;
+import dev.kabin.util.pools.objectpool.AbstractObjectPool;
+
+import java.util.function.Supplier;
+
+
+/**
+ * Makes sure that collision occupancy objects are re-used, instead of being garbage collected.
+ */
+public class OccupancyMatrixPool extends AbstractObjectPool<OccupancyMatrix> {
+
+
+    public OccupancyMatrixPool(int objectsAvailable, Supplier<OccupancyMatrix> mapper) {
+        super(objectsAvailable, mapper, OccupancyMatrix::clear);
+    }
+
+}
@@ -0,0 +1,99 @@
+package dev.kabin.components.worldmodel;
+
+import dev.kabin.util.shapes.primitive.ImmutableRectInt;
+import dev.kabin.util.shapes.primitive.RectInt;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plans which regions of a world to hold data for, given the camera neighborhood and the velocity of the camera.
+ * <p>
+ * The neighborhood is required. Beyond it, the neighborhood is extrapolated along the velocity at a number of
+ * evenly spaced times up to the look-ahead, giving the regions to prefetch, earliest first. Data is retained for the
+ * bounding box of all these regions, widened by a margin, so that data is not released and loaded again when the
+ * camera turns around near its bounds.
+ */
+public final class StreamingPlanner {
+
+    private final float lookAheadSeconds;
+    private final int steps;
+    private final int hysteresisMargin;
+    private final int activationBudget;
+    private final ArrayList<ImmutableRectInt> prefetchRegions = new ArrayList<>();
+    private ImmutableRectInt requiredRegion;
+    private ImmutableRectInt retainedRegion;
+
+    /**
+     * @param lookAheadSeconds how far ahead in time to extrapolate the neighborhood; at least the time between plans.
+     * @param steps            the number of extrapolated regions.
+     * @param hysteresisMargin the margin by which the retained region exceeds the required and prefetched ones.
+     * @param activationBudget the number of cells that may be activated per plan for prefetching.
+     */
+    public StreamingPlanner(float lookAheadSeconds, int steps, int hysteresisMargin, int activationBudget) {
+        if (lookAheadSeconds < 0 || steps < 0 || hysteresisMargin < 0 || activationBudget < 0) {
+            throw new IllegalArgumentException("Received invalid parameters: " + lookAheadSeconds + ", " + steps
+                    + ", " + hysteresisMargin + ", " + activationBudget);
+        }
+        this.lookAheadSeconds = lookAheadSeconds;
+        this.steps = steps;
+        this.hysteresisMargin = hysteresisMargin;
+        this.activationBudget = activationBudget;
+    }
+
+    /**
+     * Plans for the given neighborhood, moving at the given velocity in world pixels per second.
+     */
+    public void plan(@NotNull RectInt neighborhood, float velocityX, float velocityY) {
+        requiredRegion = new ImmutableRectInt(neighborhood.getMinX(), neighborhood.getMinY(),
+                neighborhood.getMaxX() - neighborhood.getMinX(), neighborhood.getMaxY() - neighborhood.getMinY());
+        int minX = requiredRegion.getMinX(), minY = requiredRegion.getMinY();
+        int maxX = requiredRegion.getMaxX(), maxY = requiredRegion.getMaxY();
+
+        prefetchRegions.clear();
+        for (int step = 1; step <= steps; step++) {
+            final float t = lookAheadSeconds * step / steps;
+            final int dx = Math.round(velocityX * t), dy = Math.round(velocityY * t);
+            if (dx == 0 && dy == 0) continue;
+            final ImmutableRectInt region = new ImmutableRectInt(requiredRegion.getMinX() + dx,
+                    requiredRegion.getMinY() + dy, requiredRegion.getWidth(), requiredRegion.getHeight());
+            prefetchRegions.add(region);
+            minX = Math.min(minX, region.getMinX());
+            minY = Math.min(minY, region.getMinY());
+            maxX = Math.max(maxX, region.getMaxX());
+            maxY = Math.max(maxY, region.getMaxY());
+        }
+
+        retainedRegion = new ImmutableRectInt(minX - hysteresisMargin, minY - hysteresisMargin,
+                maxX - minX + 2 * hysteresisMargin, maxY - minY + 2 * hysteresisMargin);
+    }
+
+    /**
+     * @return the region whose data must be held, regardless of the budget.
+     */
+    public ImmutableRectInt requiredRegion() {
+        return requiredRegion;
+    }
+
+    /**
+     * @return the regions whose data should be held ahead of time, in the order of priority.
+     */
+    public List<ImmutableRectInt> prefetchRegions() {
+        return prefetchRegions;
+    }
+
+    /**
+     * @return the region outside of which data may be released.
+     */
+    public ImmutableRectInt retainedRegion() {
+        return retainedRegion;
+    }
+
+    /**
+     * @return the number of cells that may be activated per plan for prefetching.
+     */
+    public int activationBudget() {
+        return activationBudget;
+    }
+}
@@ -0,0 +1,182 @@
+package dev.kabin.components.worldmodel;
+
+import dev.kabin.util.collections.Id;
+import dev.kabin.util.shapes.primitive.ImmutableRectInt;
+import dev.kabin.util.shapes.primitive.RectInt;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the sorted list of the values whose bounds meet a region up to date, by the changes to the region and to
+ * the values, instead of finding and sorting all of them anew. Listeners are told of each value which enters or
+ * exits the list.
+ * <p>
+ * The list is changed by {@link #moveRegion(RectInt)}, {@link #update(Id)} and {@link #remove(Id)}, which must be
+ * called from one thread, and is made available to other threads by {@link #publish()}.
+ *
+ * @param <T> the type of the values.
+ */
+public class VisibleSet<T extends Id & Comparable<? super T>> {
+
+    private final BiConsumer<RectInt, Consumer<T>> forEachMeeting;
+    private final BiPredicate<T, RectInt> meets;
+    private final List<Consumer<T>> enterListeners = new ArrayList<>();
+    private final List<Consumer<T>> exitListeners = new ArrayList<>();
+    // Sorted:
+    private final ArrayList<T> visible = new ArrayList<>();
+    private final BitSet visibleIds = new BitSet();
+    private volatile List<T> published = List.of();
+    private ImmutableRectInt region;
+    private boolean changedSincePublished = false;
+
+    /**
+     * @param forEachMeeting performs an action for each value whose bounds meet a rectangle.
+     * @param meets          tells whether the bounds of a value meet a rectangle, in agreement with forEachMeeting.
+     */
+    public VisibleSet(@NotNull BiConsumer<RectInt, Consumer<T>> forEachMeeting, @NotNull BiPredicate<T, RectInt> meets) {
+        this.forEachMeeting = forEachMeeting;
+        this.meets = meets;
+    }
+
+    /**
+     * Adds listeners, which are called on the thread that changes the list, right after a value enters or exits it.
+     */
+    public void addListener(@NotNull Consumer<T> onEnter, @NotNull Consumer<T> onExit) {
+        enterListeners.add(onEnter);
+        exitListeners.add(onExit);
+    }
+
+    private void enter(T value) {
+        final int index = Collections.binarySearch(visible, value);
+        visible.add(index < 0 ? -index - 1 : index, value);
+        visibleIds.set(value.getId());
+        changedSincePublished = true;
+        //noinspection ForLoopReplaceableByForEach
+        for (int i = 0, n = enterListeners.size(); i < n; i++) {
+            enterListeners.get(i).accept(value);
+        }
+    }
+
+    private void exit(T value) {
+        final int searchResult = Collections.binarySearch(visible, value);
+        // The order of the value may have changed since it entered.
+        final int index = (searchResult >= 0 && visible.get(searchResult) == value) ? searchResult : visible.indexOf(value);
+        visible.remove(index);
+        visibleIds.clear(value.getId());
+        changedSincePublished = true;
+        //noinspection ForLoopReplaceableByForEach
+        for (int i = 0, n = exitListeners.size(); i < n; i++) {
+            exitListeners.get(i).accept(value);
+        }
+    }
+
+    public boolean isVisible(@NotNull T value) {
+        return visibleIds.get(value.getId());
+    }
+
+    /**
+     * Lets the given value enter or exit the list according to its current bounds. To be called when a value is
+     * added, or when its bounds change.
+     */
+    public void update(@NotNull T value) {
+        final boolean inRegion = region != null && meets.test(value, region);
+        if (inRegion != isVisible(value)) {
+            if (inRegion) enter(value);
+            else exit(value);
+        }
+    }
+
+    /**
+     * Lets the given value exit the list, if present. To be called when a value is removed.
+     */
+    public void remove(@NotNull T value) {
+        if (isVisible(value)) exit(value);
+    }
+
+    /**
+     * Moves the region to the given one. Values of the list are checked against the new region, and values not in
+     * the list are only looked for where the new region does not overlap the old one.
+     *
+     * @param rect the new region, or null for an empty region.
+     */
+    public void moveRegion(@Nullable RectInt rect) {
+        final ImmutableRectInt old = region;
+        if (rect == null) {
+            region = null;
+            for (int i = visible.size() - 1; i >= 0; i--) exit(visible.get(i));
+            return;
+        }
+        if (old != null
+                && old.getMinX() == rect.getMinX() && old.getMinY() == rect.getMinY()
+                && old.getMaxX() == rect.getMaxX() && old.getMaxY() == rect.getMaxY()) {
+            return;
+        }
+        final ImmutableRectInt next = rectOf(rect.getMinX(), rect.getMinY(), rect.getMaxX(), rect.getMaxY());
+        region = next;
+
+        for (int i = visible.size() - 1; i >= 0; i--) {
+            final T value = visible.get(i);
+            if (!meets.test(value, next)) exit(value);
+        }
+
+        final Consumer<T> enterIfNew = value -> {
+            if (!isVisible(value) && (old == null || !meets.test(value, old))) enter(value);
+        };
+        if (old == null || !old.meets(next)) {
+            forEachMeeting.accept(next, enterIfNew);
+            return;
+        }
+        // The parts of the new region outside the old one, each widened by one so that degenerate bounds are found.
+        if (next.getMinX() < old.getMinX()) {
+            forEachMeeting.accept(rectOf(next.getMinX(), next.getMinY(), old.getMinX() + 1, next.getMaxY()), enterIfNew);
+        }
+        if (next.getMaxX() > old.getMaxX()) {
+            forEachMeeting.accept(rectOf(old.getMaxX() - 1, next.getMinY(), next.getMaxX(), next.getMaxY()), enterIfNew);
+        }
+        final int minX = Math.max(next.getMinX(), old.getMinX()), maxX = Math.min(next.getMaxX(), old.getMaxX());
+        if (next.getMinY() < old.getMinY()) {
+            forEachMeeting.accept(rectOf(minX, next.getMinY(), maxX, old.getMinY() + 1), enterIfNew);
+        }
+        if (next.getMaxY() > old.getMaxY()) {
+            forEachMeeting.accept(rectOf(minX, old.getMaxY() - 1, maxX, next.getMaxY()), enterIfNew);
+        }
+    }
+
+    private static ImmutableRectInt rectOf(int minX, int minY, int maxX, int maxY) {
+        return new ImmutableRectInt(minX, minY, Math.max(0, maxX - minX), Math.max(0, maxY - minY));
+    }
+
+    /**
+     * Makes the current list available to {@link #published()}. The list is re-sorted if the order of any of its
+     * values has changed, and copied only if it has changed since it was last published.
+     */
+    public void publish() {
+        for (int i = 1, n = visible.size(); i < n; i++) {
+            if (visible.get(i - 1).compareTo(visible.get(i)) > 0) {
+                Collections.sort(visible);
+                changedSincePublished = true;
+                break;
+            }
+        }
+        if (changedSincePublished) {
+            published = List.copyOf(visible);
+            changedSincePublished = false;
+        }
+    }
+
+    /**
+     * @return the sorted list of values as of the last call to {@link #publish()}. The list is unmodifiable.
+     */
+    @NotNull
+    public List<T> published() {
+        return published;
+    }
+}
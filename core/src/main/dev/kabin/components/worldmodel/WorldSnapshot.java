@@ -0,0 +1,26 @@
+package dev.kabin.components.worldmodel;
+
+import dev.kabin.util.cell.IndivisibleCell;
+
+import java.util.List;
+
+/**
+ * The results of a background pass over the world, as published to the render thread. A snapshot is never modified
+ * once published; the next pass publishes a new one.
+ *
+ * @param epoch                        the number of the pass that published this snapshot, counting from one.
+ * @param entitiesInCameraNeighborhood the sorted, unmodifiable list of entities in the camera neighborhood.
+ * @param activeCells                  the unmodifiable list of indivisible cells that are active.
+ * @param <EntityType>                 the type of the entities.
+ */
+public record WorldSnapshot<EntityType>(long epoch,
+                                        List<EntityType> entitiesInCameraNeighborhood,
+                                        List<IndivisibleCell> activeCells) {
+
+    /**
+     * @return the snapshot of a world before its first pass.
+     */
+    public static <EntityType> WorldSnapshot<EntityType> empty() {
+        return new WorldSnapshot<>(0, List.of(), List.of());
+    }
+}
@@ -58,6 +58,29 @@ public interface Entity<
      */
     void updatePhysics(PhysicsParameters params);
 
+    /**
+     * Stores the current position as the position before the next physics frame, so that graphics can be drawn
+     * between the two. Called right before each physics frame.
+     */
+    default void storePreviousPosition() {
+    }
+
+    /**
+     * @return whatever the graphics of this entity depend on besides its position, as set by its physics, packed into
+     * an int. Published after each tick of a simulation on a thread of its own, for the graphics to read in place of
+     * the fields the physics writes.
+     */
+    default int publishedState() {
+        return 0;
+    }
+
+    /**
+     * Brings the {@link #graphicsNbd() graphics} and {@link #positionNbd() position} neighborhoods of this entity up
+     * to date with its position. Done each time the graphics are updated; to be called otherwise when they are not.
+     */
+    default void updateNeighborhood() {
+    }
+
     /**
      * A default comparing procedure for a pair of entities.
      * This is implemented as the dictionary order on:
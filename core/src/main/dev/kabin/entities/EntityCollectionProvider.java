@@ -1,6 +1,7 @@
 package dev.kabin.entities;
 
 
+import dev.kabin.util.collections.IdMap;
 import dev.kabin.util.lambdas.BiFunction;
 import dev.kabin.util.lambdas.Function;
 
@@ -24,6 +25,7 @@ public class EntityCollectionProvider<T extends Enum<T> & Layer, E extends Entit
     private final T[] typesOrdered;
     private final Map<T, List<E>> collectionMap;
     private final Class<T> groupTypeClass;
+    private final IdMap<E> entitiesById = new IdMap<>();
 
 
     public EntityCollectionProvider(Class<T> groupTypeClass) {
@@ -44,10 +46,20 @@ public class EntityCollectionProvider<T extends Enum<T> & Layer, E extends Entit
 
     public void registerEntity(E e) {
         collectionMap.get(e.getGroupType()).add(e);
+        entitiesById.put(e.getId(), e);
     }
 
     public boolean unregisterEntity(E e) {
-        return collectionMap.get(e.getGroupType()).remove(e);
+        final boolean removed = collectionMap.get(e.getGroupType()).remove(e);
+        if (removed) entitiesById.remove(e.getId());
+        return removed;
+    }
+
+    /**
+     * @return the registered entity with the given {@link Entity#getId() id}, or null if there is none.
+     */
+    public E getEntity(int id) {
+        return entitiesById.get(id);
     }
 
     public void actionForEachEntityOfClass(T entityGroup, Consumer<E> action) {
@@ -1,5 +1,8 @@
 package dev.kabin.entities;
 
+import dev.kabin.physics.TickInterpolation;
+import org.jetbrains.annotations.Nullable;
+
 /**
  * Parameters used for rendering.
  */
@@ -17,4 +20,21 @@ public interface GraphicsParameters {
 
     float scale();
 
+    /**
+     * @return how far, in [0, 1], to draw entities from their position before the last physics frame to their
+     * current position.
+     */
+    default float interpolationAlpha() {
+        return 1f;
+    }
+
+    /**
+     * @return the positions published by a dedicated simulation thread, at which to draw the entities it holds, or
+     * null if physics is not simulated on a thread of its own.
+     */
+    @Nullable
+    default TickInterpolation tickInterpolation() {
+        return null;
+    }
+
 }
@@ -1,5 +1,6 @@
 package dev.kabin.entities;
 
+import dev.kabin.util.cell.CellSample;
 import dev.kabin.util.eventhandlers.KeyCode;
 
 /**
@@ -31,6 +32,102 @@ public interface PhysicsParameters {
         else return (isCollisionAt(x, y));
     }
 
+    /**
+     * Collision, ladder and vector field data at a single point, in one look-up.
+     *
+     * @param x   horizontal coordinate. Positive points right relative to the screen.
+     * @param y   vertical coordinate. Positive points upwards the screen.
+     * @param out the sample to fill in.
+     * @return the given sample.
+     */
+    default CellSample sample(int x, int y, CellSample out) {
+        return out.set(isCollisionAt(x, y) ? 1 : 0, isLadderAt(x, y) ? 1 : 0, getVectorFieldX(x, y), getVectorFieldY(x, y));
+    }
+
+    /**
+     * A collision check of the vertical segment {x} x [yFrom, yTo).
+     *
+     * @param x     horizontal coordinate. Positive points right relative to the screen.
+     * @param yFrom the least vertical coordinate to check.
+     * @param yTo   the vertical coordinate to stop before.
+     * @return the least y in [yFrom, yTo) with collision, or {@code yTo} if there is none.
+     */
+    default int firstCollisionInColumn(int x, int yFrom, int yTo) {
+        for (int y = yFrom; y < yTo; y++) {
+            if (isCollisionAt(x, y)) return y;
+        }
+        return yTo;
+    }
+
+    /**
+     * Same as {@link #firstCollisionInColumn(int, int, int)}, but using {@link #isCollisionIfNotLadderData(int, int)}.
+     */
+    default int firstCollisionIfNotLadderDataInColumn(int x, int yFrom, int yTo) {
+        for (int y = yFrom; y < yTo; y++) {
+            if (isCollisionIfNotLadderData(x, y)) return y;
+        }
+        return yTo;
+    }
+
+    /**
+     * @param limit the greatest number to return.
+     * @return the number of consecutive points with collision from (x,y) upwards, at most {@code limit}.
+     */
+    default int collisionRunAbove(int x, int y, int limit) {
+        int run = 0;
+        while (run < limit && isCollisionAt(x, y + run)) run++;
+        return run;
+    }
+
+    /**
+     * @param limit the greatest number to return.
+     * @return the number of consecutive points without collision from (x,y) downwards, at most {@code limit}.
+     */
+    default int freeRunBelow(int x, int y, int limit) {
+        int run = 0;
+        while (run < limit && !isCollisionAt(x, y - run)) run++;
+        return run;
+    }
+
+    /**
+     * The height of the ground surface in column x, relative to y. The ground surface is the lowest point without
+     * collision above the nearest collision at or below (x,y).
+     *
+     * @param limit the greatest magnitude to return.
+     * @return the number of points (x,y) needs to be lifted to reach the ground surface, or minus the number of points
+     * it needs to drop, at most {@code limit} in magnitude.
+     */
+    default int groundHeight(int x, int y, int limit) {
+        final int lift = collisionRunAbove(x, y, limit);
+        if (lift > 0) return lift;
+        return 1 - freeRunBelow(x, y, limit + 1);
+    }
+
+    /**
+     * A collision check of the horizontal segment [xFrom, xTo) x {y}.
+     *
+     * @return true iff any point of the segment has collision.
+     */
+    default boolean anyCollisionInRow(int y, int xFrom, int xTo) {
+        for (int x = xFrom; x < xTo; x++) {
+            if (isCollisionAt(x, y)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of points of [xFrom, xTo) x [yFrom, yTo) with collision.
+     */
+    default int countCollisionsInRect(int xFrom, int yFrom, int xTo, int yTo) {
+        int count = 0;
+        for (int x = xFrom; x < xTo; x++) {
+            for (int y = yFrom; y < yTo; y++) {
+                if (isCollisionAt(x, y)) count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * Horizontal vector field.
      *
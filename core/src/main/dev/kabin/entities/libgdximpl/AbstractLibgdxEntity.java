@@ -5,6 +5,7 @@ import dev.kabin.entities.PhysicsParameters;
 import dev.kabin.entities.libgdximpl.animation.AbstractAnimationPlaybackLibgdx;
 import dev.kabin.entities.libgdximpl.animation.AnimationBundleFactory;
 import dev.kabin.entities.libgdximpl.animation.imageanalysis.ImageMetadataLibgdx;
+import dev.kabin.physics.TickInterpolation;
 import dev.kabin.shaders.AnchoredLightSourceData;
 import dev.kabin.util.NamedObj;
 import dev.kabin.util.collections.LazyList;
@@ -40,6 +41,8 @@ abstract class AbstractLibgdxEntity implements EntityLibgdx {
     private final List<NamedObj<AnchoredLightSourceData>> namedLightSourceDataList;
     private final LazyList<AnchoredLightSourceData> lightSourceDataList;
     private float x, y, scale;
+    // The position before the last physics frame.
+    private float previousX, previousY;
     // Class variables:
     private int layer;
 
@@ -59,6 +62,7 @@ abstract class AbstractLibgdxEntity implements EntityLibgdx {
             animationPlaybackImpl.setSmoothParameter(0.5f);
         }
         setPos(parameters.x(), parameters.y());
+        storePreviousPosition();
         {
             positionNbd = MutableRectInt.centeredAt((int) getPixelMassCenterX(), (int) getPixelMassCenterY(), getPixelWidth(), getPixelHeight());
             graphicsNbd = MutableRectInt.centeredAt((int) getPixelMassCenterX(), (int) getPixelMassCenterY(), getPixelWidth(), getPixelHeight());
@@ -135,8 +139,18 @@ abstract class AbstractLibgdxEntity implements EntityLibgdx {
     public void updateGraphics(GraphicsParametersLibgdx params) {
         setScale(params.scale());
 
-        final float graphicsRootX = getRootX();
-        final float graphicsRootY = getRootY();
+        final float graphicsRootX, graphicsRootY;
+        final TickInterpolation ticks = params.tickInterpolation();
+        if (ticks != null && ticks.contains(id)) {
+            // Draw at the position published by the simulation thread, which may be moving this entity meanwhile.
+            graphicsRootX = ticks.x(id) - getAvgMassCenterX() * getScale();
+            graphicsRootY = ticks.y(id) - (getAvgLowestPixel() - 2) * getScale();
+        } else {
+            // Draw between the position before the last physics frame and the current one.
+            final float lag = 1f - params.interpolationAlpha();
+            graphicsRootX = getRootX() - lag * (getX() - previousX);
+            graphicsRootY = getRootY() - lag * (getY() - previousY);
+        }
 
 
         animationPlaybackImpl.setPos(graphicsRootX, graphicsRootY);
@@ -163,7 +177,8 @@ abstract class AbstractLibgdxEntity implements EntityLibgdx {
         updateNeighborhood();
     }
 
-    private void updateNeighborhood() {
+    @Override
+    public void updateNeighborhood() {
         graphicsNbd.translate(
                 Math.round((getLeftmostPixel() + getX()) / getScale() - graphicsNbd.getCenterX()),
                 Math.round((getHighestPixelFromBelow() + getY()) / getScale() - graphicsNbd.getCenterY())
@@ -180,6 +195,12 @@ abstract class AbstractLibgdxEntity implements EntityLibgdx {
 
     }
 
+    @Override
+    public void storePreviousPosition() {
+        previousX = x;
+        previousY = y;
+    }
+
     @Override
     public int getLayer() {
         return layer;
@@ -5,13 +5,13 @@ import dev.kabin.entities.PhysicsParameters;
 import dev.kabin.entities.libgdximpl.animation.AbstractAnimationPlaybackLibgdx;
 import dev.kabin.entities.libgdximpl.animation.enums.Animate;
 import dev.kabin.physics.PhysicsEngine;
+import dev.kabin.physics.TickInterpolation;
 import dev.kabin.util.Direction;
 import dev.kabin.util.Functions;
 import dev.kabin.util.Statistics;
 import dev.kabin.util.TangentFinder;
+import dev.kabin.util.cell.CellSample;
 import dev.kabin.util.eventhandlers.KeyCode;
-import dev.kabin.util.lambdas.BiIntPredicate;
-import dev.kabin.util.lambdas.BiIntToFloatFunction;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
@@ -34,6 +34,18 @@ public class Player extends EntitySimple {
     private static final float JUMP_VEL_METERS_PER_SECONDS = 5f;
     private static final float RUN_SPEED_PER_SECONDS = 8f;
     private static final float WALK_SPEED_PER_SECONDS = 3f;
+    // Bits of the published state, above which is the number of jumps taken.
+    private static final int
+            AIRBORNE = 1,
+            ON_LADDER = 1 << 1,
+            MOVING_RIGHT = 1 << 2,
+            MOVING_LEFT = 1 << 3,
+            MOVING_UP = 1 << 4,
+            MOVING_DOWN = 1 << 5,
+            RUNNING = 1 << 6,
+            RIGHT_PRESSED = 1 << 7,
+            LEFT_PRESSED = 1 << 8,
+            JUMPS_SHIFT = 9;
 
     // Static variables:
     private static Player instance;
@@ -51,12 +63,16 @@ public class Player extends EntitySimple {
     private float dx, dy;
     private int r, l, u, d;
     private int jump;
+    private int jumps;
+    // The number of jumps of which the animation was restarted, by the graphics.
+    private int jumpsDrawn;
     private float jumpCooldown = Float.MAX_VALUE / 2f;
     private float vAbsPerSecond;
     private boolean facingRight;
     private boolean onLadder;
     private boolean running;
     private int debugCounter;
+    private final CellSample cellSample = new CellSample();
 
     Player(EntityParameters parameters) {
         super(parameters);
@@ -77,18 +93,20 @@ public class Player extends EntitySimple {
      * Acts on an entity with the present vector field and returns the vector of the action.
      *
      * @param entity the entity to be acted on.
+     * @param sample re-used for the look-ups of the vector field.
      * @return the point representing the vector (vx,vy) which acted on the entity.
      */
     public static boolean action(@NotNull Entity<?, ?, ?> entity,
-                                 BiIntToFloatFunction vectorFieldX,
-                                 BiIntToFloatFunction vectorFieldY,
+                                 @NotNull PhysicsParameters params,
+                                 @NotNull CellSample sample,
                                  float dt) {
         final int x = entity.getUnscaledX();
         final int y = entity.getUnscaledY();
         for (int i = 0; i < 4; i++) {
+            params.sample(x, y + i, sample);
             final float
-                    vx = vectorFieldX.eval(x, y + i),
-                    vy = vectorFieldY.eval(x, y + i);
+                    vx = sample.vectorFieldX(),
+                    vy = sample.vectorFieldY();
             if (vx != 0 || vy != 0) {
                 entity.setPos(entity.getX() + vx * dt, entity.getY() + vy * dt);
                 return true;
@@ -101,15 +119,15 @@ public class Player extends EntitySimple {
      * Method for finding the displacement dy such that
      * y - dy corresponds to the first point where the given entity is placed
      * strictly above the ground/collision surface.
+     * <p>
+     * Lifts beyond {@code maxLift} are not searched for, since the caller caps the displacement anyway.
      */
     private static float findLiftAboveGround(int x,
                                              int y,
                                              float scale,
-                                             @NotNull BiIntPredicate collisionPredicate) {
-
-        int j = 0;
-        while (collisionPredicate.test(x, y + j)) j++;
-        return scale * j;
+                                             float maxLift,
+                                             @NotNull PhysicsParameters params) {
+        return scale * params.collisionRunAbove(x, y, (int) Math.ceil(maxLift / scale));
     }
 
     public void setHandleInput(boolean b) {
@@ -146,30 +164,79 @@ public class Player extends EntitySimple {
     public void throwHeldEntity() {
     }
 
+    /**
+     * @param state a state as by {@link #publishedState()}.
+     * @return the sign of the horizontal velocity of the player of the given state.
+     */
+    public static int horizontalDirection(int state) {
+        return (state & MOVING_RIGHT) != 0 ? 1 : (state & MOVING_LEFT) != 0 ? -1 : 0;
+    }
+
+    /**
+     * @param state a state as by {@link #publishedState()}.
+     * @return the sign of the vertical velocity of the player of the given state.
+     */
+    public static int verticalDirection(int state) {
+        return (state & MOVING_UP) != 0 ? 1 : (state & MOVING_DOWN) != 0 ? -1 : 0;
+    }
+
+    /**
+     * @return the state of the player which its animation and the camera follow depend on.
+     */
+    @Override
+    public int publishedState() {
+        int state = jumps << JUMPS_SHIFT;
+        if (inAir || jumpCooldown < 0.5) state |= AIRBORNE;
+        if (onLadder) state |= ON_LADDER;
+        if (dx > 0) state |= MOVING_RIGHT;
+        else if (dx < 0) state |= MOVING_LEFT;
+        if (dy > 0) state |= MOVING_UP;
+        else if (dy < 0) state |= MOVING_DOWN;
+        if (running) state |= RUNNING;
+        if (r == 1) state |= RIGHT_PRESSED;
+        if (l == 1) state |= LEFT_PRESSED;
+        return state;
+    }
+
     @Override
     public void updateGraphics(GraphicsParametersLibgdx params) {
         final AbstractAnimationPlaybackLibgdx<Animate> animationPlaybackImpl = getAnimationPlaybackImpl(Animate.class);
         if (animationPlaybackImpl == null) return;
 
-        facingRight = (r == l) ? facingRight : (r == 1 && l == 0);
+        // The state as of the last published tick, if physics is simulated on a thread of its own.
+        final TickInterpolation ticks = params.tickInterpolation();
+        final int state = (ticks != null && ticks.contains(getId())) ? ticks.state(getId()) : publishedState();
+
+        // A jump starts its animation over.
+        final int jumpsTaken = state >>> JUMPS_SHIFT;
+        if (jumpsTaken != jumpsDrawn) {
+            jumpsDrawn = jumpsTaken;
+            animationPlaybackImpl.toDefaultFromCurrent();
+        }
+
+        final boolean rightPressed = (state & RIGHT_PRESSED) != 0, leftPressed = (state & LEFT_PRESSED) != 0;
+        facingRight = (rightPressed == leftPressed) ? facingRight : rightPressed;
+        final int direction = horizontalDirection(state);
+        final boolean moving = direction != 0 || verticalDirection(state) != 0;
+        final boolean runs = (state & RUNNING) != 0;
 
         debugCounter++;
 
         // If in air
-        if (inAir || jumpCooldown < 0.5) {
+        if ((state & AIRBORNE) != 0) {
             if (facingRight) animationPlaybackImpl.setCurrentAnimation(Animate.JUMP_RIGHT);
             else animationPlaybackImpl.setCurrentAnimation(Animate.JUMP_LEFT);
             // If not in air
         } else {
 
-            if (onLadder) {
+            if ((state & ON_LADDER) != 0) {
 
-                if (dx != 0 || dy != 0) animationPlaybackImpl.setCurrentAnimation(Animate.CLIMB);
+                if (moving) animationPlaybackImpl.setCurrentAnimation(Animate.CLIMB);
                 else return;
 
             } else {
                 // If standing still
-                if (dx == 0 && dy == 0) {
+                if (!moving) {
                     if (facingRight && !STANDARD_RIGHT_LIST.contains(animationPlaybackImpl.getCurrentAnimation())) {
                         Animate randomPick = Statistics.drawUniform(STANDARD_RIGHT_LIST, 0.005);
                         animationPlaybackImpl.setCurrentAnimation(Objects.requireNonNullElse(randomPick, Animate.DEFAULT_RIGHT));
@@ -180,12 +247,12 @@ public class Player extends EntitySimple {
                 }
 
                 // If walking
-                if (dx > 0) {
-                    animationPlaybackImpl.setCurrentAnimation(running ? Animate.RUN_RIGHT : Animate.WALK_RIGHT);
+                if (direction > 0) {
+                    animationPlaybackImpl.setCurrentAnimation(runs ? Animate.RUN_RIGHT : Animate.WALK_RIGHT);
                 }
 
-                if (dx < 0) {
-                    animationPlaybackImpl.setCurrentAnimation(running ? Animate.RUN_LEFT : Animate.WALK_LEFT);
+                if (direction < 0) {
+                    animationPlaybackImpl.setCurrentAnimation(runs ? Animate.RUN_LEFT : Animate.WALK_LEFT);
                 }
             }
         }
@@ -221,10 +288,11 @@ public class Player extends EntitySimple {
         // Get initial conditions.
         final int xPrevUnscaled = getUnscaledX();
         final int yPrevUnscaled = getUnscaledY();
-        final boolean affectedByVectorField = action(this, params::getVectorFieldX, params::getVectorFieldY, params.dt());
+        final boolean ladderAtStart = params.sample(xPrevUnscaled, yPrevUnscaled, cellSample).isLadder();
+        final boolean affectedByVectorField = action(this, params, cellSample, params.dt());
 
         // Ladder movement
-        if (params.isLadderAt(xPrevUnscaled, yPrevUnscaled)) {
+        if (ladderAtStart) {
             jumpFrame = 0;
             vx0 = 0f;
             vy0 = 0f;
@@ -256,13 +324,13 @@ public class Player extends EntitySimple {
                 if (!inAir && jumpCooldown > jumpCooldownThreshold) {
                     jumpCooldown = 0;
                     jumpFrame = 0; // start jump frame
-                    Optional.ofNullable(getAnimationPlaybackImpl()).ifPresent(AbstractAnimationPlaybackLibgdx::toDefaultFromCurrent);
+                    jumps++;
                     if (affectedByVectorField) {
                         int i = 0;
-                        while (params.getVectorFieldX(xPrevUnscaled, yPrevUnscaled - i) == 0 && i < 8)
+                        while (params.sample(xPrevUnscaled, yPrevUnscaled - i, cellSample).vectorFieldX() == 0 && i < 8)
                             i++;
-                        vx0 = params.getVectorFieldX(xPrevUnscaled, yPrevUnscaled - i);
-                        vy0 = JUMP_VEL_METERS_PER_SECONDS * params.meter() + params.getVectorFieldY(xPrevUnscaled, yPrevUnscaled - i);
+                        vx0 = cellSample.vectorFieldX();
+                        vy0 = JUMP_VEL_METERS_PER_SECONDS * params.meter() + cellSample.vectorFieldY();
                     } else {
                         vy0 = JUMP_VEL_METERS_PER_SECONDS * params.meter();
                     }
@@ -282,7 +350,8 @@ public class Player extends EntitySimple {
 
         final boolean collisionWithFloor = (dy < 0 && params.isCollisionIfNotLadderData(xPrevUnscaled, yNewUnscaled));
         if (collisionWithFloor) {
-            dy = Math.min(findLiftAboveGround(getUnscaledX(), getUnscaledY(), getScale(), params::isCollisionAt), vAbsPerSecond * params.meter() * params.dt());
+            final float maxLift = vAbsPerSecond * params.meter() * params.dt();
+            dy = Math.min(findLiftAboveGround(getUnscaledX(), getUnscaledY(), getScale(), maxLift, params), maxLift);
             vy0 = 0;
             vx0 = 0;
             jumpFrame = 0;
@@ -305,38 +374,29 @@ public class Player extends EntitySimple {
              * The numbers are found by experimentation.
              */
             {
-                boolean foundCollision = false;
-                for (int i = -8, len = (jumpFrame < 8) ? 8 : -8; i < len; i++) {
-                    if (params.isCollisionIfNotLadderData(xNewUnscaled, yNewUnscaled - i)) {
-                        foundCollision = true;
-                        break;
-                    }
-                }
-                hasFooting = foundCollision;
+                // Checks yNewUnscaled - i for -8 <= i < len.
+                final int len = (jumpFrame < 8) ? 8 : -8;
+                final int yFrom = yNewUnscaled - len + 1, yTo = yNewUnscaled + 9;
+                hasFooting = params.firstCollisionIfNotLadderDataInColumn(xNewUnscaled, yFrom, yTo) < yTo;
             }
 
             final boolean pathIsObstructed;
             {
-
-                boolean foundCollision = false;
-                for (int i = 4, len = getPixelHeight(); i < len; i++) {
-                    if (params.isCollisionIfNotLadderData(xNewUnscaled, yNewUnscaled + i)) {
-                        foundCollision = true;
-                        break;
-                    }
-                }
-                pathIsObstructed = foundCollision;
+                // Checks yNewUnscaled + i for 4 <= i < getPixelHeight().
+                final int yFrom = yNewUnscaled + 4, yTo = yNewUnscaled + getPixelHeight();
+                pathIsObstructed = params.firstCollisionIfNotLadderDataInColumn(xNewUnscaled, yFrom, yTo) < yTo;
             }
             if (pathIsObstructed) {
                 dx = 0;
             } else if (hasFooting) {
 
                 // If the path in the given direction is obstructed:
-                final double angle = TangentFinder.slope(
-                        xPrevUnscaled,
-                        yPrevUnscaled,
-                        Direction.valueOf(dx),
-                        params::isCollisionAt);
+                // Two reads of the ground heights, which the world keeps derived from the collision data.
+                final Direction direction = Direction.valueOf(dx);
+                final double angle = TangentFinder.slopeOfGround(
+                        direction,
+                        params.groundHeight(xPrevUnscaled, yPrevUnscaled, TangentFinder.BEAM_LENGTH),
+                        params.groundHeight(xPrevUnscaled + direction.toInt() * TangentFinder.BEAM_LENGTH, yPrevUnscaled, TangentFinder.BEAM_LENGTH));
 
                 dy = (float) (vAbsPerSecond * params.meter() * Math.sin(Math.toRadians(angle)) * params.dt());
                 dx = (float) (vAbsPerSecond * params.meter() * Math.cos(Math.toRadians(angle)) * params.dt());
@@ -0,0 +1,68 @@
+package dev.kabin.physics;
+
+/**
+ * Divides the time elapsed between frames into steps of a fixed length. Time which does not make up a whole step is
+ * carried over to the next frame, so that simulated time keeps up with elapsed time.
+ * <p>
+ * At most a given number of steps is taken per frame. Whole steps beyond that are dropped, so that a frame which
+ * takes long does not lead to ever more steps in the next one.
+ */
+public final class FixedTimestep {
+
+    private final double dt;
+    private final int maxStepsPerFrame;
+    private double accumulator = 0;
+    private long steps = 0;
+    private long droppedSteps = 0;
+
+    /**
+     * @param dt               the length of a step, in seconds.
+     * @param maxStepsPerFrame the largest number of steps to take per frame.
+     */
+    public FixedTimestep(float dt, int maxStepsPerFrame) {
+        if (dt <= 0 || maxStepsPerFrame <= 0) {
+            throw new IllegalArgumentException("Received invalid parameters: " + dt + ", " + maxStepsPerFrame);
+        }
+        this.dt = dt;
+        this.maxStepsPerFrame = maxStepsPerFrame;
+    }
+
+    /**
+     * Adds the given elapsed time.
+     *
+     * @return the number of steps to take.
+     */
+    public int advance(float elapsedSeconds) {
+        if (elapsedSeconds > 0) accumulator += elapsedSeconds;
+        final long due = (long) Math.floor(accumulator / dt);
+        final int taken = (int) Math.min(due, maxStepsPerFrame);
+        accumulator -= due * dt;
+        // Rounding must not leave a negative remainder, nor a whole step.
+        accumulator = Math.min(Math.max(accumulator, 0), Math.nextDown(dt));
+        steps += taken;
+        droppedSteps += due - taken;
+        return taken;
+    }
+
+    /**
+     * @return the fraction of a step carried over to the next frame, in [0, 1). State drawn this frame may be
+     * blended this far from the state before the last step to the state after it.
+     */
+    public float alpha() {
+        return (float) (accumulator / dt);
+    }
+
+    /**
+     * @return the number of steps taken.
+     */
+    public long steps() {
+        return steps;
+    }
+
+    /**
+     * @return the number of steps dropped because of the limit on steps per frame.
+     */
+    public long droppedSteps() {
+        return droppedSteps;
+    }
+}
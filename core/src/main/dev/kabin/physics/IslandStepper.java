@@ -0,0 +1,151 @@
+package dev.kabin.physics;
+
+import dev.kabin.util.shapes.primitive.RectInt;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Updates values in parallel, island by island. The world is divided into columns of a fixed width, and two values
+ * belong to the same island if the columns met by their bounds, each widened by a margin, share a column, directly or
+ * through values in between. Values of the same island are updated one after the other in the given order, and
+ * islands are updated in parallel.
+ * <p>
+ * If an update only changes the value it is given, and only reads what lies within the margin of the bounds of the
+ * value, among the columns of the world, then values of different islands neither change nor read what the other
+ * changes, and the result is the same as that of updating every value one after the other in the given order.
+ * Anything else an update would change, such as shared indices, is left to the caller to commit after the step.
+ * <p>
+ * Not safe for use from several threads.
+ *
+ * @param <T> the type of the values.
+ */
+public final class IslandStepper<T> {
+
+    private final int columnWidth;
+    private final int margin;
+    private final ForkJoinPool pool;
+    private final ArrayList<T> values = new ArrayList<>();
+    // By island: the start of its range of members, which are indices into values, in increasing order per island.
+    private int[] islandStarts = new int[16];
+    private int[] members = new int[16];
+    // Keys (firstColumn << 32 | index) sorted to find the islands, and the last column of each value.
+    private long[] keys = new long[16];
+    private int[] lastColumns = new int[16];
+    private int islandCount = 0;
+
+    /**
+     * @param columnWidth the width of the columns of the world.
+     * @param margin      how far beyond the bounds of a value an update may read.
+     * @param pool        the pool on which to update islands.
+     */
+    public IslandStepper(int columnWidth, int margin, @NotNull ForkJoinPool pool) {
+        if (columnWidth <= 0 || margin < 0) {
+            throw new IllegalArgumentException("Received invalid parameters: " + columnWidth + ", " + margin);
+        }
+        this.columnWidth = columnWidth;
+        this.margin = margin;
+        this.pool = pool;
+    }
+
+    /**
+     * Performs the given update on each value the given action is performed on, island by island.
+     *
+     * @param forEachValue performs an action on each value to update, in the order in which to update them.
+     * @param bounds       the bounds of a value.
+     * @param update       the update.
+     */
+    public void step(@NotNull Consumer<Consumer<T>> forEachValue,
+                     @NotNull Function<T, RectInt> bounds,
+                     @NotNull Consumer<T> update) {
+        values.clear();
+        forEachValue.accept(values::add);
+        findIslands(bounds);
+        if (islandCount < 2) {
+            //noinspection ForLoopReplaceableByForEach
+            for (int i = 0, n = values.size(); i < n; i++) update.accept(values.get(i));
+        } else {
+            // Returns once every island is updated.
+            pool.invoke(new UpdateAction(update, 0, islandCount));
+        }
+        values.clear();
+    }
+
+    /**
+     * @return the number of islands found by the last step.
+     */
+    public int islandCount() {
+        return islandCount;
+    }
+
+    private void findIslands(Function<T, RectInt> bounds) {
+        final int n = values.size();
+        if (keys.length < n) {
+            keys = new long[Math.max(n, 2 * keys.length)];
+            lastColumns = new int[keys.length];
+            members = new int[keys.length];
+            islandStarts = new int[keys.length + 1];
+        }
+        for (int i = 0; i < n; i++) {
+            final RectInt rect = bounds.apply(values.get(i));
+            final int firstColumn = Math.floorDiv(rect.getMinX() - margin, columnWidth);
+            lastColumns[i] = Math.floorDiv(rect.getMaxX() + margin, columnWidth);
+            keys[i] = ((long) firstColumn << 32) | i;
+        }
+        Arrays.sort(keys, 0, n);
+
+        // Sweep the values by their first column, starting a new island past the last column of the current one.
+        islandCount = 0;
+        int islandLastColumn = Integer.MIN_VALUE;
+        for (int k = 0; k < n; k++) {
+            final int firstColumn = (int) (keys[k] >> 32), index = (int) keys[k];
+            if (k == 0 || firstColumn > islandLastColumn) {
+                islandStarts[islandCount++] = k;
+                islandLastColumn = lastColumns[index];
+            } else {
+                islandLastColumn = Math.max(islandLastColumn, lastColumns[index]);
+            }
+            members[k] = index;
+        }
+        islandStarts[islandCount] = n;
+        // Within an island, update in the given order.
+        for (int island = 0; island < islandCount; island++) {
+            Arrays.sort(members, islandStarts[island], islandStarts[island + 1]);
+        }
+    }
+
+    /**
+     * Updates a range of islands, splitting it in halves to be updated in parallel down to single islands.
+     */
+    private final class UpdateAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Consumer<T> update;
+        private final int from;
+        private final int to;
+
+        private UpdateAction(Consumer<T> update, int from, int to) {
+            this.update = update;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                for (int k = islandStarts[from], end = islandStarts[from + 1]; k < end; k++) {
+                    update.accept(values.get(members[k]));
+                }
+                return;
+            }
+            final int mid = (from + to) >>> 1;
+            invokeAll(new UpdateAction(update, from, mid), new UpdateAction(update, mid, to));
+        }
+    }
+}
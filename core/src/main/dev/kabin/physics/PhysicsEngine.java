@@ -1,9 +1,13 @@
 package dev.kabin.physics;
 
+import dev.kabin.components.WorldRepresentation;
 import dev.kabin.entities.PhysicsParameters;
 import dev.kabin.entities.libgdximpl.EntityLibgdx;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
+import java.util.function.LongFunction;
 
 /**
  * In order to make rendering deterministic,
@@ -15,23 +19,114 @@ public class PhysicsEngine {
 	public static final float DT = 1 / 120f;
 	public static final float GRAVITATION_CONSTANT = 9.81f;
 
-	private static int findNumberOfFramesToRender(float timeElapsedSinceLastFrame) {
-		int frames = 1;
-		while (frames * DT < timeElapsedSinceLastFrame) {
-			frames++;
-		}
-		return frames - 1;
+	/**
+	 * The largest number of frames rendered per call to
+	 * {@link #renderOutstandingFrames(FixedTimestep, float, PhysicsParameters, Consumer)}.
+	 */
+	public static final int MAX_FRAMES_PER_CALL = 8;
+
+	/**
+	 * How far beyond its position neighborhood an entity may read the world during a frame. This covers the beams of
+	 * the ground slope, and the distance moved by an entity since its neighborhood was last updated.
+	 */
+	public static final int ISLAND_MARGIN = 64;
+
+	/**
+	 * @return a time step of {@link #DT} which takes at most {@link #MAX_FRAMES_PER_CALL} steps per frame.
+	 */
+	public static FixedTimestep newTimestep() {
+		return new FixedTimestep(DT, MAX_FRAMES_PER_CALL);
 	}
 
-	public static void renderOutstandingFrames(float timeElapsedSinceLastFrame, PhysicsParameters params, Consumer<Consumer<EntityLibgdx>> forEachEntity) {
-		int numberOfFramesToRender = findNumberOfFramesToRender(timeElapsedSinceLastFrame);
+	/**
+	 * Renders as many frames as the given time step has accumulated, including the time elapsed since the last frame.
+	 */
+	public static void renderOutstandingFrames(FixedTimestep timestep, float timeElapsedSinceLastFrame, PhysicsParameters params,
+											   Consumer<Consumer<EntityLibgdx>> forEachEntity) {
+		int numberOfFramesToRender = timestep.advance(timeElapsedSinceLastFrame);
 		for (int i = 0; i < numberOfFramesToRender; i++) {
 			renderExactlyOneFrame(params, forEachEntity);
 		}
 	}
 
 	public static void renderExactlyOneFrame(PhysicsParameters params, Consumer<Consumer<EntityLibgdx>> forEachEntity) {
-		forEachEntity.accept(e -> e.updatePhysics(params));
+		forEachEntity.accept(e -> {
+			e.storePreviousPosition();
+			e.updatePhysics(params);
+		});
+	}
+
+	/**
+	 * Renders frames as {@link #renderOutstandingFrames(FixedTimestep, float, PhysicsParameters, Consumer)}, and steps
+	 * the given broadphase with the position neighborhoods of the entities after each frame.
+	 *
+	 * @param islands if not null, the entities are updated in parallel by these islands.
+	 */
+	public static void renderOutstandingFrames(FixedTimestep timestep, float timeElapsedSinceLastFrame, PhysicsParameters params,
+											   Consumer<Consumer<EntityLibgdx>> forEachEntity, SweepAndPrune<EntityLibgdx> contacts,
+											   @Nullable IslandStepper<EntityLibgdx> islands) {
+		int numberOfFramesToRender = timestep.advance(timeElapsedSinceLastFrame);
+		for (int i = 0; i < numberOfFramesToRender; i++) {
+			if (islands == null) renderExactlyOneFrame(params, forEachEntity, contacts);
+			else renderExactlyOneFrame(params, forEachEntity, contacts, islands);
+		}
+	}
+
+	public static void renderExactlyOneFrame(PhysicsParameters params, Consumer<Consumer<EntityLibgdx>> forEachEntity,
+											 SweepAndPrune<EntityLibgdx> contacts) {
+		forEachEntity.accept(e -> {
+			e.storePreviousPosition();
+			e.updatePhysics(params);
+			contacts.put(e, e.positionNbd());
+		});
+		contacts.step();
+	}
+
+	/**
+	 * Renders one frame as {@link #renderExactlyOneFrame(PhysicsParameters, Consumer, SweepAndPrune)}, updating the
+	 * entities in parallel by the given islands. The broadphase is stepped after all entities are updated, in the
+	 * order of the entities, so that the result is the same as that of the sequential frame.
+	 */
+	public static void renderExactlyOneFrame(PhysicsParameters params, Consumer<Consumer<EntityLibgdx>> forEachEntity,
+											 SweepAndPrune<EntityLibgdx> contacts, IslandStepper<EntityLibgdx> islands) {
+		islands.step(forEachEntity, EntityLibgdx::positionNbd, e -> {
+			e.storePreviousPosition();
+			e.updatePhysics(params);
+		});
+		forEachEntity.accept(e -> contacts.put(e, e.positionNbd()));
+		contacts.step();
+	}
+
+	/**
+	 * Renders one frame as {@link #renderExactlyOneFrame(PhysicsParameters, Consumer, SweepAndPrune, IslandStepper)},
+	 * and collects the positions of the entities after it.
+	 *
+	 * @param islands if not null, the entities are updated in parallel by these islands.
+	 * @return the positions of the entities after the frame.
+	 */
+	public static TickState renderExactlyOneTick(long tick, PhysicsParameters params, Consumer<Consumer<EntityLibgdx>> forEachEntity,
+												 SweepAndPrune<EntityLibgdx> contacts, @Nullable IslandStepper<EntityLibgdx> islands,
+												 TickState.Builder builder) {
+		if (islands == null) renderExactlyOneFrame(params, forEachEntity, contacts);
+		else renderExactlyOneFrame(params, forEachEntity, contacts, islands);
+		forEachEntity.accept(e -> builder.add(e.getId(), e.getX(), e.getY(), e.publishedState()));
+		return builder.build(tick);
+	}
+
+	/**
+	 * @param tick performs the tick of the given number, and returns the state after it.
+	 * @return a thread, not yet started, which ticks every {@link #DT}, taking at most {@link #MAX_FRAMES_PER_CALL}
+	 * ticks at once.
+	 */
+	public static SimulationThread newSimulationThread(LongFunction<TickState> tick) {
+		return new SimulationThread("simulation", DT, MAX_FRAMES_PER_CALL, tick);
+	}
+
+	/**
+	 * @return islands of the columns of indivisible cells of the world, updated on the common pool.
+	 */
+	public static IslandStepper<EntityLibgdx> newIslandStepper() {
+		return new IslandStepper<>(WorldRepresentation.INDIVISIBLE_COMPONENT_SIZE, ISLAND_MARGIN, ForkJoinPool.commonPool());
 	}
 
 }
@@ -0,0 +1,152 @@
+package dev.kabin.physics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Ticks a simulation at a fixed rate on a thread of its own, so that neither waits for the other. After each tick the
+ * state it returns is published, and the thread which draws may blend between the last two published states by
+ * {@link #interpolation(long)}.
+ * <p>
+ * As with {@link FixedTimestep}, at most a given number of ticks are taken at once to catch up, and whole ticks beyond
+ * that are dropped.
+ * <p>
+ * Other threads which change what the ticks read, such as the editors of the world, do so by
+ * {@link #runPaused(Runnable)}, which waits for the tick in progress.
+ */
+public final class SimulationThread implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(SimulationThread.class.getName());
+
+    private final Thread thread;
+    private final long dtNanos;
+    private final FixedTimestep timestep;
+    private final LongFunction<TickState> tick;
+    private final LongSupplier clock;
+    // Held for each tick.
+    private final Object tickLock = new Object();
+    private volatile boolean running = false;
+    private volatile Published published;
+    private long startedAtNanos;
+
+    /**
+     * The last two published states, and when the last one was published.
+     */
+    private record Published(TickState previous, TickState current, long publishedAtNanos) {
+    }
+
+    /**
+     * @param name            the name of the thread.
+     * @param dt              the length of a tick, in seconds.
+     * @param maxTicksAtOnce  the largest number of ticks to take at once to catch up.
+     * @param tick            performs the tick of the given number, and returns the state after it.
+     */
+    public SimulationThread(@NotNull String name, float dt, int maxTicksAtOnce, @NotNull LongFunction<TickState> tick) {
+        this(name, dt, maxTicksAtOnce, tick, System::nanoTime);
+    }
+
+    /**
+     * As {@link #SimulationThread(String, float, int, LongFunction)}, with the given clock in place of
+     * {@link System#nanoTime()}.
+     */
+    public SimulationThread(@NotNull String name, float dt, int maxTicksAtOnce, @NotNull LongFunction<TickState> tick,
+                            @NotNull LongSupplier clock) {
+        timestep = new FixedTimestep(dt, maxTicksAtOnce);
+        dtNanos = Math.round(dt * 1e9);
+        this.tick = tick;
+        this.clock = clock;
+        published = new Published(TickState.empty(), TickState.empty(), clock.getAsLong());
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        startedAtNanos = clock.getAsLong();
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * @return true if the thread is started, and has neither been closed nor stopped by an exception of a tick.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return the number of the last published tick.
+     */
+    public long ticks() {
+        return published.current().tick();
+    }
+
+    /**
+     * @return the number of ticks dropped to keep from falling ever further behind.
+     */
+    public long droppedTicks() {
+        return timestep.droppedSteps();
+    }
+
+    /**
+     * @param nowNanos the time at which to draw, by the clock of this thread.
+     * @return the last two published states, blended by how much of a tick has passed since the last was published.
+     */
+    @NotNull
+    public TickInterpolation interpolation(long nowNanos) {
+        final Published p = published;
+        final float alpha = (float) (nowNanos - p.publishedAtNanos()) / dtNanos;
+        return new TickInterpolation(p.previous(), p.current(), Math.min(Math.max(alpha, 0f), 1f));
+    }
+
+    /**
+     * Runs the given action on the calling thread while no tick is in progress. No tick starts until it is done.
+     */
+    public void runPaused(@NotNull Runnable action) {
+        synchronized (tickLock) {
+            action.run();
+        }
+    }
+
+    private void run() {
+        try {
+            long last = startedAtNanos;
+            while (running) {
+                final long now = clock.getAsLong();
+                final int due = timestep.advance((now - last) * 1e-9f);
+                last = now;
+                for (int i = 0; i < due && running; i++) {
+                    synchronized (tickLock) {
+                        final TickState state = tick.apply(published.current().tick() + 1);
+                        published = new Published(published.current(), state, clock.getAsLong());
+                    }
+                }
+                // Sleep for what remains until the next tick is due.
+                final long remaining = Math.round((1 - timestep.alpha()) * dtNanos) - (clock.getAsLong() - now);
+                if (remaining > 0) LockSupport.parkNanos(this, remaining);
+            }
+        } catch (RuntimeException e) {
+            running = false;
+            logger.log(Level.SEVERE, "Caught exception while ticking the simulation; the simulation thread stops.", e);
+        }
+    }
+
+    /**
+     * Stops the thread after the tick in progress, and waits for it.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        if (Thread.currentThread() == thread || !thread.isAlive()) return;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package dev.kabin.physics;
+
+import dev.kabin.util.collections.Id;
+import dev.kabin.util.collections.IdMap;
+import dev.kabin.util.shapes.primitive.RectInt;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Finds the pairs of values whose bounds meet, as in {@link RectInt#meets(RectInt)}, by sweeping over the endpoints
+ * of the bounds along the x-axis. The endpoints are kept sorted from one step to the next, so that a step costs time
+ * proportional to the number of values, the number of endpoints which change places, and the number of pairs which
+ * overlap along the x-axis.
+ * <p>
+ * Each {@link #step()} tells the listeners of each pair which began to meet, kept meeting, or ceased to meet since
+ * the previous step, ordered by the ids of the pairs. The value of the smaller id is passed first. Values which were
+ * not {@link #put(Id, RectInt) put} since the previous step are removed by the step, and their pairs end.
+ * <p>
+ * Not safe for use from several threads.
+ *
+ * @param <T> the type of the values, which are identified by their {@link Id#getId() id}.
+ */
+public class SweepAndPrune<T extends Id> {
+
+    private final IdMap<T> values = new IdMap<>();
+    // Values removed since the last step, which are still passed to the end listeners by the next step.
+    private final IdMap<T> removedValues = new IdMap<>();
+    private final ArrayList<T> removed = new ArrayList<>();
+    private final List<BiConsumer<T, T>> beginListeners = new ArrayList<>();
+    private final List<BiConsumer<T, T>> persistListeners = new ArrayList<>();
+    private final List<BiConsumer<T, T>> endListeners = new ArrayList<>();
+    // Ids put since the last step.
+    private final BitSet putIds = new BitSet();
+    // By id: the bounds of the value in groups of four.
+    private int[] bounds = new int[64];
+    // Endpoints, sorted by coordinate: each is (id << 1) | 1 for a maximum, or (id << 1) for a minimum.
+    private int[] endpoints = new int[32];
+    private int endpointCount = 0;
+    // Ids of the values whose minimum has been passed, but not their maximum, during a sweep.
+    private int[] open = new int[16];
+    // Sorted pair keys of the pairs which met at the current and previous steps.
+    private long[] pairs = new long[16];
+    private int pairCount = 0;
+    private long[] previousPairs = new long[16];
+    private int previousPairCount = 0;
+
+    /**
+     * Adds listeners, which are called by {@link #step()}.
+     */
+    public void addListener(@NotNull BiConsumer<T, T> onBegin,
+                            @NotNull BiConsumer<T, T> onPersist,
+                            @NotNull BiConsumer<T, T> onEnd) {
+        beginListeners.add(onBegin);
+        persistListeners.add(onPersist);
+        endListeners.add(onEnd);
+    }
+
+    /**
+     * Stores the given value with the given bounds, or moves it there if it is already stored.
+     */
+    public void put(@NotNull T value, @NotNull RectInt rect) {
+        final int id = value.getId();
+        if (4 * id + 3 >= bounds.length) bounds = Arrays.copyOf(bounds, Math.max(4 * id + 4, 2 * bounds.length));
+        bounds[4 * id] = rect.getMinX();
+        bounds[4 * id + 1] = rect.getMinY();
+        bounds[4 * id + 2] = rect.getMaxX();
+        bounds[4 * id + 3] = rect.getMaxY();
+        if (values.put(id, value) == null) {
+            if (endpointCount + 2 > endpoints.length) endpoints = Arrays.copyOf(endpoints, 2 * endpoints.length);
+            // Sorted into place by the next step.
+            endpoints[endpointCount++] = id << 1;
+            endpoints[endpointCount++] = (id << 1) | 1;
+        }
+        putIds.set(id);
+    }
+
+    /**
+     * Removes the value with the given id. Its pairs end at the next step.
+     *
+     * @return true if a value with the given id was stored.
+     */
+    public boolean remove(int id) {
+        if (!values.containsKey(id)) return false;
+        putIds.clear(id);
+        removeEndpointsOf(id);
+        retire(id);
+        return true;
+    }
+
+    private void retire(int id) {
+        final T value = values.remove(id);
+        removedValues.put(id, value);
+        removed.add(value);
+    }
+
+    private void removeEndpointsOf(int id) {
+        int kept = 0;
+        for (int i = 0; i < endpointCount; i++) {
+            if (endpoints[i] >>> 1 != id) endpoints[kept++] = endpoints[i];
+        }
+        endpointCount = kept;
+    }
+
+    public boolean contains(int id) {
+        return values.containsKey(id);
+    }
+
+    /**
+     * @return the number of stored values.
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * @return the number of pairs which met as of the last step.
+     */
+    public int contactCount() {
+        return pairCount;
+    }
+
+    /**
+     * Removes the values not put since the last step, finds the pairs which meet, and tells the listeners.
+     */
+    public void step() {
+        removeValuesNotPut();
+        sortEndpoints();
+        findPairs();
+        notifyListeners();
+        putIds.clear();
+    }
+
+    private void removeValuesNotPut() {
+        int kept = 0;
+        for (int i = 0; i < endpointCount; i++) {
+            final int id = endpoints[i] >>> 1;
+            if (putIds.get(id)) {
+                endpoints[kept++] = endpoints[i];
+            } else if ((endpoints[i] & 1) == 1) {
+                retire(id);
+            }
+        }
+        endpointCount = kept;
+    }
+
+    private int coordinateOf(int endpoint) {
+        return bounds[4 * (endpoint >>> 1) + 2 * (endpoint & 1)];
+    }
+
+    /**
+     * Insertion sort, which takes few steps for endpoints which moved little since they were last sorted. At equal
+     * coordinates, minima come first, so that no pair which may meet is missed.
+     */
+    private void sortEndpoints() {
+        for (int i = 1; i < endpointCount; i++) {
+            final int endpoint = endpoints[i];
+            final int coordinate = coordinateOf(endpoint);
+            int j = i - 1;
+            while (j >= 0 && precedes(endpoint, coordinate, endpoints[j])) {
+                endpoints[j + 1] = endpoints[j];
+                j--;
+            }
+            endpoints[j + 1] = endpoint;
+        }
+    }
+
+    private boolean precedes(int endpoint, int coordinate, int other) {
+        final int otherCoordinate = coordinateOf(other);
+        return coordinate < otherCoordinate || (coordinate == otherCoordinate && (endpoint & 1) < (other & 1));
+    }
+
+    private void findPairs() {
+        final long[] swap = previousPairs;
+        previousPairs = pairs;
+        previousPairCount = pairCount;
+        pairs = swap;
+        pairCount = 0;
+
+        int openCount = 0;
+        for (int i = 0; i < endpointCount; i++) {
+            final int endpoint = endpoints[i];
+            final int id = endpoint >>> 1;
+            if ((endpoint & 1) == 1) {
+                for (int k = 0; k < openCount; k++) {
+                    if (open[k] == id) {
+                        open[k] = open[--openCount];
+                        break;
+                    }
+                }
+            } else {
+                for (int k = 0; k < openCount; k++) {
+                    if (meet(id, open[k])) addPair(id, open[k]);
+                }
+                if (openCount == open.length) open = Arrays.copyOf(open, 2 * open.length);
+                open[openCount++] = id;
+            }
+        }
+        Arrays.sort(pairs, 0, pairCount);
+    }
+
+    private boolean meet(int a, int b) {
+        return bounds[4 * a + 2] - bounds[4 * b] > 0
+                && bounds[4 * a] - bounds[4 * b + 2] < 0
+                && bounds[4 * a + 3] - bounds[4 * b + 1] > 0
+                && bounds[4 * a + 1] - bounds[4 * b + 3] < 0;
+    }
+
+    private void addPair(int a, int b) {
+        if (pairCount == pairs.length) pairs = Arrays.copyOf(pairs, 2 * pairs.length);
+        pairs[pairCount++] = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    /**
+     * Merges the sorted pairs of the current and previous steps.
+     */
+    private void notifyListeners() {
+        int i = 0, j = 0;
+        while (i < pairCount || j < previousPairCount) {
+            if (j == previousPairCount || (i < pairCount && pairs[i] < previousPairs[j])) {
+                notify(beginListeners, pairs[i++]);
+            } else if (i == pairCount || previousPairs[j] < pairs[i]) {
+                notify(endListeners, previousPairs[j++]);
+            } else {
+                notify(persistListeners, pairs[i++]);
+                j++;
+            }
+        }
+        // The removed values are no longer needed.
+        //noinspection ForLoopReplaceableByForEach
+        for (int k = 0, n = removed.size(); k < n; k++) {
+            removedValues.remove(removed.get(k).getId());
+        }
+        removed.clear();
+    }
+
+    private void notify(List<BiConsumer<T, T>> listeners, long pair) {
+        final T first = valueOf((int) (pair >>> 32)), second = valueOf((int) pair);
+        //noinspection ForLoopReplaceableByForEach
+        for (int i = 0, n = listeners.size(); i < n; i++) {
+            listeners.get(i).accept(first, second);
+        }
+    }
+
+    private T valueOf(int id) {
+        final T value = values.get(id);
+        return value != null ? value : removedValues.get(id);
+    }
+}
@@ -0,0 +1,49 @@
+package dev.kabin.physics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Positions blended between the last two published ticks of a simulation, a fraction alpha of the way from the
+ * previous tick to the current one. An entity which is not of the previous tick is drawn at its current position.
+ * States are not blended, but taken from the current tick.
+ */
+public record TickInterpolation(@NotNull TickState previous, @NotNull TickState current, float alpha) {
+
+    public TickInterpolation {
+        if (alpha < 0 || alpha > 1) {
+            throw new IllegalArgumentException("Received invalid parameters: " + alpha);
+        }
+    }
+
+    /**
+     * @return true if the current tick holds the entity with the given id.
+     */
+    public boolean contains(int id) {
+        return current.indexOf(id) >= 0;
+    }
+
+    /**
+     * @return the blended horizontal position of the entity with the given id, which must be of the current tick.
+     */
+    public float x(int id) {
+        final int index = current.indexOf(id), previousIndex = previous.indexOf(id);
+        final float x = current.xAt(index);
+        return previousIndex < 0 ? x : previous.xAt(previousIndex) + alpha * (x - previous.xAt(previousIndex));
+    }
+
+    /**
+     * @return the blended vertical position of the entity with the given id, which must be of the current tick.
+     */
+    public float y(int id) {
+        final int index = current.indexOf(id), previousIndex = previous.indexOf(id);
+        final float y = current.yAt(index);
+        return previousIndex < 0 ? y : previous.yAt(previousIndex) + alpha * (y - previous.yAt(previousIndex));
+    }
+
+    /**
+     * @return the state of the entity with the given id as of the current tick, which must hold it.
+     */
+    public int state(int id) {
+        return current.stateAt(current.indexOf(id));
+    }
+}
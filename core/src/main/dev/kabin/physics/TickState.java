@@ -0,0 +1,135 @@
+package dev.kabin.physics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * The positions of the simulated entities after a tick of the simulation, by entity id, along with whatever else their
+ * graphics depend on, packed into an int by each entity as its {@link dev.kabin.entities.Entity#publishedState()}.
+ * Immutable, and so safe to read from any thread once published.
+ */
+public final class TickState {
+
+    private static final TickState EMPTY = new TickState(0, new int[0], new float[0], new float[0], new int[0]);
+
+    private final long tick;
+    // Sorted.
+    private final int[] ids;
+    private final float[] xs;
+    private final float[] ys;
+    private final int[] states;
+
+    private TickState(long tick, int[] ids, float[] xs, float[] ys, int[] states) {
+        this.tick = tick;
+        this.ids = ids;
+        this.xs = xs;
+        this.ys = ys;
+        this.states = states;
+    }
+
+    /**
+     * @return a state of no entities, before the first tick.
+     */
+    public static TickState empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return the number of the tick after which this state was taken.
+     */
+    public long tick() {
+        return tick;
+    }
+
+    /**
+     * @return the number of entities of this state.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return the index of the entity with the given id, or a negative number if this state does not hold it.
+     */
+    public int indexOf(int id) {
+        return Arrays.binarySearch(ids, id);
+    }
+
+    public int idAt(int index) {
+        return ids[index];
+    }
+
+    public float xAt(int index) {
+        return xs[index];
+    }
+
+    public float yAt(int index) {
+        return ys[index];
+    }
+
+    public int stateAt(int index) {
+        return states[index];
+    }
+
+    /**
+     * Collects the positions and states of entities into a state. Reused from tick to tick, on one thread.
+     */
+    public static final class Builder {
+
+        private int[] ids = new int[16];
+        private float[] xs = new float[16];
+        private float[] ys = new float[16];
+        private int[] states = new int[16];
+        // Keys (id << 32 | index) to sort by id.
+        private long[] keys = new long[16];
+        private int size = 0;
+
+        public Builder add(int id, float x, float y) {
+            return add(id, x, y, 0);
+        }
+
+        public Builder add(int id, float x, float y, int state) {
+            if (size == ids.length) {
+                final int capacity = 2 * size;
+                ids = Arrays.copyOf(ids, capacity);
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+                states = Arrays.copyOf(states, capacity);
+                keys = Arrays.copyOf(keys, capacity);
+            }
+            ids[size] = id;
+            xs[size] = x;
+            ys[size] = y;
+            states[size] = state;
+            size++;
+            return this;
+        }
+
+        /**
+         * @return a state of the added positions and states, after which this builder is empty.
+         * @throws IllegalArgumentException if an id was added twice.
+         */
+        @NotNull
+        public TickState build(long tick) {
+            final int n = size;
+            size = 0;
+            for (int i = 0; i < n; i++) keys[i] = ((long) ids[i] << 32) | i;
+            Arrays.sort(keys, 0, n);
+            final int[] sortedIds = new int[n];
+            final float[] sortedXs = new float[n], sortedYs = new float[n];
+            final int[] sortedStates = new int[n];
+            for (int k = 0; k < n; k++) {
+                final int index = (int) keys[k];
+                sortedIds[k] = ids[index];
+                sortedXs[k] = xs[index];
+                sortedYs[k] = ys[index];
+                sortedStates[k] = states[index];
+                if (k > 0 && sortedIds[k] == sortedIds[k - 1]) {
+                    throw new IllegalArgumentException("Received invalid parameters: id " + sortedIds[k] + " was added twice.");
+                }
+            }
+            return new TickState(tick, sortedIds, sortedXs, sortedYs, sortedStates);
+        }
+    }
+}
@@ -32,6 +32,13 @@ public record AnchoredLightSourceData(LightSourceDataImpl lightSourceData,
         );
     }
 
+    /**
+     * @return the same light source data, anchored at the given point in place of the anchor of this.
+     */
+    public AnchoredLightSourceData anchoredAt(float x, float y) {
+        return new AnchoredLightSourceData(lightSourceData, () -> x, () -> y);
+    }
+
     @Override
     public float getAngle() {
         return lightSourceData.getAngle();
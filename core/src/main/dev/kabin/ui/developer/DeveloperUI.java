@@ -13,6 +13,7 @@ import com.badlogic.gdx.scenes.scene2d.utils.DragListener;
 import dev.kabin.GlobalData;
 import dev.kabin.Serializer;
 import dev.kabin.components.WorldRepresentation;
+import dev.kabin.components.worldmodel.LeafSnapshotCache;
 import dev.kabin.entities.libgdximpl.EntityGroup;
 import dev.kabin.entities.libgdximpl.EntityLibgdx;
 import dev.kabin.entities.libgdximpl.GraphicsParametersLibgdx;
@@ -80,6 +81,7 @@ public class DeveloperUI {
         }
     };
     private final Stage stage;
+    private final Consumer<Runnable> synchronizer;
 
 
     public DeveloperUI(Stage stage,
@@ -100,6 +102,7 @@ public class DeveloperUI {
         this.stage = stage;
         this.developerMode = developerMode;
         this.imageAnalysisPoolSupplier = imageAnalysisPoolSupplier;
+        this.synchronizer = synchronizer;
 
 
 
@@ -351,12 +354,17 @@ public class DeveloperUI {
     }
 
     public void saveWorld(Path path) {
-        final JSONObject worldState = Serializer.recordWorldState(worldRepresentationSupplier.get());
+        final String worldState = Serializer.recordWorldState(worldRepresentationSupplier.get()).toString();
         try {
-            Files.write(path, worldState.toString().getBytes());
+            Files.write(path, worldState.getBytes());
         } catch (IOException e) {
             e.printStackTrace();
+            return;
         }
+        // Bake the cells of the saved world, so that they need not be replayed when the world is loaded again.
+        synchronizer.accept(() -> worldRepresentationSupplier.get().bakeLeafSnapshots(
+                LeafSnapshotCache.pathOf(path),
+                LeafSnapshotCache.contentHashOf(worldState)));
     }
 
     public void undoChange() {
@@ -1,24 +1,28 @@
 package dev.kabin.util.cell;
 
 
-import dev.kabin.components.worldmodel.FloatMatrixPool;
-import dev.kabin.components.worldmodel.IntMatrixPool;
-import dev.kabin.util.collections.Id;
-import dev.kabin.util.lambdas.BiIntToFloatFunction;
+import dev.kabin.components.worldmodel.ChunkOccupancy;
+import dev.kabin.components.worldmodel.ChunkedFloatMatrixPool;
+import dev.kabin.components.worldmodel.ChunkedIntMatrixPool;
+import dev.kabin.components.worldmodel.GroundDistancePool;
+import dev.kabin.components.worldmodel.OccupancyMatrixPool;
 import dev.kabin.util.lambdas.FloatUnaryOperation;
-import dev.kabin.util.lambdas.IntBinaryOperator;
-import dev.kabin.util.linalg.FloatMatrix;
-import dev.kabin.util.linalg.IntMatrix;
+import dev.kabin.util.linalg.ChunkedFloatMatrix;
+import dev.kabin.util.linalg.ChunkedIntMatrix;
+import dev.kabin.util.linalg.OccupancyMatrix;
+import dev.kabin.util.pools.objectpool.PoolStatistics;
 import dev.kabin.util.shapes.primitive.ImmutableRectInt;
+import dev.kabin.util.shapes.primitive.RectInt;
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.ByteBuffer;
 import java.util.EnumMap;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.IntStream;
 
 
 /**
@@ -46,30 +50,49 @@ import java.util.stream.IntStream;
  * [minX, maxX) x [minY, maxY). A point in then said to be contained in a component
  * if it is contained in [minX, maxX) x [minY, maxY) for that component.
  */
-public final class Cell implements Id {
+public final class Cell implements CellTree, IndivisibleCell {
 
     // Statics:
     private static final Logger logger = Logger.getLogger(Cell.class.getName());
-    private static int instancesInitiated = 0;
+    private static final AtomicInteger instancesInitiated = new AtomicInteger();
 
     // Fields:
     private final int depth; // The level above root.
     private final CellParameters parameters;
+    private final Cell root;
+    // Sub-cells are created on first write or activation, so entries are null until then. Null iff indivisible.
     private final Cell[] subCells;
     private final EnumMap<Data, Object> data = new EnumMap<>(Data.class);
     private final int minX;
     private final int minY;
+    private final int midPointX;
+    private final int midPointY;
     private final ImmutableRectInt underlyingRectInt;
-    private final EnumMap<Data, IntBinaryOperator> intDataMapperByKey = new EnumMap<>(Data.class);
-    private final EnumMap<Data, BiIntToFloatFunction> floatDataMapperByKey = new EnumMap<>(Data.class);
     private final int id;
 
     // Variables.
     private boolean active = false;
+    // Only present on roots with uniform power-of-two indivisible cells. Indexed by [column][row].
+    private Cell[][] leafDirectory;
+    private int leafSizeLog2;
+    // Ground distances of indivisible cells, if the parameters have a pool for them, kept up to date with the
+    // collision data. By column x - minX, a pooled array of the collision run above each row y - minY, followed by the
+    // free run below each row. Runs end at the bounds of the cell. A column without collision has no array.
+    private short[][] groundColumns;
+    // By column, set if the ground distances are to be computed once the writes in bulk are done.
+    private long[] staleGroundColumns;
+    private boolean writingInBulk = false;
 
     Cell(@NotNull CellParameters parameters) {
+        this(parameters, null);
+    }
 
-        id = instancesInitiated++;
+    /**
+     * @param root the root of the tree this cell belongs to, or null if this is the root.
+     */
+    private Cell(@NotNull CellParameters parameters, Cell root) {
+
+        id = instancesInitiated.getAndIncrement();
 
         // Early exit.
         if (!parameters.hasSubcomponents()) {
@@ -80,105 +103,18 @@ public final class Cell implements Id {
                 parameters.height() - 1);
         minX = parameters.x();
         minY = parameters.y();
+        midPointX = minX + parameters.width() / 2;
+        midPointY = minY + parameters.height() / 2;
 
         this.parameters = parameters;
-
-        final List<CellParameters> cellParametersList = IntStream.range(0, 4)
-                .mapToObj(index -> CellParameters.builder(parameters.minimalCellSize())
-                        .setX(parameters.x() + cellIndexToXCoordinate(index) * parameters.width() / 2)
-                        .setY(parameters.y() + cellIndexToYCoordinate(index) * parameters.height() / 2)
-                        .setWidth(parameters.width() / 2)
-                        .setHeight(parameters.height() / 2)
-                        .setFloatArrayPool(parameters.floatMatrixPool())
-                        .setIntMatrixPool(parameters.intMatrixPool())
-                        .build()
-                ).toList();
+        this.root = (root != null) ? root : this;
 
         // One has subcomponents <=> all have subcomponents.
-        if (cellParametersList.get(0).hasSubcomponents()) {
-
-            subCells = cellParametersList.stream().map(Cell::new).toArray(Cell[]::new);
-
-            final int midPointX = minX + parameters.width() / 2;
-            final int midPointY = minY + parameters.height() / 2;
-
-            // Glue functions together on boundaries:
-            for (Data key : Data.values()) {
-                switch (key.getType()) {
-                    case FLOAT -> floatDataMapperByKey.put(key, (x, y) -> {
-                        if (!contains(x, y)) return 0;
-
-                        // See definition of adjacency in javadoc of this class.
-                        if (x < midPointX) {
-                            if (y < midPointY) {
-                                // Upper left square
-                                return subCells[0].getDataFloat(x, y, key);
-                            } else {
-                                // Lower left square
-                                return subCells[2].getDataFloat(x, y, key);
-                            }
-                        } else {
-                            if (y < midPointY) {
-                                // Upper right square
-                                return subCells[1].getDataFloat(x, y, key);
-                            } else {
-                                // Lower right square
-                                return subCells[3].getDataFloat(x, y, key);
-                            }
-                        }
-                    });
-                    case INTEGER -> intDataMapperByKey.put(key, (x, y) -> {
-                        if (!contains(x, y)) return 0;
-
-                        // See definition of adjacency in javadoc of this class.
-                        if (x < midPointX) {
-                            if (y < midPointY) {
-                                // Upper left square
-                                return subCells[0].getDataInt(x, y, key);
-                            } else {
-                                // Lower left square
-                                return subCells[2].getDataInt(x, y, key);
-                            }
-                        } else {
-                            if (y < midPointY) {
-                                // Upper right square
-                                return subCells[1].getDataInt(x, y, key);
-                            } else {
-                                // Lower right square
-                                return subCells[3].getDataInt(x, y, key);
-                            }
-                        }
-                    });
-                }
-            }
-        } else {
-            subCells = null;
-            for (Data key : Data.values()) {
-                switch (key.getType()) {
-                    case INTEGER -> intDataMapperByKey.put(key, (x, y) -> {
-                        if (underlyingRectInt.contains(x, y)) {
-                            final int i = x - minX, j = y - minY;
-                            final IntMatrix dataForKey = (IntMatrix) data.get(key);
-                            return (dataForKey != null) ? dataForKey.get(i, j) : 0;
-                        } else return 0;
-                    });
-                    case FLOAT -> floatDataMapperByKey.put(key, (x, y) -> {
-                        if (underlyingRectInt.contains(x, y)) {
-                            final int i = x - minX, j = y - minY;
-                            final FloatMatrix dataForKey = (FloatMatrix) data.get(key);
-                            return (dataForKey != null) ? dataForKey.get(i, j) : 0.0f;
-                        } else return 0.0f;
-                    });
-                }
-            }
-        }
+        subCells = subCellParameters(parameters, 0).hasSubcomponents() ? new Cell[4] : null;
 
-        // Figure out the depth of this component.
+        // Figure out the depth of this component, without creating the sub-components.
         int depth = 0;
-        Cell cellStack = this;
-
-        while (cellStack.subCells != null) {
-            cellStack = cellStack.subCells[0];
+        for (CellParameters p = parameters; subCellParameters(p, 0).hasSubcomponents(); p = subCellParameters(p, 0)) {
             depth++;
         }
         this.depth = depth;
@@ -194,47 +130,268 @@ public final class Cell implements Id {
         throw new IllegalArgumentException();
     }
 
+    private static CellParameters subCellParameters(CellParameters parameters, int index) {
+        return CellParameters.builder(parameters.minimalCellSize())
+                .setX(parameters.x() + cellIndexToXCoordinate(index) * parameters.width() / 2)
+                .setY(parameters.y() + cellIndexToYCoordinate(index) * parameters.height() / 2)
+                .setWidth(parameters.width() / 2)
+                .setHeight(parameters.height() / 2)
+                .setFloatArrayPool(parameters.floatMatrixPool())
+                .setIntMatrixPool(parameters.intMatrixPool())
+                .setOccupancyMatrixPool(parameters.occupancyMatrixPool())
+                .setGroundDistancePool(parameters.groundDistancePool())
+                .build();
+    }
+
     @NotNull
     public static Cell makeRepresentationOf(int width,
                                             int height,
                                             int minimalCellSize,
                                             int poolObjectsAvailable) {
-        final var intMatrixPool = new IntMatrixPool(poolObjectsAvailable, () -> new IntMatrix(minimalCellSize, minimalCellSize));
-        final var floatMatrixPool = new FloatMatrixPool(poolObjectsAvailable, () -> new FloatMatrix(minimalCellSize, minimalCellSize));
+        return makeRepresentationOf(width, height, minimalCellSize, poolObjectsAvailable, true, false);
+    }
+
+    @NotNull
+    public static Cell makeRepresentationOf(int width,
+                                            int height,
+                                            int minimalCellSize,
+                                            int poolObjectsAvailable,
+                                            boolean withLeafDirectory) {
+        return makeRepresentationOf(width, height, minimalCellSize, poolObjectsAvailable, withLeafDirectory, false);
+    }
+
+    /**
+     * Only the root is created here. The remaining cells are created as they are written to or activated, see
+     * {@link #subCell(int)}.
+     *
+     * @param withLeafDirectory   if true, point queries on the returned root finds the indivisible cell containing the
+     *                            point in constant time, instead of by a recursive descent.
+     * @param withGroundDistances if true, the indivisible cells keep the distances to the ground of each point along
+     *                            with their collision data, at four bytes per point of the columns with collision, by
+     *                            which {@link #collisionRunAbove(int, int, int)} and
+     *                            {@link #freeRunBelow(int, int, int)} skip whole runs with a leaf directory.
+     */
+    @NotNull
+    public static Cell makeRepresentationOf(int width,
+                                            int height,
+                                            int minimalCellSize,
+                                            int poolObjectsAvailable,
+                                            boolean withLeafDirectory,
+                                            boolean withGroundDistances) {
+        final var intMatrixPool = new ChunkedIntMatrixPool(poolObjectsAvailable, () -> new ChunkedIntMatrix(minimalCellSize, minimalCellSize));
+        final var occupancyMatrixPool = new OccupancyMatrixPool(poolObjectsAvailable, () -> new OccupancyMatrix(minimalCellSize, minimalCellSize));
+        final var floatMatrixPool = new ChunkedFloatMatrixPool(poolObjectsAvailable, () -> new ChunkedFloatMatrix(minimalCellSize, minimalCellSize));
         int x = minimalCellSize, y = minimalCellSize;
         while (x < width * 2 || y < height * 2) {
             x *= 2;
             y *= 2;
         }
         logger.log(Level.WARNING, "Creating components with dimensions {" + x + ", " + y + "}");
-        return new Cell(CellParameters
+        final Cell root = new Cell(CellParameters
                 .builder(minimalCellSize)
                 .setX(-x / 2)
                 .setY(-y / 2)
                 .setWidth(x)
                 .setHeight(y)
                 .setIntMatrixPool(intMatrixPool)
+                .setOccupancyMatrixPool(occupancyMatrixPool)
                 .setFloatArrayPool(floatMatrixPool)
+                .setGroundDistancePool(withGroundDistances
+                        ? new GroundDistancePool(minimalCellSize, () -> new short[2 * minimalCellSize])
+                        : null)
                 .build());
+        if (withLeafDirectory) {
+            root.initLeafDirectory();
+        }
+        return root;
     }
 
+    /**
+     * If all indivisible cells of this have the same power-of-two size, then a leaf directory is set up, so that the
+     * indivisible cell containing (x,y) is found at
+     * <pre>
+     *     leafDirectory[(x - minX) >> leafSizeLog2][(y - minY) >> leafSizeLog2].
+     * </pre>
+     * That is the case when this is a square whose side is the minimal cell size times a power of two, and whose
+     * corner is a multiple of the minimal cell size. Otherwise, this cell keeps using the recursive descent.
+     * <p>
+     * Indivisible cells enter the directory as they are created.
+     */
+    private void initLeafDirectory() {
+        final int leafSize = parameters.minimalCellSize();
+        if (Integer.bitCount(leafSize) != 1 || getWidth() != getHeight() || Integer.bitCount(getWidth() / leafSize) != 1
+                || Math.floorMod(getWidth(), leafSize) != 0
+                || Math.floorMod(minX, leafSize) != 0 || Math.floorMod(minY, leafSize) != 0) {
+            return;
+        }
+        final int log2 = Integer.numberOfTrailingZeros(leafSize);
+        final Cell[][] directory = new Cell[getWidth() >> log2][getHeight() >> log2];
+        forEachIndivisibleCellMatching(c -> true, c -> {
+            final Cell leaf = (Cell) c;
+            directory[(leaf.minX - minX) >> log2][(leaf.minY - minY) >> log2] = leaf;
+        });
+        leafSizeLog2 = log2;
+        leafDirectory = directory;
+    }
 
+    /**
+     * Requires a leaf directory.
+     *
+     * @return the indivisible cell containing (x,y), or null if there is none, or if it has not been created.
+     */
+    private Cell findIndivisibleCell(int x, int y) {
+        final int column = (x - minX) >> leafSizeLog2;
+        final int row = (y - minY) >> leafSizeLog2;
+        if (column < 0 || row < 0 || column >= leafDirectory.length || row >= leafDirectory[column].length) {
+            return null;
+        }
+        return leafDirectory[column][row];
+    }
+
+    /**
+     * Requires a leaf directory.
+     *
+     * @return the indivisible cell containing (x,y), created if necessary, or null if (x,y) is not in this cell.
+     */
+    private Cell findOrCreateIndivisibleCell(int x, int y) {
+        final Cell leaf = findIndivisibleCell(x, y);
+        if (leaf != null || !contains(x, y)) return leaf;
+        Cell c = this;
+        while (c.hasSubComponents()) {
+            c = c.subCell(c.subCellIndexOf(x, y));
+        }
+        return c;
+    }
+
+    /**
+     * @return the index of the sub-cell containing (x,y), given that this cell contains (x,y).
+     */
+    private int subCellIndexOf(int x, int y) {
+        // See definition of adjacency in javadoc of this class.
+        return (x < midPointX ? 0 : 1) + (y < midPointY ? 0 : 2);
+    }
+
+    /**
+     * @return the sub-cell of the given index, which is created if necessary. Creating cells is thread-safe, and
+     * every indivisible cell that is created enters the leaf directory of the root, if it has one.
+     */
+    private Cell subCell(int index) {
+        Cell c = subCells[index];
+        if (c != null) return c;
+        synchronized (subCells) {
+            c = subCells[index];
+            if (c == null) {
+                c = new Cell(subCellParameters(parameters, index), root);
+                final Cell[][] directory = root.leafDirectory;
+                if (directory != null && !c.hasSubComponents()) {
+                    directory[(c.minX - root.minX) >> root.leafSizeLog2][(c.minY - root.minY) >> root.leafSizeLog2] = c;
+                }
+                subCells[index] = c;
+            }
+            return c;
+        }
+    }
+
+    private static boolean meets(int minX, int minY, int maxX, int maxY, RectInt rect) {
+        // The same convention as ImmutableRectInt#meets, with inclusive maxima.
+        return maxX - rect.getMinX() > 0 && minX - rect.getMaxX() < 0 && maxY - rect.getMinY() > 0 && minY - rect.getMaxY() < 0;
+    }
+
+    @Override
     public ImmutableRectInt getUnderlyingRectInt() {
         return underlyingRectInt;
     }
 
     /**
+     * Creates the sub-components which have not been created yet.
+     *
      * @return an unmodifiable view of sub-components.
      */
     public List<Cell> getSubComponents() {
-        return List.of(subCells);
+        return List.of(subCell(0), subCell(1), subCell(2), subCell(3));
+    }
+
+    /**
+     * Only the cells which have been created are visited.
+     */
+    @Override
+    public void forEachIndivisibleCellMatching(Predicate<IndivisibleCell> condition, Consumer<IndivisibleCell> action) {
+        if (hasSubComponents()) {
+            for (Cell c : subCells) {
+                if (c != null) c.forEachIndivisibleCellMatchingRecursionStep(condition, action);
+            }
+        } else if (condition.test(this)) {
+            action.accept(this);
+        }
+    }
+
+    /**
+     * Sub-trees whose root does not match the condition are skipped.
+     */
+    private void forEachIndivisibleCellMatchingRecursionStep(Predicate<IndivisibleCell> condition,
+                                                             Consumer<IndivisibleCell> action) {
+        if (!condition.test(this)) return;
+        if (hasSubComponents()) {
+            for (Cell c : subCells) {
+                if (c != null) c.forEachIndivisibleCellMatchingRecursionStep(condition, action);
+            }
+        } else {
+            action.accept(this);
+        }
+    }
+
+    /**
+     * Creates the indivisible cells meeting the given rectangle which have not been created yet. Sub-trees which do
+     * not meet the rectangle are neither visited nor created.
+     */
+    @Override
+    public void forEachIndivisibleCellMeeting(RectInt rect, Consumer<IndivisibleCell> action) {
+        if (!meets(minX, minY, minX + getWidth() - 1, minY + getHeight() - 1, rect)) return;
+        if (!hasSubComponents()) {
+            action.accept(this);
+            return;
+        }
+        final int halfWidth = getWidth() / 2, halfHeight = getHeight() / 2;
+        for (int index = 0; index < 4; index++) {
+            final int x = minX + cellIndexToXCoordinate(index) * halfWidth;
+            final int y = minY + cellIndexToYCoordinate(index) * halfHeight;
+            if (meets(x, y, x + halfWidth - 1, y + halfHeight - 1, rect)) {
+                subCell(index).forEachIndivisibleCellMeeting(rect, action);
+            }
+        }
+    }
+
+    @Override
+    public void forEachLeafIntersecting(RectInt rect, LeafVisitor visitor) {
+        if (!meets(minX, minY, minX + getWidth() - 1, minY + getHeight() - 1, rect)) return;
+        if (hasSubComponents()) {
+            for (Cell c : subCells) {
+                if (c != null) c.forEachLeafIntersecting(rect, visitor);
+            }
+        } else {
+            visitor.visit(this);
+        }
+    }
+
+    @Override
+    public void forEachLeafOutside(RectInt rect, LeafVisitor visitor) {
+        final int maxX = minX + getWidth() - 1, maxY = minY + getHeight() - 1;
+        // Every cell of a sub-tree strictly inside the rectangle meets it.
+        if (rect.getMinX() < minX && maxX < rect.getMaxX() && rect.getMinY() < minY && maxY < rect.getMaxY()) return;
+        if (hasSubComponents()) {
+            for (Cell c : subCells) {
+                if (c != null) c.forEachLeafOutside(rect, visitor);
+            }
+        } else if (!meets(minX, minY, maxX, maxY, rect)) {
+            visitor.visit(this);
+        }
     }
 
     public void forEachMatching(Consumer<Cell> action, Predicate<Cell> condition) {
-        if (condition.test(subCells[0])) action.accept(subCells[0]);
-        if (condition.test(subCells[1])) action.accept(subCells[1]);
-        if (condition.test(subCells[2])) action.accept(subCells[2]);
-        if (condition.test(subCells[3])) action.accept(subCells[3]);
+        for (int index = 0; index < 4; index++) {
+            final Cell c = subCell(index);
+            if (condition.test(c)) action.accept(c);
+        }
     }
 
     public boolean hasSubComponents() {
@@ -249,10 +406,12 @@ public final class Cell implements Id {
         return parameters.y();
     }
 
+    @Override
     public int getWidth() {
         return parameters.width();
     }
 
+    @Override
     public int getHeight() {
         return parameters.height();
     }
@@ -264,12 +423,50 @@ public final class Cell implements Id {
         return underlyingRectInt.contains(x, y);
     }
 
+    /**
+     * Sub-cells which have not been created yet hold zero data.
+     */
+    @Override
     public float getDataFloat(int x, int y, @NotNull Cell.Data key) {
-        return floatDataMapperByKey.get(key).eval(x, y);
+        if (leafDirectory != null) {
+            final Cell leaf = findIndivisibleCell(x, y);
+            return (leaf != null) ? leaf.getDataFloat(x, y, key) : 0.0f;
+        }
+        if (!contains(x, y)) return 0.0f;
+        if (hasSubComponents()) {
+            final Cell c = subCells[subCellIndexOf(x, y)];
+            return (c != null) ? c.getDataFloat(x, y, key) : 0.0f;
+        }
+        if (key.getType() != Data.PrimitiveType.FLOAT) {
+            throw new IllegalArgumentException("The data of classification '%s' is not of float type.".formatted(key.name()));
+        }
+        final ChunkedFloatMatrix dataForKey = (ChunkedFloatMatrix) data.get(key);
+        return (dataForKey != null) ? dataForKey.get(x - minX, y - minY) : 0.0f;
     }
 
+    /**
+     * Sub-cells which have not been created yet hold zero data.
+     */
+    @Override
     public int getDataInt(int x, int y, @NotNull Cell.Data key) {
-        return intDataMapperByKey.get(key).apply(x, y);
+        if (leafDirectory != null) {
+            final Cell leaf = findIndivisibleCell(x, y);
+            return (leaf != null) ? leaf.getDataInt(x, y, key) : 0;
+        }
+        if (!contains(x, y)) return 0;
+        if (hasSubComponents()) {
+            final Cell c = subCells[subCellIndexOf(x, y)];
+            return (c != null) ? c.getDataInt(x, y, key) : 0;
+        }
+        if (key.getType() != Data.PrimitiveType.INTEGER) {
+            throw new IllegalArgumentException("The data of classification '%s' is not of integer type.".formatted(key.name()));
+        }
+        final Object dataForKey = data.get(key);
+        if (dataForKey == null) return 0;
+        // Collision data is bit-packed; see OccupancyMatrix.
+        return (key == Data.COLLISION)
+                ? ((OccupancyMatrix) dataForKey).get(x - minX, y - minY)
+                : ((ChunkedIntMatrix) dataForKey).get(x - minX, y - minY);
     }
 
 
@@ -278,28 +475,59 @@ public final class Cell implements Id {
         return id;
     }
 
-    public int getCollision(int x, int y) {
-        return intDataMapperByKey.get(Data.COLLISION).apply(x, y);
-    }
-
-    public int getLadder(int x, int y) {
-        return intDataMapperByKey.get(Data.LADDER).apply(x, y);
+    /**
+     * The pools are shared by all cells of a tree, so this is the same for each of them.
+     */
+    @Override
+    public ChunkOccupancy chunkOccupancy() {
+        return parameters.intMatrixPool().chunkOccupancy().plus(parameters.floatMatrixPool().chunkOccupancy());
     }
 
-    public float getVectorFieldX(int x, int y) {
-        return floatDataMapperByKey.get(Data.VECTOR_FIELD_X).eval(x, y);
+    /**
+     * The pools are shared by all cells of a tree, so this is the same for each of them.
+     */
+    @Override
+    public PoolStatistics poolStatistics() {
+        final PoolStatistics statistics = parameters.occupancyMatrixPool().statistics()
+                .plus(parameters.intMatrixPool().statistics())
+                .plus(parameters.floatMatrixPool().statistics());
+        final GroundDistancePool groundDistancePool = parameters.groundDistancePool();
+        return (groundDistancePool != null) ? statistics.plus(groundDistancePool.statistics()) : statistics;
     }
 
-    public float getVectorFieldY(int x, int y) {
-        return floatDataMapperByKey.get(Data.VECTOR_FIELD_Y).eval(x, y);
+    @Override
+    public CellSample sample(int x, int y, @NotNull CellSample out) {
+        if (leafDirectory != null) {
+            final Cell leaf = findIndivisibleCell(x, y);
+            return (leaf != null) ? leaf.sample(x, y, out) : out.clear();
+        }
+        if (!contains(x, y)) return out.clear();
+        if (hasSubComponents()) {
+            final Cell c = subCells[subCellIndexOf(x, y)];
+            return (c != null) ? c.sample(x, y, out) : out.clear();
+        }
+        final int i = x - minX, j = y - minY;
+        final OccupancyMatrix collision = (OccupancyMatrix) data.get(Data.COLLISION);
+        final ChunkedIntMatrix ladder = (ChunkedIntMatrix) data.get(Data.LADDER);
+        final ChunkedFloatMatrix vectorFieldX = (ChunkedFloatMatrix) data.get(Data.VECTOR_FIELD_X);
+        final ChunkedFloatMatrix vectorFieldY = (ChunkedFloatMatrix) data.get(Data.VECTOR_FIELD_Y);
+        return out.set(
+                collision != null ? collision.get(i, j) : 0,
+                ladder != null ? ladder.get(i, j) : 0,
+                vectorFieldX != null ? vectorFieldX.get(i, j) : 0f,
+                vectorFieldY != null ? vectorFieldY.get(i, j) : 0f);
     }
 
+    @Override
     public void modifyVectorFieldAt(int x, int y, FloatUnaryOperation transformX, FloatUnaryOperation transformY) {
+        if (leafDirectory != null) {
+            final Cell leaf = findOrCreateIndivisibleCell(x, y);
+            if (leaf != null) leaf.modifyVectorFieldAt(x, y, transformX, transformY);
+            return;
+        }
         if (contains(x, y)) {
             if (hasSubComponents()) {
-                for (Cell c : subCells) {
-                    c.modifyVectorFieldAt(x, y, transformX, transformY);
-                }
+                subCell(subCellIndexOf(x, y)).modifyVectorFieldAt(x, y, transformX, transformY);
             } else {
                 if (!data.containsKey(Data.VECTOR_FIELD_X)) {
                     data.put(Data.VECTOR_FIELD_X, parameters.floatMatrixPool().borrow());
@@ -310,18 +538,22 @@ public final class Cell implements Id {
                 final int
                         i = x - minX,
                         j = y - minY;
-                ((FloatMatrix) data.get(Data.VECTOR_FIELD_X)).modify(i, j, transformX);
-                ((FloatMatrix) data.get(Data.VECTOR_FIELD_Y)).modify(i, j, transformY);
+                ((ChunkedFloatMatrix) data.get(Data.VECTOR_FIELD_X)).modify(i, j, transformX);
+                ((ChunkedFloatMatrix) data.get(Data.VECTOR_FIELD_Y)).modify(i, j, transformY);
             }
         }
     }
 
+    @Override
     public void activate(int x, int y) {
+        if (leafDirectory != null) {
+            final Cell leaf = findOrCreateIndivisibleCell(x, y);
+            if (leaf != null) leaf.activate(x, y);
+            return;
+        }
         if (contains(x, y)) {
             if (hasSubComponents()) {
-                for (Cell c : subCells) {
-                    c.activate(x, y);
-                }
+                subCell(subCellIndexOf(x, y)).activate(x, y);
             } else {
                 if (isInactive()) {
                     setActive(true);
@@ -330,18 +562,30 @@ public final class Cell implements Id {
         }
     }
 
-    public void increment(int x, int y, Data key) {
+    @Override
+    public void increment(int x, int y, @NotNull Data key) {
+        if (leafDirectory != null) {
+            final Cell leaf = findOrCreateIndivisibleCell(x, y);
+            if (leaf != null) leaf.increment(x, y, key);
+            return;
+        }
         if (contains(x, y)) {
             if (hasSubComponents()) {
-                for (Cell c : subCells) {
-                    c.increment(x, y, key);
-                }
+                subCell(subCellIndexOf(x, y)).increment(x, y, key);
             } else {
-                if (!data.containsKey(key)) {
-                    data.put(key, parameters.intMatrixPool().borrow());
+                if (key == Data.COLLISION) {
+                    if (!data.containsKey(key)) {
+                        data.put(key, parameters.occupancyMatrixPool().borrow());
+                    }
+                    final OccupancyMatrix collision = (OccupancyMatrix) data.get(key);
+                    collision.increment(x - minX, y - minY);
+                    groundDistancesChangedAt(collision, x - minX, y - minY);
+                } else {
+                    if (!data.containsKey(key)) {
+                        data.put(key, parameters.intMatrixPool().borrow());
+                    }
+                    ((ChunkedIntMatrix) data.get(key)).increment(x - minX, y - minY);
                 }
-
-                ((IntMatrix) data.get(key)).increment(x - minX, y - minY);
             }
         }
     }
@@ -350,38 +594,133 @@ public final class Cell implements Id {
      * Clears any data associated with any of this components sub-components, or if
      * this has no sub-component, then clears all data associated with this.
      */
+    @Override
     public void clearData() {
         if (hasSubComponents()) {
             for (Cell c : subCells) {
-                c.clearData();
+                if (c != null) c.clearData();
             }
         } else {
             // Data which has been initialized (taken from the pool), is returned.
             {
                 Object o = data.get(Data.COLLISION);
                 if (o != null) {
-                    parameters.intMatrixPool().giveBack((IntMatrix) o);
+                    parameters.occupancyMatrixPool().giveBack((OccupancyMatrix) o);
                 }
             }
             {
                 Object o = data.get(Data.LADDER);
                 if (o != null) {
-                    parameters.intMatrixPool().giveBack((IntMatrix) o);
+                    parameters.intMatrixPool().giveBack((ChunkedIntMatrix) o);
                 }
             }
             {
                 Object o = data.get(Data.VECTOR_FIELD_X);
                 if (o != null) {
-                    parameters.floatMatrixPool().giveBack((FloatMatrix) o);
+                    parameters.floatMatrixPool().giveBack((ChunkedFloatMatrix) o);
                 }
             }
             {
                 Object o = data.get(Data.VECTOR_FIELD_Y);
                 if (o != null) {
-                    parameters.floatMatrixPool().giveBack((FloatMatrix) o);
+                    parameters.floatMatrixPool().giveBack((ChunkedFloatMatrix) o);
                 }
             }
             data.clear();
+            giveBackGroundColumns();
+        }
+    }
+
+    private void giveBackGroundColumns() {
+        if (groundColumns == null) return;
+        for (int i = 0; i < groundColumns.length; i++) {
+            if (groundColumns[i] != null) {
+                parameters.groundDistancePool().giveBack(groundColumns[i]);
+                groundColumns[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Brings the ground distances up to date once, after all the given writes, rather than after each write.
+     */
+    @Override
+    public void writeInBulk(@NotNull Runnable writes) {
+        if (hasSubComponents() || parameters.groundDistancePool() == null || writingInBulk) {
+            writes.run();
+            return;
+        }
+        if (staleGroundColumns == null) staleGroundColumns = new long[(getWidth() + Long.SIZE - 1) / Long.SIZE];
+        writingInBulk = true;
+        try {
+            writes.run();
+        } finally {
+            writingInBulk = false;
+            final OccupancyMatrix collision = (OccupancyMatrix) data.get(Data.COLLISION);
+            for (int w = 0; w < staleGroundColumns.length; w++) {
+                for (long bits = staleGroundColumns[w]; bits != 0; bits &= bits - 1) {
+                    if (collision != null) computeGroundColumn(collision, w * Long.SIZE + Long.numberOfTrailingZeros(bits));
+                }
+                staleGroundColumns[w] = 0;
+            }
+        }
+    }
+
+    @Override
+    public int snapshotBytes() {
+        if (hasSubComponents()) {
+            throw new IllegalStateException("Only indivisible cells have snapshots.");
+        }
+        return LeafSnapshots.bytesOf(
+                (OccupancyMatrix) data.get(Data.COLLISION),
+                (ChunkedIntMatrix) data.get(Data.LADDER),
+                (ChunkedFloatMatrix) data.get(Data.VECTOR_FIELD_X),
+                (ChunkedFloatMatrix) data.get(Data.VECTOR_FIELD_Y));
+    }
+
+    @Override
+    public void writeSnapshot(ByteBuffer buffer) {
+        if (hasSubComponents()) {
+            throw new IllegalStateException("Only indivisible cells have snapshots.");
+        }
+        LeafSnapshots.write(buffer,
+                (OccupancyMatrix) data.get(Data.COLLISION),
+                (ChunkedIntMatrix) data.get(Data.LADDER),
+                (ChunkedFloatMatrix) data.get(Data.VECTOR_FIELD_X),
+                (ChunkedFloatMatrix) data.get(Data.VECTOR_FIELD_Y));
+    }
+
+    @Override
+    public void readSnapshot(ByteBuffer buffer) {
+        if (hasSubComponents()) {
+            throw new IllegalStateException("Only indivisible cells have snapshots.");
+        }
+        clearData();
+        final int present = buffer.get();
+        if ((present & LeafSnapshots.COLLISION_BIT) != 0) {
+            final OccupancyMatrix collision = parameters.occupancyMatrixPool().borrow();
+            collision.readFrom(buffer);
+            data.put(Data.COLLISION, collision);
+            if (parameters.groundDistancePool() != null) {
+                for (int i = 0, n = getWidth(); i < n; i++) {
+                    if (collision.countSetInRow(i, 0, getHeight()) > 0) computeGroundColumn(collision, i);
+                }
+            }
+        }
+        if ((present & LeafSnapshots.LADDER_BIT) != 0) {
+            final ChunkedIntMatrix ladder = parameters.intMatrixPool().borrow();
+            ladder.readFrom(buffer);
+            data.put(Data.LADDER, ladder);
+        }
+        if ((present & LeafSnapshots.VECTOR_FIELD_X_BIT) != 0) {
+            final ChunkedFloatMatrix vectorFieldX = parameters.floatMatrixPool().borrow();
+            vectorFieldX.readFrom(buffer);
+            data.put(Data.VECTOR_FIELD_X, vectorFieldX);
+        }
+        if ((present & LeafSnapshots.VECTOR_FIELD_Y_BIT) != 0) {
+            final ChunkedFloatMatrix vectorFieldY = parameters.floatMatrixPool().borrow();
+            vectorFieldY.readFrom(buffer);
+            data.put(Data.VECTOR_FIELD_Y, vectorFieldY);
         }
     }
 
@@ -393,50 +732,280 @@ public final class Cell implements Id {
                 ", y: " + underlyingRectInt.getMinY() + "}";
     }
 
-    public void decrement(int x, int y, Data key) {
+    @Override
+    public void decrement(int x, int y, @NotNull Data key) {
+        if (leafDirectory != null) {
+            final Cell leaf = findIndivisibleCell(x, y);
+            if (leaf != null) leaf.decrement(x, y, key);
+            else if (contains(x, y)) throw emptyDataException(key, x, y);
+            return;
+        }
         if (contains(x, y)) {
             if (hasSubComponents()) {
-                for (Cell c : subCells) {
-                    c.decrement(x, y, key);
-                }
+                // A sub-cell which has not been created has no data.
+                final Cell c = subCells[subCellIndexOf(x, y)];
+                if (c == null) throw emptyDataException(key, x, y);
+                c.decrement(x, y, key);
             } else {
                 if (data.containsKey(key)) {
-                    final IntMatrix dataUnderKey = (IntMatrix) data.get(key);
-                    if (dataUnderKey != null) {
-                        final int
-                                i = x - minX,
-                                j = y - minY;
-                        dataUnderKey.decrement(i, j);
+                    final int
+                            i = x - minX,
+                            j = y - minY;
+                    if (key == Data.COLLISION) {
+                        final OccupancyMatrix collision = (OccupancyMatrix) data.get(key);
+                        collision.decrement(i, j);
+                        groundDistancesChangedAt(collision, i, j);
+                    } else {
+                        ((ChunkedIntMatrix) data.get(key)).decrement(i, j);
                     }
-                } else
-                    throw new RuntimeException(
-                            String.format("The data of classification '%s' at position (%s,%s) for this sub-component was empty. "
-                                    + "This method should not have been called.", key.name(), x, y));
+                } else throw emptyDataException(key, x, y);
             }
         }
     }
 
+    private static RuntimeException emptyDataException(Data key, int x, int y) {
+        return new RuntimeException(
+                String.format("The data of classification '%s' at position (%s,%s) for this sub-component was empty. "
+                        + "This method should not have been called.", key.name(), x, y));
+    }
+
+    @Override
     public void incrementCollisionAt(int x, int y) {
         increment(x, y, Data.COLLISION);
     }
 
+    @Override
     public void decrementCollisionAt(int x, int y) {
         decrement(x, y, Data.COLLISION);
     }
 
+    @Override
     public boolean isCollisionAt(int x, int y) {
-        return getCollision(x, y) > 0;
+        if (leafDirectory != null) {
+            final Cell leaf = findIndivisibleCell(x, y);
+            return leaf != null && leaf.isCollisionAt(x, y);
+        }
+        if (!hasSubComponents()) {
+            final OccupancyMatrix collision = (OccupancyMatrix) data.get(Data.COLLISION);
+            return collision != null && contains(x, y) && collision.isSet(x - minX, y - minY);
+        }
+        if (!contains(x, y)) return false;
+        final Cell c = subCells[subCellIndexOf(x, y)];
+        return c != null && c.isCollisionAt(x, y);
     }
 
+    @Override
     public boolean isLadderAt(int x, int y) {
         return getLadder(x, y) > 0;
     }
 
+    @Override
     public boolean isCollisionIfNotLadderData(int x, int y) {
         if (isLadderAt(x, y)) return false;
         else return (isCollisionAt(x, y));
     }
 
+    /**
+     * Only the sub-components whose column contains x are visited, in order of increasing y, and the
+     * indivisible ones scan their collision data a word at a time.
+     */
+    @Override
+    public int firstCollisionInColumn(int x, int yFrom, int yTo) {
+        return firstCollisionInColumn(x, yFrom, yTo, false);
+    }
+
+    @Override
+    public int firstCollisionIfNotLadderDataInColumn(int x, int yFrom, int yTo) {
+        return firstCollisionInColumn(x, yFrom, yTo, true);
+    }
+
+    private int firstCollisionInColumn(int x, int yFrom, int yTo, boolean skipLadder) {
+        final int from = Math.max(yFrom, minY), to = Math.min(yTo, minY + getHeight());
+        if (from >= to || x < minX || x >= minX + getWidth()) return yTo;
+        if (hasSubComponents()) {
+            final int left = (x < midPointX) ? 0 : 1;
+            if (subCells[left] != null) {
+                final int found = subCells[left].firstCollisionInColumn(x, from, to, skipLadder);
+                if (found < to) return found;
+            }
+            if (subCells[left + 2] != null) {
+                final int found = subCells[left + 2].firstCollisionInColumn(x, from, to, skipLadder);
+                if (found < to) return found;
+            }
+            return yTo;
+        }
+        final OccupancyMatrix collision = (OccupancyMatrix) data.get(Data.COLLISION);
+        if (collision == null) return yTo;
+        final ChunkedIntMatrix ladder = skipLadder ? (ChunkedIntMatrix) data.get(Data.LADDER) : null;
+        final int i = x - minX;
+        int j = from - minY;
+        while ((j = collision.firstSetInRow(i, j, to - minY)) != -1) {
+            if (ladder == null || ladder.get(i, j) <= 0) return minY + j;
+            j++;
+        }
+        return yTo;
+    }
+
+    @Override
+    public boolean anyCollisionInRow(int y, int xFrom, int xTo) {
+        final int from = Math.max(xFrom, minX), to = Math.min(xTo, minX + getWidth());
+        if (from >= to || y < minY || y >= minY + getHeight()) return false;
+        if (hasSubComponents()) {
+            final int top = (y < midPointY) ? 0 : 2;
+            return (subCells[top] != null && subCells[top].anyCollisionInRow(y, from, to))
+                    || (subCells[top + 1] != null && subCells[top + 1].anyCollisionInRow(y, from, to));
+        }
+        final OccupancyMatrix collision = (OccupancyMatrix) data.get(Data.COLLISION);
+        if (collision == null) return false;
+        final int j = y - minY;
+        for (int i = from - minX, n = to - minX; i < n; i++) {
+            if (collision.isSet(i, j)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int countCollisionsInRect(int xFrom, int yFrom, int xTo, int yTo) {
+        final int fromX = Math.max(xFrom, minX), toX = Math.min(xTo, minX + getWidth());
+        final int fromY = Math.max(yFrom, minY), toY = Math.min(yTo, minY + getHeight());
+        if (fromX >= toX || fromY >= toY) return 0;
+        if (hasSubComponents()) {
+            int count = 0;
+            for (Cell c : subCells) {
+                if (c != null) count += c.countCollisionsInRect(fromX, fromY, toX, toY);
+            }
+            return count;
+        }
+        final OccupancyMatrix collision = (OccupancyMatrix) data.get(Data.COLLISION);
+        if (collision == null) return 0;
+        int count = 0;
+        for (int i = fromX - minX, n = toX - minX; i < n; i++) {
+            count += collision.countSetInRow(i, fromY - minY, toY - minY);
+        }
+        return count;
+    }
+
+    /**
+     * With a leaf directory and ground distances, this reads the ground distances of the indivisible cells on the
+     * way, instead of the collision data of every point.
+     */
+    @Override
+    public int collisionRunAbove(int x, int y, int limit) {
+        if (leafDirectory == null || parameters.groundDistancePool() == null) {
+            return CellTree.super.collisionRunAbove(x, y, limit);
+        }
+        int run = 0;
+        while (run < limit) {
+            final int yRun = y + run;
+            final Cell leaf = findIndivisibleCell(x, yRun);
+            if (leaf == null) break;
+            final int inLeaf = leaf.collisionRunAboveInCell(x - leaf.minX, yRun - leaf.minY);
+            run += inLeaf;
+            // Continue in the cell above iff the run reaches its upper bound.
+            if (yRun + inLeaf < leaf.minY + leaf.getHeight()) break;
+        }
+        return Math.min(run, limit);
+    }
+
+    /**
+     * With a leaf directory and ground distances, this reads the ground distances of the indivisible cells on the
+     * way, instead of the collision data of every point. Indivisible cells which have not been created are skipped in
+     * one step.
+     */
+    @Override
+    public int freeRunBelow(int x, int y, int limit) {
+        if (leafDirectory == null || parameters.groundDistancePool() == null) {
+            return CellTree.super.freeRunBelow(x, y, limit);
+        }
+        int run = 0;
+        while (run < limit) {
+            final int yRun = y - run;
+            // Outside of this tree there is no collision.
+            if (x < minX || x >= minX + getWidth() || yRun < minY) return limit;
+            if (yRun >= minY + getHeight()) {
+                run += yRun - (minY + getHeight() - 1);
+                continue;
+            }
+            final int leafMinY = minY + (((yRun - minY) >> leafSizeLog2) << leafSizeLog2);
+            final Cell leaf = findIndivisibleCell(x, yRun);
+            final int inLeaf = (leaf != null) ? leaf.freeRunBelowInCell(x - leaf.minX, yRun - leaf.minY) : yRun - leafMinY + 1;
+            run += inLeaf;
+            // Continue in the cell below iff the run reaches its lower bound.
+            if (yRun - inLeaf >= leafMinY) break;
+        }
+        return Math.min(run, limit);
+    }
+
+    /**
+     * Requires this cell to be indivisible.
+     *
+     * @return the number of consecutive points with collision from (minX + i, minY + j) up to the upper bound of
+     * this cell.
+     */
+    private int collisionRunAboveInCell(int i, int j) {
+        final short[] column = (groundColumns == null) ? null : groundColumns[i];
+        return (column == null) ? 0 : column[j];
+    }
+
+    /**
+     * Requires this cell to be indivisible.
+     *
+     * @return the number of consecutive points without collision from (minX + i, minY + j) down to the lower bound
+     * of this cell.
+     */
+    private int freeRunBelowInCell(int i, int j) {
+        final short[] column = (groundColumns == null) ? null : groundColumns[i];
+        return (column == null) ? j + 1 : column[getHeight() + j];
+    }
+
+    /**
+     * Brings the ground distances of column i, if kept, up to date with a change of the collision data at row j, or
+     * marks the column to be computed once the writes in bulk are done.
+     */
+    private void groundDistancesChangedAt(OccupancyMatrix collision, int i, int j) {
+        if (parameters.groundDistancePool() == null) return;
+        if (writingInBulk) {
+            staleGroundColumns[i / Long.SIZE] |= 1L << i;
+            return;
+        }
+        final short[] column = (groundColumns == null) ? null : groundColumns[i];
+        if (column == null) {
+            computeGroundColumn(collision, i);
+            return;
+        }
+        // Only the runs through row j change, so only those are walked.
+        final int height = getHeight();
+        final boolean set = collision.isSet(i, j);
+        column[j] = set ? (short) ((j + 1 < height ? column[j + 1] : 0) + 1) : 0;
+        for (int k = j - 1; k >= 0 && collision.isSet(i, k); k--) {
+            column[k] = (short) (column[k + 1] + 1);
+        }
+        column[height + j] = set ? 0 : (short) ((j > 0 ? column[height + j - 1] : 0) + 1);
+        for (int k = j + 1; k < height && !collision.isSet(i, k); k++) {
+            column[height + k] = (short) (column[height + k - 1] + 1);
+        }
+    }
+
+    /**
+     * Computes the ground distances of column i from the collision data.
+     */
+    private void computeGroundColumn(OccupancyMatrix collision, int i) {
+        if (groundColumns == null) groundColumns = new short[getWidth()][];
+        if (groundColumns[i] == null) groundColumns[i] = parameters.groundDistancePool().borrow();
+        final short[] column = groundColumns[i];
+        final int height = getHeight();
+        int run = 0;
+        for (int j = height - 1; j >= 0; j--) {
+            run = collision.isSet(i, j) ? run + 1 : 0;
+            column[j] = (short) run;
+        }
+        run = 0;
+        for (int j = 0; j < height; j++) {
+            run = collision.isSet(i, j) ? 0 : run + 1;
+            column[height + j] = (short) run;
+        }
+    }
+
     public void increaseVectorFieldXAt(int x, int y) {
         increment(x, y, Data.VECTOR_FIELD_X);
     }
@@ -453,10 +1022,12 @@ public final class Cell implements Id {
         decrement(x, y, Data.VECTOR_FIELD_Y);
     }
 
+    @Override
     public void increaseLadderAt(int x, int y) {
         increment(x, y, Data.LADDER);
     }
 
+    @Override
     public void decreaseLadderAt(int x, int y) {
         decrement(x, y, Data.LADDER);
     }
@@ -466,14 +1037,17 @@ public final class Cell implements Id {
     }
 
 
+    @Override
     public boolean isActive() {
         return active;
     }
 
+    @Override
     public void setActive(boolean b) {
         this.active = b;
     }
 
+    @Override
     public boolean isInactive() {
         return !active;
     }
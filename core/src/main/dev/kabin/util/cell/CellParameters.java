@@ -1,8 +1,14 @@
 package dev.kabin.util.cell;
 
-import dev.kabin.components.worldmodel.FloatMatrixPool;
-import dev.kabin.components.worldmodel.IntMatrixPool;
+import dev.kabin.components.worldmodel.ChunkedFloatMatrixPool;
+import dev.kabin.components.worldmodel.ChunkedIntMatrixPool;
+import dev.kabin.components.worldmodel.GroundDistancePool;
+import dev.kabin.components.worldmodel.OccupancyMatrixPool;
 
+/**
+ * @param groundDistancePool the pool of the columns of ground distances, which indivisible cells keep along with their
+ *                           collision data if and only if this is not null.
+ */
 record CellParameters(int x,
                       int y,
                       int width,
@@ -10,8 +16,10 @@ record CellParameters(int x,
                       float scaleFactor,
                       boolean hasSubcomponents,
                       int minimalCellSize,
-                      IntMatrixPool intMatrixPool,
-                      FloatMatrixPool floatMatrixPool) {
+                      ChunkedIntMatrixPool intMatrixPool,
+                      OccupancyMatrixPool occupancyMatrixPool,
+                      ChunkedFloatMatrixPool floatMatrixPool,
+                      GroundDistancePool groundDistancePool) {
 
     static Builder builder(int minimalCellSize) {
         return new Builder(minimalCellSize);
@@ -24,8 +32,10 @@ record CellParameters(int x,
         private float scaleFactor;
         private boolean hasSubcomponents = true;
         private final int minimalCellSize;
-        private IntMatrixPool intMatrixPool;
-        private FloatMatrixPool floatMatrixPool;
+        private ChunkedIntMatrixPool intMatrixPool;
+        private OccupancyMatrixPool occupancyMatrixPool;
+        private ChunkedFloatMatrixPool floatMatrixPool;
+        private GroundDistancePool groundDistancePool;
 
         private Builder(int minimalCellSize) {
             this.minimalCellSize = minimalCellSize;
@@ -64,18 +74,28 @@ record CellParameters(int x,
             return this;
         }
 
-        public Builder setIntMatrixPool(IntMatrixPool intMatrixPool) {
+        public Builder setIntMatrixPool(ChunkedIntMatrixPool intMatrixPool) {
             this.intMatrixPool = intMatrixPool;
             return this;
         }
 
-        public Builder setFloatArrayPool(FloatMatrixPool floatMatrixPool) {
+        public Builder setOccupancyMatrixPool(OccupancyMatrixPool occupancyMatrixPool) {
+            this.occupancyMatrixPool = occupancyMatrixPool;
+            return this;
+        }
+
+        public Builder setFloatArrayPool(ChunkedFloatMatrixPool floatMatrixPool) {
             this.floatMatrixPool = floatMatrixPool;
             return this;
         }
 
+        public Builder setGroundDistancePool(GroundDistancePool groundDistancePool) {
+            this.groundDistancePool = groundDistancePool;
+            return this;
+        }
+
         public CellParameters build() {
-            return new CellParameters(x, y, width, height, scaleFactor, hasSubcomponents, minimalCellSize, intMatrixPool, floatMatrixPool);
+            return new CellParameters(x, y, width, height, scaleFactor, hasSubcomponents, minimalCellSize, intMatrixPool, occupancyMatrixPool, floatMatrixPool, groundDistancePool);
         }
     }
 }
@@ -0,0 +1,63 @@
+package dev.kabin.util.cell;
+
+/**
+ * All {@link Cell.Data} of a single point, as filled in by {@link CellTree#sample(int, int, CellSample)}.
+ * Instances are meant to be re-used between look-ups, so that sampling does not allocate.
+ */
+public final class CellSample {
+
+    private int collision;
+    private int ladder;
+    private float vectorFieldX;
+    private float vectorFieldY;
+
+    public CellSample set(int collision, int ladder, float vectorFieldX, float vectorFieldY) {
+        this.collision = collision;
+        this.ladder = ladder;
+        this.vectorFieldX = vectorFieldX;
+        this.vectorFieldY = vectorFieldY;
+        return this;
+    }
+
+    public CellSample clear() {
+        return set(0, 0, 0f, 0f);
+    }
+
+    public int collision() {
+        return collision;
+    }
+
+    public int ladder() {
+        return ladder;
+    }
+
+    public float vectorFieldX() {
+        return vectorFieldX;
+    }
+
+    public float vectorFieldY() {
+        return vectorFieldY;
+    }
+
+    public boolean isCollision() {
+        return collision > 0;
+    }
+
+    public boolean isLadder() {
+        return ladder > 0;
+    }
+
+    public boolean isCollisionIfNotLadderData() {
+        return !isLadder() && isCollision();
+    }
+
+    @Override
+    public String toString() {
+        return "CellSample{" +
+                "collision=" + collision +
+                ", ladder=" + ladder +
+                ", vectorFieldX=" + vectorFieldX +
+                ", vectorFieldY=" + vectorFieldY +
+                '}';
+    }
+}
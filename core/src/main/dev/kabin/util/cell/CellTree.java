@@ -0,0 +1,264 @@
+package dev.kabin.util.cell;
+
+import dev.kabin.components.worldmodel.ChunkOccupancy;
+import dev.kabin.util.lambdas.FloatUnaryOperation;
+import dev.kabin.util.pools.objectpool.PoolStatistics;
+import dev.kabin.util.shapes.primitive.RectInt;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A quad tree of pixel data, as described in the javadoc of {@link Cell}. Point queries outside of the tree yield
+ * zero data.
+ * <p>
+ * There are three implementations:
+ * <ul>
+ *     <li>{@link Cell}, where each node is an object that dispatches to its sub-components, which are created on
+ *     demand.</li>
+ *     <li>{@link FlatCellTree}, where the nodes are kept in flat arrays and the look-ups are plain loops.</li>
+ *     <li>{@link MappedCellTree}, where the data is kept in a memory-mapped file instead of on the heap.</li>
+ * </ul>
+ * Use {@link #makeRepresentationOf(Implementation, int, int, int, int, boolean)} to pick one of them.
+ */
+public interface CellTree extends AutoCloseable {
+
+    @NotNull
+    static CellTree makeRepresentationOf(@NotNull Implementation implementation,
+                                         int width,
+                                         int height,
+                                         int minimalCellSize,
+                                         int poolObjectsAvailable) {
+        return makeRepresentationOf(implementation, width, height, minimalCellSize, poolObjectsAvailable, false);
+    }
+
+    /**
+     * @param groundDistances if true, the implementation keeps the distances to the ground of each point along with
+     *                        the collision data, if it is able to, to speed up {@link #collisionRunAbove(int, int, int)}
+     *                        and {@link #freeRunBelow(int, int, int)} at the expense of memory. Only {@link Cell} is.
+     */
+    @NotNull
+    static CellTree makeRepresentationOf(@NotNull Implementation implementation,
+                                         int width,
+                                         int height,
+                                         int minimalCellSize,
+                                         int poolObjectsAvailable,
+                                         boolean groundDistances) {
+        return switch (implementation) {
+            case RECURSIVE -> Cell.makeRepresentationOf(width, height, minimalCellSize, poolObjectsAvailable, true,
+                    groundDistances);
+            case FLAT -> FlatCellTree.makeRepresentationOf(width, height, minimalCellSize, poolObjectsAvailable);
+            case MAPPED -> MappedCellTree.makeRepresentationOf(width, height, minimalCellSize);
+        };
+    }
+
+    int getWidth();
+
+    int getHeight();
+
+    int getDataInt(int x, int y, @NotNull Cell.Data key);
+
+    float getDataFloat(int x, int y, @NotNull Cell.Data key);
+
+    void increment(int x, int y, @NotNull Cell.Data key);
+
+    /**
+     * @throws RuntimeException if there is no data of the given key for the indivisible cell containing (x,y).
+     */
+    void decrement(int x, int y, @NotNull Cell.Data key);
+
+    void modifyVectorFieldAt(int x, int y, FloatUnaryOperation transformX, FloatUnaryOperation transformY);
+
+    /**
+     * Activates the indivisible cell containing the given point.
+     */
+    void activate(int x, int y);
+
+    /**
+     * Clears all data of all indivisible cells of this tree.
+     */
+    void clearData();
+
+    /**
+     * Releases what the tree holds outside of the heap, after which it is not to be used. Nothing, unless overridden.
+     */
+    @Override
+    default void close() {
+    }
+
+    /**
+     * @return statistics on how much of the ladder and vector field data of this tree is allocated.
+     */
+    ChunkOccupancy chunkOccupancy();
+
+    /**
+     * @return the counters of the pools from which the data of this tree is borrowed.
+     */
+    PoolStatistics poolStatistics();
+
+    /**
+     * Performs the given action on each indivisible cell which matches the given condition.
+     *
+     * @param condition the condition to match. Implementations may skip sub-trees whose cells do not match.
+     * @param action    the action to perform.
+     */
+    void forEachIndivisibleCellMatching(Predicate<IndivisibleCell> condition, Consumer<IndivisibleCell> action);
+
+    /**
+     * Performs the given action on each indivisible cell which meets the given rectangle. Unlike
+     * {@link #forEachIndivisibleCellMatching(Predicate, Consumer)}, implementations which create their indivisible
+     * cells lazily create the ones meeting the rectangle before visiting them.
+     */
+    default void forEachIndivisibleCellMeeting(RectInt rect, Consumer<IndivisibleCell> action) {
+        forEachIndivisibleCellMatching(c -> c.getUnderlyingRectInt().meets(rect), action);
+    }
+
+    /**
+     * Visits each indivisible cell which meets the given rectangle, depth first, without allocating. Cells which
+     * have not been created are not visited. May be called from several threads at once.
+     */
+    void forEachLeafIntersecting(RectInt rect, LeafVisitor visitor);
+
+    /**
+     * Visits each indivisible cell which does not meet the given rectangle, depth first, without allocating. Cells
+     * which have not been created are not visited. May be called from several threads at once.
+     */
+    void forEachLeafOutside(RectInt rect, LeafVisitor visitor);
+
+    default int getCollision(int x, int y) {
+        return getDataInt(x, y, Cell.Data.COLLISION);
+    }
+
+    default int getLadder(int x, int y) {
+        return getDataInt(x, y, Cell.Data.LADDER);
+    }
+
+    default float getVectorFieldX(int x, int y) {
+        return getDataFloat(x, y, Cell.Data.VECTOR_FIELD_X);
+    }
+
+    default float getVectorFieldY(int x, int y) {
+        return getDataFloat(x, y, Cell.Data.VECTOR_FIELD_Y);
+    }
+
+    default void incrementCollisionAt(int x, int y) {
+        increment(x, y, Cell.Data.COLLISION);
+    }
+
+    default void decrementCollisionAt(int x, int y) {
+        decrement(x, y, Cell.Data.COLLISION);
+    }
+
+    default boolean isCollisionAt(int x, int y) {
+        return getCollision(x, y) > 0;
+    }
+
+    default boolean isLadderAt(int x, int y) {
+        return getLadder(x, y) > 0;
+    }
+
+    default boolean isCollisionIfNotLadderData(int x, int y) {
+        if (isLadderAt(x, y)) return false;
+        else return (isCollisionAt(x, y));
+    }
+
+    default void increaseLadderAt(int x, int y) {
+        increment(x, y, Cell.Data.LADDER);
+    }
+
+    default void decreaseLadderAt(int x, int y) {
+        decrement(x, y, Cell.Data.LADDER);
+    }
+
+    /**
+     * Fills in all data at the given point, finding the indivisible cell containing it only once.
+     *
+     * @param out the sample to fill in.
+     * @return the given sample.
+     */
+    default CellSample sample(int x, int y, @NotNull CellSample out) {
+        return out.set(getCollision(x, y), getLadder(x, y), getVectorFieldX(x, y), getVectorFieldY(x, y));
+    }
+
+    /**
+     * Scans the half-open column segment {x} x [yFrom, yTo).
+     *
+     * @return the least y of the segment where there is collision, or {@code yTo} if there is none.
+     */
+    default int firstCollisionInColumn(int x, int yFrom, int yTo) {
+        for (int y = yFrom; y < yTo; y++) {
+            if (isCollisionAt(x, y)) return y;
+        }
+        return yTo;
+    }
+
+    /**
+     * Scans the half-open column segment {x} x [yFrom, yTo).
+     *
+     * @return the least y of the segment where {@link #isCollisionIfNotLadderData(int, int)} holds, or {@code yTo}
+     * if there is none.
+     */
+    default int firstCollisionIfNotLadderDataInColumn(int x, int yFrom, int yTo) {
+        for (int y = yFrom; y < yTo; y++) {
+            if (isCollisionIfNotLadderData(x, y)) return y;
+        }
+        return yTo;
+    }
+
+    /**
+     * The distance from (x,y) up to the nearest point without collision; zero if there is no collision at (x,y).
+     *
+     * @param limit the greatest number to return.
+     * @return the number of consecutive points with collision from (x,y) upwards, at most {@code limit}.
+     */
+    default int collisionRunAbove(int x, int y, int limit) {
+        int run = 0;
+        while (run < limit && isCollisionAt(x, y + run)) run++;
+        return run;
+    }
+
+    /**
+     * The distance from (x,y) down to the nearest point with collision; zero if there is collision at (x,y).
+     *
+     * @param limit the greatest number to return.
+     * @return the number of consecutive points without collision from (x,y) downwards, at most {@code limit}.
+     */
+    default int freeRunBelow(int x, int y, int limit) {
+        int run = 0;
+        while (run < limit && !isCollisionAt(x, y - run)) run++;
+        return run;
+    }
+
+    /**
+     * @return true iff there is collision somewhere on the half-open row segment [xFrom, xTo) x {y}.
+     */
+    default boolean anyCollisionInRow(int y, int xFrom, int xTo) {
+        for (int x = xFrom; x < xTo; x++) {
+            if (isCollisionAt(x, y)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of points of the half-open rectangle [xFrom, xTo) x [yFrom, yTo) where there is collision.
+     */
+    default int countCollisionsInRect(int xFrom, int yFrom, int xTo, int yTo) {
+        int count = 0;
+        for (int x = xFrom; x < xTo; x++) {
+            for (int y = yFrom; y < yTo; y++) {
+                if (isCollisionAt(x, y)) count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Available implementations of this interface.
+     */
+    enum Implementation {
+        RECURSIVE,
+        FLAT,
+        MAPPED
+    }
+}
@@ -0,0 +1,649 @@
+package dev.kabin.util.cell;
+
+import dev.kabin.components.worldmodel.ChunkOccupancy;
+import dev.kabin.components.worldmodel.ChunkedFloatMatrixPool;
+import dev.kabin.components.worldmodel.ChunkedIntMatrixPool;
+import dev.kabin.components.worldmodel.OccupancyMatrixPool;
+import dev.kabin.util.lambdas.FloatUnaryOperation;
+import dev.kabin.util.linalg.ChunkedFloatMatrix;
+import dev.kabin.util.linalg.ChunkedIntMatrix;
+import dev.kabin.util.linalg.OccupancyMatrix;
+import dev.kabin.util.pools.objectpool.PoolStatistics;
+import dev.kabin.util.shapes.primitive.ImmutableRectInt;
+import dev.kabin.util.shapes.primitive.RectInt;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A quad tree of pixel data with the same geometry as {@link Cell}, but where the nodes are kept in flat arrays
+ * instead of as a graph of objects.
+ * <p>
+ * Node number {@code n} spans the half-open rectangle
+ * [nodeMinX[n], nodeMinX[n] + nodeWidth[n]) x [nodeMinY[n], nodeMinY[n] + nodeHeight[n]).
+ * Its four sub-nodes are stored consecutively from index {@code firstSubNode[n]}, in the order given in the javadoc
+ * of {@link Cell}. If node {@code n} is indivisible, then {@code firstSubNode[n]} equals {@link #NO_SUB_NODES} and
+ * {@code leafSlot[n]} is the index of its data in the per-leaf arrays.
+ * <p>
+ * Finding the data at a point is a loop over node indices, without any lambdas or map look-ups along the way.
+ * If all indivisible nodes have the same power-of-two size, which is always the case for trees made by
+ * {@link #makeRepresentationOf(int, int, int, int)}, the loop is replaced by a look-up in a leaf directory.
+ */
+public final class FlatCellTree implements CellTree {
+
+    // Statics:
+    private static final Logger logger = Logger.getLogger(FlatCellTree.class.getName());
+    private static final int NO_SUB_NODES = -1;
+    private static final int NO_LEAF = -1;
+
+    // Node data:
+    private final int[] nodeMinX;
+    private final int[] nodeMinY;
+    private final int[] nodeWidth;
+    private final int[] nodeHeight;
+    private final int[] firstSubNode;
+    private final int[] leafSlot;
+
+    // Leaf data:
+    private final int[] leafMinX;
+    private final int[] leafMinY;
+    private final int[] leafMaxX; // Exclusive.
+    private final int[] leafMaxY; // Exclusive.
+    private final OccupancyMatrix[] collision;
+    private final ChunkedIntMatrix[] ladder;
+    private final ChunkedFloatMatrix[] vectorFieldX;
+    private final ChunkedFloatMatrix[] vectorFieldY;
+    private final boolean[] active;
+    private final Leaf[] leaves;
+
+    // Leaf directory; null unless all leaves have the same power-of-two size. Indexed by row * columns + column.
+    private final int[] leafSlotDirectory;
+    private final int directoryColumns;
+    private final int directoryRows;
+    private final int leafSizeLog2;
+
+    // Pools:
+    private final ChunkedIntMatrixPool intMatrixPool;
+    private final OccupancyMatrixPool occupancyMatrixPool;
+    private final ChunkedFloatMatrixPool floatMatrixPool;
+
+    FlatCellTree(int x,
+                 int y,
+                 int width,
+                 int height,
+                 int minimalCellSize,
+                 @NotNull ChunkedIntMatrixPool intMatrixPool,
+                 @NotNull OccupancyMatrixPool occupancyMatrixPool,
+                 @NotNull ChunkedFloatMatrixPool floatMatrixPool) {
+
+        // Early exit; same requirements as for the root of a Cell.
+        if (Math.floorMod(x, minimalCellSize) != 0 || Math.floorMod(y, minimalCellSize) != 0
+                || Math.floorMod(width, minimalCellSize) != 0 || Math.floorMod(height, minimalCellSize) != 0) {
+            throw new IllegalArgumentException("Received invalid parameters: " + x + ", " + y + ", " + width + ", " + height);
+        }
+
+        this.intMatrixPool = intMatrixPool;
+        this.occupancyMatrixPool = occupancyMatrixPool;
+        this.floatMatrixPool = floatMatrixPool;
+
+        final int nodes = countNodes(width, height, minimalCellSize);
+        nodeMinX = new int[nodes];
+        nodeMinY = new int[nodes];
+        nodeWidth = new int[nodes];
+        nodeHeight = new int[nodes];
+        firstSubNode = new int[nodes];
+        leafSlot = new int[nodes];
+
+        nodeMinX[0] = x;
+        nodeMinY[0] = y;
+        nodeWidth[0] = width;
+        nodeHeight[0] = height;
+
+        // Breadth first: sub-nodes are appended after all nodes already present.
+        int next = 1;
+        int leafCount = 0;
+        for (int n = 0; n < nodes; n++) {
+            final int halfWidth = nodeWidth[n] / 2;
+            final int halfHeight = nodeHeight[n] / 2;
+            if (isDivisible(nodeWidth[n], nodeHeight[n], minimalCellSize)) {
+                firstSubNode[n] = next;
+                leafSlot[n] = NO_LEAF;
+                for (int index = 0; index < 4; index++) {
+                    nodeMinX[next] = nodeMinX[n] + (index % 2) * halfWidth;
+                    nodeMinY[next] = nodeMinY[n] + (index / 2) * halfHeight;
+                    nodeWidth[next] = halfWidth;
+                    nodeHeight[next] = halfHeight;
+                    next++;
+                }
+            } else {
+                firstSubNode[n] = NO_SUB_NODES;
+                leafSlot[n] = leafCount++;
+            }
+        }
+
+        leafMinX = new int[leafCount];
+        leafMinY = new int[leafCount];
+        leafMaxX = new int[leafCount];
+        leafMaxY = new int[leafCount];
+        collision = new OccupancyMatrix[leafCount];
+        ladder = new ChunkedIntMatrix[leafCount];
+        vectorFieldX = new ChunkedFloatMatrix[leafCount];
+        vectorFieldY = new ChunkedFloatMatrix[leafCount];
+        active = new boolean[leafCount];
+        leaves = new Leaf[leafCount];
+        boolean uniformLeaves = true;
+        int leafSize = -1;
+        for (int n = 0; n < nodes; n++) {
+            final int slot = leafSlot[n];
+            if (slot != NO_LEAF) {
+                leafMinX[slot] = nodeMinX[n];
+                leafMinY[slot] = nodeMinY[n];
+                leafMaxX[slot] = nodeMinX[n] + nodeWidth[n];
+                leafMaxY[slot] = nodeMinY[n] + nodeHeight[n];
+                leaves[slot] = new Leaf(slot, new ImmutableRectInt(nodeMinX[n], nodeMinY[n], nodeWidth[n] - 1, nodeHeight[n] - 1));
+                if (leafSize == -1) leafSize = nodeWidth[n];
+                uniformLeaves &= nodeWidth[n] == leafSize && nodeHeight[n] == leafSize;
+            }
+        }
+
+        if (uniformLeaves && Integer.bitCount(leafSize) == 1) {
+            leafSizeLog2 = Integer.numberOfTrailingZeros(leafSize);
+            directoryColumns = width >> leafSizeLog2;
+            directoryRows = height >> leafSizeLog2;
+            leafSlotDirectory = new int[directoryColumns * directoryRows];
+            for (int slot = 0; slot < leafCount; slot++) {
+                final int column = (leafMinX[slot] - x) >> leafSizeLog2;
+                final int row = (leafMinY[slot] - y) >> leafSizeLog2;
+                leafSlotDirectory[row * directoryColumns + column] = slot;
+            }
+        } else {
+            leafSizeLog2 = 0;
+            directoryColumns = 0;
+            directoryRows = 0;
+            leafSlotDirectory = null;
+        }
+    }
+
+    @NotNull
+    public static FlatCellTree makeRepresentationOf(int width,
+                                                    int height,
+                                                    int minimalCellSize,
+                                                    int poolObjectsAvailable) {
+        final var intMatrixPool = new ChunkedIntMatrixPool(poolObjectsAvailable, () -> new ChunkedIntMatrix(minimalCellSize, minimalCellSize));
+        final var occupancyMatrixPool = new OccupancyMatrixPool(poolObjectsAvailable, () -> new OccupancyMatrix(minimalCellSize, minimalCellSize));
+        final var floatMatrixPool = new ChunkedFloatMatrixPool(poolObjectsAvailable, () -> new ChunkedFloatMatrix(minimalCellSize, minimalCellSize));
+        int x = minimalCellSize, y = minimalCellSize;
+        while (x < width * 2 || y < height * 2) {
+            x *= 2;
+            y *= 2;
+        }
+        logger.log(Level.WARNING, "Creating flat cell tree with dimensions {" + x + ", " + y + "}");
+        return new FlatCellTree(-x / 2, -y / 2, x, y, minimalCellSize, intMatrixPool, occupancyMatrixPool, floatMatrixPool);
+    }
+
+    /**
+     * A node is divisible iff its sub-nodes are aligned with the minimal cell size. This is the same criterion as
+     * {@link CellParameters#hasSubcomponents()} applied to the sub-components of a {@link Cell}.
+     */
+    private static boolean isDivisible(int width, int height, int minimalCellSize) {
+        final int halfWidth = width / 2, halfHeight = height / 2;
+        return halfWidth >= minimalCellSize && halfHeight >= minimalCellSize
+                && Math.floorMod(halfWidth, minimalCellSize) == 0
+                && Math.floorMod(halfHeight, minimalCellSize) == 0;
+    }
+
+    private static int countNodes(int width, int height, int minimalCellSize) {
+        return isDivisible(width, height, minimalCellSize)
+                ? 1 + 4 * countNodes(width / 2, height / 2, minimalCellSize)
+                : 1;
+    }
+
+    /**
+     * @return the leaf slot of the indivisible cell containing (x,y), or {@link #NO_LEAF} if there is none.
+     */
+    private int findLeafSlot(int x, int y) {
+        if (x < nodeMinX[0] || y < nodeMinY[0]) return NO_LEAF;
+        if (leafSlotDirectory != null) {
+            final int column = (x - nodeMinX[0]) >> leafSizeLog2;
+            final int row = (y - nodeMinY[0]) >> leafSizeLog2;
+            return (column < directoryColumns && row < directoryRows)
+                    ? leafSlotDirectory[row * directoryColumns + column]
+                    : NO_LEAF;
+        }
+        int n = 0;
+        while (firstSubNode[n] != NO_SUB_NODES) {
+            int subNode = firstSubNode[n];
+            if (x >= nodeMinX[n] + nodeWidth[n] / 2) subNode += 1;
+            if (y >= nodeMinY[n] + nodeHeight[n] / 2) subNode += 2;
+            n = subNode;
+        }
+        // Also deals with points beyond the root, and with the lost pixels of odd dimensions.
+        if (x >= nodeMinX[n] + nodeWidth[n] || y >= nodeMinY[n] + nodeHeight[n]) return NO_LEAF;
+        return leafSlot[n];
+    }
+
+    private int getInt(ChunkedIntMatrix[] channel, int x, int y) {
+        final int slot = findLeafSlot(x, y);
+        if (slot == NO_LEAF) return 0;
+        final ChunkedIntMatrix data = channel[slot];
+        return (data != null) ? data.get(x - leafMinX[slot], y - leafMinY[slot]) : 0;
+    }
+
+    private float getFloat(ChunkedFloatMatrix[] channel, int x, int y) {
+        final int slot = findLeafSlot(x, y);
+        if (slot == NO_LEAF) return 0f;
+        final ChunkedFloatMatrix data = channel[slot];
+        return (data != null) ? data.get(x - leafMinX[slot], y - leafMinY[slot]) : 0f;
+    }
+
+    private void incrementInSlot(int slot, int x, int y, @NotNull Cell.Data key) {
+        final int i = x - leafMinX[slot], j = y - leafMinY[slot];
+        switch (key) {
+            case COLLISION -> {
+                if (collision[slot] == null) collision[slot] = occupancyMatrixPool.borrow();
+                collision[slot].increment(i, j);
+            }
+            case LADDER -> {
+                if (ladder[slot] == null) ladder[slot] = intMatrixPool.borrow();
+                ladder[slot].increment(i, j);
+            }
+            case VECTOR_FIELD_X -> {
+                if (vectorFieldX[slot] == null) vectorFieldX[slot] = floatMatrixPool.borrow();
+                vectorFieldX[slot].modify(i, j, f -> f + 1f);
+            }
+            case VECTOR_FIELD_Y -> {
+                if (vectorFieldY[slot] == null) vectorFieldY[slot] = floatMatrixPool.borrow();
+                vectorFieldY[slot].modify(i, j, f -> f + 1f);
+            }
+        }
+    }
+
+    private void clearData(int slot) {
+        if (collision[slot] != null) {
+            occupancyMatrixPool.giveBack(collision[slot]);
+            collision[slot] = null;
+        }
+        if (ladder[slot] != null) {
+            intMatrixPool.giveBack(ladder[slot]);
+            ladder[slot] = null;
+        }
+        if (vectorFieldX[slot] != null) {
+            floatMatrixPool.giveBack(vectorFieldX[slot]);
+            vectorFieldX[slot] = null;
+        }
+        if (vectorFieldY[slot] != null) {
+            floatMatrixPool.giveBack(vectorFieldY[slot]);
+            vectorFieldY[slot] = null;
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return nodeWidth[0];
+    }
+
+    @Override
+    public int getHeight() {
+        return nodeHeight[0];
+    }
+
+    @Override
+    public int getDataInt(int x, int y, @NotNull Cell.Data key) {
+        return switch (key) {
+            case COLLISION -> getCollision(x, y);
+            case LADDER -> getInt(ladder, x, y);
+            default -> throw new IllegalArgumentException("The data of classification '%s' is not of integer type.".formatted(key.name()));
+        };
+    }
+
+    @Override
+    public float getDataFloat(int x, int y, @NotNull Cell.Data key) {
+        return switch (key) {
+            case VECTOR_FIELD_X -> getFloat(vectorFieldX, x, y);
+            case VECTOR_FIELD_Y -> getFloat(vectorFieldY, x, y);
+            default -> throw new IllegalArgumentException("The data of classification '%s' is not of float type.".formatted(key.name()));
+        };
+    }
+
+    @Override
+    public int getCollision(int x, int y) {
+        final int slot = findLeafSlot(x, y);
+        if (slot == NO_LEAF) return 0;
+        final OccupancyMatrix data = collision[slot];
+        return (data != null) ? data.get(x - leafMinX[slot], y - leafMinY[slot]) : 0;
+    }
+
+    @Override
+    public boolean isCollisionAt(int x, int y) {
+        final int slot = findLeafSlot(x, y);
+        if (slot == NO_LEAF) return false;
+        final OccupancyMatrix data = collision[slot];
+        return data != null && data.isSet(x - leafMinX[slot], y - leafMinY[slot]);
+    }
+
+    @Override
+    public int getLadder(int x, int y) {
+        return getInt(ladder, x, y);
+    }
+
+    @Override
+    public float getVectorFieldX(int x, int y) {
+        return getFloat(vectorFieldX, x, y);
+    }
+
+    @Override
+    public float getVectorFieldY(int x, int y) {
+        return getFloat(vectorFieldY, x, y);
+    }
+
+    @Override
+    public ChunkOccupancy chunkOccupancy() {
+        return intMatrixPool.chunkOccupancy().plus(floatMatrixPool.chunkOccupancy());
+    }
+
+    @Override
+    public PoolStatistics poolStatistics() {
+        return occupancyMatrixPool.statistics().plus(intMatrixPool.statistics()).plus(floatMatrixPool.statistics());
+    }
+
+    @Override
+    public CellSample sample(int x, int y, @NotNull CellSample out) {
+        final int slot = findLeafSlot(x, y);
+        if (slot == NO_LEAF) return out.clear();
+        final int i = x - leafMinX[slot], j = y - leafMinY[slot];
+        return out.set(
+                collision[slot] != null ? collision[slot].get(i, j) : 0,
+                ladder[slot] != null ? ladder[slot].get(i, j) : 0,
+                vectorFieldX[slot] != null ? vectorFieldX[slot].get(i, j) : 0f,
+                vectorFieldY[slot] != null ? vectorFieldY[slot].get(i, j) : 0f);
+    }
+
+    @Override
+    public void increment(int x, int y, @NotNull Cell.Data key) {
+        final int slot = findLeafSlot(x, y);
+        if (slot != NO_LEAF) incrementInSlot(slot, x, y, key);
+    }
+
+    @Override
+    public void decrement(int x, int y, @NotNull Cell.Data key) {
+        final int slot = findLeafSlot(x, y);
+        if (slot == NO_LEAF) return;
+        final int i = x - leafMinX[slot], j = y - leafMinY[slot];
+        final boolean decremented = switch (key) {
+            case COLLISION -> decrement(collision[slot], i, j);
+            case LADDER -> decrement(ladder[slot], i, j);
+            case VECTOR_FIELD_X -> decrement(vectorFieldX[slot], i, j);
+            case VECTOR_FIELD_Y -> decrement(vectorFieldY[slot], i, j);
+        };
+        if (!decremented) {
+            throw new RuntimeException(
+                    String.format("The data of classification '%s' at position (%s,%s) for this sub-component was empty. "
+                            + "This method should not have been called.", key.name(), x, y));
+        }
+    }
+
+    @Override
+    public int firstCollisionInColumn(int x, int yFrom, int yTo) {
+        return firstCollisionInColumn(x, yFrom, yTo, false);
+    }
+
+    @Override
+    public int firstCollisionIfNotLadderDataInColumn(int x, int yFrom, int yTo) {
+        return firstCollisionInColumn(x, yFrom, yTo, true);
+    }
+
+    /**
+     * Looks up one leaf per leaf crossed, and scans the collision data of each a word at a time.
+     */
+    private int firstCollisionInColumn(int x, int yFrom, int yTo, boolean skipLadder) {
+        final int to = Math.min(yTo, nodeMinY[0] + nodeHeight[0]);
+        int y = Math.max(yFrom, nodeMinY[0]);
+        while (y < to) {
+            final int slot = findLeafSlot(x, y);
+            if (slot == NO_LEAF) return yTo;
+            final int leafTo = Math.min(to, leafMaxY[slot]);
+            final OccupancyMatrix data = collision[slot];
+            if (data != null) {
+                final ChunkedIntMatrix ladderData = skipLadder ? ladder[slot] : null;
+                final int i = x - leafMinX[slot];
+                int j = y - leafMinY[slot];
+                while ((j = data.firstSetInRow(i, j, leafTo - leafMinY[slot])) != -1) {
+                    if (ladderData == null || ladderData.get(i, j) <= 0) return leafMinY[slot] + j;
+                    j++;
+                }
+            }
+            y = leafTo;
+        }
+        return yTo;
+    }
+
+    @Override
+    public boolean anyCollisionInRow(int y, int xFrom, int xTo) {
+        final int to = Math.min(xTo, nodeMinX[0] + nodeWidth[0]);
+        int x = Math.max(xFrom, nodeMinX[0]);
+        while (x < to) {
+            final int slot = findLeafSlot(x, y);
+            if (slot == NO_LEAF) return false;
+            final int leafTo = Math.min(to, leafMaxX[slot]);
+            final OccupancyMatrix data = collision[slot];
+            if (data != null) {
+                final int j = y - leafMinY[slot];
+                for (int i = x - leafMinX[slot], n = leafTo - leafMinX[slot]; i < n; i++) {
+                    if (data.isSet(i, j)) return true;
+                }
+            }
+            x = leafTo;
+        }
+        return false;
+    }
+
+    @Override
+    public int countCollisionsInRect(int xFrom, int yFrom, int xTo, int yTo) {
+        final int toX = Math.min(xTo, nodeMinX[0] + nodeWidth[0]);
+        final int toY = Math.min(yTo, nodeMinY[0] + nodeHeight[0]);
+        final int fromY = Math.max(yFrom, nodeMinY[0]);
+        int count = 0;
+        for (int x = Math.max(xFrom, nodeMinX[0]); x < toX; x++) {
+            int y = fromY;
+            while (y < toY) {
+                final int slot = findLeafSlot(x, y);
+                if (slot == NO_LEAF) break;
+                final int leafTo = Math.min(toY, leafMaxY[slot]);
+                final OccupancyMatrix data = collision[slot];
+                if (data != null) {
+                    count += data.countSetInRow(x - leafMinX[slot], y - leafMinY[slot], leafTo - leafMinY[slot]);
+                }
+                y = leafTo;
+            }
+        }
+        return count;
+    }
+
+    private static boolean decrement(OccupancyMatrix data, int i, int j) {
+        if (data == null) return false;
+        data.decrement(i, j);
+        return true;
+    }
+
+    private static boolean decrement(ChunkedIntMatrix data, int i, int j) {
+        if (data == null) return false;
+        data.decrement(i, j);
+        return true;
+    }
+
+    private static boolean decrement(ChunkedFloatMatrix data, int i, int j) {
+        if (data == null) return false;
+        data.modify(i, j, f -> f - 1f);
+        return true;
+    }
+
+    @Override
+    public void modifyVectorFieldAt(int x, int y, FloatUnaryOperation transformX, FloatUnaryOperation transformY) {
+        final int slot = findLeafSlot(x, y);
+        if (slot == NO_LEAF) return;
+        if (vectorFieldX[slot] == null) vectorFieldX[slot] = floatMatrixPool.borrow();
+        if (vectorFieldY[slot] == null) vectorFieldY[slot] = floatMatrixPool.borrow();
+        final int i = x - leafMinX[slot], j = y - leafMinY[slot];
+        vectorFieldX[slot].modify(i, j, transformX);
+        vectorFieldY[slot].modify(i, j, transformY);
+    }
+
+    @Override
+    public void activate(int x, int y) {
+        final int slot = findLeafSlot(x, y);
+        if (slot != NO_LEAF) active[slot] = true;
+    }
+
+    @Override
+    public void clearData() {
+        for (int slot = 0, n = leaves.length; slot < n; slot++) {
+            clearData(slot);
+        }
+    }
+
+    @Override
+    public void forEachIndivisibleCellMatching(Predicate<IndivisibleCell> condition, Consumer<IndivisibleCell> action) {
+        //noinspection ForLoopReplaceableByForEach
+        for (int slot = 0, n = leaves.length; slot < n; slot++) {
+            if (condition.test(leaves[slot])) action.accept(leaves[slot]);
+        }
+    }
+
+    @Override
+    public void forEachLeafIntersecting(RectInt rect, LeafVisitor visitor) {
+        forEachLeafIntersecting(0, rect, visitor);
+    }
+
+    private void forEachLeafIntersecting(int node, RectInt rect, LeafVisitor visitor) {
+        final int minX = nodeMinX[node], minY = nodeMinY[node];
+        final int maxX = minX + nodeWidth[node] - 1, maxY = minY + nodeHeight[node] - 1;
+        // The same convention as ImmutableRectInt#meets, with inclusive maxima.
+        if (!(maxX - rect.getMinX() > 0 && minX - rect.getMaxX() < 0 && maxY - rect.getMinY() > 0 && minY - rect.getMaxY() < 0)) {
+            return;
+        }
+        final int first = firstSubNode[node];
+        if (first == NO_SUB_NODES) {
+            visitor.visit(leaves[leafSlot[node]]);
+        } else {
+            for (int index = 0; index < 4; index++) forEachLeafIntersecting(first + index, rect, visitor);
+        }
+    }
+
+    @Override
+    public void forEachLeafOutside(RectInt rect, LeafVisitor visitor) {
+        forEachLeafOutside(0, rect, visitor);
+    }
+
+    private void forEachLeafOutside(int node, RectInt rect, LeafVisitor visitor) {
+        final int minX = nodeMinX[node], minY = nodeMinY[node];
+        final int maxX = minX + nodeWidth[node] - 1, maxY = minY + nodeHeight[node] - 1;
+        // Every leaf of a sub-tree strictly inside the rectangle meets it.
+        if (rect.getMinX() < minX && maxX < rect.getMaxX() && rect.getMinY() < minY && maxY < rect.getMaxY()) return;
+        final int first = firstSubNode[node];
+        if (first == NO_SUB_NODES) {
+            final IndivisibleCell leaf = leaves[leafSlot[node]];
+            if (!leaf.getUnderlyingRectInt().meets(rect)) visitor.visit(leaf);
+        } else {
+            for (int index = 0; index < 4; index++) forEachLeafOutside(first + index, rect, visitor);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "x: " + nodeMinX[0] +
+                ", y: " + nodeMinY[0] +
+                ", nodes: " + nodeMinX.length +
+                ", leaves: " + leaves.length + "}";
+    }
+
+    /**
+     * A view of an indivisible node. There is one instance per leaf slot, so that these may be used as keys.
+     */
+    private final class Leaf implements IndivisibleCell {
+
+        private final int slot;
+        private final ImmutableRectInt underlyingRectInt;
+
+        private Leaf(int slot, ImmutableRectInt underlyingRectInt) {
+            this.slot = slot;
+            this.underlyingRectInt = underlyingRectInt;
+        }
+
+        @Override
+        public int getId() {
+            return slot;
+        }
+
+        @Override
+        public ImmutableRectInt getUnderlyingRectInt() {
+            return underlyingRectInt;
+        }
+
+        @Override
+        public boolean isActive() {
+            return active[slot];
+        }
+
+        @Override
+        public void setActive(boolean b) {
+            active[slot] = b;
+        }
+
+        @Override
+        public void clearData() {
+            FlatCellTree.this.clearData(slot);
+        }
+
+        @Override
+        public int snapshotBytes() {
+            return LeafSnapshots.bytesOf(collision[slot], ladder[slot], vectorFieldX[slot], vectorFieldY[slot]);
+        }
+
+        @Override
+        public void writeSnapshot(ByteBuffer buffer) {
+            LeafSnapshots.write(buffer, collision[slot], ladder[slot], vectorFieldX[slot], vectorFieldY[slot]);
+        }
+
+        @Override
+        public void readSnapshot(ByteBuffer buffer) {
+            FlatCellTree.this.clearData(slot);
+            final int present = buffer.get();
+            if ((present & LeafSnapshots.COLLISION_BIT) != 0) {
+                collision[slot] = occupancyMatrixPool.borrow();
+                collision[slot].readFrom(buffer);
+            }
+            if ((present & LeafSnapshots.LADDER_BIT) != 0) {
+                ladder[slot] = intMatrixPool.borrow();
+                ladder[slot].readFrom(buffer);
+            }
+            if ((present & LeafSnapshots.VECTOR_FIELD_X_BIT) != 0) {
+                vectorFieldX[slot] = floatMatrixPool.borrow();
+                vectorFieldX[slot].readFrom(buffer);
+            }
+            if ((present & LeafSnapshots.VECTOR_FIELD_Y_BIT) != 0) {
+                vectorFieldY[slot] = floatMatrixPool.borrow();
+                vectorFieldY[slot].readFrom(buffer);
+            }
+        }
+
+        @Override
+        public void incrementCollisionAt(int x, int y) {
+            if (underlyingRectInt.contains(x, y)) {
+                incrementInSlot(slot, x, y, Cell.Data.COLLISION);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "{" +
+                    "id: " + slot +
+                    ", x: " + underlyingRectInt.getMinX() +
+                    ", y: " + underlyingRectInt.getMinY() + "}";
+        }
+    }
+}
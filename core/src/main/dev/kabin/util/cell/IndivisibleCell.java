@@ -0,0 +1,74 @@
+package dev.kabin.util.cell;
+
+import dev.kabin.util.collections.Id;
+import dev.kabin.util.shapes.primitive.ImmutableRectInt;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A cell of a {@link CellTree} which has no sub-components. Such cells are the ones that actually hold
+ * pixel data, and are the ones that are activated or cleared as the camera moves around in the world.
+ */
+public interface IndivisibleCell extends Id {
+
+    /**
+     * @return the rectangle spanned by this cell.
+     */
+    ImmutableRectInt getUnderlyingRectInt();
+
+    boolean isActive();
+
+    void setActive(boolean b);
+
+    default boolean isInactive() {
+        return !isActive();
+    }
+
+    /**
+     * Gives back all data associated with this cell to its pools.
+     */
+    void clearData();
+
+    /**
+     * @return true if the data of this cell has been populated before, and is still present after
+     * {@link #clearData()}, so that it need not be recomputed when this cell is activated again.
+     */
+    default boolean isDataRetained() {
+        return false;
+    }
+
+    /**
+     * Forgets the data of this cell, including any retained by {@link #clearData()}, once it is out of date.
+     */
+    default void discardRetainedData() {
+        clearData();
+    }
+
+    void incrementCollisionAt(int x, int y);
+
+    /**
+     * Runs the given writes to the data of this cell, such as a replay of collision data, deferring whatever is
+     * derived from the data until all of them are done.
+     */
+    default void writeInBulk(@NotNull Runnable writes) {
+        writes.run();
+    }
+
+    /**
+     * @return the number of bytes {@link #writeSnapshot(ByteBuffer)} writes for the current data of this cell.
+     */
+    int snapshotBytes();
+
+    /**
+     * Writes all data of this cell at the position of the given buffer.
+     */
+    void writeSnapshot(ByteBuffer buffer);
+
+    /**
+     * Replaces all data of this cell by what {@link #writeSnapshot(ByteBuffer)} wrote at the position of the given
+     * buffer. Snapshots are only meant to be read by cells of the same {@link CellTree.Implementation} and size.
+     */
+    void readSnapshot(ByteBuffer buffer);
+
+}
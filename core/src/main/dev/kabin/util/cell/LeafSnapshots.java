@@ -0,0 +1,48 @@
+package dev.kabin.util.cell;
+
+import dev.kabin.util.linalg.ChunkedFloatMatrix;
+import dev.kabin.util.linalg.ChunkedIntMatrix;
+import dev.kabin.util.linalg.OccupancyMatrix;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The snapshot format shared by the indivisible cells that keep their data in pooled matrices: a byte telling which
+ * {@link Cell.Data} are present, followed by the present matrices in the order of {@link Cell.Data}.
+ */
+final class LeafSnapshots {
+
+    static final int COLLISION_BIT = 1;
+    static final int LADDER_BIT = 1 << 1;
+    static final int VECTOR_FIELD_X_BIT = 1 << 2;
+    static final int VECTOR_FIELD_Y_BIT = 1 << 3;
+
+    private LeafSnapshots() {
+    }
+
+    static int bytesOf(OccupancyMatrix collision,
+                       ChunkedIntMatrix ladder,
+                       ChunkedFloatMatrix vectorFieldX,
+                       ChunkedFloatMatrix vectorFieldY) {
+        return Byte.BYTES
+                + (collision != null ? collision.serializedBytes() : 0)
+                + (ladder != null ? ladder.serializedBytes() : 0)
+                + (vectorFieldX != null ? vectorFieldX.serializedBytes() : 0)
+                + (vectorFieldY != null ? vectorFieldY.serializedBytes() : 0);
+    }
+
+    static void write(ByteBuffer buffer,
+                      OccupancyMatrix collision,
+                      ChunkedIntMatrix ladder,
+                      ChunkedFloatMatrix vectorFieldX,
+                      ChunkedFloatMatrix vectorFieldY) {
+        buffer.put((byte) ((collision != null ? COLLISION_BIT : 0)
+                | (ladder != null ? LADDER_BIT : 0)
+                | (vectorFieldX != null ? VECTOR_FIELD_X_BIT : 0)
+                | (vectorFieldY != null ? VECTOR_FIELD_Y_BIT : 0)));
+        if (collision != null) collision.writeTo(buffer);
+        if (ladder != null) ladder.writeTo(buffer);
+        if (vectorFieldX != null) vectorFieldX.writeTo(buffer);
+        if (vectorFieldY != null) vectorFieldY.writeTo(buffer);
+    }
+}
@@ -0,0 +1,12 @@
+package dev.kabin.util.cell;
+
+/**
+ * An action on the indivisible cells of a {@link CellTree}, as visited by
+ * {@link CellTree#forEachLeafIntersecting(dev.kabin.util.shapes.primitive.RectInt, LeafVisitor)} and
+ * {@link CellTree#forEachLeafOutside(dev.kabin.util.shapes.primitive.RectInt, LeafVisitor)}.
+ */
+@FunctionalInterface
+public interface LeafVisitor {
+
+    void visit(IndivisibleCell leaf);
+}
@@ -0,0 +1,435 @@
+package dev.kabin.util.cell;
+
+import dev.kabin.components.worldmodel.ChunkOccupancy;
+import dev.kabin.util.lambdas.FloatUnaryOperation;
+import dev.kabin.util.pools.objectpool.PoolStatistics;
+import dev.kabin.util.shapes.primitive.ImmutableRectInt;
+import dev.kabin.util.shapes.primitive.RectInt;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link CellTree} whose data lives in a memory-mapped file instead of on the heap, so that the operating system
+ * pages regions of the world in and out.
+ * <p>
+ * The tree has the same geometry as the one made by {@link Cell#makeRepresentationOf(int, int, int, int)}, and its
+ * indivisible cells are found through a leaf directory. The data of indivisible cell number {@code slot} is the
+ * slice [slot * leafBytes, (slot + 1) * leafBytes) of the file. In that slice, the four {@link Cell.Data}
+ * values of a point are stored next to each other, in the order collision, ladder, vector field x and vector field y.
+ * <p>
+ * An indivisible cell maps its slice on first access. {@link IndivisibleCell#clearData()} only lets go of the
+ * mapping; the data stays in the file, and is reported by {@link IndivisibleCell#isDataRetained()}, so that it need
+ * not be replayed once the cell is activated again, unless {@link IndivisibleCell#discardRetainedData()} was called
+ * since. A mapping is only unmapped once its buffer is garbage collected, so the memory of a cleared cell is not
+ * reclaimed right away; being backed by the file, its pages may be paged out by the operating system before that.
+ * <p>
+ * The file is closed and deleted by {@link #close()}, after which the tree is not to be used.
+ */
+public final class MappedCellTree implements CellTree {
+
+    // Statics:
+    private static final Logger logger = Logger.getLogger(MappedCellTree.class.getName());
+    private static final int BYTES_PER_POINT = 16;
+    private static final int COLLISION_OFFSET = 0;
+    private static final int LADDER_OFFSET = 4;
+    private static final int VECTOR_FIELD_X_OFFSET = 8;
+    private static final int VECTOR_FIELD_Y_OFFSET = 12;
+
+    // Fields:
+    private final Path path;
+    private final FileChannel channel;
+    private final int minX;
+    private final int minY;
+    private final int width;
+    private final int height;
+    private final int leafSize;
+    private final int leafSizeLog2;
+    private final int columns;
+    private final int rows;
+    private final long leafBytes;
+    private final Leaf[] leaves;
+
+    /**
+     * @param path the file in which to keep the data, which is deleted once the tree is closed.
+     */
+    MappedCellTree(@NotNull Path path, int x, int y, int width, int height, int leafSize) throws IOException {
+        if (Integer.bitCount(leafSize) != 1 || Math.floorMod(x, leafSize) != 0 || Math.floorMod(y, leafSize) != 0
+                || Math.floorMod(width, leafSize) != 0 || Math.floorMod(height, leafSize) != 0) {
+            throw new IllegalArgumentException("Received invalid parameters: " + x + ", " + y + ", " + width + ", " + height);
+        }
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.minX = x;
+        this.minY = y;
+        this.width = width;
+        this.height = height;
+        this.leafSize = leafSize;
+        this.leafSizeLog2 = Integer.numberOfTrailingZeros(leafSize);
+        this.columns = width >> leafSizeLog2;
+        this.rows = height >> leafSizeLog2;
+        this.leafBytes = (long) leafSize * leafSize * BYTES_PER_POINT;
+        this.leaves = new Leaf[columns * rows];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                final int slot = row * columns + column;
+                leaves[slot] = new Leaf(slot, x + column * leafSize, y + row * leafSize);
+            }
+        }
+    }
+
+    /**
+     * Makes a tree backed by a temporary file, which is deleted when the tree is closed, or else when the virtual
+     * machine exits. The file grows as
+     * slices are mapped, and on most file systems the slices in between occupy no disk space until written to.
+     */
+    @NotNull
+    public static MappedCellTree makeRepresentationOf(int width, int height, int minimalCellSize) {
+        int x = minimalCellSize, y = minimalCellSize;
+        while (x < width * 2 || y < height * 2) {
+            x *= 2;
+            y *= 2;
+        }
+        logger.log(Level.WARNING, "Creating memory-mapped cell tree with dimensions {" + x + ", " + y + "}");
+        try {
+            final Path path = Files.createTempFile("kabin-world", ".cells");
+            path.toFile().deleteOnExit();
+            return new MappedCellTree(path, -x / 2, -y / 2, x, y, minimalCellSize);
+        } catch (IOException e) {
+            throw new RuntimeException("Caught exception while creating the file of a memory-mapped cell tree.", e);
+        }
+    }
+
+    /**
+     * @return the indivisible cell containing (x,y), or null if there is none.
+     */
+    private Leaf findLeaf(int x, int y) {
+        if (x < minX || y < minY) return null;
+        final int column = (x - minX) >> leafSizeLog2;
+        final int row = (y - minY) >> leafSizeLog2;
+        return (column < columns && row < rows) ? leaves[row * columns + column] : null;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getDataInt(int x, int y, @NotNull Cell.Data key) {
+        final Leaf leaf = findLeaf(x, y);
+        return (leaf != null) ? leaf.buffer().getInt(leaf.offset(x, y) + intOffset(key)) : 0;
+    }
+
+    @Override
+    public float getDataFloat(int x, int y, @NotNull Cell.Data key) {
+        final Leaf leaf = findLeaf(x, y);
+        return (leaf != null) ? leaf.buffer().getFloat(leaf.offset(x, y) + floatOffset(key)) : 0f;
+    }
+
+    private static int intOffset(Cell.Data key) {
+        return switch (key) {
+            case COLLISION -> COLLISION_OFFSET;
+            case LADDER -> LADDER_OFFSET;
+            default -> throw new IllegalArgumentException("The data of classification '%s' is not of integer type.".formatted(key.name()));
+        };
+    }
+
+    private static int floatOffset(Cell.Data key) {
+        return switch (key) {
+            case VECTOR_FIELD_X -> VECTOR_FIELD_X_OFFSET;
+            case VECTOR_FIELD_Y -> VECTOR_FIELD_Y_OFFSET;
+            default -> throw new IllegalArgumentException("The data of classification '%s' is not of float type.".formatted(key.name()));
+        };
+    }
+
+    @Override
+    public CellSample sample(int x, int y, @NotNull CellSample out) {
+        final Leaf leaf = findLeaf(x, y);
+        if (leaf == null) return out.clear();
+        final MappedByteBuffer buffer = leaf.buffer();
+        final int offset = leaf.offset(x, y);
+        return out.set(
+                buffer.getInt(offset + COLLISION_OFFSET),
+                buffer.getInt(offset + LADDER_OFFSET),
+                buffer.getFloat(offset + VECTOR_FIELD_X_OFFSET),
+                buffer.getFloat(offset + VECTOR_FIELD_Y_OFFSET));
+    }
+
+    @Override
+    public void increment(int x, int y, @NotNull Cell.Data key) {
+        add(x, y, key, 1);
+    }
+
+    /**
+     * @throws RuntimeException if the data of the given integer key at (x,y) is zero, as with the heap backed
+     *                          implementations, rather than letting it go negative in the file.
+     */
+    @Override
+    public void decrement(int x, int y, @NotNull Cell.Data key) {
+        final Leaf leaf = findLeaf(x, y);
+        if (leaf == null) return;
+        if (key.getType() == Cell.Data.PrimitiveType.INTEGER
+                && leaf.buffer().getInt(leaf.offset(x, y) + intOffset(key)) == 0) {
+            throw new RuntimeException(
+                    String.format("The data of classification '%s' at position (%s,%s) for this sub-component was empty. "
+                            + "This method should not have been called.", key.name(), x, y));
+        }
+        add(x, y, key, -1);
+    }
+
+    private void add(int x, int y, @NotNull Cell.Data key, int amount) {
+        final Leaf leaf = findLeaf(x, y);
+        if (leaf == null) return;
+        final MappedByteBuffer buffer = leaf.buffer();
+        final int offset = leaf.offset(x, y);
+        switch (key.getType()) {
+            case INTEGER -> {
+                final int index = offset + intOffset(key);
+                buffer.putInt(index, buffer.getInt(index) + amount);
+            }
+            case FLOAT -> {
+                final int index = offset + floatOffset(key);
+                buffer.putFloat(index, buffer.getFloat(index) + amount);
+            }
+        }
+    }
+
+    @Override
+    public void modifyVectorFieldAt(int x, int y, FloatUnaryOperation transformX, FloatUnaryOperation transformY) {
+        final Leaf leaf = findLeaf(x, y);
+        if (leaf == null) return;
+        final MappedByteBuffer buffer = leaf.buffer();
+        final int offset = leaf.offset(x, y);
+        buffer.putFloat(offset + VECTOR_FIELD_X_OFFSET, transformX.eval(buffer.getFloat(offset + VECTOR_FIELD_X_OFFSET)));
+        buffer.putFloat(offset + VECTOR_FIELD_Y_OFFSET, transformY.eval(buffer.getFloat(offset + VECTOR_FIELD_Y_OFFSET)));
+    }
+
+    @Override
+    public void activate(int x, int y) {
+        final Leaf leaf = findLeaf(x, y);
+        if (leaf != null && leaf.isInactive()) leaf.setActive(true);
+    }
+
+    /**
+     * Zeroes the data of all indivisible cells of this tree.
+     */
+    @Override
+    public void clearData() {
+        for (Leaf leaf : leaves) {
+            leaf.erase();
+        }
+    }
+
+    /**
+     * Lets go of the mappings, and closes and deletes the file.
+     */
+    @Override
+    public void close() {
+        for (Leaf leaf : leaves) {
+            leaf.clearData();
+        }
+        try {
+            channel.close();
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new RuntimeException("Caught exception while closing the file of a memory-mapped cell tree.", e);
+        }
+    }
+
+    /**
+     * The data of this tree is not held in pooled matrices.
+     */
+    @Override
+    public ChunkOccupancy chunkOccupancy() {
+        return ChunkOccupancy.EMPTY;
+    }
+
+    /**
+     * The data of this tree is not held in pooled matrices.
+     */
+    @Override
+    public PoolStatistics poolStatistics() {
+        return PoolStatistics.EMPTY;
+    }
+
+    @Override
+    public void forEachIndivisibleCellMatching(Predicate<IndivisibleCell> condition, Consumer<IndivisibleCell> action) {
+        for (Leaf leaf : leaves) {
+            if (condition.test(leaf)) action.accept(leaf);
+        }
+    }
+
+    @Override
+    public void forEachLeafIntersecting(RectInt rect, LeafVisitor visitor) {
+        // Leaves cover [minX, minX + leafSize - 1] and meet the rectangle as in ImmutableRectInt#meets.
+        final int firstColumn = Math.max(0, Math.floorDiv(rect.getMinX() - minX + 1, leafSize));
+        final int lastColumn = Math.min(columns - 1, Math.floorDiv(rect.getMaxX() - minX - 1, leafSize));
+        final int firstRow = Math.max(0, Math.floorDiv(rect.getMinY() - minY + 1, leafSize));
+        final int lastRow = Math.min(rows - 1, Math.floorDiv(rect.getMaxY() - minY - 1, leafSize));
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                final Leaf leaf = leaves[row * columns + column];
+                if (leaf.getUnderlyingRectInt().meets(rect)) visitor.visit(leaf);
+            }
+        }
+    }
+
+    @Override
+    public void forEachLeafOutside(RectInt rect, LeafVisitor visitor) {
+        //noinspection ForLoopReplaceableByForEach
+        for (int i = 0, n = leaves.length; i < n; i++) {
+            if (!leaves[i].getUnderlyingRectInt().meets(rect)) visitor.visit(leaves[i]);
+        }
+    }
+
+    private final class Leaf implements IndivisibleCell {
+
+        private final int slot;
+        private final int minX;
+        private final int minY;
+        private final ImmutableRectInt underlyingRectInt;
+        // Mapped lazily by whichever thread first reads or writes the cell.
+        private volatile MappedByteBuffer buffer;
+        private boolean active;
+        private boolean dataRetained;
+
+        private Leaf(int slot, int minX, int minY) {
+            this.slot = slot;
+            this.minX = minX;
+            this.minY = minY;
+            this.underlyingRectInt = new ImmutableRectInt(minX, minY, leafSize - 1, leafSize - 1);
+        }
+
+        private int offset(int x, int y) {
+            return (((x - minX) << leafSizeLog2) + (y - minY)) * BYTES_PER_POINT;
+        }
+
+        /**
+         * @return the mapped slice of this cell, mapping it first if necessary.
+         */
+        private MappedByteBuffer buffer() {
+            final MappedByteBuffer current = buffer;
+            if (current != null) return current;
+            synchronized (this) {
+                if (buffer == null) {
+                    final MappedByteBuffer mapped;
+                    try {
+                        mapped = channel.map(FileChannel.MapMode.READ_WRITE, slot * leafBytes, leafBytes);
+                    } catch (IOException e) {
+                        throw new RuntimeException("Caught exception while mapping the data of the cell " + this + ".", e);
+                    }
+                    // Published only once its byte order is set.
+                    mapped.order(ByteOrder.nativeOrder());
+                    buffer = mapped;
+                }
+                return buffer;
+            }
+        }
+
+        private void erase() {
+            if (buffer != null || dataRetained) {
+                final MappedByteBuffer b = buffer();
+                for (int i = 0, n = (int) leafBytes; i < n; i += 8) {
+                    b.putLong(i, 0L);
+                }
+            }
+            dataRetained = false;
+        }
+
+        @Override
+        public int getId() {
+            return slot;
+        }
+
+        @Override
+        public ImmutableRectInt getUnderlyingRectInt() {
+            return underlyingRectInt;
+        }
+
+        @Override
+        public boolean isActive() {
+            return active;
+        }
+
+        @Override
+        public void setActive(boolean b) {
+            active = b;
+            if (b) dataRetained = true;
+        }
+
+        /**
+         * Lets go of the mapping, which is unmapped once garbage collected. The data itself stays in the file.
+         */
+        @Override
+        public void clearData() {
+            buffer = null;
+        }
+
+        @Override
+        public boolean isDataRetained() {
+            return dataRetained;
+        }
+
+        /**
+         * Zeroes the slice of this cell, so that it is populated anew once activated.
+         */
+        @Override
+        public void discardRetainedData() {
+            erase();
+        }
+
+        /**
+         * The snapshot of this cell is a copy of its slice.
+         */
+        @Override
+        public int snapshotBytes() {
+            return (int) leafBytes;
+        }
+
+        @Override
+        public void writeSnapshot(ByteBuffer target) {
+            target.put(buffer().duplicate().clear());
+        }
+
+        @Override
+        public void readSnapshot(ByteBuffer source) {
+            final ByteBuffer slice = source.duplicate();
+            slice.limit(slice.position() + (int) leafBytes);
+            buffer().duplicate().clear().put(slice);
+            source.position(slice.limit());
+            dataRetained = true;
+        }
+
+        @Override
+        public void incrementCollisionAt(int x, int y) {
+            if (underlyingRectInt.contains(x, y)) {
+                add(x, y, Cell.Data.COLLISION, 1);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "{" +
+                    "id: " + slot +
+                    ", x: " + minX +
+                    ", y: " + minY + "}";
+        }
+    }
+}
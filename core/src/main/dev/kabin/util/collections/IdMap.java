@@ -0,0 +1,70 @@
+package dev.kabin.util.collections;
+
+import java.util.Arrays;
+
+/**
+ * A map from non-negative {@code int} keys to objects, meant for dense keys such as {@link Id ids}. The values are
+ * kept in an array indexed by key, which grows to the largest key put.
+ *
+ * @param <T> the type of the values.
+ */
+public class IdMap<T> {
+
+    private Object[] values;
+    private int size;
+
+    public IdMap() {
+        this(16);
+    }
+
+    public IdMap(int keyCapacity) {
+        if (keyCapacity < 0) throw new IllegalArgumentException("Capacity must be non-negative.");
+        values = new Object[keyCapacity];
+    }
+
+    /**
+     * @return the value previously mapped to by the given key, or null.
+     */
+    public T put(int key, T value) {
+        if (key < 0) throw new IllegalArgumentException("Keys must be non-negative; received " + key + ".");
+        if (value == null) return remove(key);
+        if (key >= values.length) {
+            values = Arrays.copyOf(values, Math.max(key + 1, 2 * values.length));
+        }
+        @SuppressWarnings("unchecked") final T previous = (T) values[key];
+        values[key] = value;
+        if (previous == null) size++;
+        return previous;
+    }
+
+    /**
+     * @return the value mapped to by the given key, or null.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int key) {
+        return (key >= 0 && key < values.length) ? (T) values[key] : null;
+    }
+
+    /**
+     * @return the value previously mapped to by the given key, or null.
+     */
+    public T remove(int key) {
+        final T previous = get(key);
+        if (previous != null) {
+            values[key] = null;
+            size--;
+        }
+        return previous;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the number of keys mapping to a value.
+     */
+    public int size() {
+        return size;
+    }
+}
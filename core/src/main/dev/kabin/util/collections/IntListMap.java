@@ -0,0 +1,129 @@
+package dev.kabin.util.collections;
+
+import java.util.Arrays;
+
+/**
+ * A map from non-negative {@code int} keys to lists of {@code int}s, meant for dense keys such as {@link Id ids}.
+ * The lists are kept in arrays indexed by key, so that no boxing takes place, and nothing is allocated except when
+ * a list, or the range of keys, grows past its capacity.
+ * <p>
+ * The order of the values of a list is not preserved by {@link #remove(int, int)}. Iterate over a list by
+ * <pre>
+ *    {@code for (int i = 0, n = map.size(key); i < n; i++) map.get(key, i);}
+ * </pre>
+ */
+public class IntListMap {
+
+    private static final int[] EMPTY = new int[0];
+    private static final int INITIAL_LIST_SIZE = 4;
+
+    private int[][] lists;
+    private int[] sizes;
+
+    public IntListMap() {
+        this(16);
+    }
+
+    public IntListMap(int keyCapacity) {
+        if (keyCapacity < 0) throw new IllegalArgumentException("Capacity must be non-negative.");
+        lists = new int[keyCapacity][];
+        sizes = new int[keyCapacity];
+        Arrays.fill(lists, EMPTY);
+    }
+
+    private void ensureKeyCapacity(int key) {
+        if (key < 0) throw new IllegalArgumentException("Keys must be non-negative; received " + key + ".");
+        if (key >= lists.length) {
+            final int oldLength = lists.length;
+            final int newLength = Math.max(key + 1, 2 * oldLength);
+            lists = Arrays.copyOf(lists, newLength);
+            sizes = Arrays.copyOf(sizes, newLength);
+            Arrays.fill(lists, oldLength, newLength, EMPTY);
+        }
+    }
+
+    /**
+     * Appends the given value to the list of the given key.
+     */
+    public void add(int key, int value) {
+        ensureKeyCapacity(key);
+        final int size = sizes[key];
+        if (size == lists[key].length) {
+            lists[key] = Arrays.copyOf(lists[key], Math.max(INITIAL_LIST_SIZE, 2 * size));
+        }
+        lists[key][size] = value;
+        sizes[key] = size + 1;
+    }
+
+    /**
+     * Removes one occurrence of the given value from the list of the given key. The last value of the list takes
+     * the place of the removed one.
+     *
+     * @return true if the value was present.
+     */
+    public boolean remove(int key, int value) {
+        if (key < 0 || key >= lists.length) return false;
+        final int[] list = lists[key];
+        final int size = sizes[key];
+        for (int i = 0; i < size; i++) {
+            if (list[i] == value) {
+                list[i] = list[size - 1];
+                sizes[key] = size - 1;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the value at the given index of the list of the given key. The last value of the list takes its place.
+     */
+    public void removeAt(int key, int index) {
+        final int size = size(key);
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        lists[key][index] = lists[key][size - 1];
+        sizes[key] = size - 1;
+    }
+
+    /**
+     * Empties the list of the given key. Its capacity is kept for reuse.
+     */
+    public void clear(int key) {
+        if (key >= 0 && key < lists.length) sizes[key] = 0;
+    }
+
+    /**
+     * Empties all lists.
+     */
+    public void clear() {
+        Arrays.fill(sizes, 0);
+    }
+
+    /**
+     * @return the size of the list of the given key, which is zero for keys never added to.
+     */
+    public int size(int key) {
+        return (key >= 0 && key < lists.length) ? sizes[key] : 0;
+    }
+
+    public boolean isEmpty(int key) {
+        return size(key) == 0;
+    }
+
+    public int get(int key, int index) {
+        if (index < 0 || index >= size(key)) {
+            throw new IndexOutOfBoundsException();
+        }
+        return lists[key][index];
+    }
+
+    public boolean contains(int key, int value) {
+        final int size = size(key);
+        for (int i = 0; i < size; i++) {
+            if (lists[key][i] == value) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,47 @@
+package dev.kabin.util.eventhandlers;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.EnumSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hands key events over from the thread which receives them to a thread which samples them, such as a simulation
+ * thread. Events may be offered from one thread and drained on another.
+ */
+public final class KeyEventQueue {
+
+    private final ConcurrentLinkedQueue<KeyEvent> events = new ConcurrentLinkedQueue<>();
+    // Only used by the draining thread.
+    private final EnumSet<KeyCode> drained = EnumSet.noneOf(KeyCode.class);
+
+    private record KeyEvent(KeyCode keyCode, boolean pressed) {
+    }
+
+    public void offer(@NotNull KeyCode keyCode, boolean pressed) {
+        events.add(new KeyEvent(keyCode, pressed));
+    }
+
+    /**
+     * Registers the offered events with the given handler, in the order offered. Draining stops before a second
+     * event of a key, which is left to the next call, so that a key which is pressed and released between two calls
+     * is seen as pressed by one of them.
+     *
+     * @return the number of events drained.
+     */
+    public int drainTo(@NotNull EnumWithBoolHandler<KeyCode> handler) {
+        drained.clear();
+        int count = 0;
+        KeyEvent event;
+        while ((event = events.peek()) != null && drained.add(event.keyCode())) {
+            events.poll();
+            handler.registerEvent(event.keyCode(), event.pressed());
+            count++;
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return events.isEmpty();
+    }
+}
@@ -1,6 +1,7 @@
 package dev.kabin.util.eventhandlers;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.EnumMap;
@@ -15,6 +16,8 @@ public class KeyEventUtil implements EnumWithBoolHandler<KeyCode>{
     private final Map<KeyCode, List<EventListener>> listenersPressed = new EnumMap<>(KeyCode.class);
     private final Map<KeyCode, List<EventListener>> listenersReleased = new EnumMap<>(KeyCode.class);
     private final List<EventListener> defaultListeners = new ArrayList<>();
+    @Nullable
+    private volatile KeyEventQueue queue;
 
     public KeyEventUtil(){}
 
@@ -48,6 +51,22 @@ public class KeyEventUtil implements EnumWithBoolHandler<KeyCode>{
         return defaultListeners;
     }
 
+    /**
+     * Sets a queue to which each registered change of a key state is also offered, or none if null. Unlike listeners,
+     * the queue is kept by {@link #clear()}.
+     */
+    public void setQueue(@Nullable KeyEventQueue queue) {
+        this.queue = queue;
+    }
+
+    @Override
+    public void registerEvent(@NotNull KeyCode value, boolean pressed) {
+        final boolean changed = !Boolean.valueOf(pressed).equals(currentKeyStates.get(value));
+        EnumWithBoolHandler.super.registerEvent(value, pressed);
+        final KeyEventQueue q = queue;
+        if (changed && q != null) q.offer(value, pressed);
+    }
+
     public boolean isControlDown(){
         return currentKeyStates.containsKey(KeyCode.CONTROL_LEFT) && currentKeyStates.get(KeyCode.CONTROL_LEFT);
     }
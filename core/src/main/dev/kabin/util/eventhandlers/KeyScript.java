@@ -0,0 +1,99 @@
+package dev.kabin.util.eventhandlers;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Scripted key input, by tick. A script holds keys over ranges of ticks, and repeats once its last key is released.
+ * <p>
+ * A script is written as a comma separated list of holds {@code KEY@from..to}, each of which holds the key of the
+ * given {@link KeyCode} from the tick {@code from} up to, but not including, the tick {@code to}; for example
+ * {@code "D@0..240,SPACE@60..62"}.
+ */
+public final class KeyScript {
+
+    /**
+     * Walks right, jumps, walks left and jumps again, over ten seconds at 120 ticks per second.
+     */
+    public static final String DEFAULT_SCRIPT = "D@0..600,SPACE@120..124,SPACE@480..484,A@600..1200,SPACE@840..844,W@1100..1140";
+
+    private final KeyCode[] keyCodes;
+    private final KeyCode[] holdKeyCodes;
+    private final long[] holdsFrom;
+    private final long[] holdsTo;
+    private final long length;
+
+    private KeyScript(KeyCode[] holdKeyCodes, long[] holdsFrom, long[] holdsTo) {
+        this.holdKeyCodes = holdKeyCodes;
+        this.holdsFrom = holdsFrom;
+        this.holdsTo = holdsTo;
+        final EnumSet<KeyCode> keyCodes = EnumSet.noneOf(KeyCode.class);
+        long length = 0;
+        for (int i = 0; i < holdKeyCodes.length; i++) {
+            keyCodes.add(holdKeyCodes[i]);
+            length = Math.max(length, holdsTo[i]);
+        }
+        this.keyCodes = keyCodes.toArray(KeyCode[]::new);
+        this.length = length;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the script is not well formed.
+     */
+    @NotNull
+    public static KeyScript parse(@NotNull String script) {
+        final List<String> holds = new ArrayList<>();
+        for (String hold : script.split(",")) {
+            if (!hold.isBlank()) holds.add(hold.strip());
+        }
+        final KeyCode[] keyCodes = new KeyCode[holds.size()];
+        final long[] from = new long[holds.size()], to = new long[holds.size()];
+        for (int i = 0; i < holds.size(); i++) {
+            final String hold = holds.get(i);
+            final int at = hold.indexOf('@'), dots = hold.indexOf("..");
+            try {
+                keyCodes[i] = KeyCode.valueOf(hold.substring(0, at));
+                from[i] = Long.parseLong(hold.substring(at + 1, dots));
+                to[i] = Long.parseLong(hold.substring(dots + 2));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Received invalid parameters: " + hold, e);
+            }
+            if (from[i] < 0 || to[i] <= from[i]) {
+                throw new IllegalArgumentException("Received invalid parameters: " + hold);
+            }
+        }
+        return new KeyScript(keyCodes, from, to);
+    }
+
+    /**
+     * @return the number of ticks after which the script repeats, or zero if it holds no key.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * @return true if the given key is held at the given tick.
+     */
+    public boolean isPressed(@NotNull KeyCode keyCode, long tick) {
+        if (length == 0) return false;
+        final long t = Math.floorMod(tick, length);
+        for (int i = 0; i < holdKeyCodes.length; i++) {
+            if (holdKeyCodes[i] == keyCode && holdsFrom[i] <= t && t < holdsTo[i]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Registers the state at the given tick of each key of this script with the given handler.
+     */
+    public void apply(long tick, @NotNull EnumWithBoolHandler<KeyCode> handler) {
+        //noinspection ForLoopReplaceableByForEach
+        for (int i = 0; i < keyCodes.length; i++) {
+            handler.registerEvent(keyCodes[i], isPressed(keyCodes[i], tick));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package dev.kabin.util.linalg;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Represent a matrix of int data as a grid of {@link #CHUNK_SIZE} x {@link #CHUNK_SIZE} chunks, which are only
+ * allocated once they are written to.
+ * <p>
+ * Chunks that were never written to all refer to one shared chunk of zeros, which is never written to, so that reads
+ * need no null checks. {@link #clear()} zeroes the allocated chunks and keeps them as spares, which are used before
+ * new chunks are allocated, so that a matrix which is cleared and written to again, as by its pool, allocates none.
+ */
+public final class ChunkedIntMatrix {
+
+    public static final int CHUNK_SIZE = 32;
+    private static final int CHUNK_SHIFT = 5;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int[] ZERO_CHUNK = new int[CHUNK_SIZE * CHUNK_SIZE];
+
+    private final int[][] chunks;
+    // Zeroed chunks let go of by clear(), in [0, spareChunkCount).
+    private final int[][] spareChunks;
+    private int spareChunkCount = 0;
+    private final int width;
+    private final int height;
+    private final int chunkColumns;
+    private int allocatedChunks = 0;
+
+    public ChunkedIntMatrix(int width, int height) {
+        this.width = width;
+        this.height = height;
+        chunkColumns = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+        chunks = new int[((height + CHUNK_MASK) >> CHUNK_SHIFT) * chunkColumns][];
+        Arrays.fill(chunks, ZERO_CHUNK);
+        spareChunks = new int[chunks.length][];
+    }
+
+    private static int chunkIndex(int chunkColumns, int i, int j) {
+        return (i >> CHUNK_SHIFT) * chunkColumns + (j >> CHUNK_SHIFT);
+    }
+
+    private static int indexInChunk(int i, int j) {
+        return ((i & CHUNK_MASK) << CHUNK_SHIFT) | (j & CHUNK_MASK);
+    }
+
+    private int[] writableChunk(int i, int j) {
+        final int c = chunkIndex(chunkColumns, i, j);
+        int[] chunk = chunks[c];
+        if (chunk == ZERO_CHUNK) {
+            chunk = newChunk();
+            chunks[c] = chunk;
+            allocatedChunks++;
+        }
+        return chunk;
+    }
+
+    private int[] newChunk() {
+        if (spareChunkCount == 0) return new int[CHUNK_SIZE * CHUNK_SIZE];
+        final int[] chunk = spareChunks[--spareChunkCount];
+        spareChunks[spareChunkCount] = null;
+        return chunk;
+    }
+
+    /**
+     * @param i the row number.
+     * @param j the column number.
+     * @return the value stored under the given index.
+     */
+    public int get(int i, int j) {
+        return chunks[chunkIndex(chunkColumns, i, j)][indexInChunk(i, j)];
+    }
+
+    /**
+     * @param i     the row number.
+     * @param j     the column number.
+     * @param value the value.
+     */
+    public void set(int i, int j, int value) {
+        if (value == 0 && chunks[chunkIndex(chunkColumns, i, j)] == ZERO_CHUNK) return;
+        writableChunk(i, j)[indexInChunk(i, j)] = value;
+    }
+
+    public void increment(int i, int j) {
+        writableChunk(i, j)[indexInChunk(i, j)]++;
+    }
+
+    public void decrement(int i, int j) {
+        writableChunk(i, j)[indexInChunk(i, j)]--;
+    }
+
+    /**
+     * @return the number of chunks which have been allocated since construction or the last {@link #clear()}.
+     */
+    public int allocatedChunks() {
+        return allocatedChunks;
+    }
+
+    /**
+     * @return the number of zeroed chunks kept by {@link #clear()} for reuse.
+     */
+    public int spareChunks() {
+        return spareChunkCount;
+    }
+
+    /**
+     * @return the number of chunks this matrix consists of.
+     */
+    public int chunkCount() {
+        return chunks.length;
+    }
+
+    /**
+     * @return the number of bytes {@link #writeTo(ByteBuffer)} writes for the current contents of this matrix.
+     */
+    public int serializedBytes() {
+        return Integer.BYTES + allocatedChunks * (Integer.BYTES + CHUNK_SIZE * CHUNK_SIZE * Integer.BYTES);
+    }
+
+    /**
+     * Writes the allocated chunks of this matrix, each preceded by its chunk number, at the position of the given
+     * buffer.
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(allocatedChunks);
+        for (int c = 0; c < chunks.length; c++) {
+            if (chunks[c] != ZERO_CHUNK) {
+                buffer.putInt(c);
+                buffer.asIntBuffer().put(chunks[c]);
+                buffer.position(buffer.position() + CHUNK_SIZE * CHUNK_SIZE * Integer.BYTES);
+            }
+        }
+    }
+
+    /**
+     * Replaces the contents of this matrix by what {@link #writeTo(ByteBuffer)} wrote at the position of the given
+     * buffer.
+     */
+    public void readFrom(ByteBuffer buffer) {
+        clear();
+        final int n = buffer.getInt();
+        for (int k = 0; k < n; k++) {
+            final int c = buffer.getInt();
+            final int[] chunk = newChunk();
+            buffer.asIntBuffer().get(chunk);
+            buffer.position(buffer.position() + CHUNK_SIZE * CHUNK_SIZE * Integer.BYTES);
+            chunks[c] = chunk;
+        }
+        allocatedChunks = n;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void clear() {
+        if (allocatedChunks > 0) {
+            for (int c = 0; c < chunks.length; c++) {
+                if (chunks[c] != ZERO_CHUNK) {
+                    Arrays.fill(chunks[c], 0);
+                    spareChunks[spareChunkCount++] = chunks[c];
+                    chunks[c] = ZERO_CHUNK;
+                }
+            }
+            allocatedChunks = 0;
+        }
+    }
+
+}
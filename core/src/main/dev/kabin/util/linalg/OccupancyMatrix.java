@@ -0,0 +1,255 @@
+package dev.kabin.util.linalg;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Represent a matrix of non-negative counts, where almost all counts are expected to be 0 or 1.
+ * <p>
+ * Whether a count is positive is kept as one bit per entry in a single underlying long array. The counts above 1
+ * are kept in a small open-addressing side table, keyed by the index of the entry. Entries are indexed as in
+ * {@link IntMatrix}, so consecutive column numbers of a row are consecutive bits, and a row can be scanned
+ * a word at a time.
+ */
+public final class OccupancyMatrix {
+
+    private static final int EMPTY = -1;
+    private static final int INITIAL_OVERFLOW_CAPACITY = 16;
+
+    private final long[] bits;
+    private final int width;
+    private final int height;
+
+    // Side table of counts above 1, with linear probing. Capacity is a power of two.
+    private int[] overflowKeys = emptyKeys(INITIAL_OVERFLOW_CAPACITY);
+    private int[] overflowCounts = new int[INITIAL_OVERFLOW_CAPACITY];
+    private int overflowSize = 0;
+
+    public OccupancyMatrix(int width, int height) {
+        bits = new long[(width * height + 63) >>> 6];
+        this.width = width;
+        this.height = height;
+    }
+
+    private static int[] emptyKeys(int capacity) {
+        final int[] keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        return keys;
+    }
+
+    /**
+     * @param i the row number.
+     * @param j the column number.
+     * @return true if the count under the given index is positive.
+     */
+    public boolean isSet(int i, int j) {
+        final int index = width * i + j;
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @param i the row number.
+     * @param j the column number.
+     * @return the count under the given index.
+     */
+    public int get(int i, int j) {
+        final int index = width * i + j;
+        if ((bits[index >>> 6] & (1L << index)) == 0) return 0;
+        final int slot = findOverflowSlot(index);
+        return overflowKeys[slot] == EMPTY ? 1 : overflowCounts[slot];
+    }
+
+    public void increment(int i, int j) {
+        final int index = width * i + j;
+        final int word = index >>> 6;
+        final long mask = 1L << index;
+        if ((bits[word] & mask) == 0) {
+            bits[word] |= mask;
+            return;
+        }
+        final int slot = findOverflowSlot(index);
+        if (overflowKeys[slot] == EMPTY) {
+            overflowKeys[slot] = index;
+            overflowCounts[slot] = 2;
+            if (++overflowSize * 2 > overflowKeys.length) growOverflow();
+        } else {
+            overflowCounts[slot]++;
+        }
+    }
+
+    /**
+     * Decrements the count under the given index. A count which is already zero stays zero.
+     */
+    public void decrement(int i, int j) {
+        final int index = width * i + j;
+        final int word = index >>> 6;
+        final long mask = 1L << index;
+        if ((bits[word] & mask) == 0) return;
+        final int slot = findOverflowSlot(index);
+        if (overflowKeys[slot] == EMPTY) {
+            bits[word] &= ~mask;
+        } else if (--overflowCounts[slot] == 1) {
+            removeOverflowSlot(slot);
+        }
+    }
+
+    /**
+     * @param i             the row number.
+     * @param fromInclusive the first column number to scan.
+     * @param toExclusive   the column number to stop before.
+     * @return the first column number in the given range whose count is positive, or -1 if there is none.
+     */
+    public int firstSetInRow(int i, int fromInclusive, int toExclusive) {
+        if (fromInclusive >= toExclusive) return -1;
+        final int rowStart = width * i;
+        final int from = rowStart + fromInclusive, to = rowStart + toExclusive;
+        int word = from >>> 6;
+        long w = bits[word] & (-1L << from);
+        final int lastWord = (to - 1) >>> 6;
+        while (true) {
+            if (w != 0) {
+                final int index = (word << 6) + Long.numberOfTrailingZeros(w);
+                return index < to ? index - rowStart : -1;
+            }
+            if (word == lastWord) return -1;
+            w = bits[++word];
+        }
+    }
+
+    /**
+     * @param i             the row number.
+     * @param fromInclusive the first column number to scan.
+     * @param toExclusive   the column number to stop before.
+     * @return the number of column numbers in the given range whose count is positive.
+     */
+    public int countSetInRow(int i, int fromInclusive, int toExclusive) {
+        if (fromInclusive >= toExclusive) return 0;
+        final int rowStart = width * i;
+        final int from = rowStart + fromInclusive, to = rowStart + toExclusive;
+        final int firstWord = from >>> 6, lastWord = (to - 1) >>> 6;
+        final long firstMask = -1L << from, lastMask = -1L >>> -to;
+        if (firstWord == lastWord) return Long.bitCount(bits[firstWord] & firstMask & lastMask);
+        int count = Long.bitCount(bits[firstWord] & firstMask);
+        for (int word = firstWord + 1; word < lastWord; word++) {
+            count += Long.bitCount(bits[word]);
+        }
+        return count + Long.bitCount(bits[lastWord] & lastMask);
+    }
+
+    /**
+     * @return the number of entries whose count is above 1.
+     */
+    public int overflowSize() {
+        return overflowSize;
+    }
+
+    /**
+     * @return the number of bytes {@link #writeTo(ByteBuffer)} writes for the current contents of this matrix.
+     */
+    public int serializedBytes() {
+        return bits.length * Long.BYTES + Integer.BYTES + overflowSize * 2 * Integer.BYTES;
+    }
+
+    /**
+     * Writes the bits of this matrix, followed by its counts above 1 as pairs of index and count, at the position of
+     * the given buffer.
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.asLongBuffer().put(bits);
+        buffer.position(buffer.position() + bits.length * Long.BYTES);
+        buffer.putInt(overflowSize);
+        for (int slot = 0; slot < overflowKeys.length; slot++) {
+            if (overflowKeys[slot] != EMPTY) {
+                buffer.putInt(overflowKeys[slot]);
+                buffer.putInt(overflowCounts[slot]);
+            }
+        }
+    }
+
+    /**
+     * Replaces the contents of this matrix by what {@link #writeTo(ByteBuffer)} wrote at the position of the given
+     * buffer.
+     */
+    public void readFrom(ByteBuffer buffer) {
+        clear();
+        buffer.asLongBuffer().get(bits);
+        buffer.position(buffer.position() + bits.length * Long.BYTES);
+        final int n = buffer.getInt();
+        for (int k = 0; k < n; k++) {
+            final int index = buffer.getInt();
+            final int slot = findOverflowSlot(index);
+            overflowKeys[slot] = index;
+            overflowCounts[slot] = buffer.getInt();
+            if (++overflowSize * 2 > overflowKeys.length) growOverflow();
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void clear() {
+        Arrays.fill(bits, 0L);
+        if (overflowSize > 0) {
+            Arrays.fill(overflowKeys, EMPTY);
+            overflowSize = 0;
+        }
+    }
+
+    /**
+     * @return the slot holding the given index, or the empty slot where it would be inserted.
+     */
+    private int findOverflowSlot(int index) {
+        final int mask = overflowKeys.length - 1;
+        int slot = mix(index) & mask;
+        while (overflowKeys[slot] != EMPTY && overflowKeys[slot] != index) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Removes the given slot, and shifts back any later entries of the same probe sequence so that no
+     * tombstones are needed.
+     */
+    private void removeOverflowSlot(int slot) {
+        final int mask = overflowKeys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (overflowKeys[next] != EMPTY) {
+            final int home = mix(overflowKeys[next]) & mask;
+            // Move the entry into the hole iff the hole lies cyclically in [home, next).
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                overflowKeys[hole] = overflowKeys[next];
+                overflowCounts[hole] = overflowCounts[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        overflowKeys[hole] = EMPTY;
+        overflowSize--;
+    }
+
+    private void growOverflow() {
+        final int[] oldKeys = overflowKeys, oldCounts = overflowCounts;
+        overflowKeys = emptyKeys(oldKeys.length * 2);
+        overflowCounts = new int[oldKeys.length * 2];
+        for (int s = 0; s < oldKeys.length; s++) {
+            if (oldKeys[s] != EMPTY) {
+                final int slot = findOverflowSlot(oldKeys[s]);
+                overflowKeys[slot] = oldKeys[s];
+                overflowCounts[slot] = oldCounts[s];
+            }
+        }
+    }
+
+    private static int mix(int index) {
+        final int h = index * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+}
@@ -1,47 +1,105 @@
 package dev.kabin.util.pools.objectpool;
 
+import java.util.Arrays;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
-import java.util.stream.IntStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * The implementor is responsible for returning objects.
+ * <p>
+ * Objects may be borrowed and given back from several threads at once.
+ * <p>
+ * When every object is taken, the pool grows by a segment of free slots, and objects are created as the slots are
+ * borrowed. The pool is shrunk back to its floor by {@link #shrinkToFloor()}. See {@link #statistics()} for counters
+ * by which the initial number of objects can be sized.
  *
  * @param <ObjectType>
  */
 public class AbstractObjectPool<ObjectType> {
 
-    // Data holder and status.
-    private final ObjectType[] objectHolder;
+    private static final Logger logger = Logger.getLogger(AbstractObjectPool.class.getName());
+
+    // Data holder and status. Slots below nextFreeIndex hold taken objects; those above hold free objects or null.
+    private ObjectType[] objectHolder;
+    private final Supplier<ObjectType> mapper;
     private final Consumer<ObjectType> clearDataProcedure;
+    private final int segmentSize;
+    private final int floor;
     private int nextFreeIndex = 0;
 
+    // Statistics.
+    private long borrows = 0;
+    private long misses = 0;
+    private long growths = 0;
+    private int peakTaken = 0;
 
+    /**
+     * Makes a pool of the given number of objects, which grows by that many slots at a time, and shrinks back to
+     * that many objects.
+     */
     public AbstractObjectPool(int objectsAvailable, Supplier<ObjectType> mapper,
                               Consumer<ObjectType> clearDataProcedure) {
+        this(objectsAvailable, Math.max(1, objectsAvailable), mapper, clearDataProcedure);
+    }
+
+    /**
+     * @param objectsAvailable the number of objects created up front, and the floor of the pool.
+     * @param segmentSize      the number of slots by which the pool grows when every object is taken.
+     */
+    public AbstractObjectPool(int objectsAvailable, int segmentSize, Supplier<ObjectType> mapper,
+                              Consumer<ObjectType> clearDataProcedure) {
+        if (objectsAvailable < 0 || segmentSize <= 0) {
+            throw new IllegalArgumentException("Received invalid parameters: " + objectsAvailable + ", " + segmentSize);
+        }
         //noinspection unchecked
-        objectHolder = (ObjectType[]) IntStream
-                .range(0, objectsAvailable)
-                .mapToObj(i -> mapper.get())
-                .toArray(Object[]::new);
+        objectHolder = (ObjectType[]) new Object[objectsAvailable];
+        for (int i = 0; i < objectsAvailable; i++) {
+            objectHolder[i] = mapper.get();
+        }
+        this.mapper = mapper;
         this.clearDataProcedure = clearDataProcedure;
+        this.segmentSize = segmentSize;
+        this.floor = objectsAvailable;
     }
 
-    public int remaining() {
+    public synchronized int remaining() {
         return objectHolder.length - nextFreeIndex;
     }
 
-    public int taken() {
+    public synchronized int taken() {
         return nextFreeIndex;
     }
 
-    public ObjectType borrow() throws IllegalArgumentException {
-        return objectHolder[nextFreeIndex++];
+    /**
+     * @return the number of slots of this pool, which is at least its floor.
+     */
+    public synchronized int capacity() {
+        return objectHolder.length;
     }
 
-    public void giveBack(ObjectType data) throws IllegalArgumentException {
+    public synchronized ObjectType borrow() {
+        if (nextFreeIndex == objectHolder.length) {
+            objectHolder = Arrays.copyOf(objectHolder, objectHolder.length + segmentSize);
+            growths++;
+            logger.log(Level.FINE, () -> getClass().getSimpleName() + " grew to " + objectHolder.length + " slots.");
+        }
+        ObjectType data = objectHolder[nextFreeIndex];
+        if (data == null) {
+            data = mapper.get();
+            objectHolder[nextFreeIndex] = data;
+            misses++;
+        }
+        nextFreeIndex++;
+        borrows++;
+        peakTaken = Math.max(peakTaken, nextFreeIndex);
+        return data;
+    }
+
+    public synchronized void giveBack(ObjectType data) {
         int indexOfGivenData = -1;
-        for (int i = 0, n = objectHolder.length; i < n; i++) {
+        for (int i = 0; i < nextFreeIndex; i++) {
             if (data == objectHolder[i]) {
                 indexOfGivenData = i;
                 break;
@@ -57,17 +115,26 @@ public class AbstractObjectPool<ObjectType> {
         }
     }
 
-    public void giveBackAll() {
-        //noinspection ForLoopReplaceableByForEach
-        for (int i = 0, n = objectHolder.length; i < n; i++) {
+    /**
+     * Performs the given action on each object which is currently borrowed.
+     */
+    public synchronized void forEachTaken(Consumer<ObjectType> action) {
+        for (int i = 0; i < nextFreeIndex; i++) {
+            action.accept(objectHolder[i]);
+        }
+    }
+
+    public synchronized void giveBackAll() {
+        // Free objects were cleared when given back.
+        for (int i = 0; i < nextFreeIndex; i++) {
             clearDataProcedure.accept(objectHolder[i]);
         }
         nextFreeIndex = 0;
     }
 
-    public void giveBackAllExcept(ObjectType data) {
+    public synchronized void giveBackAllExcept(ObjectType data) {
         int indexOfGivenData = -1;
-        for (int i = 0, n = objectHolder.length; i < n; i++) {
+        for (int i = 0; i < nextFreeIndex; i++) {
             if (data == objectHolder[i]) {
                 indexOfGivenData = i;
             } else {
@@ -79,9 +146,32 @@ public class AbstractObjectPool<ObjectType> {
             objectHolder[indexOfGivenData] = objectHolder[0];
             objectHolder[0] = data;
             nextFreeIndex = 1;
+        } else {
+            nextFreeIndex = 0;
         }
     }
 
+    /**
+     * Releases free objects, and the slots holding them, for as long as the pool exceeds its floor by a whole segment.
+     * Taken objects are kept.
+     *
+     * @return the number of slots released.
+     */
+    public synchronized int shrinkToFloor() {
+        int length = objectHolder.length;
+        while (length - segmentSize >= Math.max(floor, nextFreeIndex)) {
+            length -= segmentSize;
+        }
+        final int released = objectHolder.length - length;
+        if (released > 0) objectHolder = Arrays.copyOf(objectHolder, length);
+        return released;
+    }
 
+    /**
+     * @return the counters of this pool since it was made.
+     */
+    public synchronized PoolStatistics statistics() {
+        return new PoolStatistics(borrows, misses, growths, peakTaken, objectHolder.length);
+    }
 
 }
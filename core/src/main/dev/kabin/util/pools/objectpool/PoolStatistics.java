@@ -0,0 +1,24 @@
+package dev.kabin.util.pools.objectpool;
+
+/**
+ * Counters of an {@link AbstractObjectPool}.
+ *
+ * @param borrows   the number of objects borrowed.
+ * @param misses    the number of objects borrowed which had to be created, because no free object was at hand.
+ * @param growths   the number of times the pool grew by a segment.
+ * @param peakTaken the largest number of objects taken at once.
+ * @param capacity  the current number of slots of the pool.
+ */
+public record PoolStatistics(long borrows, long misses, long growths, int peakTaken, int capacity) {
+
+    public static final PoolStatistics EMPTY = new PoolStatistics(0, 0, 0, 0, 0);
+
+    /**
+     * @return the sums of the counters of this and the given statistics. The peak of the sum is an upper bound, as
+     * the peaks may have been reached at different times.
+     */
+    public PoolStatistics plus(PoolStatistics other) {
+        return new PoolStatistics(borrows + other.borrows, misses + other.misses, growths + other.growths,
+                peakTaken + other.peakTaken, capacity + other.capacity);
+    }
+}
@@ -0,0 +1,374 @@
+package dev.kabin.util.scheduling;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs periodic tasks on a pool of workers. Each task declares the resources it reads and writes; a task which writes
+ * a resource never runs at the same time as another which reads or writes it, while tasks which do not share a
+ * written resource run concurrently. Of two conflicting tasks which are both due, the one due first runs first.
+ * <p>
+ * Each task has its own period, which is the delay from the end of one run to the time the next is due. A task may
+ * depend on other tasks, in which case each of its runs waits until each of those has completed a run since its last.
+ * <p>
+ * Other work may be fitted in between the tasks by {@link #runNow(Set, Set, Runnable)}, which waits only for the
+ * running tasks it conflicts with.
+ *
+ * @param <R> the type of the resources.
+ */
+public final class TaskScheduler<R extends Enum<R>> implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(TaskScheduler.class.getName());
+
+    private final Object lock = new Object();
+    private final List<Task> tasks = new ArrayList<>();
+    private final ArrayList<Run> pending = new ArrayList<>();
+    // By resource ordinal: the number of runs reading it. A bit of writtenMask is set while a run writes it.
+    private final int[] readers = new int[Long.SIZE];
+    private long readMask = 0;
+    private long writtenMask = 0;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService workers;
+    private boolean started = false;
+    private boolean closed = false;
+
+    /**
+     * A task added to a scheduler.
+     */
+    public final class Task {
+
+        private final String name;
+        private final long periodMillis;
+        private final long reads;
+        private final long writes;
+        private final Runnable action;
+        private final List<Task> dependencies;
+        // By dependency: the number of its completed runs when this task last started.
+        private final long[] completionsSeen;
+        private long completions = 0;
+        private long lastNanos = 0, maxNanos = 0, totalNanos = 0, waitNanos = 0;
+
+        private Task(String name, long periodMillis, long reads, long writes, Runnable action, List<Task> dependencies) {
+            this.name = name;
+            this.periodMillis = periodMillis;
+            this.reads = reads;
+            this.writes = writes;
+            this.action = action;
+            this.dependencies = dependencies;
+            this.completionsSeen = new long[dependencies.size()];
+        }
+
+        public String name() {
+            return name;
+        }
+
+        private boolean isReady() {
+            for (int i = 0, n = dependencies.size(); i < n; i++) {
+                if (dependencies.get(i).completions <= completionsSeen[i]) return false;
+            }
+            return true;
+        }
+
+        private void recordStart() {
+            for (int i = 0, n = dependencies.size(); i < n; i++) completionsSeen[i] = dependencies.get(i).completions;
+        }
+
+        private void recordCompletion(long waited, long took) {
+            completions++;
+            lastNanos = took;
+            maxNanos = Math.max(maxNanos, took);
+            totalNanos += took;
+            waitNanos += waited;
+        }
+
+        private TaskTimings timings() {
+            return new TaskTimings(name, completions, lastNanos, maxNanos, totalNanos, waitNanos);
+        }
+    }
+
+    /**
+     * A due run of a task, or of work fitted in by {@link #runNow(Set, Set, Runnable)}, for which the task is null.
+     */
+    private final class Run {
+
+        private final Task task;
+        private final long reads;
+        private final long writes;
+        // True if run by the thread waiting for it to be granted, rather than by a worker.
+        private final boolean byCaller;
+        private final long dueAtNanos = System.nanoTime();
+        private long startedAtNanos;
+        private boolean granted = false;
+
+        private Run(Task task, long reads, long writes, boolean byCaller) {
+            this.task = task;
+            this.reads = reads;
+            this.writes = writes;
+            this.byCaller = byCaller;
+        }
+
+        private boolean isReady() {
+            return task == null || task.isReady();
+        }
+    }
+
+    /**
+     * @param name    the prefix of the names of the threads of this scheduler.
+     * @param workers the number of threads on which to run tasks.
+     */
+    public TaskScheduler(@NotNull String name, int workers) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Received invalid parameters: " + workers);
+        }
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreads(name + "-timer"));
+        this.workers = Executors.newFixedThreadPool(workers, daemonThreads(name + "-worker"));
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return r -> {
+            final Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Adds a task which depends on no other task, as by {@link #add(String, long, Set, Set, Runnable, List)}.
+     */
+    @NotNull
+    public Task add(@NotNull String name, long periodMillis, @NotNull Set<R> reads, @NotNull Set<R> writes,
+                    @NotNull Runnable action) {
+        return add(name, periodMillis, reads, writes, action, List.of());
+    }
+
+    /**
+     * Adds a task. Tasks are added before the scheduler is started.
+     *
+     * @param periodMillis the delay from the end of a run of the task to the time the next is due.
+     * @param reads        the resources the task reads.
+     * @param writes       the resources the task writes.
+     * @param dependencies the tasks of which each run of this task waits for a run to complete.
+     * @return the added task.
+     */
+    @NotNull
+    public Task add(@NotNull String name, long periodMillis, @NotNull Set<R> reads, @NotNull Set<R> writes,
+                    @NotNull Runnable action, @NotNull List<Task> dependencies) {
+        if (periodMillis < 0) {
+            throw new IllegalArgumentException("Received invalid parameters: " + periodMillis);
+        }
+        synchronized (lock) {
+            if (started) throw new IllegalStateException("Tasks are added before the scheduler is started.");
+            final Task task = new Task(name, periodMillis, maskOf(reads), maskOf(writes), action, List.copyOf(dependencies));
+            tasks.add(task);
+            return task;
+        }
+    }
+
+    /**
+     * Makes the first run of each task due.
+     */
+    public void start() {
+        synchronized (lock) {
+            if (started || closed) throw new IllegalStateException("The scheduler is already started.");
+            started = true;
+            //noinspection ForLoopReplaceableByForEach
+            for (int i = 0, n = tasks.size(); i < n; i++) {
+                final Task task = tasks.get(i);
+                timer.execute(() -> makeDue(task));
+            }
+        }
+    }
+
+    /**
+     * Runs each task once on the calling thread, in the order added. Each runs once the running tasks it conflicts with
+     * are done, as by {@link #runNow(Set, Set, Runnable)}.
+     */
+    public void runEachOnce() {
+        final List<Task> tasks;
+        synchronized (lock) {
+            tasks = List.copyOf(this.tasks);
+        }
+        //noinspection ForLoopReplaceableByForEach
+        for (int i = 0, n = tasks.size(); i < n; i++) {
+            final Task task = tasks.get(i);
+            final Run run = new Run(task, task.reads, task.writes, true);
+            awaitGranted(run);
+            execute(run);
+        }
+    }
+
+    /**
+     * Runs the given action on the calling thread once no task conflicting with it runs, and no conflicting run due
+     * earlier waits. Must not be called by a task, which would wait for itself if they conflict.
+     *
+     * @param reads  the resources the action reads.
+     * @param writes the resources the action writes.
+     */
+    public void runNow(@NotNull Set<R> reads, @NotNull Set<R> writes, @NotNull Runnable action) {
+        final Run run = new Run(null, maskOf(reads), maskOf(writes), true);
+        awaitGranted(run);
+        try {
+            action.run();
+        } finally {
+            synchronized (lock) {
+                release(run);
+                dispatch();
+            }
+        }
+    }
+
+    /**
+     * @return the timings of each task, in the order added.
+     */
+    @NotNull
+    public List<TaskTimings> timings() {
+        synchronized (lock) {
+            final List<TaskTimings> timings = new ArrayList<>(tasks.size());
+            //noinspection ForLoopReplaceableByForEach
+            for (int i = 0, n = tasks.size(); i < n; i++) timings.add(tasks.get(i).timings());
+            return timings;
+        }
+    }
+
+    /**
+     * Stops making tasks due, and waits for the running tasks to complete.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            pending.removeIf(run -> !run.byCaller);
+        }
+        timer.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.log(Level.WARNING, "Tasks were still running 10 seconds after the scheduler was closed.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long maskOf(Set<R> resources) {
+        long mask = 0;
+        for (R resource : resources) {
+            if (resource.ordinal() >= Long.SIZE) {
+                throw new IllegalArgumentException("Received invalid parameters: " + resource);
+            }
+            mask |= 1L << resource.ordinal();
+        }
+        return mask;
+    }
+
+    private void awaitGranted(Run run) {
+        boolean interrupted = false;
+        synchronized (lock) {
+            pending.add(run);
+            dispatch();
+            while (!run.granted) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void makeDue(Task task) {
+        synchronized (lock) {
+            if (closed) return;
+            pending.add(new Run(task, task.reads, task.writes, false));
+            dispatch();
+        }
+    }
+
+    /**
+     * Starts each pending run which is ready, does not conflict with a running one, and does not conflict with a
+     * ready one due earlier which could not start. Called with the lock held.
+     */
+    private void dispatch() {
+        long blockedReads = 0, blockedWrites = 0;
+        for (int i = 0; i < pending.size(); ) {
+            final Run run = pending.get(i);
+            if (!run.isReady()) {
+                i++;
+                continue;
+            }
+            final boolean free = (run.writes & (readMask | writtenMask)) == 0 && (run.reads & writtenMask) == 0
+                    && (run.writes & (blockedReads | blockedWrites)) == 0 && (run.reads & blockedWrites) == 0;
+            if (!free) {
+                blockedReads |= run.reads;
+                blockedWrites |= run.writes;
+                i++;
+                continue;
+            }
+            pending.remove(i);
+            acquire(run);
+            if (run.task != null) run.task.recordStart();
+            run.startedAtNanos = System.nanoTime();
+            run.granted = true;
+            if (run.byCaller) {
+                lock.notifyAll();
+            } else {
+                workers.execute(() -> {
+                    try {
+                        execute(run);
+                    } finally {
+                        // The next run is due however this one ended.
+                        synchronized (lock) {
+                            if (!closed) timer.schedule(() -> makeDue(run.task), run.task.periodMillis, TimeUnit.MILLISECONDS);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Runs the task of a granted run, and releases its resources.
+     */
+    private void execute(Run run) {
+        try {
+            run.task.action.run();
+        } catch (Throwable t) {
+            logger.log(Level.SEVERE, "Caught exception while running the task " + run.task.name + ".", t);
+        } finally {
+            synchronized (lock) {
+                run.task.recordCompletion(run.startedAtNanos - run.dueAtNanos, System.nanoTime() - run.startedAtNanos);
+                release(run);
+                dispatch();
+            }
+        }
+    }
+
+    private void acquire(Run run) {
+        writtenMask |= run.writes;
+        for (long bits = run.reads; bits != 0; bits &= bits - 1) {
+            final int ordinal = Long.numberOfTrailingZeros(bits);
+            if (readers[ordinal]++ == 0) readMask |= 1L << ordinal;
+        }
+    }
+
+    private void release(Run run) {
+        writtenMask &= ~run.writes;
+        for (long bits = run.reads; bits != 0; bits &= bits - 1) {
+            final int ordinal = Long.numberOfTrailingZeros(bits);
+            if (--readers[ordinal] == 0) readMask &= ~(1L << ordinal);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package dev.kabin.util.scheduling;
+
+/**
+ * The timings of the runs of a task of a {@link TaskScheduler}, in nanoseconds.
+ *
+ * @param runs      the number of completed runs.
+ * @param lastNanos the duration of the last run.
+ * @param maxNanos  the duration of the longest run.
+ * @param totalNanos the total duration of the runs.
+ * @param waitNanos the total time runs waited, once due, for their dependencies and resources.
+ */
+public record TaskTimings(String name, long runs, long lastNanos, long maxNanos, long totalNanos, long waitNanos) {
+
+    /**
+     * @return the average duration of a run, or zero if none was completed.
+     */
+    public long averageNanos() {
+        return runs == 0 ? 0 : totalNanos / runs;
+    }
+}
@@ -0,0 +1,112 @@
+package dev.kabin.components.worldmodel;
+
+import dev.kabin.util.cell.CellSample;
+import dev.kabin.util.cell.CellTree;
+import dev.kabin.util.points.PointInt;
+import dev.kabin.util.shapes.primitive.ImmutableRectInt;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class LeafSnapshotCacheTest {
+
+    private static final int SIZE = 1000;
+    private static final int MINIMAL_CELL_SIZE = 512;
+    private static final long CONTENT_HASH = LeafSnapshotCache.contentHashOf("{}");
+
+    private static CellTree populatedTree(CellTree.Implementation implementation, List<PointInt> points) {
+        final CellTree tree = CellTree.makeRepresentationOf(implementation, SIZE, SIZE, MINIMAL_CELL_SIZE, 128);
+        for (PointInt p : points) {
+            tree.activate(p.x(), p.y());
+            tree.incrementCollisionAt(p.x(), p.y());
+            tree.increaseLadderAt(p.x(), p.y());
+            tree.modifyVectorFieldAt(p.x(), p.y(), f -> f + 0.5f, f -> f - 0.25f);
+        }
+        return tree;
+    }
+
+    private static List<PointInt> randomPoints(CellTree tree) {
+        final Random r = new Random(0);
+        final int minX = -tree.getWidth() / 2, minY = -tree.getHeight() / 2;
+        return IntStream.range(0, 5_000)
+                .mapToObj(i -> PointInt.modifiable(minX + r.nextInt(tree.getWidth()), minY + r.nextInt(tree.getHeight() / 4)))
+                .collect(Collectors.toList());
+    }
+
+    private static Path bake(CellTree tree, CellTree.Implementation implementation) throws IOException {
+        final Path path = Files.createTempFile("kabin-test", ".leaves");
+        path.toFile().deleteOnExit();
+        try (var writer = new LeafSnapshotCache.Writer(path, CONTENT_HASH, implementation, MINIMAL_CELL_SIZE)) {
+            tree.forEachIndivisibleCellMatching(c -> true, c -> {
+                if (c.isActive()) writer.write(c);
+            });
+        }
+        return path;
+    }
+
+    @Test
+    void snapshotsReproduceTheBakedData() throws IOException {
+        for (CellTree.Implementation implementation : CellTree.Implementation.values()) {
+            final List<PointInt> points = randomPoints(CellTree.makeRepresentationOf(implementation, SIZE, SIZE, MINIMAL_CELL_SIZE, 128));
+            final CellTree baked = populatedTree(implementation, points);
+            final Path path = bake(baked, implementation);
+
+            final CellTree loaded = CellTree.makeRepresentationOf(implementation, SIZE, SIZE, MINIMAL_CELL_SIZE, 128);
+            try (LeafSnapshotCache cache = LeafSnapshotCache.open(path, CONTENT_HASH, implementation, MINIMAL_CELL_SIZE).orElseThrow()) {
+                Assertions.assertTrue(cache.size() > 0);
+                final var bounds = new ImmutableRectInt(-loaded.getWidth() / 2, -loaded.getHeight() / 2, loaded.getWidth() - 1, loaded.getHeight() - 1);
+                loaded.forEachIndivisibleCellMeeting(bounds, c -> {
+                    if (cache.read(c)) c.setActive(true);
+                });
+            }
+
+            final CellSample expected = new CellSample(), actual = new CellSample();
+            for (PointInt p : points) {
+                baked.sample(p.x(), p.y(), expected);
+                loaded.sample(p.x(), p.y(), actual);
+                Assertions.assertEquals(expected.collision(), actual.collision(), implementation.name());
+                Assertions.assertEquals(expected.ladder(), actual.ladder(), implementation.name());
+                Assertions.assertEquals(expected.vectorFieldX(), actual.vectorFieldX(), 0.001f);
+                Assertions.assertEquals(expected.vectorFieldY(), actual.vectorFieldY(), 0.001f);
+            }
+        }
+    }
+
+    @Test
+    void staleCachesAreNotOpened() throws IOException {
+        final CellTree.Implementation implementation = CellTree.Implementation.FLAT;
+        final CellTree tree = populatedTree(implementation, List.of(PointInt.modifiable(0, 0)));
+        final Path path = bake(tree, implementation);
+
+        Assertions.assertEquals(Optional.empty(), LeafSnapshotCache.open(path, CONTENT_HASH + 1, implementation, MINIMAL_CELL_SIZE));
+        Assertions.assertEquals(Optional.empty(), LeafSnapshotCache.open(path, CONTENT_HASH, CellTree.Implementation.MAPPED, MINIMAL_CELL_SIZE));
+        Assertions.assertEquals(Optional.empty(), LeafSnapshotCache.open(path.resolveSibling("missing.leaves"), CONTENT_HASH, implementation, MINIMAL_CELL_SIZE));
+    }
+
+    @Test
+    void invalidatedSnapshotsAreNotRead() throws IOException {
+        final CellTree.Implementation implementation = CellTree.Implementation.FLAT;
+        final CellTree tree = populatedTree(implementation, List.of(PointInt.modifiable(0, 0), PointInt.modifiable(-1, -1)));
+        final Path path = bake(tree, implementation);
+
+        final CellTree loaded = CellTree.makeRepresentationOf(implementation, SIZE, SIZE, MINIMAL_CELL_SIZE, 128);
+        try (LeafSnapshotCache cache = LeafSnapshotCache.open(path, CONTENT_HASH, implementation, MINIMAL_CELL_SIZE).orElseThrow()) {
+            Assertions.assertEquals(2, cache.size());
+            cache.invalidate(10, 10);
+            loaded.forEachIndivisibleCellMatching(c -> true, c -> {
+                final boolean read = cache.read(c);
+                Assertions.assertEquals(c.getUnderlyingRectInt().contains(-1, -1), read);
+            });
+        }
+        Assertions.assertTrue(loaded.isCollisionAt(-1, -1));
+        Assertions.assertFalse(loaded.isCollisionAt(0, 0));
+    }
+}
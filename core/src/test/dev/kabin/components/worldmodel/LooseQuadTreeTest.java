@@ -0,0 +1,87 @@
+package dev.kabin.components.worldmodel;
+
+import dev.kabin.util.collections.Id;
+import dev.kabin.util.shapes.primitive.ImmutableRectInt;
+import dev.kabin.util.shapes.primitive.MutableRectInt;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+class LooseQuadTreeTest {
+
+    private record Value(int getId) implements Id {
+    }
+
+    private static ImmutableRectInt randomRect(Random r) {
+        // Mostly small rectangles, and some large ones, partly outside the tree.
+        final int extent = r.nextInt(10) == 0 ? r.nextInt(1500) : r.nextInt(40);
+        return new ImmutableRectInt(r.nextInt(2200) - 1100, r.nextInt(2200) - 1100, extent, r.nextInt(extent + 1));
+    }
+
+    @Test
+    void queriesAgreeWithBruteForce() {
+        final Random r = new Random(0);
+        final LooseQuadTree<Value> tree = new LooseQuadTree<>(-1024, -1024, 2048, 32);
+        final ImmutableRectInt[] rects = new ImmutableRectInt[2000];
+        for (int id = 0; id < rects.length; id++) {
+            rects[id] = randomRect(r);
+            tree.put(new Value(id), rects[id]);
+        }
+
+        for (int round = 0; round < 5; round++) {
+            // Move and remove some values.
+            for (int k = 0; k < 300; k++) {
+                final int id = r.nextInt(rects.length);
+                if (r.nextInt(3) == 0) {
+                    Assertions.assertEquals(rects[id] != null, tree.remove(id));
+                    rects[id] = null;
+                } else {
+                    rects[id] = randomRect(r);
+                    tree.put(new Value(id), rects[id]);
+                }
+            }
+            int stored = 0;
+            for (ImmutableRectInt rect : rects) if (rect != null) stored++;
+            Assertions.assertEquals(stored, tree.size());
+
+            for (int q = 0; q < 50; q++) {
+                final ImmutableRectInt query = randomRect(r);
+                final Set<Integer> expected = new HashSet<>();
+                for (int id = 0; id < rects.length; id++) {
+                    if (rects[id] != null && rects[id].meets(query)) expected.add(id);
+                }
+                final Set<Integer> actual = new HashSet<>();
+                tree.forEachMeeting(query, v -> Assertions.assertTrue(actual.add(v.getId()), "Visited twice: " + v));
+                Assertions.assertEquals(expected, actual);
+                Assertions.assertEquals(!expected.isEmpty(), tree.anyMeeting(query));
+            }
+        }
+    }
+
+    @Test
+    void isStoredWith() {
+        final LooseQuadTree<Value> tree = new LooseQuadTree<>(0, 0, 1000, 32);
+        tree.put(new Value(3), new ImmutableRectInt(10, 10, 5, 5));
+        Assertions.assertTrue(tree.isStoredWith(3, new ImmutableRectInt(10, 10, 5, 5)));
+        Assertions.assertFalse(tree.isStoredWith(3, new ImmutableRectInt(11, 10, 5, 5)));
+        Assertions.assertFalse(tree.isStoredWith(4, new ImmutableRectInt(10, 10, 5, 5)));
+        tree.remove(3);
+        Assertions.assertFalse(tree.isStoredWith(3, new ImmutableRectInt(10, 10, 5, 5)));
+    }
+
+    @Test
+    void boundsOf() {
+        final LooseQuadTree<Value> tree = new LooseQuadTree<>(0, 0, 1000, 32);
+        final MutableRectInt bounds = new MutableRectInt(0, 0, 0, 0);
+        Assertions.assertFalse(tree.boundsOf(3, bounds));
+        tree.put(new Value(3), new ImmutableRectInt(10, 20, 5, 7));
+        tree.put(new Value(3), new ImmutableRectInt(400, 300, 6, 8));
+        Assertions.assertTrue(tree.boundsOf(3, bounds));
+        Assertions.assertEquals(new MutableRectInt(400, 300, 6, 8), bounds);
+        tree.remove(3);
+        Assertions.assertFalse(tree.boundsOf(3, bounds));
+    }
+}
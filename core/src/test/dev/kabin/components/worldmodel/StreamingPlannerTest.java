@@ -0,0 +1,42 @@
+package dev.kabin.components.worldmodel;
+
+import dev.kabin.util.shapes.primitive.ImmutableRectInt;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class StreamingPlannerTest {
+
+    private static final ImmutableRectInt NEIGHBORHOOD = new ImmutableRectInt(-400, -200, 800, 400);
+
+    @Test
+    void stationaryCameraPrefetchesNothing() {
+        final StreamingPlanner planner = new StreamingPlanner(2f, 4, 100, 8);
+        planner.plan(NEIGHBORHOOD, 0f, 0f);
+        Assertions.assertTrue(planner.prefetchRegions().isEmpty());
+        Assertions.assertEquals(NEIGHBORHOOD.getMinX(), planner.requiredRegion().getMinX());
+        Assertions.assertEquals(NEIGHBORHOOD.getMaxY(), planner.requiredRegion().getMaxY());
+        Assertions.assertEquals(NEIGHBORHOOD.getMinX() - 100, planner.retainedRegion().getMinX());
+        Assertions.assertEquals(NEIGHBORHOOD.getMaxX() + 100, planner.retainedRegion().getMaxX());
+    }
+
+    @Test
+    void movingCameraPrefetchesAlongItsVelocity() {
+        final StreamingPlanner planner = new StreamingPlanner(2f, 4, 100, 8);
+        planner.plan(NEIGHBORHOOD, 300f, -50f);
+        final List<ImmutableRectInt> regions = planner.prefetchRegions();
+        Assertions.assertEquals(4, regions.size());
+        for (int i = 0; i < regions.size(); i++) {
+            final float t = 0.5f * (i + 1);
+            Assertions.assertEquals(NEIGHBORHOOD.getMinX() + Math.round(300f * t), regions.get(i).getMinX());
+            Assertions.assertEquals(NEIGHBORHOOD.getMinY() + Math.round(-50f * t), regions.get(i).getMinY());
+            Assertions.assertEquals(NEIGHBORHOOD.getWidth(), regions.get(i).getWidth());
+        }
+        final ImmutableRectInt retained = planner.retainedRegion();
+        Assertions.assertEquals(NEIGHBORHOOD.getMinX() - 100, retained.getMinX());
+        Assertions.assertEquals(NEIGHBORHOOD.getMaxX() + 600 + 100, retained.getMaxX());
+        Assertions.assertEquals(NEIGHBORHOOD.getMinY() - 100 - 100, retained.getMinY());
+        Assertions.assertEquals(NEIGHBORHOOD.getMaxY() + 100, retained.getMaxY());
+    }
+}
@@ -0,0 +1,84 @@
+package dev.kabin.components.worldmodel;
+
+import dev.kabin.util.collections.Id;
+import dev.kabin.util.shapes.primitive.ImmutableRectInt;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+class VisibleSetTest {
+
+    private record Value(int getId) implements Id, Comparable<Value> {
+        @Override
+        public int compareTo(@NotNull Value other) {
+            return Integer.compare(getId, other.getId);
+        }
+    }
+
+    private static ImmutableRectInt randomRect(Random r, int extent) {
+        return new ImmutableRectInt(r.nextInt(4000) - 2000, r.nextInt(4000) - 2000, r.nextInt(extent), r.nextInt(extent));
+    }
+
+    @Test
+    void visibleValuesAgreeWithBruteForce() {
+        final Random r = new Random(0);
+        final LooseQuadTree<Value> index = new LooseQuadTree<>(-2048, -2048, 4096, 32);
+        final VisibleSet<Value> visibleSet = new VisibleSet<>(index::forEachMeeting, (v, rect) -> index.meets(v.getId(), rect));
+        final Set<Value> entered = new HashSet<>();
+        visibleSet.addListener(
+                v -> Assertions.assertTrue(entered.add(v), "Entered twice: " + v),
+                v -> Assertions.assertTrue(entered.remove(v), "Exited without entering: " + v)
+        );
+
+        final Value[] values = new Value[3000];
+        final ImmutableRectInt[] bounds = new ImmutableRectInt[values.length];
+        for (int id = 0; id < values.length; id++) {
+            values[id] = new Value(id);
+            bounds[id] = randomRect(r, 100);
+            index.put(values[id], bounds[id]);
+        }
+
+        ImmutableRectInt region = new ImmutableRectInt(-500, -300, 1000, 600);
+        for (int step = 0; step < 200; step++) {
+            // Pan the region, mostly slowly, and sometimes jump or clear it.
+            final int kind = r.nextInt(20);
+            if (kind == 0) {
+                region = randomRect(r, 1500);
+            } else if (kind > 1) {
+                region = new ImmutableRectInt(region.getMinX() + r.nextInt(41) - 20, region.getMinY() + r.nextInt(41) - 20,
+                        region.getWidth(), region.getHeight());
+            }
+            visibleSet.moveRegion(kind == 1 ? null : region);
+
+            // Move, remove and add some values.
+            for (int k = 0; k < 20; k++) {
+                final int id = r.nextInt(values.length);
+                if (bounds[id] != null && r.nextInt(4) == 0) {
+                    index.remove(id);
+                    visibleSet.remove(values[id]);
+                    bounds[id] = null;
+                } else {
+                    bounds[id] = randomRect(r, 100);
+                    index.put(values[id], bounds[id]);
+                    visibleSet.update(values[id]);
+                }
+            }
+            visibleSet.publish();
+
+            final List<Value> expected = new ArrayList<>();
+            if (kind != 1) {
+                for (int id = 0; id < values.length; id++) {
+                    if (bounds[id] != null && bounds[id].meets(region)) expected.add(values[id]);
+                }
+            }
+            Assertions.assertEquals(expected, visibleSet.published());
+            Assertions.assertEquals(new HashSet<>(expected), entered);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package dev.kabin.physics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+class FixedTimestepTest {
+
+    @Test
+    void remainderIsCarriedOver() {
+        final FixedTimestep timestep = new FixedTimestep(1 / 120f, 8);
+        // A 144 Hz display: 5 steps for every 6 frames.
+        int steps = 0;
+        for (int frame = 0; frame < 6 * 100; frame++) {
+            steps += timestep.advance(1 / 144f);
+        }
+        Assertions.assertTrue(Math.abs(steps - 500) <= 1, "Took " + steps + " steps.");
+        Assertions.assertEquals(steps, timestep.steps());
+        Assertions.assertEquals(0, timestep.droppedSteps());
+    }
+
+    @Test
+    void simulatedTimeKeepsUpWithElapsedTime() {
+        final float dt = 1 / 120f;
+        final FixedTimestep timestep = new FixedTimestep(dt, 8);
+        final Random r = new Random(0);
+        double elapsed = 0;
+        for (int frame = 0; frame < 10_000; frame++) {
+            final float frameTime = 0.002f + r.nextFloat() * 0.03f;
+            elapsed += frameTime;
+            timestep.advance(frameTime);
+            final double simulated = timestep.steps() * (double) dt;
+            Assertions.assertTrue(simulated <= elapsed + 1e-6 && elapsed - simulated < dt + 1e-4,
+                    "Simulated " + simulated + " of " + elapsed + " seconds.");
+            Assertions.assertEquals((elapsed - simulated) / dt, timestep.alpha(), 1e-2);
+        }
+    }
+
+    @Test
+    void stepsPerFrameAreCapped() {
+        final FixedTimestep timestep = new FixedTimestep(0.01f, 5);
+        Assertions.assertEquals(5, timestep.advance(1.005f));
+        Assertions.assertEquals(95, timestep.droppedSteps());
+        Assertions.assertEquals(0.5f, timestep.alpha(), 1e-3f);
+        // The next frame is back to normal.
+        Assertions.assertEquals(1, timestep.advance(0.01f));
+    }
+
+    @Test
+    void alphaIsBelowOne() {
+        final FixedTimestep timestep = new FixedTimestep(0.1f, 5);
+        for (int frame = 0; frame < 1000; frame++) {
+            timestep.advance(0.1f / 3);
+            Assertions.assertTrue(timestep.alpha() >= 0 && timestep.alpha() < 1);
+        }
+    }
+}
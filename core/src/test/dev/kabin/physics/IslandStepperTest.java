@@ -0,0 +1,103 @@
+package dev.kabin.physics;
+
+import dev.kabin.util.shapes.primitive.ImmutableRectInt;
+import dev.kabin.util.shapes.primitive.RectInt;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+class IslandStepperTest {
+
+    /**
+     * A body which falls through a field, and is pushed about by what it reads of the field near itself.
+     */
+    private static final class Body {
+
+        private final int id;
+        private float x, y, vx, vy;
+
+        private Body(int id, float x, float y) {
+            this.id = id;
+            this.x = x;
+            this.y = y;
+        }
+
+        private RectInt bounds() {
+            return new ImmutableRectInt(Math.round(x) - 4, Math.round(y) - 4, 8, 8);
+        }
+
+        private void update() {
+            final float dt = 1 / 120f;
+            vx += (float) Math.sin(x * 0.01 + y * 0.003) * 30f * dt;
+            vy += ((float) Math.cos(y * 0.02) * 20f - 9.81f) * dt;
+            x += vx * dt;
+            y += vy * dt;
+        }
+    }
+
+    private static List<Body> bodies(long seed) {
+        final Random r = new Random(seed);
+        final List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < 500; i++) bodies.add(new Body(i, r.nextInt(20_000) - 10_000, r.nextInt(2000)));
+        return bodies;
+    }
+
+    @Test
+    void resultIsTheSameAsThatOfSequentialUpdates() {
+        final List<Body> sequential = bodies(0), parallel = bodies(0);
+        final IslandStepper<Body> islands = new IslandStepper<>(512, 16, new ForkJoinPool(4));
+        for (int step = 0; step < 200; step++) {
+            sequential.forEach(Body::update);
+            islands.step(parallel::forEach, Body::bounds, Body::update);
+        }
+        Assertions.assertTrue(islands.islandCount() > 1);
+        for (int i = 0; i < sequential.size(); i++) {
+            Assertions.assertEquals(Float.floatToIntBits(sequential.get(i).x), Float.floatToIntBits(parallel.get(i).x));
+            Assertions.assertEquals(Float.floatToIntBits(sequential.get(i).y), Float.floatToIntBits(parallel.get(i).y));
+        }
+    }
+
+    @Test
+    void valuesWhoseWidenedBoundsShareAColumnShareAnIsland() {
+        final IslandStepper<Body> islands = new IslandStepper<>(100, 10, ForkJoinPool.commonPool());
+        final List<Body> bodies = List.of(
+                // Columns 0 through 1.
+                new Body(0, 95, 0),
+                // Column 1 only.
+                new Body(1, 150, 500),
+                // Column 2 only; a new island.
+                new Body(2, 250, 0),
+                // Columns -1 through 0, reaching into the first island.
+                new Body(3, 0, 0),
+                // Column 5 only.
+                new Body(4, 550, 0)
+        );
+        islands.step(bodies::forEach, Body::bounds, body -> {
+        });
+        Assertions.assertEquals(3, islands.islandCount());
+    }
+
+    @Test
+    void valuesOfAnIslandAreUpdatedInTheGivenOrder() {
+        final IslandStepper<Body> islands = new IslandStepper<>(512, 16, new ForkJoinPool(4));
+        final List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            // Two islands, interleaved in the given order, with x decreasing within each.
+            bodies.add(new Body(i, (i % 2 == 0 ? 0 : 5000) + 300 - i, 0));
+        }
+        final List<Integer> updated = Collections.synchronizedList(new ArrayList<>());
+        islands.step(bodies::forEach, Body::bounds, body -> updated.add(body.id));
+
+        Assertions.assertEquals(2, islands.islandCount());
+        final List<Integer> even = updated.stream().filter(id -> id % 2 == 0).toList();
+        final List<Integer> odd = updated.stream().filter(id -> id % 2 == 1).toList();
+        Assertions.assertEquals(even.stream().sorted().toList(), even);
+        Assertions.assertEquals(odd.stream().sorted().toList(), odd);
+        Assertions.assertEquals(300, updated.size());
+    }
+}
@@ -0,0 +1,85 @@
+package dev.kabin.physics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+class SimulationThreadTest {
+
+    private static final float DT = 1 / 120f;
+    private static final long DT_NANOS = Math.round(DT * 1e9);
+
+    @Test
+    void ticksAreTakenAtAFixedRateAndPublished() throws InterruptedException {
+        final AtomicLong clock = new AtomicLong(1_000_000_000L);
+        final TickState.Builder builder = new TickState.Builder();
+        final AtomicLong lastTick = new AtomicLong();
+        final SimulationThread simulation = new SimulationThread("test", DT, 8, tick -> {
+            Assertions.assertEquals(lastTick.get() + 1, tick);
+            lastTick.set(tick);
+            return builder.add(1, tick, -tick).build(tick);
+        }, clock::get);
+        Assertions.assertEquals(0, simulation.ticks());
+
+        simulation.start();
+        // Six and a half ticks pass.
+        clock.addAndGet(6 * DT_NANOS + DT_NANOS / 2);
+        awaitTicks(simulation, 6);
+        Assertions.assertEquals(6, simulation.ticks());
+        Assertions.assertEquals(0, simulation.droppedTicks());
+
+        // A quarter of a tick after the last was published, it is blended with the one before.
+        final TickInterpolation interpolation = simulation.interpolation(clock.get() + DT_NANOS / 4);
+        Assertions.assertEquals(6, interpolation.current().tick());
+        Assertions.assertEquals(5, interpolation.previous().tick());
+        Assertions.assertEquals(5.25f, interpolation.x(1), 1e-3);
+        Assertions.assertEquals(-5.25f, interpolation.y(1), 1e-3);
+
+        // A slow frame does not hold back the simulation; whole ticks beyond the most taken at once are dropped.
+        clock.addAndGet(20 * DT_NANOS);
+        awaitTicks(simulation, 14);
+        simulation.close();
+
+        Assertions.assertFalse(simulation.isRunning());
+        Assertions.assertEquals(14, simulation.ticks());
+        Assertions.assertEquals(12, simulation.droppedTicks());
+        Assertions.assertEquals(lastTick.get(), simulation.ticks());
+    }
+
+    @Test
+    void noTickIsTakenWhilePaused() throws InterruptedException {
+        final AtomicLong clock = new AtomicLong();
+        final SimulationThread simulation = new SimulationThread("test", DT, 8,
+                tick -> new TickState.Builder().build(tick), clock::get);
+        simulation.start();
+        simulation.runPaused(() -> {
+            clock.addAndGet(3 * DT_NANOS + DT_NANOS / 2);
+            final long deadline = System.nanoTime() + 50_000_000L;
+            while (System.nanoTime() < deadline) Assertions.assertEquals(0, simulation.ticks());
+        });
+        awaitTicks(simulation, 3);
+        simulation.close();
+        Assertions.assertEquals(3, simulation.ticks());
+    }
+
+    @Test
+    void anExceptionOfATickStopsTheThread() throws InterruptedException {
+        final SimulationThread simulation = new SimulationThread("test", 1 / 120f, 8, tick -> {
+            if (tick == 3) throw new IllegalStateException();
+            return new TickState.Builder().build(tick);
+        });
+        simulation.start();
+        for (int i = 0; i < 100 && simulation.isRunning(); i++) Thread.sleep(10);
+        simulation.close();
+        Assertions.assertFalse(simulation.isRunning());
+        Assertions.assertEquals(2, simulation.ticks());
+    }
+
+    /**
+     * Waits until the given number of ticks are published, for at most ten seconds.
+     */
+    private static void awaitTicks(SimulationThread simulation, long ticks) throws InterruptedException {
+        for (int i = 0; i < 10_000 && simulation.ticks() < ticks; i++) Thread.sleep(1);
+    }
+}
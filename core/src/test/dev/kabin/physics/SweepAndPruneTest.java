@@ -0,0 +1,134 @@
+package dev.kabin.physics;
+
+import dev.kabin.util.collections.Id;
+import dev.kabin.util.shapes.primitive.ImmutableRectInt;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+class SweepAndPruneTest {
+
+    private record Value(int getId) implements Id {
+    }
+
+    private record Pair(Value first, Value second) {
+    }
+
+    private final List<Pair> begun = new ArrayList<>();
+    private final List<Pair> persisted = new ArrayList<>();
+    private final List<Pair> ended = new ArrayList<>();
+
+    private SweepAndPrune<Value> sweepAndPrune() {
+        final SweepAndPrune<Value> sweepAndPrune = new SweepAndPrune<>();
+        sweepAndPrune.addListener(
+                (a, b) -> begun.add(new Pair(a, b)),
+                (a, b) -> persisted.add(new Pair(a, b)),
+                (a, b) -> ended.add(new Pair(a, b))
+        );
+        return sweepAndPrune;
+    }
+
+    private void clearEvents() {
+        begun.clear();
+        persisted.clear();
+        ended.clear();
+    }
+
+    @Test
+    void contactsBeginPersistAndEnd() {
+        final SweepAndPrune<Value> sweepAndPrune = sweepAndPrune();
+        final Value a = new Value(0), b = new Value(1);
+
+        sweepAndPrune.put(a, new ImmutableRectInt(0, 0, 10, 10));
+        sweepAndPrune.put(b, new ImmutableRectInt(5, 5, 10, 10));
+        sweepAndPrune.step();
+        Assertions.assertEquals(List.of(new Pair(a, b)), begun);
+        Assertions.assertTrue(persisted.isEmpty() && ended.isEmpty());
+
+        clearEvents();
+        sweepAndPrune.put(a, new ImmutableRectInt(1, 0, 10, 10));
+        sweepAndPrune.put(b, new ImmutableRectInt(5, 5, 10, 10));
+        sweepAndPrune.step();
+        Assertions.assertEquals(List.of(new Pair(a, b)), persisted);
+        Assertions.assertTrue(begun.isEmpty() && ended.isEmpty());
+
+        // Touching bounds do not meet.
+        clearEvents();
+        sweepAndPrune.put(a, new ImmutableRectInt(-5, 0, 10, 10));
+        sweepAndPrune.put(b, new ImmutableRectInt(5, 5, 10, 10));
+        sweepAndPrune.step();
+        Assertions.assertEquals(List.of(new Pair(a, b)), ended);
+        Assertions.assertTrue(begun.isEmpty() && persisted.isEmpty());
+        Assertions.assertEquals(0, sweepAndPrune.contactCount());
+    }
+
+    @Test
+    void valuesNotPutAreRemovedByTheNextStep() {
+        final SweepAndPrune<Value> sweepAndPrune = sweepAndPrune();
+        final Value a = new Value(3), b = new Value(7), c = new Value(8);
+        sweepAndPrune.put(a, new ImmutableRectInt(0, 0, 10, 10));
+        sweepAndPrune.put(b, new ImmutableRectInt(0, 0, 10, 10));
+        sweepAndPrune.put(c, new ImmutableRectInt(0, 0, 10, 10));
+        sweepAndPrune.step();
+        Assertions.assertEquals(3, begun.size());
+
+        clearEvents();
+        sweepAndPrune.put(a, new ImmutableRectInt(0, 0, 10, 10));
+        sweepAndPrune.put(b, new ImmutableRectInt(0, 0, 10, 10));
+        Assertions.assertTrue(sweepAndPrune.remove(b.getId()));
+        sweepAndPrune.step();
+        Assertions.assertFalse(sweepAndPrune.contains(b.getId()));
+        Assertions.assertFalse(sweepAndPrune.contains(c.getId()));
+        Assertions.assertEquals(1, sweepAndPrune.size());
+        // Ordered by the ids of the pairs, and each removed value is still passed.
+        Assertions.assertEquals(List.of(new Pair(a, b), new Pair(a, c), new Pair(b, c)), ended);
+        Assertions.assertTrue(begun.isEmpty() && persisted.isEmpty());
+    }
+
+    @Test
+    void contactsAgreeWithBruteForce() {
+        final Random r = new Random(0);
+        final SweepAndPrune<Value> sweepAndPrune = sweepAndPrune();
+        final Set<Pair> contacts = new HashSet<>();
+        sweepAndPrune.addListener(
+                (a, b) -> Assertions.assertTrue(contacts.add(new Pair(a, b)), "Began twice: " + a + ", " + b),
+                (a, b) -> Assertions.assertTrue(contacts.contains(new Pair(a, b)), "Persisted without beginning: " + a + ", " + b),
+                (a, b) -> Assertions.assertTrue(contacts.remove(new Pair(a, b)), "Ended without beginning: " + a + ", " + b)
+        );
+
+        final Value[] values = new Value[400];
+        final ImmutableRectInt[] bounds = new ImmutableRectInt[values.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new Value(i);
+            bounds[i] = new ImmutableRectInt(r.nextInt(2000), r.nextInt(2000), r.nextInt(60), r.nextInt(60));
+        }
+
+        for (int step = 0; step < 100; step++) {
+            for (int i = 0; i < values.length; i++) {
+                final ImmutableRectInt b = bounds[i];
+                bounds[i] = new ImmutableRectInt(b.getMinX() + r.nextInt(21) - 10, b.getMinY() + r.nextInt(21) - 10,
+                        b.getWidth(), b.getHeight());
+                // Some values sit out a step.
+                if (r.nextInt(20) != 0) sweepAndPrune.put(values[i], bounds[i]);
+            }
+            clearEvents();
+            sweepAndPrune.step();
+
+            final Set<Pair> expected = new HashSet<>();
+            for (int i = 0; i < values.length; i++) {
+                if (!sweepAndPrune.contains(i)) continue;
+                for (int j = i + 1; j < values.length; j++) {
+                    if (sweepAndPrune.contains(j) && bounds[i].meets(bounds[j])) expected.add(new Pair(values[i], values[j]));
+                }
+            }
+            Assertions.assertEquals(expected, contacts);
+            Assertions.assertEquals(expected.size(), sweepAndPrune.contactCount());
+            Assertions.assertEquals(expected.size(), begun.size() + persisted.size());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package dev.kabin.physics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TickStateTest {
+
+    @Test
+    void positionsAreFoundById() {
+        final TickState.Builder builder = new TickState.Builder();
+        for (int i = 0; i < 100; i++) {
+            final int id = (i * 37) % 101 - 50;
+            builder.add(id, id, 2 * id, 3 * id);
+        }
+        final TickState state = builder.build(7);
+        Assertions.assertEquals(7, state.tick());
+        Assertions.assertEquals(100, state.size());
+        for (int i = 0; i < state.size(); i++) {
+            final int id = state.idAt(i);
+            if (i > 0) Assertions.assertTrue(state.idAt(i - 1) < id);
+            Assertions.assertEquals(i, state.indexOf(id));
+            Assertions.assertEquals(id, state.xAt(i));
+            Assertions.assertEquals(2 * id, state.yAt(i));
+            Assertions.assertEquals(3 * id, state.stateAt(i));
+        }
+        Assertions.assertTrue(state.indexOf(1000) < 0);
+
+        // The builder is empty after a build.
+        Assertions.assertEquals(0, builder.build(8).size());
+    }
+
+    @Test
+    void idsAddedTwiceAreRejected() {
+        final TickState.Builder builder = new TickState.Builder().add(1, 0, 0).add(2, 0, 0).add(1, 1, 1);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> builder.build(0));
+    }
+
+    @Test
+    void interpolationBlendsBetweenTicks() {
+        final TickState previous = new TickState.Builder().add(1, 0, 10).add(2, 5, 5).build(0);
+        final TickState current = new TickState.Builder().add(1, 10, 20, 4).add(3, 7, 8).build(1);
+        final TickInterpolation interpolation = new TickInterpolation(previous, current, 0.25f);
+
+        Assertions.assertEquals(2.5f, interpolation.x(1));
+        Assertions.assertEquals(12.5f, interpolation.y(1));
+        // States are those of the current tick.
+        Assertions.assertEquals(4, interpolation.state(1));
+        Assertions.assertEquals(0, interpolation.state(3));
+        // Not of the previous tick.
+        Assertions.assertEquals(7f, interpolation.x(3));
+        Assertions.assertEquals(8f, interpolation.y(3));
+        // Not of the current tick.
+        Assertions.assertFalse(interpolation.contains(2));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TickInterpolation(previous, current, 1.5f));
+    }
+}
@@ -0,0 +1,32 @@
+package dev.kabin.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TangentFinderTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void slopeOfFlatGround() {
+        Assertions.assertEquals(0, TangentFinder.slopeOfGround(Direction.RIGHT, 3, 3), DELTA);
+        Assertions.assertEquals(180, TangentFinder.slopeOfGround(Direction.LEFT, 3, 3), DELTA);
+    }
+
+    @Test
+    void slopeOfGroundPointsInTheGivenDirection() {
+        // Rising by a beam length over a beam length is 45 degrees uphill.
+        final int rise = TangentFinder.BEAM_LENGTH;
+        Assertions.assertEquals(45, TangentFinder.slopeOfGround(Direction.RIGHT, 0, rise), DELTA);
+        Assertions.assertEquals(135, TangentFinder.slopeOfGround(Direction.LEFT, 0, rise), DELTA);
+        Assertions.assertEquals(-45, TangentFinder.slopeOfGround(Direction.RIGHT, rise, 0), DELTA);
+        Assertions.assertEquals(225, TangentFinder.slopeOfGround(Direction.LEFT, rise, 0), DELTA);
+    }
+
+    @Test
+    void slopeOfGroundIsNotRounded() {
+        final double expected = Math.toDegrees(Math.atan2(1, TangentFinder.BEAM_LENGTH));
+        Assertions.assertEquals(expected, TangentFinder.slopeOfGround(Direction.RIGHT, 2, 3), DELTA);
+        Assertions.assertEquals(180 - expected, TangentFinder.slopeOfGround(Direction.LEFT, 2, 3), DELTA);
+    }
+}
@@ -1,14 +1,19 @@
 package dev.kabin.util.cell;
 
-import dev.kabin.components.worldmodel.FloatMatrixPool;
-import dev.kabin.components.worldmodel.IntMatrixPool;
+import dev.kabin.components.worldmodel.ChunkedFloatMatrixPool;
+import dev.kabin.components.worldmodel.ChunkedIntMatrixPool;
+import dev.kabin.components.worldmodel.OccupancyMatrixPool;
 import dev.kabin.util.lambdas.FloatUnaryOperation;
-import dev.kabin.util.linalg.FloatMatrix;
-import dev.kabin.util.linalg.IntMatrix;
+import dev.kabin.util.linalg.ChunkedFloatMatrix;
+import dev.kabin.util.linalg.ChunkedIntMatrix;
+import dev.kabin.util.linalg.OccupancyMatrix;
 import dev.kabin.util.points.PointInt;
+import dev.kabin.util.shapes.primitive.ImmutableRectInt;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
@@ -28,8 +33,9 @@ class CellTest {
                         .setWidth(MINIMAL_CELL_SIZE * 2)
                         .setHeight(128 * 2)
                         .setScaleFactor(1)
-                        .setIntMatrixPool(new IntMatrixPool(10, () -> new IntMatrix(128, 128)))
-                        .setFloatArrayPool(new FloatMatrixPool(10, () -> new FloatMatrix(128, 128)))
+                        .setIntMatrixPool(new ChunkedIntMatrixPool(10, () -> new ChunkedIntMatrix(128, 128)))
+                        .setOccupancyMatrixPool(new OccupancyMatrixPool(10, () -> new OccupancyMatrix(128, 128)))
+                        .setFloatArrayPool(new ChunkedFloatMatrixPool(10, () -> new ChunkedFloatMatrix(128, 128)))
                         .build()
         );
 
@@ -61,8 +67,9 @@ class CellTest {
                         .setWidth(MINIMAL_CELL_SIZE * 2)
                         .setHeight(128 * 2)
                         .setScaleFactor(1)
-                        .setIntMatrixPool(new IntMatrixPool(10, () -> new IntMatrix(128, 128)))
-                        .setFloatArrayPool(new FloatMatrixPool(10, () -> new FloatMatrix(128, 128)))
+                        .setIntMatrixPool(new ChunkedIntMatrixPool(10, () -> new ChunkedIntMatrix(128, 128)))
+                        .setOccupancyMatrixPool(new OccupancyMatrixPool(10, () -> new OccupancyMatrix(128, 128)))
+                        .setFloatArrayPool(new ChunkedFloatMatrixPool(10, () -> new ChunkedFloatMatrix(128, 128)))
                         .build()
         );
 
@@ -83,8 +90,9 @@ class CellTest {
                         .setWidth(width)
                         .setHeight(height)
                         .setScaleFactor(1)
-                        .setIntMatrixPool(new IntMatrixPool(128, () -> new IntMatrix(128, 128)))
-                        .setFloatArrayPool(new FloatMatrixPool(128, () -> new FloatMatrix(128, 128)))
+                        .setIntMatrixPool(new ChunkedIntMatrixPool(128, () -> new ChunkedIntMatrix(128, 128)))
+                        .setOccupancyMatrixPool(new OccupancyMatrixPool(128, () -> new OccupancyMatrix(128, 128)))
+                        .setFloatArrayPool(new ChunkedFloatMatrixPool(128, () -> new ChunkedFloatMatrix(128, 128)))
                         .build()
         );
 
@@ -136,4 +144,201 @@ class CellTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void leafDirectoryAgreesWithRecursiveDescent() {
+        final Cell withDirectory = Cell.makeRepresentationOf(MINIMAL_CELL_SIZE * 4, MINIMAL_CELL_SIZE * 4, MINIMAL_CELL_SIZE, 128, true);
+        final Cell withoutDirectory = Cell.makeRepresentationOf(MINIMAL_CELL_SIZE * 4, MINIMAL_CELL_SIZE * 4, MINIMAL_CELL_SIZE, 128, false);
+        final int width = withDirectory.getWidth(), height = withDirectory.getHeight();
+
+        final Random r = new Random(0);
+        final List<PointInt> points = IntStream.range(0, 100000)
+                .mapToObj(i -> PointInt.modifiable(r.nextInt(width + 2) - width / 2 - 1, r.nextInt(height + 2) - height / 2 - 1))
+                .collect(Collectors.toList());
+
+        for (PointInt p : points) {
+            withDirectory.incrementCollisionAt(p.x(), p.y());
+            withoutDirectory.incrementCollisionAt(p.x(), p.y());
+            withDirectory.modifyVectorFieldAt(p.x(), p.y(), f -> f + 1f, f -> f - 1f);
+            withoutDirectory.modifyVectorFieldAt(p.x(), p.y(), f -> f + 1f, f -> f - 1f);
+        }
+
+        for (PointInt p : points) {
+            Assertions.assertEquals(withoutDirectory.getCollision(p.x(), p.y()), withDirectory.getCollision(p.x(), p.y()));
+            Assertions.assertEquals(withoutDirectory.getVectorFieldX(p.x(), p.y()), withDirectory.getVectorFieldX(p.x(), p.y()), 0.001f);
+            Assertions.assertEquals(withoutDirectory.getVectorFieldY(p.x(), p.y()), withDirectory.getVectorFieldY(p.x(), p.y()), 0.001f);
+        }
+    }
+
+    @Test
+    public void indivisibleCellsAreCreatedOnFirstWrite() {
+        final Cell root = Cell.makeRepresentationOf(MINIMAL_CELL_SIZE * 4, MINIMAL_CELL_SIZE * 4, MINIMAL_CELL_SIZE, 128);
+        final List<IndivisibleCell> leaves = new ArrayList<>();
+        root.forEachIndivisibleCellMatching(c -> true, leaves::add);
+        Assertions.assertEquals(0, leaves.size());
+
+        // Reads neither fail nor create cells.
+        Assertions.assertEquals(0, root.getCollision(5, 5));
+        Assertions.assertFalse(root.isCollisionAt(5, 5));
+        Assertions.assertEquals(0f, root.getVectorFieldX(5, 5));
+        Assertions.assertThrows(RuntimeException.class, () -> root.decrement(5, 5, Cell.Data.COLLISION));
+        root.forEachIndivisibleCellMatching(c -> true, leaves::add);
+        Assertions.assertEquals(0, leaves.size());
+
+        root.incrementCollisionAt(5, 5);
+        root.activate(-5, -5);
+        root.forEachIndivisibleCellMatching(c -> true, leaves::add);
+        Assertions.assertEquals(2, leaves.size());
+        Assertions.assertEquals(1, root.getCollision(5, 5));
+    }
+
+    @Test
+    public void leafVisitorsOnlyVisitCreatedCells() {
+        final Cell root = Cell.makeRepresentationOf(MINIMAL_CELL_SIZE * 4, MINIMAL_CELL_SIZE * 4, MINIMAL_CELL_SIZE, 128);
+        root.incrementCollisionAt(5, 5);
+        root.activate(-5, -5);
+        final ImmutableRectInt nearOrigin = new ImmutableRectInt(0, 0, 10, 10);
+
+        final List<IndivisibleCell> intersecting = new ArrayList<>();
+        root.forEachLeafIntersecting(nearOrigin, intersecting::add);
+        Assertions.assertEquals(1, intersecting.size());
+        Assertions.assertTrue(intersecting.get(0).getUnderlyingRectInt().contains(5, 5));
+
+        // Sub-trees which meet the rectangle are still searched for cells outside of it.
+        final List<IndivisibleCell> outside = new ArrayList<>();
+        root.forEachLeafOutside(nearOrigin, outside::add);
+        Assertions.assertEquals(1, outside.size());
+        Assertions.assertTrue(outside.get(0).getUnderlyingRectInt().contains(-5, -5));
+    }
+
+    @Test
+    public void cellsCreatedInParallelHaveDistinctIds() {
+        final Cell root = Cell.makeRepresentationOf(MINIMAL_CELL_SIZE * 16, MINIMAL_CELL_SIZE * 16, MINIMAL_CELL_SIZE, 1024);
+        final int half = root.getWidth() / 2;
+        IntStream.range(0, 10_000).parallel().forEach(i -> root.activate(
+                Math.floorMod(i * 7919, root.getWidth()) - half,
+                Math.floorMod(i * 104729, root.getHeight()) - half));
+
+        final List<IndivisibleCell> leaves = new ArrayList<>();
+        root.forEachIndivisibleCellMatching(c -> true, leaves::add);
+        Assertions.assertEquals(leaves.size(), leaves.stream().mapToInt(IndivisibleCell::getId).distinct().count());
+        for (IndivisibleCell leaf : leaves) {
+            Assertions.assertTrue(leaf.isActive());
+        }
+    }
+
+    @Test
+    public void groundDistancesAgreeWithPointQueries() {
+        final Cell withDirectory = Cell.makeRepresentationOf(MINIMAL_CELL_SIZE * 2, MINIMAL_CELL_SIZE * 2, MINIMAL_CELL_SIZE, 128, true, true);
+        final Cell withoutDirectory = Cell.makeRepresentationOf(MINIMAL_CELL_SIZE * 2, MINIMAL_CELL_SIZE * 2, MINIMAL_CELL_SIZE, 128, false);
+        final int half = withDirectory.getWidth() / 2;
+
+        // Tall columns of collision that cross the bounds of indivisible cells, with some holes.
+        final Random r = new Random(0);
+        for (int x = -4; x < 4; x++) {
+            for (int y = -half; y < r.nextInt(half); y++) {
+                if (r.nextInt(20) > 0) {
+                    withDirectory.incrementCollisionAt(x, y);
+                    withoutDirectory.incrementCollisionAt(x, y);
+                }
+            }
+        }
+
+        for (int n = 0; n < 3; n++) {
+            for (int x = -5; x < 5; x++) {
+                for (int y = -half - 1; y <= half; y += 3) {
+                    for (int limit : new int[]{1, 50, 3 * half}) {
+                        Assertions.assertEquals(withoutDirectory.collisionRunAbove(x, y, limit), withDirectory.collisionRunAbove(x, y, limit));
+                        Assertions.assertEquals(withoutDirectory.freeRunBelow(x, y, limit), withDirectory.freeRunBelow(x, y, limit));
+                    }
+                }
+            }
+            // Change the collision data, so that the ground distances are updated along with it.
+            for (int k = 0; k < 200; k++) {
+                final int x = r.nextInt(8) - 4, y = r.nextInt(2 * half) - half;
+                if (withDirectory.isCollisionAt(x, y)) {
+                    withDirectory.decrementCollisionAt(x, y);
+                    withoutDirectory.decrementCollisionAt(x, y);
+                } else {
+                    withDirectory.incrementCollisionAt(x, y);
+                    withoutDirectory.incrementCollisionAt(x, y);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void groundDistancesSurviveSnapshots() {
+        final Cell cell = Cell.makeRepresentationOf(MINIMAL_CELL_SIZE * 2, MINIMAL_CELL_SIZE * 2, MINIMAL_CELL_SIZE, 128, true, true);
+        for (int y = -10; y < 10; y++) {
+            if (y != 0) cell.incrementCollisionAt(3, y);
+        }
+        final int[] above = new int[24], below = new int[24];
+        for (int y = -12; y < 12; y++) {
+            above[y + 12] = cell.collisionRunAbove(3, y, 50);
+            below[y + 12] = cell.freeRunBelow(3, y, 50);
+        }
+
+        // Reading a snapshot replaces the data of a cell, which the ground distances follow.
+        final List<IndivisibleCell> leaves = new ArrayList<>();
+        cell.forEachIndivisibleCellMatching(c -> true, leaves::add);
+        Assertions.assertFalse(leaves.isEmpty());
+        for (IndivisibleCell leaf : leaves) {
+            final ByteBuffer buffer = ByteBuffer.allocate(leaf.snapshotBytes());
+            leaf.writeSnapshot(buffer);
+            buffer.flip();
+            leaf.readSnapshot(buffer);
+        }
+        for (int y = -12; y < 12; y++) {
+            Assertions.assertEquals(above[y + 12], cell.collisionRunAbove(3, y, 50));
+            Assertions.assertEquals(below[y + 12], cell.freeRunBelow(3, y, 50));
+        }
+        Assertions.assertEquals(9, cell.collisionRunAbove(3, 1, 50));
+        Assertions.assertEquals(1, cell.freeRunBelow(3, 0, 50));
+    }
+
+    @Test
+    public void groundDistancesAfterWritesInBulkAgreeWithPointWrites() {
+        final Cell pointWrites = Cell.makeRepresentationOf(MINIMAL_CELL_SIZE * 2, MINIMAL_CELL_SIZE * 2, MINIMAL_CELL_SIZE, 128, true, true);
+        final Cell bulkWrites = Cell.makeRepresentationOf(MINIMAL_CELL_SIZE * 2, MINIMAL_CELL_SIZE * 2, MINIMAL_CELL_SIZE, 128, true, true);
+        final int half = pointWrites.getWidth() / 2;
+
+        final Random r = new Random(1);
+        final int[][] points = new int[500][];
+        for (int k = 0; k < points.length; k++) {
+            points[k] = new int[]{r.nextInt(2 * half) - half, r.nextInt(2 * half) - half};
+            pointWrites.incrementCollisionAt(points[k][0], points[k][1]);
+        }
+        for (int x = -half; x < half; x += MINIMAL_CELL_SIZE) {
+            for (int y = -half; y < half; y += MINIMAL_CELL_SIZE) {
+                bulkWrites.activate(x, y);
+            }
+        }
+        final List<IndivisibleCell> leaves = new ArrayList<>();
+        bulkWrites.forEachIndivisibleCellMatching(c -> true, leaves::add);
+        Assertions.assertEquals((2 * half / MINIMAL_CELL_SIZE) * (2 * half / MINIMAL_CELL_SIZE), leaves.size());
+        for (IndivisibleCell leaf : leaves) {
+            leaf.writeInBulk(() -> {
+                // Each leaf only takes the points within it.
+                for (int[] point : points) {
+                    leaf.incrementCollisionAt(point[0], point[1]);
+                }
+            });
+        }
+
+        for (int x = -half; x < half; x++) {
+            for (int y = -half; y < half; y++) {
+                Assertions.assertEquals(pointWrites.collisionRunAbove(x, y, 2 * half), bulkWrites.collisionRunAbove(x, y, 2 * half));
+                Assertions.assertEquals(pointWrites.freeRunBelow(x, y, 2 * half), bulkWrites.freeRunBelow(x, y, 2 * half));
+            }
+        }
+    }
+
+    @Test
+    public void onlyIndivisibleCellsHaveSnapshots() {
+        final Cell root = Cell.makeRepresentationOf(MINIMAL_CELL_SIZE * 2, MINIMAL_CELL_SIZE * 2, MINIMAL_CELL_SIZE, 128);
+        Assertions.assertThrows(IllegalStateException.class, root::snapshotBytes);
+        Assertions.assertThrows(IllegalStateException.class, () -> root.writeSnapshot(ByteBuffer.allocate(16)));
+        Assertions.assertThrows(IllegalStateException.class, () -> root.readSnapshot(ByteBuffer.allocate(16)));
+    }
+}
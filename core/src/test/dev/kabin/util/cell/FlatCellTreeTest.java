@@ -0,0 +1,235 @@
+package dev.kabin.util.cell;
+
+import dev.kabin.components.worldmodel.ChunkedFloatMatrixPool;
+import dev.kabin.components.worldmodel.ChunkedIntMatrixPool;
+import dev.kabin.components.worldmodel.OccupancyMatrixPool;
+import dev.kabin.util.linalg.ChunkedFloatMatrix;
+import dev.kabin.util.linalg.ChunkedIntMatrix;
+import dev.kabin.util.linalg.OccupancyMatrix;
+import dev.kabin.util.points.PointInt;
+import dev.kabin.util.shapes.primitive.ImmutableRectInt;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class FlatCellTreeTest {
+
+    public static final int MINIMAL_CELL_SIZE = 128;
+
+    private static FlatCellTree flatCellTree(int width, int height) {
+        return new FlatCellTree(0, 0, width, height, MINIMAL_CELL_SIZE,
+                new ChunkedIntMatrixPool(128, () -> new ChunkedIntMatrix(MINIMAL_CELL_SIZE, MINIMAL_CELL_SIZE)),
+                new OccupancyMatrixPool(128, () -> new OccupancyMatrix(MINIMAL_CELL_SIZE, MINIMAL_CELL_SIZE)),
+                new ChunkedFloatMatrixPool(128, () -> new ChunkedFloatMatrix(MINIMAL_CELL_SIZE, MINIMAL_CELL_SIZE)));
+    }
+
+    private static Cell cell(int width, int height) {
+        return new Cell(CellParameters.builder(MINIMAL_CELL_SIZE)
+                .setX(0)
+                .setY(0)
+                .setWidth(width)
+                .setHeight(height)
+                .setIntMatrixPool(new ChunkedIntMatrixPool(128, () -> new ChunkedIntMatrix(MINIMAL_CELL_SIZE, MINIMAL_CELL_SIZE)))
+                .setOccupancyMatrixPool(new OccupancyMatrixPool(128, () -> new OccupancyMatrix(MINIMAL_CELL_SIZE, MINIMAL_CELL_SIZE)))
+                .setFloatArrayPool(new ChunkedFloatMatrixPool(128, () -> new ChunkedFloatMatrix(MINIMAL_CELL_SIZE, MINIMAL_CELL_SIZE)))
+                .build());
+    }
+
+    @Test
+    public void indivisibleCellsHaveSameBoundsAsCell() {
+        final int size = MINIMAL_CELL_SIZE * 4;
+        final List<String> expected = new ArrayList<>();
+        final Cell cell = cell(size, size);
+        cell.forEachIndivisibleCellMeeting(cell.getUnderlyingRectInt(), c -> expected.add(c.getUnderlyingRectInt().toString()));
+        final List<String> actual = new ArrayList<>();
+        flatCellTree(size, size).forEachIndivisibleCellMatching(c -> true, c -> actual.add(c.getUnderlyingRectInt().toString()));
+
+        Assertions.assertEquals(16, actual.size());
+        Assertions.assertEquals(expected.stream().sorted().toList(), actual.stream().sorted().toList());
+    }
+
+    @Test
+    public void dataRemovalThrowsForEmptyLists() {
+        final FlatCellTree tree = flatCellTree(MINIMAL_CELL_SIZE * 2, MINIMAL_CELL_SIZE * 2);
+        Arrays.stream(Cell.Data.values()).filter(d -> d.getType() == Cell.Data.PrimitiveType.INTEGER).forEach(type ->
+                Assertions.assertThrows(RuntimeException.class, () -> tree.decrement(0, 0, type)));
+    }
+
+    @Test
+    public void pointsOutsideOfTreeYieldNoData() {
+        final FlatCellTree tree = flatCellTree(MINIMAL_CELL_SIZE * 2, MINIMAL_CELL_SIZE * 2);
+        tree.incrementCollisionAt(-1, 0);
+        tree.incrementCollisionAt(MINIMAL_CELL_SIZE * 2, 0);
+        Assertions.assertEquals(0, tree.getCollision(-1, 0));
+        Assertions.assertEquals(0, tree.getCollision(MINIMAL_CELL_SIZE * 2, 0));
+        Assertions.assertEquals(0, tree.getCollision(0, MINIMAL_CELL_SIZE * 2));
+    }
+
+    @Test
+    public void indivisibleCellOnlyIncrementsInsideItself() {
+        final FlatCellTree tree = flatCellTree(MINIMAL_CELL_SIZE * 2, MINIMAL_CELL_SIZE * 2);
+        tree.forEachIndivisibleCellMatching(c -> c.getUnderlyingRectInt().contains(0, 0), c -> {
+            c.incrementCollisionAt(0, 0);
+            c.incrementCollisionAt(MINIMAL_CELL_SIZE, 0);
+        });
+        Assertions.assertTrue(tree.isCollisionAt(0, 0));
+        Assertions.assertFalse(tree.isCollisionAt(MINIMAL_CELL_SIZE, 0));
+    }
+
+    @Test
+    public void dataAgreesWithCell() {
+
+        final int width = MINIMAL_CELL_SIZE * 8,
+                height = MINIMAL_CELL_SIZE * 8;
+
+        final Cell cell = cell(width, height);
+        final FlatCellTree tree = flatCellTree(width, height);
+
+        final Random r = new Random(0);
+        final List<PointInt> points = IntStream.range(0, 100000)
+                .mapToObj(i -> PointInt.modifiable(r.nextInt(width), r.nextInt(height))).collect(Collectors.toList());
+
+        for (PointInt p : points) {
+            cell.incrementCollisionAt(p.x(), p.y());
+            tree.incrementCollisionAt(p.x(), p.y());
+            cell.increaseLadderAt(p.y(), p.x());
+            tree.increaseLadderAt(p.y(), p.x());
+            cell.modifyVectorFieldAt(p.x(), p.y(), f -> f + 0.5f, f -> f - 0.5f);
+            tree.modifyVectorFieldAt(p.x(), p.y(), f -> f + 0.5f, f -> f - 0.5f);
+        }
+
+        for (PointInt p : points) {
+            Assertions.assertEquals(cell.getCollision(p.x(), p.y()), tree.getCollision(p.x(), p.y()));
+            Assertions.assertEquals(cell.getLadder(p.x(), p.y()), tree.getLadder(p.x(), p.y()));
+            Assertions.assertEquals(cell.getVectorFieldX(p.x(), p.y()), tree.getVectorFieldX(p.x(), p.y()), 0.001f);
+            Assertions.assertEquals(cell.getVectorFieldY(p.x(), p.y()), tree.getVectorFieldY(p.x(), p.y()), 0.001f);
+        }
+
+        for (PointInt p : points) {
+            cell.decrementCollisionAt(p.x(), p.y());
+            tree.decrementCollisionAt(p.x(), p.y());
+            Assertions.assertEquals(cell.getCollision(p.x(), p.y()), tree.getCollision(p.x(), p.y()));
+        }
+
+        tree.clearData();
+        for (PointInt p : points) {
+            Assertions.assertEquals(0, tree.getLadder(p.y(), p.x()));
+        }
+    }
+
+    @Test
+    public void spanQueriesAgreeWithPointQueries() {
+        final int size = MINIMAL_CELL_SIZE * 4;
+        final Random r = new Random(0);
+        for (CellTree tree : List.<CellTree>of(cell(size, size), flatCellTree(size, size))) {
+            for (int n = 0; n < 20_000; n++) {
+                tree.incrementCollisionAt(r.nextInt(size), r.nextInt(size));
+            }
+            for (int n = 0; n < 2_000; n++) {
+                tree.increaseLadderAt(r.nextInt(size), r.nextInt(size));
+            }
+
+            for (int n = 0; n < 500; n++) {
+                // Segments may start or end outside of the tree, and cross borders of indivisible cells.
+                final int x = r.nextInt(size + 20) - 10, y = r.nextInt(size + 20) - 10;
+                final int from = r.nextInt(size + 20) - 10, to = from + r.nextInt(MINIMAL_CELL_SIZE * 2);
+
+                int expected = to;
+                for (int v = from; v < to; v++) {
+                    if (tree.isCollisionAt(x, v)) {
+                        expected = v;
+                        break;
+                    }
+                }
+                Assertions.assertEquals(expected, tree.firstCollisionInColumn(x, from, to));
+
+                expected = to;
+                for (int v = from; v < to; v++) {
+                    if (tree.isCollisionIfNotLadderData(x, v)) {
+                        expected = v;
+                        break;
+                    }
+                }
+                Assertions.assertEquals(expected, tree.firstCollisionIfNotLadderDataInColumn(x, from, to));
+
+                boolean expectedAny = false;
+                for (int u = from; u < to; u++) {
+                    expectedAny |= tree.isCollisionAt(u, y);
+                }
+                Assertions.assertEquals(expectedAny, tree.anyCollisionInRow(y, from, to));
+
+                int expectedCount = 0;
+                for (int u = x; u < x + 40; u++) {
+                    for (int v = from; v < to; v++) {
+                        if (tree.isCollisionAt(u, v)) expectedCount++;
+                    }
+                }
+                Assertions.assertEquals(expectedCount, tree.countCollisionsInRect(x, from, x + 40, to));
+            }
+        }
+    }
+
+    @Test
+    public void sampleAgreesWithSingleLookUps() {
+        final int size = MINIMAL_CELL_SIZE * 4;
+        final Random r = new Random(0);
+        final CellSample sample = new CellSample();
+        for (CellTree tree : List.<CellTree>of(cell(size, size), flatCellTree(size, size))) {
+            for (int n = 0; n < 20_000; n++) {
+                final int x = r.nextInt(size), y = r.nextInt(size);
+                tree.incrementCollisionAt(x, y);
+                tree.increaseLadderAt(y, x);
+                tree.modifyVectorFieldAt(x, y, f -> f + 0.5f, f -> f - 0.25f);
+            }
+            for (int n = 0; n < 20_000; n++) {
+                final int x = r.nextInt(size + 2) - 1, y = r.nextInt(size + 2) - 1;
+                tree.sample(x, y, sample);
+                Assertions.assertEquals(tree.getCollision(x, y), sample.collision());
+                Assertions.assertEquals(tree.getLadder(x, y), sample.ladder());
+                Assertions.assertEquals(tree.getVectorFieldX(x, y), sample.vectorFieldX(), 0.001f);
+                Assertions.assertEquals(tree.getVectorFieldY(x, y), sample.vectorFieldY(), 0.001f);
+            }
+        }
+    }
+
+    /**
+     * Checks the leaf visitors of the given tree against a search over all of its leaves, for random rectangles.
+     */
+    static void assertLeafVisitorsAgreeWithSearch(CellTree tree, int size) {
+        final Random r = new Random(0);
+        for (int test = 0; test < 200; test++) {
+            final ImmutableRectInt rect = new ImmutableRectInt(r.nextInt(size + 256) - 128, r.nextInt(size + 256) - 128,
+                    r.nextInt(size / 2), r.nextInt(size / 2));
+            final List<IndivisibleCell> meeting = new ArrayList<>(), outside = new ArrayList<>();
+            tree.forEachIndivisibleCellMatching(c -> true, c -> (c.getUnderlyingRectInt().meets(rect) ? meeting : outside).add(c));
+
+            final List<IndivisibleCell> intersecting = new ArrayList<>();
+            tree.forEachLeafIntersecting(rect, intersecting::add);
+            Assertions.assertEquals(Set.copyOf(meeting), Set.copyOf(intersecting), rect.toString());
+            Assertions.assertEquals(meeting.size(), intersecting.size());
+
+            final List<IndivisibleCell> visitedOutside = new ArrayList<>();
+            tree.forEachLeafOutside(rect, visitedOutside::add);
+            Assertions.assertEquals(Set.copyOf(outside), Set.copyOf(visitedOutside), rect.toString());
+            Assertions.assertEquals(outside.size(), visitedOutside.size());
+        }
+    }
+
+    @Test
+    public void leafVisitorsAgreeWithSearch() {
+        final int size = MINIMAL_CELL_SIZE * 8;
+        assertLeafVisitorsAgreeWithSearch(flatCellTree(size, size), size);
+
+        final Cell cell = cell(size, size);
+        cell.forEachIndivisibleCellMeeting(cell.getUnderlyingRectInt(), c -> {
+        });
+        assertLeafVisitorsAgreeWithSearch(cell, size);
+    }
+}
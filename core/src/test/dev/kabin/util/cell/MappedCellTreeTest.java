@@ -0,0 +1,127 @@
+package dev.kabin.util.cell;
+
+import dev.kabin.components.worldmodel.ChunkedFloatMatrixPool;
+import dev.kabin.components.worldmodel.ChunkedIntMatrixPool;
+import dev.kabin.components.worldmodel.OccupancyMatrixPool;
+import dev.kabin.util.linalg.ChunkedFloatMatrix;
+import dev.kabin.util.linalg.ChunkedIntMatrix;
+import dev.kabin.util.linalg.OccupancyMatrix;
+import dev.kabin.util.points.PointInt;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class MappedCellTreeTest {
+
+    public static final int MINIMAL_CELL_SIZE = 128;
+
+    private static MappedCellTree mappedCellTree(int width, int height) throws IOException {
+        final Path path = Files.createTempFile("kabin-test", ".cells");
+        path.toFile().deleteOnExit();
+        return new MappedCellTree(path, 0, 0, width, height, MINIMAL_CELL_SIZE);
+    }
+
+    @Test
+    public void dataAgreesWithFlatCellTree() throws IOException {
+        final int size = MINIMAL_CELL_SIZE * 4;
+        final MappedCellTree mapped = mappedCellTree(size, size);
+        final FlatCellTree flat = new FlatCellTree(0, 0, size, size, MINIMAL_CELL_SIZE,
+                new ChunkedIntMatrixPool(128, () -> new ChunkedIntMatrix(MINIMAL_CELL_SIZE, MINIMAL_CELL_SIZE)),
+                new OccupancyMatrixPool(128, () -> new OccupancyMatrix(MINIMAL_CELL_SIZE, MINIMAL_CELL_SIZE)),
+                new ChunkedFloatMatrixPool(128, () -> new ChunkedFloatMatrix(MINIMAL_CELL_SIZE, MINIMAL_CELL_SIZE)));
+
+        final Random r = new Random(0);
+        final List<PointInt> points = IntStream.range(0, 50_000)
+                .mapToObj(i -> PointInt.modifiable(r.nextInt(size), r.nextInt(size))).collect(Collectors.toList());
+        for (PointInt p : points) {
+            for (CellTree tree : List.<CellTree>of(mapped, flat)) {
+                tree.incrementCollisionAt(p.x(), p.y());
+                tree.increaseLadderAt(p.y(), p.x());
+                tree.modifyVectorFieldAt(p.x(), p.y(), f -> f + 0.5f, f -> f - 0.5f);
+            }
+        }
+
+        final CellSample sample = new CellSample();
+        for (PointInt p : points) {
+            Assertions.assertEquals(flat.getCollision(p.x(), p.y()), mapped.getCollision(p.x(), p.y()));
+            Assertions.assertEquals(flat.getLadder(p.x(), p.y()), mapped.getLadder(p.x(), p.y()));
+            Assertions.assertEquals(flat.getVectorFieldX(p.x(), p.y()), mapped.getVectorFieldX(p.x(), p.y()), 0.001f);
+            Assertions.assertEquals(flat.getVectorFieldY(p.x(), p.y()), mapped.sample(p.x(), p.y(), sample).vectorFieldY(), 0.001f);
+        }
+        Assertions.assertEquals(0, mapped.getCollision(-1, 0));
+        Assertions.assertEquals(0, mapped.getCollision(size, 0));
+    }
+
+    @Test
+    public void dataIsRetainedAfterClearingAnActivatedCell() throws IOException {
+        final MappedCellTree tree = mappedCellTree(MINIMAL_CELL_SIZE * 2, MINIMAL_CELL_SIZE * 2);
+        final List<IndivisibleCell> cells = new ArrayList<>();
+        tree.forEachIndivisibleCellMatching(c -> c.getUnderlyingRectInt().contains(5, 5), cells::add);
+        Assertions.assertEquals(1, cells.size());
+        final IndivisibleCell cell = cells.get(0);
+
+        Assertions.assertFalse(cell.isDataRetained());
+        cell.incrementCollisionAt(5, 5);
+        cell.setActive(true);
+        cell.clearData();
+        cell.setActive(false);
+
+        Assertions.assertTrue(cell.isDataRetained());
+        Assertions.assertTrue(tree.isCollisionAt(5, 5));
+
+        tree.clearData();
+        Assertions.assertFalse(cell.isDataRetained());
+        Assertions.assertFalse(tree.isCollisionAt(5, 5));
+    }
+
+    @Test
+    public void discardedDataIsNotRetained() throws IOException {
+        final MappedCellTree tree = mappedCellTree(MINIMAL_CELL_SIZE * 2, MINIMAL_CELL_SIZE * 2);
+        final List<IndivisibleCell> cells = new ArrayList<>();
+        tree.forEachIndivisibleCellMatching(c -> c.getUnderlyingRectInt().contains(5, 5), cells::add);
+        final IndivisibleCell cell = cells.get(0);
+
+        cell.incrementCollisionAt(5, 5);
+        cell.setActive(true);
+        cell.clearData();
+        cell.setActive(false);
+        cell.discardRetainedData();
+
+        Assertions.assertFalse(cell.isDataRetained());
+        Assertions.assertFalse(tree.isCollisionAt(5, 5));
+    }
+
+    @Test
+    public void decrementingEmptyDataThrows() throws IOException {
+        final MappedCellTree tree = mappedCellTree(MINIMAL_CELL_SIZE * 2, MINIMAL_CELL_SIZE * 2);
+        tree.increment(5, 5, Cell.Data.COLLISION);
+        tree.decrement(5, 5, Cell.Data.COLLISION);
+        Assertions.assertThrows(RuntimeException.class, () -> tree.decrement(5, 5, Cell.Data.COLLISION));
+        Assertions.assertThrows(RuntimeException.class, () -> tree.decrement(6, 6, Cell.Data.LADDER));
+        Assertions.assertEquals(0, tree.getCollision(5, 5));
+    }
+
+    @Test
+    public void closingDeletesTheFile() throws IOException {
+        final Path path = Files.createTempFile("kabin-test", ".cells");
+        path.toFile().deleteOnExit();
+        final MappedCellTree tree = new MappedCellTree(path, 0, 0, MINIMAL_CELL_SIZE, MINIMAL_CELL_SIZE, MINIMAL_CELL_SIZE);
+        tree.incrementCollisionAt(5, 5);
+        tree.close();
+        Assertions.assertFalse(Files.exists(path));
+    }
+
+    @Test
+    public void leafVisitorsAgreeWithSearch() throws IOException {
+        final int size = MINIMAL_CELL_SIZE * 8;
+        FlatCellTreeTest.assertLeafVisitorsAgreeWithSearch(mappedCellTree(size, size), size);
+    }
+}
@@ -0,0 +1,24 @@
+package dev.kabin.util.collections;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class IdMapTest {
+
+    @Test
+    void putAndRemove() {
+        final IdMap<String> map = new IdMap<>(0);
+        Assertions.assertNull(map.put(5, "a"));
+        Assertions.assertEquals("a", map.put(5, "b"));
+        Assertions.assertNull(map.put(40, "c"));
+
+        Assertions.assertEquals(2, map.size());
+        Assertions.assertEquals("b", map.get(5));
+        Assertions.assertNull(map.get(6));
+        Assertions.assertNull(map.get(-1));
+
+        Assertions.assertEquals("c", map.remove(40));
+        Assertions.assertFalse(map.containsKey(40));
+        Assertions.assertEquals(1, map.size());
+    }
+}
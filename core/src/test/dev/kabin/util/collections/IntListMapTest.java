@@ -0,0 +1,36 @@
+package dev.kabin.util.collections;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class IntListMapTest {
+
+    @Test
+    void addAndRemove() {
+        final IntListMap map = new IntListMap(0);
+        for (int value = 0; value < 10; value++) {
+            map.add(100, value);
+        }
+        map.add(3, 7);
+
+        Assertions.assertEquals(10, map.size(100));
+        Assertions.assertEquals(1, map.size(3));
+        Assertions.assertEquals(0, map.size(50));
+        Assertions.assertTrue(map.isEmpty(1000));
+
+        Assertions.assertTrue(map.remove(100, 4));
+        Assertions.assertFalse(map.remove(100, 4));
+        Assertions.assertFalse(map.remove(1000, 4));
+        Assertions.assertEquals(9, map.size(100));
+        Assertions.assertFalse(map.contains(100, 4));
+        for (int value = 0; value < 10; value++) {
+            if (value != 4) Assertions.assertTrue(map.contains(100, value));
+        }
+
+        map.clear(100);
+        Assertions.assertTrue(map.isEmpty(100));
+        Assertions.assertTrue(map.contains(3, 7));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> map.get(100, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> map.add(-1, 0));
+    }
+}
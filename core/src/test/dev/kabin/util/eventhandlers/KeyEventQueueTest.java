@@ -0,0 +1,45 @@
+package dev.kabin.util.eventhandlers;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class KeyEventQueueTest {
+
+    @Test
+    void changesAreHandedOverInOrder() {
+        final KeyEventUtil source = new KeyEventUtil(), target = new KeyEventUtil();
+        final KeyEventQueue queue = new KeyEventQueue();
+        source.setQueue(queue);
+
+        source.registerEvent(KeyCode.A, true);
+        // Repeats of a state are not changes.
+        source.registerEvent(KeyCode.A, true);
+        source.registerEvent(KeyCode.D, true);
+        // Kept by clear.
+        source.clear();
+        source.registerEvent(KeyCode.SPACE, true);
+
+        Assertions.assertEquals(3, queue.drainTo(target));
+        Assertions.assertTrue(target.isPressed(KeyCode.A));
+        Assertions.assertTrue(target.isPressed(KeyCode.D));
+        Assertions.assertTrue(target.isPressed(KeyCode.SPACE));
+        Assertions.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void aShortPressIsSeenByOneDrain() {
+        final KeyEventUtil target = new KeyEventUtil();
+        final KeyEventQueue queue = new KeyEventQueue();
+        queue.offer(KeyCode.SPACE, true);
+        queue.offer(KeyCode.A, true);
+        queue.offer(KeyCode.SPACE, false);
+
+        Assertions.assertEquals(2, queue.drainTo(target));
+        Assertions.assertTrue(target.isPressed(KeyCode.SPACE));
+        Assertions.assertTrue(target.isPressed(KeyCode.A));
+
+        Assertions.assertEquals(1, queue.drainTo(target));
+        Assertions.assertFalse(target.isPressed(KeyCode.SPACE));
+        Assertions.assertEquals(0, queue.drainTo(target));
+    }
+}
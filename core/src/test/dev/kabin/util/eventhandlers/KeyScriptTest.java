@@ -0,0 +1,46 @@
+package dev.kabin.util.eventhandlers;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class KeyScriptTest {
+
+    @Test
+    void keysAreHeldOverTheirRangesAndTheScriptRepeats() {
+        final KeyScript script = KeyScript.parse("D@0..240, SPACE@60..62,D@300..310");
+        Assertions.assertEquals(310, script.length());
+        Assertions.assertTrue(script.isPressed(KeyCode.D, 0));
+        Assertions.assertTrue(script.isPressed(KeyCode.D, 239));
+        Assertions.assertFalse(script.isPressed(KeyCode.D, 240));
+        Assertions.assertTrue(script.isPressed(KeyCode.D, 305));
+        Assertions.assertFalse(script.isPressed(KeyCode.SPACE, 59));
+        Assertions.assertTrue(script.isPressed(KeyCode.SPACE, 61));
+        Assertions.assertFalse(script.isPressed(KeyCode.SPACE, 62));
+        Assertions.assertTrue(script.isPressed(KeyCode.SPACE, 310 + 60));
+        Assertions.assertFalse(script.isPressed(KeyCode.A, 0));
+    }
+
+    @Test
+    void applyRegistersTheStateOfEachKey() {
+        final KeyScript script = KeyScript.parse("A@0..2,SPACE@1..2");
+        final KeyEventUtil keys = new KeyEventUtil();
+        script.apply(0, keys);
+        Assertions.assertTrue(keys.isPressed(KeyCode.A));
+        Assertions.assertFalse(keys.isPressed(KeyCode.SPACE));
+        script.apply(1, keys);
+        Assertions.assertTrue(keys.isPressed(KeyCode.SPACE));
+        script.apply(2, keys);
+        Assertions.assertTrue(keys.isPressed(KeyCode.A));
+        Assertions.assertFalse(keys.isPressed(KeyCode.SPACE));
+    }
+
+    @Test
+    void malformedScriptsAreRejected() {
+        Assertions.assertDoesNotThrow(() -> KeyScript.parse(KeyScript.DEFAULT_SCRIPT));
+        Assertions.assertEquals(0, KeyScript.parse("").length());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> KeyScript.parse("D@0"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> KeyScript.parse("NOT_A_KEY@0..1"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> KeyScript.parse("D@5..5"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> KeyScript.parse("D@x..5"));
+    }
+}
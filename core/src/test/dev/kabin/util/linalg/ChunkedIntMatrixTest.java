@@ -0,0 +1,91 @@
+package dev.kabin.util.linalg;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+class ChunkedIntMatrixTest {
+
+    @Test
+    void chunksAreOnlyAllocatedOnWrite() {
+        final var matrix = new ChunkedIntMatrix(128, 96);
+        Assertions.assertEquals(12, matrix.chunkCount());
+        Assertions.assertEquals(0, matrix.get(95, 127));
+        matrix.set(5, 5, 0);
+        Assertions.assertEquals(0, matrix.allocatedChunks());
+
+        matrix.increment(0, 0);
+        matrix.increment(31, 31);
+        matrix.increment(32, 0);
+        Assertions.assertEquals(2, matrix.allocatedChunks());
+        Assertions.assertEquals(1, matrix.get(31, 31));
+
+        matrix.clear();
+        Assertions.assertEquals(0, matrix.allocatedChunks());
+        Assertions.assertEquals(0, matrix.get(31, 31));
+    }
+
+    @Test
+    void clearedChunksAreReusedZeroed() {
+        final var matrix = new ChunkedIntMatrix(128, 96);
+        matrix.set(0, 0, 3);
+        matrix.set(40, 40, 4);
+        matrix.clear();
+        Assertions.assertEquals(2, matrix.spareChunks());
+
+        matrix.increment(70, 70);
+        Assertions.assertEquals(1, matrix.spareChunks());
+        Assertions.assertEquals(1, matrix.allocatedChunks());
+        // Whichever spare was taken, it was zeroed.
+        Assertions.assertEquals(1, matrix.get(70, 70));
+        for (int i = 64; i < 96; i++) {
+            for (int j = 64; j < 96; j++) {
+                if (i != 70 || j != 70) Assertions.assertEquals(0, matrix.get(i, j));
+            }
+        }
+    }
+
+    @Test
+    void valuesAgreeWithIntMatrix() {
+        final int width = 100, height = 70;
+        final var chunked = new ChunkedIntMatrix(width, height);
+        final var reference = new IntMatrix(width, height);
+        final Random r = new Random(0);
+        for (int n = 0; n < 10_000; n++) {
+            final int i = r.nextInt(height), j = r.nextInt(width);
+            if (r.nextBoolean()) {
+                chunked.increment(i, j);
+                reference.increment(i, j);
+            } else {
+                chunked.decrement(i, j);
+                reference.decrement(i, j);
+            }
+        }
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                Assertions.assertEquals(reference.get(i, j), chunked.get(i, j));
+            }
+        }
+    }
+
+    @Test
+    void readFromRestoresWhatWasWritten() {
+        final var written = new ChunkedIntMatrix(100, 70);
+        written.set(3, 4, 7);
+        written.increment(69, 99);
+        final ByteBuffer buffer = ByteBuffer.allocate(written.serializedBytes());
+        written.writeTo(buffer);
+        Assertions.assertFalse(buffer.hasRemaining());
+
+        final var read = new ChunkedIntMatrix(100, 70);
+        read.set(50, 50, 1);
+        buffer.flip();
+        read.readFrom(buffer);
+        Assertions.assertEquals(2, read.allocatedChunks());
+        Assertions.assertEquals(7, read.get(3, 4));
+        Assertions.assertEquals(1, read.get(69, 99));
+        Assertions.assertEquals(0, read.get(50, 50));
+    }
+}
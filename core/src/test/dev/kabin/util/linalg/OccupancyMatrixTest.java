@@ -0,0 +1,119 @@
+package dev.kabin.util.linalg;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+class OccupancyMatrixTest {
+
+    @Test
+    void countsAgreeWithIntMatrix() {
+        final int width = 100, height = 70;
+        final var occupancy = new OccupancyMatrix(width, height);
+        final var reference = new IntMatrix(width, height);
+
+        final Random r = new Random(0);
+        for (int n = 0; n < 200_000; n++) {
+            // Few rows, so that many entries get counts above 1.
+            final int i = r.nextInt(5), j = r.nextInt(width);
+            if (r.nextInt(3) > 0 || reference.get(i, j) == 0) {
+                occupancy.increment(i, j);
+                reference.increment(i, j);
+            } else {
+                occupancy.decrement(i, j);
+                reference.decrement(i, j);
+            }
+            Assertions.assertEquals(reference.get(i, j), occupancy.get(i, j));
+        }
+
+        int overflow = 0;
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                Assertions.assertEquals(reference.get(i, j), occupancy.get(i, j));
+                Assertions.assertEquals(reference.get(i, j) > 0, occupancy.isSet(i, j));
+                if (reference.get(i, j) > 1) overflow++;
+            }
+        }
+        Assertions.assertEquals(overflow, occupancy.overflowSize());
+    }
+
+    @Test
+    void decrementKeepsCountsNonNegative() {
+        final var occupancy = new OccupancyMatrix(8, 8);
+        occupancy.decrement(1, 1);
+        Assertions.assertEquals(0, occupancy.get(1, 1));
+        occupancy.increment(1, 1);
+        occupancy.increment(1, 1);
+        occupancy.decrement(1, 1);
+        Assertions.assertTrue(occupancy.isSet(1, 1));
+        occupancy.decrement(1, 1);
+        Assertions.assertFalse(occupancy.isSet(1, 1));
+        Assertions.assertEquals(0, occupancy.overflowSize());
+    }
+
+    @Test
+    void rowScansAgreeWithEntryLookUps() {
+        final int width = 200, height = 3;
+        final var occupancy = new OccupancyMatrix(width, height);
+        final Random r = new Random(0);
+        for (int n = 0; n < 60; n++) {
+            occupancy.increment(r.nextInt(height), r.nextInt(width));
+        }
+
+        for (int i = 0; i < height; i++) {
+            for (int from = 0; from <= width; from += 7) {
+                for (int to = from; to <= width; to += 11) {
+                    int expectedFirst = -1, expectedCount = 0;
+                    for (int j = from; j < to; j++) {
+                        if (occupancy.isSet(i, j)) {
+                            if (expectedFirst == -1) expectedFirst = j;
+                            expectedCount++;
+                        }
+                    }
+                    Assertions.assertEquals(expectedFirst, occupancy.firstSetInRow(i, from, to));
+                    Assertions.assertEquals(expectedCount, occupancy.countSetInRow(i, from, to));
+                }
+            }
+        }
+    }
+
+    @Test
+    void clearRemovesAllCounts() {
+        final var occupancy = new OccupancyMatrix(16, 16);
+        for (int k = 0; k < 40; k++) {
+            occupancy.increment(k % 16, k / 16);
+            occupancy.increment(k % 16, k / 16);
+        }
+        occupancy.clear();
+        Assertions.assertEquals(0, occupancy.overflowSize());
+        Assertions.assertEquals(-1, occupancy.firstSetInRow(0, 0, 16));
+        occupancy.increment(0, 0);
+        Assertions.assertEquals(1, occupancy.get(0, 0));
+    }
+
+    @Test
+    void readFromRestoresWhatWasWritten() {
+        final int width = 50, height = 40;
+        final var written = new OccupancyMatrix(width, height);
+        final Random r = new Random(0);
+        for (int n = 0; n < 3_000; n++) {
+            written.increment(r.nextInt(height), r.nextInt(width));
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(written.serializedBytes());
+        written.writeTo(buffer);
+        Assertions.assertFalse(buffer.hasRemaining());
+
+        final var read = new OccupancyMatrix(width, height);
+        read.increment(0, 0);
+        buffer.flip();
+        read.readFrom(buffer);
+        Assertions.assertEquals(written.overflowSize(), read.overflowSize());
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                Assertions.assertEquals(written.get(i, j), read.get(i, j));
+            }
+        }
+    }
+}
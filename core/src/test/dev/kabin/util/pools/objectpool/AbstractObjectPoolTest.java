@@ -4,7 +4,10 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -112,9 +115,96 @@ class AbstractObjectPoolTest {
         Assertions.assertEquals(2, pool.taken());
     }
 
+    @Test
+    void borrowAndGiveBackFromSeveralThreads() throws InterruptedException {
+        int availableObjects = 64;
+        StringListPool pool = new StringListPool(availableObjects, ArrayList::new, List::clear);
+        Set<List<String>> borrowed = Collections.newSetFromMap(new IdentityHashMap<>());
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int round = 0; round < 1000; round++) {
+                    List<String> first = pool.borrow();
+                    List<String> second = pool.borrow();
+                    pool.giveBack(second);
+                    pool.giveBack(first);
+                }
+                synchronized (borrowed) {
+                    for (int i = 0; i < availableObjects / threads.length; i++) borrowed.add(pool.borrow());
+                }
+            });
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+
+        // No object was handed out twice, and none was lost.
+        Assertions.assertEquals(availableObjects, borrowed.size());
+        Assertions.assertEquals(0, pool.remaining());
+    }
+
+    @Test
+    void growsBySegmentsWhenExhausted() {
+        StringListPool pool = new StringListPool(2, 3, ArrayList::new, List::clear);
+        Set<List<String>> borrowed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < 6; i++) borrowed.add(pool.borrow());
+
+        Assertions.assertEquals(6, borrowed.size());
+        Assertions.assertEquals(8, pool.capacity());
+        Assertions.assertEquals(2, pool.remaining());
+        Assertions.assertEquals(new PoolStatistics(6, 4, 2, 6, 8), pool.statistics());
+    }
+
+    @Test
+    void grownObjectsAreReused() {
+        StringListPool pool = new StringListPool(1, ArrayList::new, List::clear);
+        List<String> first = pool.borrow();
+        List<String> second = pool.borrow();
+        pool.giveBack(second);
+        Assertions.assertSame(second, pool.borrow());
+        Assertions.assertNotSame(first, second);
+        // Only the second object was created on demand.
+        Assertions.assertEquals(1, pool.statistics().misses());
+        Assertions.assertEquals(2, pool.statistics().peakTaken());
+    }
+
+    @Test
+    void shrinkToFloorKeepsTakenObjects() {
+        StringListPool pool = new StringListPool(2, 2, ArrayList::new, List::clear);
+        List<List<String>> borrowed = new ArrayList<>();
+        for (int i = 0; i < 7; i++) borrowed.add(pool.borrow());
+        Assertions.assertEquals(8, pool.capacity());
+
+        borrowed.get(0).add("important data");
+        for (int i = 1; i < 7; i++) pool.giveBack(borrowed.get(i));
+        Assertions.assertEquals(6, pool.shrinkToFloor());
+        Assertions.assertEquals(2, pool.capacity());
+        Assertions.assertEquals(1, pool.taken());
+        Assertions.assertEquals("important data", borrowed.get(0).get(0));
+
+        // Taken objects above the floor are kept.
+        pool.borrow();
+        pool.borrow();
+        pool.borrow();
+        Assertions.assertEquals(0, pool.shrinkToFloor());
+        Assertions.assertEquals(4, pool.capacity());
+    }
+
+    @Test
+    void giveBackAllExceptAnObjectNotTaken() {
+        StringListPool pool = new StringListPool(4, ArrayList::new, List::clear);
+        pool.borrow();
+        pool.borrow();
+        pool.giveBackAllExcept(null);
+        Assertions.assertEquals(0, pool.taken());
+    }
+
     static class StringListPool extends AbstractObjectPool<List<String>> {
         public StringListPool(int objectsAvailable, Supplier<List<String>> mapper, Consumer<List<String>> clearDataProcedure) {
             super(objectsAvailable, mapper, clearDataProcedure);
         }
+
+        public StringListPool(int objectsAvailable, int segmentSize, Supplier<List<String>> mapper, Consumer<List<String>> clearDataProcedure) {
+            super(objectsAvailable, segmentSize, mapper, clearDataProcedure);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,151 @@
+package dev.kabin.util.scheduling;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class TaskSchedulerTest {
+
+    private enum Resource {
+        A, B, C
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void independentTasksRunConcurrently() throws InterruptedException {
+        try (TaskScheduler<Resource> scheduler = new TaskScheduler<>("test", 2)) {
+            final CountDownLatch bothStarted = new CountDownLatch(2);
+            final Runnable meet = () -> {
+                bothStarted.countDown();
+                try {
+                    bothStarted.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+            scheduler.add("first", 1000, EnumSet.of(Resource.C), EnumSet.of(Resource.A), meet);
+            scheduler.add("second", 1000, EnumSet.of(Resource.C), EnumSet.of(Resource.B), meet);
+            scheduler.start();
+            Assertions.assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void conflictingTasksNeverOverlap() {
+        final AtomicInteger writing = new AtomicInteger(), reading = new AtomicInteger();
+        final List<String> violations = Collections.synchronizedList(new ArrayList<>());
+        try (TaskScheduler<Resource> scheduler = new TaskScheduler<>("test", 4)) {
+            for (int i = 0; i < 3; i++) {
+                scheduler.add("writer " + i, 1, EnumSet.noneOf(Resource.class), EnumSet.of(Resource.A), () -> {
+                    if (writing.incrementAndGet() != 1 || reading.get() != 0) violations.add("writer");
+                    sleep(1);
+                    writing.decrementAndGet();
+                });
+                scheduler.add("reader " + i, 1, EnumSet.of(Resource.A), EnumSet.noneOf(Resource.class), () -> {
+                    reading.incrementAndGet();
+                    if (writing.get() != 0) violations.add("reader");
+                    sleep(1);
+                    reading.decrementAndGet();
+                });
+            }
+            scheduler.start();
+            sleep(300);
+            scheduler.runNow(EnumSet.noneOf(Resource.class), EnumSet.of(Resource.A), () -> {
+                if (writing.get() != 0 || reading.get() != 0) violations.add("runNow");
+            });
+            sleep(100);
+            for (TaskTimings timings : scheduler.timings()) {
+                Assertions.assertTrue(timings.runs() > 0, timings.name() + " did not run.");
+            }
+        }
+        Assertions.assertEquals(List.of(), violations);
+    }
+
+    @Test
+    void eachRunOfADependentTaskFollowsARunOfEachDependency() {
+        final List<String> order = Collections.synchronizedList(new ArrayList<>());
+        try (TaskScheduler<Resource> scheduler = new TaskScheduler<>("test", 3)) {
+            final var slow = scheduler.add("slow", 20, EnumSet.noneOf(Resource.class), EnumSet.of(Resource.A), () -> order.add("slow"));
+            final var fast = scheduler.add("fast", 1, EnumSet.noneOf(Resource.class), EnumSet.of(Resource.B), () -> order.add("fast"));
+            scheduler.add("dependent", 0, EnumSet.of(Resource.A, Resource.B), EnumSet.noneOf(Resource.class), () -> order.add("dependent"), List.of(slow, fast));
+            scheduler.start();
+            sleep(300);
+        }
+        final List<String> copy;
+        synchronized (order) {
+            copy = List.copyOf(order);
+        }
+        int dependentRuns = 0;
+        boolean slowSeen = false, fastSeen = false;
+        for (String name : copy) {
+            switch (name) {
+                case "slow" -> slowSeen = true;
+                case "fast" -> fastSeen = true;
+                default -> {
+                    Assertions.assertTrue(slowSeen && fastSeen, "Ran before its dependencies: " + copy);
+                    slowSeen = fastSeen = false;
+                    dependentRuns++;
+                }
+            }
+        }
+        Assertions.assertTrue(dependentRuns > 1);
+    }
+
+    @Test
+    void runEachOnceRunsTasksInOrderOnTheCallingThread() {
+        final List<String> order = new ArrayList<>();
+        final Thread caller = Thread.currentThread();
+        try (TaskScheduler<Resource> scheduler = new TaskScheduler<>("test", 1)) {
+            final var first = scheduler.add("first", 1000, EnumSet.noneOf(Resource.class), EnumSet.of(Resource.A), () -> order.add("first"));
+            scheduler.add("second", 1000, EnumSet.noneOf(Resource.class), EnumSet.of(Resource.B), () -> {
+                Assertions.assertSame(caller, Thread.currentThread());
+                order.add("second");
+            }, List.of(first));
+            scheduler.runEachOnce();
+            Assertions.assertEquals(List.of("first", "second"), order);
+            Assertions.assertEquals(1, scheduler.timings().get(1).runs());
+        }
+    }
+
+    @Test
+    void anExceptionOfATaskDoesNotStopIt() {
+        final AtomicInteger runs = new AtomicInteger();
+        try (TaskScheduler<Resource> scheduler = new TaskScheduler<>("test", 1)) {
+            scheduler.add("failing", 1, EnumSet.noneOf(Resource.class), EnumSet.of(Resource.A), () -> {
+                runs.incrementAndGet();
+                throw new IllegalStateException();
+            });
+            scheduler.start();
+            for (int i = 0; i < 200 && runs.get() < 3; i++) sleep(5);
+        }
+        Assertions.assertTrue(runs.get() >= 3);
+    }
+
+    @Test
+    void anErrorOfATaskDoesNotStopIt() {
+        final AtomicInteger runs = new AtomicInteger();
+        try (TaskScheduler<Resource> scheduler = new TaskScheduler<>("test", 1)) {
+            scheduler.add("failing", 1, EnumSet.noneOf(Resource.class), EnumSet.of(Resource.A), () -> {
+                runs.incrementAndGet();
+                throw new AssertionError();
+            });
+            scheduler.start();
+            for (int i = 0; i < 200 && runs.get() < 3; i++) sleep(5);
+        }
+        Assertions.assertTrue(runs.get() >= 3);
+    }
+}
@@ -0,0 +1,36 @@
+package main.desktop;
+
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import dev.kabin.HeadlessRunner;
+
+
+/**
+ * Runs a world without a window or GL context, and reports how fast it ran. Options, all optional:
+ * <pre>
+ *     --world=world_1.json --ticks=36000 --script=D@0..600,SPACE@120..124 --background-every=120 --parallel
+ * </pre>
+ */
+public class HeadlessLauncher {
+
+    public static void main(String[] arg) {
+        final HeadlessRunner.Options defaults = HeadlessRunner.Options.defaults();
+        String world = defaults.world();
+        long ticks = defaults.ticks();
+        String script = defaults.script();
+        int ticksPerBackgroundPass = defaults.ticksPerBackgroundPass();
+        boolean parallelPhysics = defaults.parallelPhysics();
+        for (String a : arg) {
+            if (a.startsWith("--world=")) world = a.substring("--world=".length());
+            else if (a.startsWith("--ticks=")) ticks = Long.parseLong(a.substring("--ticks=".length()));
+            else if (a.startsWith("--script=")) script = a.substring("--script=".length());
+            else if (a.startsWith("--background-every=")) ticksPerBackgroundPass = Integer.parseInt(a.substring("--background-every=".length()));
+            else if (a.equals("--parallel")) parallelPhysics = true;
+            else throw new IllegalArgumentException("Received invalid parameters: " + a);
+        }
+
+        final HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+        new HeadlessApplication(new HeadlessRunner(new HeadlessRunner.Options(world, ticks, script, ticksPerBackgroundPass, parallelPhysics)), config);
+    }
+
+}